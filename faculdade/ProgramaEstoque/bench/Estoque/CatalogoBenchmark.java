@@ -0,0 +1,74 @@
+package Estoque;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Estado compartilhado pelos benchmarks: um catálogo sintético de `tamanho` produtos gravado
+ * em um `RepositorioMemoria`, que substitui o MongoDB para que os benchmarks rodem sem servidor
+ * e meçam apenas o código do programa. O catálogo é o mesmo em todas as execuções (semente fixa),
+ * para que os resultados de execuções diferentes possam ser comparados.
+ * @author Leandro
+ */
+@State(Scope.Benchmark)
+public class CatalogoBenchmark {
+    private static final long SEMENTE = 20240517L;
+
+    /** Número de produtos do catálogo. */
+    @Param({"1000", "100000", "1000000"})
+    public int tamanho;
+
+    Estoque estoque;
+    RepositorioMemoria repositorio;
+    List<Produto> produtos;
+    String[] nomes; // Nomes normalizados, na ordem de criação
+    String[] nomesDigitados; // Os mesmos nomes como um usuário digitaria (maiúsculas, espaços)
+
+    /**
+     * Gera o catálogo, grava-o no repositório e carrega o cache do `Estoque`.
+     */
+    @Setup(Level.Trial)
+    public void preparar() {
+        SplittableRandom aleatorio = new SplittableRandom(SEMENTE);
+        produtos = new ArrayList<>(tamanho);
+        nomes = new String[tamanho];
+        nomesDigitados = new String[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            String nome = "Produto " + Integer.toString(i, 36) + " Linha " + (i % 97);
+            nomesDigitados[i] = "  " + nome.toUpperCase() + " ";
+            Produto p = new Produto(nome, aleatorio.nextInt(1000), aleatorio.nextInt(100_000) / 100.0);
+            produtos.add(p);
+            nomes[i] = p.getNome();
+        }
+        repositorio = new RepositorioMemoria();
+        for (int i = 0; i < tamanho; i += 10_000) {
+            repositorio.gravarLote(produtos.subList(i, Math.min(tamanho, i + 10_000)), (p, motivo) -> { });
+        }
+        estoque = new Estoque(repositorio);
+        estoque.listarProdutos(); // Carrega o cache, como a primeira exibição da tabela.
+    }
+
+    /**
+     * Encerra as tarefas em segundo plano do `Estoque`.
+     */
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        estoque.fechar();
+    }
+
+    /**
+     * Sorteia a posição de um produto do catálogo.
+     * @return Uma posição entre 0 e `tamanho - 1`.
+     */
+    int sortear() {
+        return ThreadLocalRandom.current().nextInt(tamanho);
+    }
+}
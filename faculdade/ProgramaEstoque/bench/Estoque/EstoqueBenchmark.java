@@ -0,0 +1,122 @@
+package Estoque;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks das operações de `Estoque` usadas pela interface: busca pelo nome, verificação
+ * de nome na digitação, gravação, contagem e paginação da tabela, e o resumo do relatório.
+ * `filtrarTabela` reproduz o trabalho disparado por `Lista.atualizarTabela()`: o modelo da
+ * tabela conta os produtos do filtro e carrega a primeira página.
+ * @author Leandro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Destoque.snapshot="})
+public class EstoqueBenchmark {
+
+    /**
+     * Busca de um produto existente (acerto do cache).
+     * @param c O catálogo.
+     * @return O produto encontrado.
+     */
+    @Benchmark
+    public Produto buscarProduto(CatalogoBenchmark c) {
+        return c.estoque.buscarProduto(c.nomesDigitados[c.sortear()]);
+    }
+
+    /**
+     * Consulta ao índice local de nomes, feita a cada tecla no formulário de cadastro.
+     * @param c O catálogo.
+     * @return A resposta do índice.
+     */
+    @Benchmark
+    public IndiceNomes.Resposta verificarNome(CatalogoBenchmark c) {
+        return c.estoque.verificarNome(c.nomesDigitados[c.sortear()]);
+    }
+
+    /**
+     * Atualização de um produto: repositório, cache, índice e notificação.
+     * @param c O catálogo.
+     * @return true se o produto foi atualizado.
+     */
+    @Benchmark
+    public boolean atualizarProduto(CatalogoBenchmark c) {
+        int i = c.sortear();
+        return c.estoque.atualizarProduto(c.nomes[i], i % 1000, (i % 5000) / 10.0);
+    }
+
+    /**
+     * Entrada de uma unidade em um produto sorteado, somada no repositório (sem leitura prévia).
+     * @param c O catálogo.
+     * @return O produto com a nova quantidade.
+     */
+    @Benchmark
+    public Produto registrarEntrada(CatalogoBenchmark c) {
+        return c.estoque.registrarEntrada(c.nomes[c.sortear()], 1);
+    }
+
+    /**
+     * Contagem com os dois filtros da tabela.
+     * @param c O catálogo.
+     * @return O número de produtos.
+     */
+    @Benchmark
+    public long contarProdutos(CatalogoBenchmark c) {
+        return c.estoque.contarProdutos(ConsultaProdutos.todos().comFiltros("produto 1", 500));
+    }
+
+    /**
+     * Página seguinte da tabela ordenada por nome, a partir de um produto sorteado (keyset).
+     * @param c O catálogo.
+     * @return Os produtos da página.
+     */
+    @Benchmark
+    public List<Produto> listarPaginaPorChave(CatalogoBenchmark c) {
+        return c.estoque.listarPagina(ConsultaProdutos.todos(), c.produtos.get(c.sortear()),
+            ProdutoTableModel.TAMANHO_PAGINA);
+    }
+
+    /**
+     * Página da tabela a partir de uma posição sorteada, como ao arrastar a barra de rolagem.
+     * @param c O catálogo.
+     * @return Os produtos da página.
+     */
+    @Benchmark
+    public List<Produto> listarPaginaPorDeslocamento(CatalogoBenchmark c) {
+        return c.estoque.listarPagina(ConsultaProdutos.todos(), (long) c.sortear(),
+            ProdutoTableModel.TAMANHO_PAGINA);
+    }
+
+    /**
+     * Trabalho de `Lista.atualizarTabela()` para um filtro digitado: contagem e primeira página.
+     * @param c O catálogo.
+     * @return Os produtos da primeira página.
+     */
+    @Benchmark
+    public List<Produto> filtrarTabela(CatalogoBenchmark c) {
+        String prefixo = c.nomesDigitados[c.sortear()].trim().substring(0, 10);
+        ConsultaProdutos consulta = ConsultaProdutos.todos().comFiltros(prefixo, 100);
+        c.estoque.contarProdutos(consulta);
+        return c.estoque.listarPagina(consulta, null, ProdutoTableModel.TAMANHO_PAGINA);
+    }
+
+    /**
+     * Resumo da valorização do estoque, exibido no topo do relatório.
+     * @param c O catálogo.
+     * @return O resumo.
+     */
+    @Benchmark
+    public ResumoEstoque calcularResumo(CatalogoBenchmark c) {
+        return c.estoque.calcularResumo();
+    }
+}
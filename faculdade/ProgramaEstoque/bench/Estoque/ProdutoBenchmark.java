@@ -0,0 +1,49 @@
+package Estoque;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks da criação de produtos, que normaliza o nome (espaços e minúsculas) e acontece
+ * a cada linha lida do banco, do snapshot ou de um CSV importado.
+ * @author Leandro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Destoque.snapshot="})
+public class ProdutoBenchmark {
+
+    /**
+     * Criação de um produto a partir de um nome digitado.
+     * @param c O catálogo.
+     * @return O produto criado.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Produto criarProduto(CatalogoBenchmark c) {
+        int i = c.sortear();
+        return new Produto(c.nomesDigitados[i], i, i / 100.0);
+    }
+
+    /**
+     * Criação do catálogo inteiro, como na carga do cache ou do snapshot.
+     * @param c O catálogo.
+     * @param bh Consome os produtos criados.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void criarCatalogo(CatalogoBenchmark c, Blackhole bh) {
+        String[] nomes = c.nomesDigitados;
+        for (int i = 0; i < nomes.length; i++) {
+            bh.consume(new Produto(nomes[i], i, i / 100.0));
+        }
+    }
+}
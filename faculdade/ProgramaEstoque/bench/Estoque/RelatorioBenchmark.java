@@ -0,0 +1,94 @@
+package Estoque;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks do relatório: a formatação dos valores monetários exibidos na tabela e a
+ * exportação do catálogo inteiro para CSV, como faz o botão "Exportar" do `Relatorio`.
+ * @author Leandro
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Destoque.snapshot="})
+public class RelatorioBenchmark {
+
+    /**
+     * Arquivo temporário que recebe as exportações.
+     */
+    @State(Scope.Thread)
+    public static class Destino {
+        Path arquivo;
+
+        /**
+         * Cria o arquivo temporário.
+         * @throws IOException Se o arquivo não puder ser criado.
+         */
+        @Setup(Level.Trial)
+        public void criar() throws IOException {
+            arquivo = Files.createTempFile("estoque-benchmark", ".csv");
+        }
+
+        /**
+         * Apaga o arquivo temporário.
+         * @throws IOException Se o arquivo não puder ser apagado.
+         */
+        @TearDown(Level.Trial)
+        public void apagar() throws IOException {
+            Files.deleteIfExists(arquivo);
+        }
+    }
+
+    /**
+     * Formatação dos valores de uma linha do relatório (preço unitário e valor total).
+     * @param c O catálogo.
+     * @param bh Consome os textos formatados.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void formatarLinha(CatalogoBenchmark c, Blackhole bh) {
+        Produto p = c.produtos.get(c.sortear());
+        bh.consume(Relatorio.formatarMoeda(p.getPreco()));
+        bh.consume(Relatorio.formatarMoeda(p.getQuantidade() * p.getPreco()));
+    }
+
+    /**
+     * Exportação do catálogo inteiro, ordenado por nome, para um arquivo CSV.
+     * @param c O catálogo.
+     * @param destino O arquivo de destino.
+     * @return O número de linhas escritas.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long exportarCSV(CatalogoBenchmark c, Destino destino) {
+        try (ExportadorCSV exportador = new ExportadorCSV(destino.arquivo, false)) {
+            c.estoque.percorrerProdutos(ConsultaProdutos.todos(), 1000, p -> {
+                try {
+                    exportador.escrever(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return exportador.getLinhas();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package Estoque;
+
+import java.util.Arrays;
+
+/**
+ * Alertas de reposição mantidos incrementalmente: os produtos cuja quantidade está abaixo do
+ * ponto de reposição (o próprio do produto ou o padrão do estoque), em um heap binário de
+ * mínimo ordenado pela diferença entre a quantidade e o ponto, de modo que o produto mais
+ * urgente (o que mais falta para chegar ao ponto) está sempre no topo.
+ * <p>
+ * Os produtos são identificados pela sua linha no `CatalogoColunar`, que ajusta os alertas a
+ * cada gravação ou remoção sob a sua própria trava: a contagem é lida em tempo constante e
+ * cada movimentação custa O(log k), sendo k o número de alertas (normalmente pequeno), sem
+ * percorrer o catálogo. Os métodos não são sincronizados; só `getQuantidade` pode ser lido
+ * sem a trava do catálogo.
+ * @author Leandro
+ */
+public final class AlertasReposicao {
+    // Ponto de reposição padrão, usado pelos produtos sem ponto próprio.
+    static final int PONTO_PADRAO_INICIAL = 5;
+
+    private int[] linhas = new int[64]; // Heap: linha do catálogo em cada posição
+    private int[] chaves = new int[64]; // Heap: quantidade - ponto (negativa) em cada posição
+    private int[] posicoes = new int[1024]; // Linha → posição no heap + 1, ou 0 se a linha não está em alerta
+    private volatile int tamanho;
+
+    /**
+     * Um produto em alerta, como exibido e exportado na lista de reposição.
+     */
+    public static final class Item {
+        private final Produto produto;
+        private final int ponto;
+
+        /**
+         * Construtor do item.
+         * @param produto O produto.
+         * @param ponto O ponto de reposição em vigor (próprio ou padrão).
+         */
+        Item(Produto produto, int ponto) {
+            this.produto = produto;
+            this.ponto = ponto;
+        }
+
+        /**
+         * Obtém o produto em alerta.
+         * @return O produto.
+         */
+        public Produto getProduto() {
+            return produto;
+        }
+
+        /**
+         * Obtém o ponto de reposição em vigor para o produto.
+         * @return O ponto próprio do produto ou, se ele não tem um, o padrão.
+         */
+        public int getPonto() {
+            return ponto;
+        }
+
+        /**
+         * Indica se o ponto em vigor é o padrão do estoque.
+         * @return true se o produto não tem ponto próprio.
+         */
+        public boolean isPontoPadrao() {
+            return produto.getPontoReposicao() == Produto.PONTO_REPOSICAO_PADRAO;
+        }
+
+        /**
+         * Obtém quantas unidades faltam para o produto voltar ao ponto de reposição.
+         * @return O ponto menos a quantidade (positivo).
+         */
+        public int getFalta() {
+            return ponto - produto.getQuantidade();
+        }
+
+        /**
+         * Obtém o custo de repor as unidades que faltam, ao preço atual.
+         * @return A falta vezes o preço unitário.
+         */
+        public double getCustoReposicao() {
+            return getFalta() * produto.getPreco();
+        }
+
+        @Override
+        public String toString() {
+            return produto.getNome() + ": " + produto.getQuantidade() + " de " + ponto;
+        }
+    }
+
+    /**
+     * Reavalia uma linha depois de uma gravação: entra no heap (ou muda de posição) se a
+     * quantidade ficou abaixo do ponto, e sai dele caso contrário.
+     * @param linha A linha do catálogo.
+     * @param quantidade A quantidade atual.
+     * @param ponto O ponto de reposição em vigor.
+     */
+    void atualizar(int linha, int quantidade, int ponto) {
+        if (quantidade >= ponto) {
+            retirar(linha);
+            return;
+        }
+        int chave = quantidade - ponto;
+        int posicao = linha < posicoes.length ? posicoes[linha] - 1 : -1;
+        if (posicao < 0) {
+            if (linha >= posicoes.length) posicoes = Arrays.copyOf(posicoes, Math.max(posicoes.length * 2, linha + 1));
+            if (tamanho == linhas.length) {
+                linhas = Arrays.copyOf(linhas, tamanho * 2);
+                chaves = Arrays.copyOf(chaves, tamanho * 2);
+            }
+            posicao = tamanho++;
+            colocar(posicao, linha, chave);
+            subir(posicao);
+        } else {
+            chaves[posicao] = chave;
+            descer(subir(posicao));
+        }
+    }
+
+    /**
+     * Retira uma linha do heap, se ela estiver em alerta (ex.: o produto foi removido).
+     * @param linha A linha do catálogo.
+     */
+    void retirar(int linha) {
+        if (linha >= posicoes.length || posicoes[linha] == 0) return;
+        int posicao = posicoes[linha] - 1;
+        posicoes[linha] = 0;
+        int ultima = --tamanho;
+        if (posicao != ultima) {
+            colocar(posicao, linhas[ultima], chaves[ultima]);
+            descer(subir(posicao));
+        }
+    }
+
+    /**
+     * Esvazia o heap.
+     */
+    void zerar() {
+        linhas = new int[64];
+        chaves = new int[64];
+        posicoes = new int[1024];
+        tamanho = 0;
+    }
+
+    /**
+     * Obtém o número de produtos em alerta. Pode ser chamado sem a trava do catálogo.
+     * @return O número de produtos abaixo do ponto de reposição.
+     */
+    public int getQuantidade() {
+        return tamanho;
+    }
+
+    /**
+     * Obtém a linha do produto mais urgente.
+     * @return A linha no topo do heap, ou -1 se não há alertas.
+     */
+    int getPrimeiraLinha() {
+        return tamanho == 0 ? -1 : linhas[0];
+    }
+
+    /**
+     * Copia as linhas em alerta, na ordem do heap (não ordenadas).
+     * @return As linhas.
+     */
+    int[] copiarLinhas() {
+        return Arrays.copyOf(linhas, tamanho);
+    }
+
+    /**
+     * Estima a memória ocupada pelo heap e pelo vetor de posições.
+     * @return O número aproximado de bytes.
+     */
+    long bytesUsados() {
+        return (long) linhas.length * 8 + (long) posicoes.length * 4;
+    }
+
+    /**
+     * Grava uma linha em uma posição do heap.
+     * @param posicao A posição.
+     * @param linha A linha.
+     * @param chave A chave da linha.
+     */
+    private void colocar(int posicao, int linha, int chave) {
+        linhas[posicao] = linha;
+        chaves[posicao] = chave;
+        posicoes[linha] = posicao + 1;
+    }
+
+    /**
+     * Indica se a posição a vem antes da posição b: menor chave e, no empate, menor linha.
+     * @param a Uma posição.
+     * @param b Outra posição.
+     * @return true se a vem antes de b.
+     */
+    private boolean antes(int a, int b) {
+        return chaves[a] != chaves[b] ? chaves[a] < chaves[b] : linhas[a] < linhas[b];
+    }
+
+    /**
+     * Troca o conteúdo de duas posições do heap.
+     * @param a Uma posição.
+     * @param b Outra posição.
+     */
+    private void trocar(int a, int b) {
+        int linha = linhas[a];
+        int chave = chaves[a];
+        colocar(a, linhas[b], chaves[b]);
+        colocar(b, linha, chave);
+    }
+
+    /**
+     * Sobe uma posição enquanto ela vier antes da sua mãe.
+     * @param posicao A posição.
+     * @return A posição final.
+     */
+    private int subir(int posicao) {
+        while (posicao > 0) {
+            int mae = (posicao - 1) >>> 1;
+            if (!antes(posicao, mae)) break;
+            trocar(posicao, mae);
+            posicao = mae;
+        }
+        return posicao;
+    }
+
+    /**
+     * Desce uma posição enquanto alguma filha vier antes dela.
+     * @param posicao A posição.
+     */
+    private void descer(int posicao) {
+        while (true) {
+            int filha = 2 * posicao + 1;
+            if (filha >= tamanho) return;
+            if (filha + 1 < tamanho && antes(filha + 1, filha)) filha++;
+            if (!antes(filha, posicao)) return;
+            trocar(posicao, filha);
+            posicao = filha;
+        }
+    }
+}
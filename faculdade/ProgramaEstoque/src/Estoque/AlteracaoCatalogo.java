@@ -0,0 +1,82 @@
+package Estoque;
+
+/**
+ * Uma alteração do catálogo lida pela sincronização entre instâncias (ver
+ * `RepositorioProdutos.paraCadaAlteracaoDesde`): o estado atual de um produto gravado ou a
+ * "lápide" de um produto removido, com a versão do catálogo em que a alteração foi feita.
+ * @author Leandro
+ */
+public final class AlteracaoCatalogo {
+    private final long versao;
+    private final String nome;
+    private final Produto produto; // null se o produto foi removido
+
+    /**
+     * Construtor privado; use `gravado` ou `removido`.
+     * @param versao A versão da alteração.
+     * @param nome O nome normalizado do produto.
+     * @param produto O produto gravado, ou null se foi removido.
+     */
+    private AlteracaoCatalogo(long versao, String nome, Produto produto) {
+        this.versao = versao;
+        this.nome = nome;
+        this.produto = produto;
+    }
+
+    /**
+     * Cria a alteração de um produto inserido ou alterado.
+     * @param versao A versão da gravação.
+     * @param produto O produto, com os valores gravados.
+     * @return A alteração.
+     */
+    public static AlteracaoCatalogo gravado(long versao, Produto produto) {
+        return new AlteracaoCatalogo(versao, produto.getNome(), produto);
+    }
+
+    /**
+     * Cria a alteração de um produto removido.
+     * @param versao A versão da remoção.
+     * @param nome O nome normalizado do produto.
+     * @return A alteração.
+     */
+    public static AlteracaoCatalogo removido(long versao, String nome) {
+        return new AlteracaoCatalogo(versao, nome, null);
+    }
+
+    /**
+     * Obtém a versão do catálogo em que a alteração foi feita.
+     * @return A versão.
+     */
+    public long getVersao() {
+        return versao;
+    }
+
+    /**
+     * Obtém o nome do produto alterado.
+     * @return O nome normalizado.
+     */
+    public String getNome() {
+        return nome;
+    }
+
+    /**
+     * Obtém o produto gravado.
+     * @return O produto, ou null se a alteração é uma remoção.
+     */
+    public Produto getProduto() {
+        return produto;
+    }
+
+    /**
+     * Indica se a alteração é uma remoção.
+     * @return true se o produto foi removido.
+     */
+    public boolean isRemocao() {
+        return produto == null;
+    }
+
+    @Override
+    public String toString() {
+        return "v" + versao + " " + (produto == null ? "removido " + nome : produto.toString());
+    }
+}
@@ -0,0 +1,399 @@
+package Estoque;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Os armazéns do estoque, cada um com a sua partição: um `Estoque` próprio, com o seu
+ * repositório (coleção ou banco no MongoDB, banco no JDBC), cache, snapshot, livro de
+ * movimentações e versões. As operações de um armazém são feitas no seu `Estoque`
+ * (ver `getEstoque`) e só acessam a sua partição.
+ * <p>
+ * As consultas de todos os armazéns (listagem, busca e valorização) são distribuídas:
+ * cada armazém é consultado em uma thread virtual própria, ao mesmo tempo que os demais,
+ * e os resultados são combinados quando todos respondem. Assim o tempo de uma consulta é
+ * o do armazém mais lento, e não a soma dos tempos. Se um armazém falhar, as consultas
+ * ainda em andamento são canceladas e o erro é relançado.
+ * <p>
+ * Os armazéns vêm da chave "estoque.armazens" da configuração (ver `ConfiguracaoBanco`);
+ * sem ela, há um único armazém, `ARMAZEM_UNICO`, com a partição configurada.
+ * @author Leandro
+ */
+public class Armazens {
+    /** Nome do armazém quando a configuração não lista armazéns. */
+    public static final String ARMAZEM_UNICO = "principal";
+
+    // Estoque de cada armazém, na ordem da configuração.
+    private final Map<String, Estoque> estoques;
+    // Executor das consultas distribuídas: uma thread virtual por armazém consultado.
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Latências das consultas distribuídas (as de cada armazém ficam nas métricas do seu `Estoque`).
+    private final MetricasLatencia metricas = new MetricasLatencia();
+
+    /**
+     * Um produto e o armazém em que está, como devolvido pelas consultas de todos os armazéns.
+     */
+    public static final class ProdutoArmazem {
+        private final String armazem;
+        private final Produto produto;
+
+        /**
+         * Construtor do par.
+         * @param armazem O nome do armazém.
+         * @param produto O produto.
+         */
+        ProdutoArmazem(String armazem, Produto produto) {
+            this.armazem = armazem;
+            this.produto = produto;
+        }
+
+        /**
+         * Obtém o armazém do produto.
+         * @return O nome do armazém.
+         */
+        public String getArmazem() {
+            return armazem;
+        }
+
+        /**
+         * Obtém o produto, com a quantidade e o preço do armazém.
+         * @return O produto.
+         */
+        public Produto getProduto() {
+            return produto;
+        }
+
+        @Override
+        public String toString() {
+            return armazem + ": " + produto;
+        }
+    }
+
+    /**
+     * Construtor com os estoques já criados.
+     * @param estoques O estoque de cada armazém, na ordem de exibição (pelo menos um).
+     * @throws IllegalArgumentException Se não houver nenhum armazém.
+     */
+    public Armazens(Map<String, Estoque> estoques) {
+        if (estoques.isEmpty()) throw new IllegalArgumentException("É preciso pelo menos um armazém.");
+        this.estoques = Collections.unmodifiableMap(new LinkedHashMap<>(estoques));
+    }
+
+    /**
+     * Cria os armazéns listados em `estoque.properties` (ver `ConfiguracaoBanco`).
+     * @return Os armazéns; nenhuma conexão é aberta aqui.
+     * @throws IllegalArgumentException Se a configuração for inválida.
+     */
+    public static Armazens criar() {
+        return criar(ConfiguracaoBanco.carregar());
+    }
+
+    /**
+     * Cria os armazéns de uma configuração. O primeiro armazém usa a partição configurada
+     * (os produtos já existentes ficam nele); os demais, partições próprias.
+     * @param configuracao A configuração carregada.
+     * @return Os armazéns; nenhuma conexão é aberta aqui.
+     * @throws IllegalArgumentException Se o tipo de repositório configurado não for reconhecido.
+     */
+    public static Armazens criar(ConfiguracaoBanco configuracao) {
+        Map<String, Estoque> estoques = new LinkedHashMap<>();
+        List<String> nomes = configuracao.getArmazens();
+        if (nomes.isEmpty()) {
+            estoques.put(ARMAZEM_UNICO, new Estoque(RepositorioProdutos.criar(configuracao), null, configuracao));
+        } else {
+            estoques.put(nomes.get(0), new Estoque(RepositorioProdutos.criar(configuracao), null, configuracao));
+            for (String nome : nomes.subList(1, nomes.size())) {
+                estoques.put(nome, new Estoque(RepositorioProdutos.criarParticao(configuracao, nome), nome, configuracao));
+            }
+        }
+        return new Armazens(estoques);
+    }
+
+    /**
+     * Começa a conectar todos os armazéns em segundo plano (ver `Estoque.iniciar`).
+     */
+    public void iniciar() {
+        estoques.values().forEach(Estoque::iniciar);
+    }
+
+    /**
+     * Fecha o estoque de todos os armazéns (ver `Estoque.fechar`). Deve ser chamado ao fechar a aplicação.
+     */
+    public void fechar() {
+        executor.shutdownNow();
+        estoques.values().forEach(Estoque::fechar);
+    }
+
+    /**
+     * Obtém os nomes dos armazéns.
+     * @return Os nomes, na ordem da configuração.
+     */
+    public List<String> getNomes() {
+        return List.copyOf(estoques.keySet());
+    }
+
+    /**
+     * Obtém o número de armazéns.
+     * @return O número de armazéns.
+     */
+    public int getQuantidade() {
+        return estoques.size();
+    }
+
+    /**
+     * Obtém o estoque de um armazém, para as operações que só dizem respeito a ele.
+     * @param armazem O nome do armazém.
+     * @return O estoque do armazém.
+     * @throws IllegalArgumentException Se o armazém não existir.
+     */
+    public Estoque getEstoque(String armazem) {
+        Estoque estoque = estoques.get(armazem);
+        if (estoque == null) throw new IllegalArgumentException("Armazém desconhecido: " + armazem);
+        return estoque;
+    }
+
+    /**
+     * Obtém o estoque do primeiro armazém, que usa a partição configurada.
+     * @return O estoque do armazém principal.
+     */
+    public Estoque getPrincipal() {
+        return estoques.values().iterator().next();
+    }
+
+    /**
+     * Obtém as métricas de latência das consultas distribuídas.
+     * @return As métricas.
+     */
+    public MetricasLatencia getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Lista os produtos de todos os armazéns, em ordem alfabética e, para o mesmo produto,
+     * na ordem dos armazéns. Cada armazém lista e ordena os seus produtos ao mesmo tempo que
+     * os demais; as listas ordenadas são então intercaladas.
+     * @return Os produtos de todos os armazéns.
+     */
+    public List<ProdutoArmazem> listarProdutos() {
+        return metricas.medir("Armazens.listarProdutos", () -> intercalar(consultarTodos(estoque -> {
+            List<Produto> produtos = estoque.listarProdutos();
+            produtos.sort(Comparator.comparing(Produto::getNome));
+            return produtos;
+        })));
+    }
+
+    /**
+     * Lista os produtos de todos os armazéns cujo nome começa com um prefixo e cuja quantidade
+     * é pelo menos a mínima, com o filtro executado por cada partição (ver `Estoque.listarProdutos(String, int)`).
+     * @param prefixoNome O prefixo do nome; vazio para não filtrar por nome.
+     * @param quantidadeMinima A quantidade mínima; 0 para não filtrar por quantidade.
+     * @return Os produtos, em ordem alfabética e, para o mesmo produto, na ordem dos armazéns.
+     */
+    public List<ProdutoArmazem> listarProdutos(String prefixoNome, int quantidadeMinima) {
+        return metricas.medir("Armazens.listarProdutosFiltrados", () ->
+            intercalar(consultarTodos(estoque -> estoque.listarProdutos(prefixoNome, quantidadeMinima))));
+    }
+
+    /**
+     * Lista uma página dos produtos de todos os armazéns em ordem alfabética, por chave (ver
+     * `Estoque.listarPagina(ConsultaProdutos, Produto, int)`): cada armazém lista a sua página,
+     * começando logo após o nome `apos`, ao mesmo tempo que os demais, e as páginas são
+     * intercaladas. Só entram os nomes que todos os armazéns já listaram por inteiro, e um
+     * nome nunca é dividido entre duas páginas, de modo que o último nome da página serve de
+     * `apos` para a seguinte.
+     * @param consulta A consulta com os filtros; a ordenação é sempre pelo nome, crescente.
+     * @param apos O último produto da página anterior, ou null para a primeira página.
+     * @param tamanho O número de produtos da página; pode ser excedido para não dividir o
+     *        último nome, que às vezes está em mais de um armazém.
+     * @return Os produtos, em ordem alfabética e, para o mesmo produto, na ordem dos armazéns;
+     *         menos que `tamanho` só na última página.
+     */
+    public List<ProdutoArmazem> listarPagina(ConsultaProdutos consulta, Produto apos, int tamanho) {
+        ConsultaProdutos porNome = consulta.comOrdenacao(ConsultaProdutos.NOME, true);
+        return metricas.medir("Armazens.listarPagina", () -> {
+            Map<String, List<Produto>> porArmazem = consultarTodos(estoque -> estoque.listarPagina(porNome, apos, tamanho));
+            // Um armazém com a página cheia pode ter mais produtos depois do último que listou.
+            String limite = null;
+            for (List<Produto> pagina : porArmazem.values()) {
+                if (pagina.isEmpty() || pagina.size() < tamanho) continue;
+                String ultimo = pagina.get(pagina.size() - 1).getNome();
+                if (limite == null || ultimo.compareTo(limite) < 0) limite = ultimo;
+            }
+            List<ProdutoArmazem> produtos = intercalar(porArmazem);
+            int fim = produtos.size();
+            if (limite != null) {
+                while (fim > 0 && produtos.get(fim - 1).getProduto().getNome().compareTo(limite) > 0) fim--;
+            }
+            if (fim > tamanho) {
+                String ultimo = produtos.get(tamanho - 1).getProduto().getNome();
+                fim = tamanho;
+                while (fim < produtos.size() && produtos.get(fim).getProduto().getNome().equals(ultimo)) fim++;
+            }
+            return fim < produtos.size() ? new ArrayList<>(produtos.subList(0, fim)) : produtos;
+        });
+    }
+
+    /**
+     * Procura um produto pelo nome em todos os armazéns.
+     * @param nome O nome do produto.
+     * @return O produto em cada armazém que o tem, na ordem dos armazéns; vazia se nenhum o tem.
+     */
+    public List<ProdutoArmazem> buscarProduto(String nome) {
+        return metricas.medir("Armazens.buscarProduto", () -> {
+            List<ProdutoArmazem> encontrados = new ArrayList<>();
+            consultarTodos(estoque -> estoque.buscarProduto(nome)).forEach((armazem, produto) -> {
+                if (produto != null) encontrados.add(new ProdutoArmazem(armazem, produto));
+            });
+            return encontrados;
+        });
+    }
+
+    /**
+     * Busca os produtos mais parecidos com um texto em todos os armazéns (ver
+     * `Estoque.buscarAproximado`). Cada armazém devolve os seus `limite` melhores; os
+     * resultados são reordenados pela mesma nota da busca e os `limite` melhores são mantidos.
+     * @param texto O texto digitado.
+     * @param quantidadeMinima A quantidade mínima; 0 para não filtrar por quantidade.
+     * @param limite O número máximo de produtos.
+     * @return Os produtos, do mais ao menos parecido (no empate, os nomes mais curtos, em ordem
+     *         alfabética e, para o mesmo produto, na ordem dos armazéns).
+     */
+    public List<ProdutoArmazem> buscarAproximado(String texto, int quantidadeMinima, int limite) {
+        return metricas.medir("Armazens.buscarAproximado", () -> {
+            Map<String, List<Produto>> porArmazem = consultarTodos(estoque -> estoque.buscarAproximado(texto, quantidadeMinima, limite));
+            List<ProdutoArmazem> encontrados = new ArrayList<>();
+            Map<String, Double> notas = new HashMap<>();
+            porArmazem.forEach((armazem, produtos) -> {
+                for (Produto produto : produtos) {
+                    encontrados.add(new ProdutoArmazem(armazem, produto));
+                    notas.computeIfAbsent(produto.getNome(), nome -> IndiceTrigramas.nota(texto, nome));
+                }
+            });
+            List<String> ordem = getNomes();
+            encontrados.sort(Comparator
+                .comparingDouble((ProdutoArmazem p) -> -notas.get(p.getProduto().getNome()))
+                .thenComparingInt(p -> p.getProduto().getNome().length())
+                .thenComparing(p -> p.getProduto().getNome())
+                .thenComparingInt(p -> ordem.indexOf(p.getArmazem())));
+            return encontrados.size() > limite ? new ArrayList<>(encontrados.subList(0, limite)) : encontrados;
+        });
+    }
+
+    /**
+     * Obtém os totais de cada armazém (ver `Estoque.calcularTotais`), consultados ao mesmo tempo.
+     * @return Os totais de cada armazém, na ordem dos armazéns.
+     */
+    public Map<String, TotaisEstoque> calcularTotais() {
+        return metricas.medir("Armazens.calcularTotais", () -> consultarTodos(Estoque::calcularTotais));
+    }
+
+    /**
+     * Calcula a valorização de todos os armazéns juntos. Os totais de cada armazém são somados
+     * em centavos, sem erros de arredondamento; o mesmo produto em dois armazéns conta como
+     * dois itens.
+     * @return O resumo de todos os armazéns.
+     */
+    public ResumoEstoque calcularResumo() {
+        TotaisEstoque soma = new TotaisEstoque();
+        calcularTotais().values().forEach(soma::acumular);
+        return soma.getResumo();
+    }
+
+    /**
+     * Obtém a lista de reposição de cada armazém (ver `Estoque.listarAlertasReposicao`),
+     * consultadas ao mesmo tempo.
+     * @return Os produtos abaixo do ponto de reposição em cada armazém, na ordem dos armazéns.
+     */
+    public Map<String, List<AlertasReposicao.Item>> listarAlertasReposicao() {
+        return metricas.medir("Armazens.listarAlertasReposicao", () -> consultarTodos(Estoque::listarAlertasReposicao));
+    }
+
+    /**
+     * Executa uma consulta em todos os armazéns ao mesmo tempo, cada uma em uma thread virtual,
+     * e espera todas terminarem. Com um só armazém, a consulta é feita na thread atual.
+     * @param consulta A consulta, aplicada ao estoque de cada armazém.
+     * @return O resultado de cada armazém, na ordem dos armazéns.
+     * @throws RuntimeException O erro do primeiro armazém que falhar; as demais consultas são canceladas.
+     */
+    private <T> Map<String, T> consultarTodos(Function<Estoque, T> consulta) {
+        Map<String, T> resultados = new LinkedHashMap<>();
+        if (estoques.size() == 1) {
+            estoques.forEach((armazem, estoque) -> resultados.put(armazem, consulta.apply(estoque)));
+            return resultados;
+        }
+        Map<String, Future<T>> pendentes = new LinkedHashMap<>();
+        estoques.forEach((armazem, estoque) -> pendentes.put(armazem, executor.submit(() -> consulta.apply(estoque))));
+        try {
+            for (Map.Entry<String, Future<T>> pendente : pendentes.entrySet()) {
+                resultados.put(pendente.getKey(), pendente.getValue().get());
+            }
+            return resultados;
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException r) throw r;
+            if (causa instanceof Error erro) throw erro;
+            throw new IllegalStateException(causa);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Consulta aos armazéns interrompida.");
+        } finally {
+            // Com uma falha (ou interrupção), não há por que esperar os demais armazéns.
+            pendentes.values().forEach(f -> f.cancel(true));
+        }
+    }
+
+    /**
+     * Intercala as listas de cada armazém, já em ordem alfabética, em uma única lista em ordem
+     * alfabética; para o mesmo produto, vale a ordem dos armazéns.
+     * @param porArmazem Os produtos de cada armazém, em ordem alfabética.
+     * @return A lista intercalada.
+     */
+    private static List<ProdutoArmazem> intercalar(Map<String, List<Produto>> porArmazem) {
+        // Cursores das listas, com o menor produto ainda não intercalado à frente.
+        final class Cursor {
+            final int ordem;
+            final String armazem;
+            final List<Produto> produtos;
+            int posicao;
+
+            Cursor(int ordem, String armazem, List<Produto> produtos) {
+                this.ordem = ordem;
+                this.armazem = armazem;
+                this.produtos = produtos;
+            }
+
+            Produto atual() {
+                return produtos.get(posicao);
+            }
+        }
+        PriorityQueue<Cursor> fila = new PriorityQueue<>(Comparator
+            .comparing((Cursor c) -> c.atual().getNome())
+            .thenComparingInt(c -> c.ordem));
+        int total = 0;
+        int ordem = 0;
+        for (Map.Entry<String, List<Produto>> lista : porArmazem.entrySet()) {
+            if (!lista.getValue().isEmpty()) fila.add(new Cursor(ordem, lista.getKey(), lista.getValue()));
+            total += lista.getValue().size();
+            ordem++;
+        }
+        List<ProdutoArmazem> intercalados = new ArrayList<>(total);
+        while (!fila.isEmpty()) {
+            Cursor cursor = fila.poll();
+            intercalados.add(new ProdutoArmazem(cursor.armazem, cursor.atual()));
+            if (++cursor.posicao < cursor.produtos.size()) fila.add(cursor);
+        }
+        return intercalados;
+    }
+}
@@ -0,0 +1,18 @@
+package Estoque;
+
+/**
+ * Lançada quando não é possível conectar ao banco de dados ou preparar a coleção (ou tabela) de produtos.
+ * A mensagem informa o servidor configurado e o motivo, para ser exibida diretamente ao usuário.
+ * @author Leandro
+ */
+public class BancoIndisponivelException extends RuntimeException {
+
+    /**
+     * Construtor da BancoIndisponivelException.
+     * @param mensagem A mensagem descrevendo o problema.
+     * @param causa A exceção original do driver.
+     */
+    public BancoIndisponivelException(String mensagem, Throwable causa) {
+        super(mensagem, causa);
+    }
+}
@@ -0,0 +1,971 @@
+package Estoque;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Catálogo de produtos em memória organizado por colunas, usado como cache do `Estoque`.
+ * Em vez de um objeto `Produto` (com a sua `String`) e uma entrada de mapa por produto, cada
+ * produto ocupa uma linha de vetores primitivos: os nomes ficam todos em um único vetor de
+ * bytes (1 byte por caractere quando o nome cabe em Latin-1, 2 caso contrário, como nas
+ * strings compactas da JVM), as quantidades em um `int[]` e os preços em centavos em um `long[]`.
+ * Um índice de endereçamento aberto (sondagem linear) leva do nome à linha.
+ * Para um catálogo de um milhão de produtos, isso ocupa cerca de um terço da memória do mapa
+ * de objetos (ver `descreverMemoria`).
+ * <p>
+ * Objetos `Produto` só são criados quando pedidos (`get`, `pagina`); as ordenações locais
+ * ordenam números de linha, comparando os valores diretamente nas colunas.
+ * Preços com mais de duas casas decimais, raros, são guardados à parte, sem arredondamento.
+ * <p>
+ * O catálogo mantém também os totais do estoque (ver `TotaisEstoque`) e os alertas de
+ * reposição (ver `AlertasReposicao`), ajustados a cada gravação e remoção sob a mesma trava,
+ * de modo que sempre correspondem às linhas.
+ * <p>
+ * As leituras podem ser feitas por várias threads ao mesmo tempo; as escritas são exclusivas.
+ * @author Leandro
+ */
+public final class CatalogoColunar {
+    private static final int CAPACIDADE_INICIAL = 1024;
+    // Bytes de nomes removidos acima dos quais o vetor de nomes é compactado (se for mais da metade dele).
+    private static final int LIXO_MINIMO_COMPACTACAO = 1 << 16;
+    private static final int LIVRE = -1; // Marca de linha livre em `tamanhos`
+
+    private final ReadWriteLock trava = new ReentrantReadWriteLock();
+
+    // Colunas, indexadas pela linha.
+    private int[] inicios; // Posição do nome em `nomes`
+    private int[] tamanhos; // Número de caracteres do nome << 1 | 1 se o nome é UTF-16; LIVRE se a linha está livre
+    private int[] hashes; // hashCode do nome
+    private int[] quantidades;
+    private long[] centavos;
+    private int[] pontos; // Ponto de reposição próprio, ou Produto.PONTO_REPOSICAO_PADRAO
+    // Preços que não são um número exato de centavos, indexados pela linha.
+    private final Map<Integer, Double> precosExatos = new HashMap<>();
+
+    private byte[] nomes; // Vetor único com os nomes de todas as linhas
+    private int nomesUsados; // Bytes ocupados em `nomes`, incluindo os de linhas removidas
+    private int nomesLixo; // Bytes de `nomes` que pertenciam a linhas removidas
+
+    private int[] indice; // Tabela de endereçamento aberto: linha + 1, ou 0 se a posição está vazia
+    private int[] livres; // Pilha das linhas removidas, reaproveitadas pelas inserções
+    private int quantidadeLivres;
+    private int linhasUsadas; // Linhas já usadas alguma vez (as livres incluídas)
+    private volatile int tamanho; // Número de produtos
+    private volatile long modificacoes; // Incrementado a cada escrita, para invalidar as ordenações
+    private final TotaisEstoque totais = new TotaisEstoque(); // Totais das linhas ocupadas
+    private final AlertasReposicao alertas = new AlertasReposicao(); // Linhas abaixo do ponto de reposição
+    private int pontoPadrao = AlertasReposicao.PONTO_PADRAO_INICIAL; // Ponto das linhas sem ponto próprio
+
+    /**
+     * Construtor do catálogo vazio.
+     */
+    public CatalogoColunar() {
+        iniciarVazio();
+    }
+
+    /**
+     * Aloca as colunas e o índice com a capacidade inicial.
+     */
+    private void iniciarVazio() {
+        inicios = new int[CAPACIDADE_INICIAL];
+        tamanhos = new int[CAPACIDADE_INICIAL];
+        hashes = new int[CAPACIDADE_INICIAL];
+        quantidades = new int[CAPACIDADE_INICIAL];
+        centavos = new long[CAPACIDADE_INICIAL];
+        pontos = new int[CAPACIDADE_INICIAL];
+        precosExatos.clear();
+        nomes = new byte[CAPACIDADE_INICIAL * 16];
+        nomesUsados = 0;
+        nomesLixo = 0;
+        indice = new int[CAPACIDADE_INICIAL * 2];
+        livres = new int[16];
+        quantidadeLivres = 0;
+        linhasUsadas = 0;
+        tamanho = 0;
+        totais.zerar();
+        alertas.zerar();
+    }
+
+    // ---------------------------------------------------------------- operações de mapa
+
+    /**
+     * Busca um produto pelo nome.
+     * @param nome O nome normalizado.
+     * @return Um novo `Produto` com os valores atuais, ou null se o nome não existe.
+     */
+    public Produto get(String nome) {
+        trava.readLock().lock();
+        try {
+            int linha = localizar(nome, nome.hashCode());
+            return linha < 0 ? null : produto(linha);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Grava um produto, inserindo-o ou substituindo a quantidade, o preço e o ponto de reposição do existente.
+     * Regravar um produto sem alterações (ex.: a sincronização trazendo de volta uma alteração
+     * feita por este estoque) não conta como modificação.
+     * @param produto O produto.
+     * @return O estado anterior do produto, ou null se ele não existia.
+     */
+    public Produto put(Produto produto) {
+        String nome = produto.getNome();
+        int hash = nome.hashCode();
+        trava.writeLock().lock();
+        try {
+            int linha = localizar(nome, hash);
+            Produto anterior = null;
+            if (linha >= 0) {
+                anterior = produto(linha);
+                if (anterior.getQuantidade() == produto.getQuantidade()
+                        && Double.compare(anterior.getPreco(), produto.getPreco()) == 0
+                        && anterior.getPontoReposicao() == produto.getPontoReposicao()) {
+                    return anterior;
+                }
+                totais.subtrair(quantidades[linha], centavos[linha], faixa(linha));
+            } else {
+                linha = novaLinha();
+                gravarNome(linha, nome, hash);
+                inserirNoIndice(linha);
+                tamanho++;
+            }
+            modificacoes++;
+            quantidades[linha] = produto.getQuantidade();
+            gravarPreco(linha, produto.getPreco());
+            pontos[linha] = produto.getPontoReposicao();
+            totais.somar(quantidades[linha], centavos[linha], faixa(linha));
+            alertas.atualizar(linha, quantidades[linha], pontoEmVigor(linha));
+            return anterior;
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove um produto.
+     * @param nome O nome normalizado.
+     * @return O último estado do produto, ou null se ele não existia.
+     */
+    public Produto remove(String nome) {
+        int hash = nome.hashCode();
+        trava.writeLock().lock();
+        try {
+            int posicao = posicaoNoIndice(nome, hash);
+            if (posicao < 0) return null;
+            modificacoes++;
+            int linha = indice[posicao] - 1;
+            Produto removido = produto(linha);
+            retirarDoIndice(posicao);
+            liberarLinha(linha);
+            compactarSeNecessario();
+            return removido;
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove os produtos cujo nome atende a uma condição.
+     * @param condicao A condição, avaliada sobre o nome normalizado.
+     */
+    public void removeIf(Predicate<String> condicao) {
+        trava.writeLock().lock();
+        try {
+            modificacoes++;
+            for (int linha = 0; linha < linhasUsadas; linha++) {
+                if (tamanhos[linha] == LIVRE) continue;
+                String nome = nome(linha);
+                if (condicao.test(nome)) {
+                    retirarDoIndice(posicaoNoIndice(nome, hashes[linha]));
+                    liberarLinha(linha);
+                }
+            }
+            compactarSeNecessario();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove todos os produtos e devolve a memória ocupada.
+     */
+    public void clear() {
+        trava.writeLock().lock();
+        try {
+            modificacoes++;
+            iniciarVazio();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Obtém o número de produtos.
+     * @return O número de produtos.
+     */
+    public int size() {
+        return tamanho;
+    }
+
+    /**
+     * Obtém o número de escritas feitas no catálogo, sem esperar pela trava. Muda a cada
+     * gravação, remoção ou troca do ponto de reposição padrão; serve de versão do conteúdo
+     * (ex.: para as ETags do `ServidorHttp`).
+     * @return O número de escritas desde a criação.
+     */
+    public long getModificacoes() {
+        return modificacoes;
+    }
+
+    /**
+     * Cria uma lista com todos os produtos, em ordem de linha.
+     * @return Uma nova lista, com novos objetos `Produto`.
+     */
+    public List<Produto> values() {
+        trava.readLock().lock();
+        try {
+            List<Produto> produtos = new ArrayList<>(tamanho);
+            for (int linha = 0; linha < linhasUsadas; linha++) {
+                if (tamanhos[linha] != LIVRE) produtos.add(produto(linha));
+            }
+            return produtos;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Entrega cada produto, em ordem de linha. A ação não deve alterar o catálogo.
+     * @param acao A ação executada para cada produto.
+     */
+    public void forEach(Consumer<Produto> acao) {
+        trava.readLock().lock();
+        try {
+            for (int linha = 0; linha < linhasUsadas; linha++) {
+                if (tamanhos[linha] != LIVRE) acao.accept(produto(linha));
+            }
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- ordenação e páginas
+
+    /**
+     * Resultado de `ordenar`: as linhas que atendem a uma consulta, na ordem da consulta.
+     * Só vale enquanto o catálogo não for alterado (ver `isAtual`).
+     */
+    public final class Ordem {
+        private final ConsultaProdutos consulta;
+        private final long modificacao;
+        private final int[] linhas;
+
+        private Ordem(ConsultaProdutos consulta, long modificacao, int[] linhas) {
+            this.consulta = consulta;
+            this.modificacao = modificacao;
+            this.linhas = linhas;
+        }
+
+        /**
+         * Obtém a consulta ordenada.
+         * @return A consulta.
+         */
+        public ConsultaProdutos getConsulta() {
+            return consulta;
+        }
+
+        /**
+         * Obtém o número de produtos que atendem à consulta.
+         * @return O número de linhas.
+         */
+        public int getTamanho() {
+            return linhas.length;
+        }
+
+        /**
+         * Indica se o catálogo não foi alterado desde a ordenação.
+         * @return true se a ordem ainda vale.
+         */
+        public boolean isAtual() {
+            return modificacao == modificacoes;
+        }
+    }
+
+    /**
+     * Filtra e ordena as linhas conforme uma consulta, sem criar objetos `Produto`: os filtros
+     * e as comparações leem as colunas. A ordenação é estável (merge sort sobre um `int[]`).
+     * @param consulta A consulta com filtros e ordenação.
+     * @return A ordem calculada.
+     */
+    public Ordem ordenar(ConsultaProdutos consulta) {
+        trava.readLock().lock();
+        try {
+            char[] prefixo = consulta.getPrefixoNome().toCharArray();
+            int minimo = consulta.getQuantidadeMinima();
+            int[] linhas = new int[tamanho];
+            int n = 0;
+            for (int linha = 0; linha < linhasUsadas; linha++) {
+                if (tamanhos[linha] != LIVRE && quantidades[linha] >= minimo && comecaCom(linha, prefixo)) {
+                    linhas[n++] = linha;
+                }
+            }
+            linhas = Arrays.copyOf(linhas, n);
+            ordenarLinhas(linhas, new int[n], 0, n, campo(consulta), consulta.isCrescente());
+            return new Ordem(consulta, modificacoes, linhas);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lê uma página de uma ordem a partir de uma posição.
+     * @param ordem A ordem calculada por `ordenar`.
+     * @param inicio A posição do primeiro produto.
+     * @param quantidade O número máximo de produtos.
+     * @return Os produtos da página, ou null se o catálogo foi alterado desde a ordenação.
+     */
+    public List<Produto> pagina(Ordem ordem, long inicio, int quantidade) {
+        trava.readLock().lock();
+        try {
+            if (!ordem.isAtual()) return null;
+            int de = (int) Math.min(inicio, ordem.linhas.length);
+            int ate = Math.min(ordem.linhas.length, de + quantidade);
+            List<Produto> produtos = new ArrayList<>(ate - de);
+            for (int i = de; i < ate; i++) {
+                produtos.add(produto(ordem.linhas[i]));
+            }
+            return produtos;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lê a página que começa logo depois de um produto (paginação por chave), localizando-o
+     * na ordem por busca binária.
+     * @param ordem A ordem calculada por `ordenar`.
+     * @param apos O último produto da página anterior.
+     * @param quantidade O número máximo de produtos.
+     * @return Os produtos da página, ou null se o catálogo foi alterado desde a ordenação.
+     */
+    public List<Produto> paginaApos(Ordem ordem, Produto apos, int quantidade) {
+        trava.readLock().lock();
+        try {
+            if (!ordem.isAtual()) return null;
+            int baixo = 0;
+            int alto = ordem.linhas.length;
+            // Primeira posição cuja linha vem depois de `apos` na ordem da consulta.
+            while (baixo < alto) {
+                int meio = (baixo + alto) >>> 1;
+                if (comparar(ordem.linhas[meio], apos, campo(ordem.consulta), ordem.consulta.isCrescente()) <= 0) baixo = meio + 1;
+                else alto = meio;
+            }
+            return pagina(ordem, baixo, quantidade);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lê uma página na ordem de uma consulta sob uma única trava de leitura: reaproveita a
+     * ordem informada se ela ainda vale para a consulta e, se não, ordena de novo. Como a
+     * ordenação e a leitura acontecem sob a mesma trava, nenhuma escrita pode invalidar a
+     * ordem entre as duas, e a página sempre é lida na primeira tentativa.
+     * @param ordem Uma ordem calculada antes, ou null.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param apos O último produto da página anterior, ou null para começar de `inicio`.
+     * @param inicio A posição do primeiro produto, se `apos` for null.
+     * @param quantidade O número máximo de produtos.
+     * @param aoOrdenar Recebe a nova ordem, se foi preciso ordenar de novo.
+     * @return Os produtos da página.
+     */
+    public List<Produto> pagina(Ordem ordem, ConsultaProdutos consulta, Produto apos, long inicio, int quantidade,
+                                Consumer<Ordem> aoOrdenar) {
+        trava.readLock().lock();
+        try {
+            if (ordem == null || !ordem.isAtual() || !ordem.getConsulta().equals(consulta)) {
+                ordem = ordenar(consulta); // A trava de leitura é reentrante.
+                aoOrdenar.accept(ordem);
+            }
+            return apos != null ? paginaApos(ordem, apos, quantidade) : pagina(ordem, inicio, quantidade);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ordena um trecho de linhas por intercalação (merge sort), estável.
+     * @param linhas As linhas a ordenar.
+     * @param auxiliar Vetor de trabalho do mesmo tamanho.
+     * @param de O início do trecho, inclusive.
+     * @param ate O fim do trecho, exclusive.
+     * @param campo O campo de ordenação (ver `campo`).
+     * @param crescente Se a ordem é crescente.
+     */
+    private void ordenarLinhas(int[] linhas, int[] auxiliar, int de, int ate, int campo, boolean crescente) {
+        if (ate - de < 2) return;
+        if (ate - de <= 16) {
+            // Trechos pequenos: inserção direta.
+            for (int i = de + 1; i < ate; i++) {
+                int linha = linhas[i];
+                int j = i - 1;
+                while (j >= de && comparar(linhas[j], linha, campo, crescente) > 0) {
+                    linhas[j + 1] = linhas[j];
+                    j--;
+                }
+                linhas[j + 1] = linha;
+            }
+            return;
+        }
+        int meio = (de + ate) >>> 1;
+        ordenarLinhas(linhas, auxiliar, de, meio, campo, crescente);
+        ordenarLinhas(linhas, auxiliar, meio, ate, campo, crescente);
+        if (comparar(linhas[meio - 1], linhas[meio], campo, crescente) <= 0) return; // Já em ordem
+        System.arraycopy(linhas, de, auxiliar, de, ate - de);
+        int i = de;
+        int j = meio;
+        for (int k = de; k < ate; k++) {
+            if (j >= ate || (i < meio && comparar(auxiliar[i], auxiliar[j], campo, crescente) <= 0)) linhas[k] = auxiliar[i++];
+            else linhas[k] = auxiliar[j++];
+        }
+    }
+
+    /**
+     * Traduz o campo de ordenação de uma consulta: 0 para nome, 1 para quantidade, 2 para preço.
+     * @param consulta A consulta.
+     * @return O código do campo.
+     */
+    private static int campo(ConsultaProdutos consulta) {
+        switch (consulta.getCampoOrdenacao()) {
+            case ConsultaProdutos.QUANTIDADE: return 1;
+            case ConsultaProdutos.PRECO: return 2;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Compara duas linhas na ordem de uma consulta (a mesma de `ConsultaProdutos.comparador`).
+     * @param a A primeira linha.
+     * @param b A segunda linha.
+     * @param campo O campo de ordenação (ver `campo`).
+     * @param crescente Se a ordem é crescente.
+     * @return Negativo, zero ou positivo, como em `Comparator`.
+     */
+    private int comparar(int a, int b, int campo, boolean crescente) {
+        int c = campo == 1 ? Integer.compare(quantidades[a], quantidades[b])
+            : campo == 2 ? compararPrecos(a, b) : 0;
+        if (c == 0) c = compararNomes(a, b);
+        return crescente ? c : -c;
+    }
+
+    /**
+     * Compara os preços de duas linhas como `Double.compare`, pelos centavos quando nenhum
+     * dos dois é guardado à parte.
+     * @param a A primeira linha.
+     * @param b A segunda linha.
+     * @return Negativo, zero ou positivo.
+     */
+    private int compararPrecos(int a, int b) {
+        if (precosExatos.isEmpty()) return Long.compare(centavos[a], centavos[b]);
+        return Double.compare(preco(a), preco(b));
+    }
+
+    /**
+     * Compara uma linha com um produto na ordem de uma consulta.
+     * @param linha A linha.
+     * @param produto O produto.
+     * @param campo O campo de ordenação (ver `campo`).
+     * @param crescente Se a ordem é crescente.
+     * @return Negativo, zero ou positivo, como em `Comparator`.
+     */
+    private int comparar(int linha, Produto produto, int campo, boolean crescente) {
+        int c = campo == 1 ? Integer.compare(quantidades[linha], produto.getQuantidade())
+            : campo == 2 ? Double.compare(preco(linha), produto.getPreco()) : 0;
+        if (c == 0) c = compararNome(linha, produto.getNome());
+        return crescente ? c : -c;
+    }
+
+    // ---------------------------------------------------------------- totais
+
+    /**
+     * Obtém os totais do estoque, sem percorrer as linhas.
+     * @return Uma cópia dos totais atuais.
+     */
+    public TotaisEstoque getTotais() {
+        trava.readLock().lock();
+        try {
+            return totais.copiar();
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recalcula os totais percorrendo todas as linhas e os compara com os mantidos
+     * incrementalmente. Se forem diferentes, os totais mantidos são corrigidos.
+     * @return Os totais que estavam divergentes (já corrigidos), ou null se não havia divergência.
+     */
+    public TotaisEstoque conferirTotais() {
+        trava.readLock().lock();
+        try {
+            if (recontar().equals(totais)) return null;
+        } finally {
+            trava.readLock().unlock();
+        }
+        // Divergência: recontagem com a trava exclusiva, para corrigir sem perder escritas concorrentes.
+        trava.writeLock().lock();
+        try {
+            TotaisEstoque recontagem = recontar();
+            if (recontagem.equals(totais)) return null;
+            TotaisEstoque divergentes = totais.copiar();
+            totais.copiarDe(recontagem);
+            return divergentes;
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Soma os totais de todas as linhas ocupadas. Deve ser chamado com a trava obtida.
+     * @return Os totais recalculados.
+     */
+    private TotaisEstoque recontar() {
+        TotaisEstoque recontagem = new TotaisEstoque();
+        for (int linha = 0; linha < linhasUsadas; linha++) {
+            if (tamanhos[linha] != LIVRE) recontagem.somar(quantidades[linha], centavos[linha], faixa(linha));
+        }
+        return recontagem;
+    }
+
+    // ---------------------------------------------------------------- reposição
+
+    /**
+     * Obtém o ponto de reposição dos produtos sem ponto próprio.
+     * @return O ponto padrão.
+     */
+    public int getPontoPadrao() {
+        trava.readLock().lock();
+        try {
+            return pontoPadrao;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Substitui o ponto de reposição padrão e reavalia os alertas dos produtos que o seguem.
+     * Ao contrário das gravações, percorre todas as linhas; é uma operação de configuração.
+     * @param ponto O novo ponto padrão (não negativo; 0 desativa os alertas desses produtos).
+     */
+    public void definirPontoPadrao(int ponto) {
+        trava.writeLock().lock();
+        try {
+            int novo = Math.max(ponto, 0);
+            if (novo == pontoPadrao) return;
+            modificacoes++;
+            pontoPadrao = novo;
+            for (int linha = 0; linha < linhasUsadas; linha++) {
+                if (tamanhos[linha] != LIVRE && pontos[linha] == Produto.PONTO_REPOSICAO_PADRAO) {
+                    alertas.atualizar(linha, quantidades[linha], pontoPadrao);
+                }
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Obtém o número de produtos abaixo do ponto de reposição, sem percorrer as linhas e sem
+     * esperar pela trava.
+     * @return O número de alertas.
+     */
+    public int contarAlertas() {
+        return alertas.getQuantidade();
+    }
+
+    /**
+     * Obtém o produto mais urgente: o que está mais unidades abaixo do seu ponto de reposição.
+     * @return O item do topo dos alertas, ou null se não há alertas.
+     */
+    public AlertasReposicao.Item alertaMaisUrgente() {
+        trava.readLock().lock();
+        try {
+            int linha = alertas.getPrimeiraLinha();
+            return linha < 0 ? null : new AlertasReposicao.Item(produto(linha), pontoEmVigor(linha));
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cria a lista de reposição: os produtos abaixo do ponto, do que mais falta ao que menos
+     * falta (e, no empate, por nome). Só as linhas em alerta são lidas.
+     * @return Uma nova lista, com novos objetos.
+     */
+    public List<AlertasReposicao.Item> listarAlertas() {
+        List<AlertasReposicao.Item> itens;
+        trava.readLock().lock();
+        try {
+            int[] linhas = alertas.copiarLinhas();
+            itens = new ArrayList<>(linhas.length);
+            for (int linha : linhas) {
+                itens.add(new AlertasReposicao.Item(produto(linha), pontoEmVigor(linha)));
+            }
+        } finally {
+            trava.readLock().unlock();
+        }
+        itens.sort((a, b) -> a.getFalta() != b.getFalta()
+            ? Integer.compare(b.getFalta(), a.getFalta())
+            : a.getProduto().getNome().compareTo(b.getProduto().getNome()));
+        return itens;
+    }
+
+    /**
+     * Localiza a faixa de preço de uma linha.
+     * @param linha A linha.
+     * @return A posição da faixa em `ResumoEstoque.LIMITES_FAIXAS`.
+     */
+    private int faixa(int linha) {
+        return ResumoEstoque.indiceFaixa(preco(linha));
+    }
+
+    // ---------------------------------------------------------------- memória
+
+    /**
+     * Estima a memória ocupada pelo catálogo: colunas, vetor de nomes, índice e preços à parte.
+     * @return O número aproximado de bytes.
+     */
+    public long bytesUsados() {
+        trava.readLock().lock();
+        try {
+            long colunas = (long) inicios.length * (4 + 4 + 4 + 4 + 8 + 4);
+            // Cada preço à parte: entrada do HashMap, Integer e Double (cerca de 64 bytes).
+            return colunas + nomes.length + (long) indice.length * 4 + (long) livres.length * 4
+                + precosExatos.size() * 64L + alertas.bytesUsados();
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Descreve a memória ocupada, total e por milhão de produtos.
+     * @return Um texto como "250.000 produtos, 12,5 MB (50,0 MB por milhão)".
+     */
+    public String descreverMemoria() {
+        int n = tamanho;
+        double megabytes = bytesUsados() / (1024.0 * 1024.0);
+        return n == 0
+            ? String.format("0 produtos, %.1f MB", megabytes)
+            : String.format("%,d produtos, %.1f MB (%.1f MB por milhão)", n, megabytes, megabytes * 1_000_000 / n);
+    }
+
+    // ---------------------------------------------------------------- linhas e colunas
+
+    /**
+     * Cria um `Produto` com os valores de uma linha.
+     * @param linha A linha.
+     * @return O produto.
+     */
+    private Produto produto(int linha) {
+        return new Produto(nome(linha), quantidades[linha], preco(linha), pontos[linha]);
+    }
+
+    /**
+     * Obtém o ponto de reposição em vigor para uma linha: o próprio ou, se não houver, o padrão.
+     * @param linha A linha.
+     * @return O ponto.
+     */
+    private int pontoEmVigor(int linha) {
+        return pontos[linha] == Produto.PONTO_REPOSICAO_PADRAO ? pontoPadrao : pontos[linha];
+    }
+
+    /**
+     * Lê o nome de uma linha.
+     * @param linha A linha.
+     * @return O nome.
+     */
+    private String nome(int linha) {
+        int comprimento = tamanhos[linha] >>> 1;
+        return (tamanhos[linha] & 1) == 0
+            ? new String(nomes, inicios[linha], comprimento, StandardCharsets.ISO_8859_1)
+            : new String(nomes, inicios[linha], comprimento * 2, StandardCharsets.UTF_16BE);
+    }
+
+    /**
+     * Lê um caractere do nome de uma linha.
+     * @param linha A linha.
+     * @param i A posição do caractere.
+     * @return O caractere.
+     */
+    private char caractere(int linha, int i) {
+        int inicio = inicios[linha];
+        if ((tamanhos[linha] & 1) == 0) return (char) (nomes[inicio + i] & 0xFF);
+        return (char) (((nomes[inicio + 2 * i] & 0xFF) << 8) | (nomes[inicio + 2 * i + 1] & 0xFF));
+    }
+
+    /**
+     * Compara os nomes de duas linhas como `String.compareTo`.
+     * @param a A primeira linha.
+     * @param b A segunda linha.
+     * @return Negativo, zero ou positivo.
+     */
+    private int compararNomes(int a, int b) {
+        int na = tamanhos[a] >>> 1;
+        int nb = tamanhos[b] >>> 1;
+        int n = Math.min(na, nb);
+        if (((tamanhos[a] | tamanhos[b]) & 1) == 0) {
+            // Os dois nomes em Latin-1: compara os bytes diretamente.
+            int ia = inicios[a];
+            int ib = inicios[b];
+            for (int i = 0; i < n; i++) {
+                int c = (nomes[ia + i] & 0xFF) - (nomes[ib + i] & 0xFF);
+                if (c != 0) return c;
+            }
+            return na - nb;
+        }
+        for (int i = 0; i < n; i++) {
+            int c = caractere(a, i) - caractere(b, i);
+            if (c != 0) return c;
+        }
+        return na - nb;
+    }
+
+    /**
+     * Compara o nome de uma linha com um nome como `String.compareTo`.
+     * @param linha A linha.
+     * @param nome O nome.
+     * @return Negativo, zero ou positivo.
+     */
+    private int compararNome(int linha, String nome) {
+        int comprimento = tamanhos[linha] >>> 1;
+        int n = Math.min(comprimento, nome.length());
+        for (int i = 0; i < n; i++) {
+            int c = caractere(linha, i) - nome.charAt(i);
+            if (c != 0) return c;
+        }
+        return comprimento - nome.length();
+    }
+
+    /**
+     * Verifica se o nome de uma linha começa com um prefixo.
+     * @param linha A linha.
+     * @param prefixo O prefixo.
+     * @return true se o nome começa com o prefixo.
+     */
+    private boolean comecaCom(int linha, char[] prefixo) {
+        if ((tamanhos[linha] >>> 1) < prefixo.length) return false;
+        for (int i = 0; i < prefixo.length; i++) {
+            if (caractere(linha, i) != prefixo[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lê o preço de uma linha.
+     * @param linha A linha.
+     * @return O preço.
+     */
+    private double preco(int linha) {
+        if (!precosExatos.isEmpty()) {
+            Double exato = precosExatos.get(linha);
+            if (exato != null) return exato;
+        }
+        return centavos[linha] / 100.0;
+    }
+
+    /**
+     * Grava o preço de uma linha em centavos ou, se ele não for um número exato de centavos, à parte.
+     * @param linha A linha.
+     * @param preco O preço.
+     */
+    private void gravarPreco(int linha, double preco) {
+        long emCentavos = TotaisEstoque.emCentavos(preco);
+        if (emCentavos / 100.0 == preco) {
+            centavos[linha] = emCentavos;
+            if (!precosExatos.isEmpty()) precosExatos.remove(linha);
+        } else {
+            centavos[linha] = emCentavos;
+            precosExatos.put(linha, preco);
+        }
+    }
+
+    /**
+     * Grava o nome de uma linha no fim do vetor de nomes.
+     * @param linha A linha.
+     * @param nome O nome.
+     * @param hash O hashCode do nome.
+     */
+    private void gravarNome(int linha, String nome, int hash) {
+        boolean latin1 = true;
+        for (int i = 0; i < nome.length() && latin1; i++) {
+            latin1 = nome.charAt(i) <= 0xFF;
+        }
+        int bytes = latin1 ? nome.length() : nome.length() * 2;
+        if (nomesUsados + bytes > nomes.length) {
+            nomes = Arrays.copyOf(nomes, Math.max(nomes.length * 2, nomesUsados + bytes));
+        }
+        int p = nomesUsados;
+        for (int i = 0; i < nome.length(); i++) {
+            char c = nome.charAt(i);
+            if (latin1) {
+                nomes[p++] = (byte) c;
+            } else {
+                nomes[p++] = (byte) (c >>> 8);
+                nomes[p++] = (byte) c;
+            }
+        }
+        inicios[linha] = nomesUsados;
+        tamanhos[linha] = nome.length() << 1 | (latin1 ? 0 : 1);
+        hashes[linha] = hash;
+        nomesUsados = p;
+    }
+
+    /**
+     * Obtém uma linha para um produto novo: uma removida, se houver, ou a próxima ainda não usada.
+     * @return A linha.
+     */
+    private int novaLinha() {
+        if (quantidadeLivres > 0) return livres[--quantidadeLivres];
+        if (linhasUsadas == inicios.length) {
+            int capacidade = inicios.length * 2;
+            inicios = Arrays.copyOf(inicios, capacidade);
+            tamanhos = Arrays.copyOf(tamanhos, capacidade);
+            hashes = Arrays.copyOf(hashes, capacidade);
+            quantidades = Arrays.copyOf(quantidades, capacidade);
+            centavos = Arrays.copyOf(centavos, capacidade);
+            pontos = Arrays.copyOf(pontos, capacidade);
+        }
+        return linhasUsadas++;
+    }
+
+    /**
+     * Marca uma linha como livre, para ser reaproveitada.
+     * @param linha A linha.
+     */
+    private void liberarLinha(int linha) {
+        int comprimento = tamanhos[linha] >>> 1;
+        nomesLixo += (tamanhos[linha] & 1) == 0 ? comprimento : comprimento * 2;
+        totais.subtrair(quantidades[linha], centavos[linha], faixa(linha));
+        alertas.retirar(linha);
+        tamanhos[linha] = LIVRE;
+        if (!precosExatos.isEmpty()) precosExatos.remove(linha);
+        if (quantidadeLivres == livres.length) livres = Arrays.copyOf(livres, livres.length * 2);
+        livres[quantidadeLivres++] = linha;
+        tamanho--;
+    }
+
+    /**
+     * Regrava o vetor de nomes sem os nomes das linhas removidas, quando eles passam de metade do vetor.
+     */
+    private void compactarSeNecessario() {
+        if (nomesLixo < LIXO_MINIMO_COMPACTACAO || nomesLixo * 2 < nomesUsados) return;
+        byte[] compactado = new byte[Math.max(CAPACIDADE_INICIAL * 16, (nomesUsados - nomesLixo) * 3 / 2)];
+        int p = 0;
+        for (int linha = 0; linha < linhasUsadas; linha++) {
+            if (tamanhos[linha] == LIVRE) continue;
+            int bytes = (tamanhos[linha] & 1) == 0 ? tamanhos[linha] >>> 1 : tamanhos[linha] & ~1;
+            System.arraycopy(nomes, inicios[linha], compactado, p, bytes);
+            inicios[linha] = p;
+            p += bytes;
+        }
+        nomes = compactado;
+        nomesUsados = p;
+        nomesLixo = 0;
+    }
+
+    // ---------------------------------------------------------------- índice
+
+    /**
+     * Espalha os bits do hash, para que nomes parecidos não caiam em posições vizinhas.
+     * @param hash O hashCode do nome.
+     * @return O hash espalhado.
+     */
+    private static int espalhar(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Procura um nome no índice.
+     * @param nome O nome.
+     * @param hash O hashCode do nome.
+     * @return A posição do nome no índice, ou -1 se ele não existe.
+     */
+    private int posicaoNoIndice(String nome, int hash) {
+        int mascara = indice.length - 1;
+        for (int i = espalhar(hash) & mascara; ; i = (i + 1) & mascara) {
+            int valor = indice[i];
+            if (valor == 0) return -1;
+            int linha = valor - 1;
+            if (hashes[linha] == hash && compararNome(linha, nome) == 0) return i;
+        }
+    }
+
+    /**
+     * Procura a linha de um nome.
+     * @param nome O nome.
+     * @param hash O hashCode do nome.
+     * @return A linha, ou -1 se o nome não existe.
+     */
+    private int localizar(String nome, int hash) {
+        int posicao = posicaoNoIndice(nome, hash);
+        return posicao < 0 ? -1 : indice[posicao] - 1;
+    }
+
+    /**
+     * Insere uma linha no índice, dobrando-o se ficar mais de 3/4 cheio.
+     * @param linha A linha, com o hash já gravado.
+     */
+    private void inserirNoIndice(int linha) {
+        if ((tamanho + 1) * 4L > indice.length * 3L) {
+            int[] antigo = indice;
+            indice = new int[antigo.length * 2];
+            for (int valor : antigo) {
+                if (valor != 0) colocarNoIndice(valor - 1);
+            }
+        }
+        colocarNoIndice(linha);
+    }
+
+    /**
+     * Coloca uma linha na primeira posição vazia a partir da posição do seu hash.
+     * @param linha A linha.
+     */
+    private void colocarNoIndice(int linha) {
+        int mascara = indice.length - 1;
+        int i = espalhar(hashes[linha]) & mascara;
+        while (indice[i] != 0) {
+            i = (i + 1) & mascara;
+        }
+        indice[i] = linha + 1;
+    }
+
+    /**
+     * Retira uma posição do índice, trazendo para trás as entradas seguintes que dependiam
+     * dela para serem encontradas (remoção sem marcas, própria da sondagem linear).
+     * @param posicao A posição a esvaziar.
+     */
+    private void retirarDoIndice(int posicao) {
+        int mascara = indice.length - 1;
+        int vazia = posicao;
+        for (int i = (posicao + 1) & mascara; indice[i] != 0; i = (i + 1) & mascara) {
+            int ideal = espalhar(hashes[indice[i] - 1]) & mascara;
+            // A entrada pode ocupar a posição vazia se esta estiver entre a sua posição ideal e a atual.
+            if (((i - ideal) & mascara) >= ((i - vazia) & mascara)) {
+                indice[vazia] = indice[i];
+                vazia = i;
+            }
+        }
+        indice[vazia] = 0;
+    }
+}
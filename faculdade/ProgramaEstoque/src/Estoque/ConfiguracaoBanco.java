@@ -0,0 +1,480 @@
+package Estoque;
+
+import com.mongodb.MongoCompressor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configurações do banco de dados, lidas de um arquivo de propriedades e das
+ * propriedades de sistema da JVM (que têm prioridade sobre o arquivo).
+ * O arquivo padrão é `estoque.properties` no diretório de trabalho; outro caminho pode ser
+ * informado com `-Destoque.config=caminho`. A chave "estoque.repositorio" escolhe onde os
+ * produtos são guardados (ver `RepositorioProdutos`); as chaves da conexão com o MongoDB
+ * começam com "estoque.mongodb." e as do banco JDBC com "estoque.jdbc.".
+ * A chave "estoque.armazens" lista os armazéns, cada um com a sua partição (ver `Armazens`);
+ * as demais chaves "estoque." ajustam o funcionamento de cada `Estoque` (snapshot, livro de
+ * movimentações, sincronização entre instâncias, notificações e reposição).
+ * As ausentes assumem os valores padrão definidos nesta classe.
+ * @author Leandro
+ */
+public class ConfiguracaoBanco {
+    private static final String PREFIXO = "estoque.mongodb.";
+    private static final String PREFIXO_JDBC = "estoque.jdbc.";
+    private static final String ARQUIVO_PADRAO = "estoque.properties";
+    private static final String CHAVE_ARMAZENS = "estoque.armazens";
+    /** Partição dos armazéns em uma coleção própria, no banco configurado (o padrão). */
+    public static final String PARTICAO_COLECAO = "colecao";
+    /** Partição dos armazéns em um banco próprio, com a coleção configurada. */
+    public static final String PARTICAO_BANCO = "banco";
+
+    private final String uri; // String de conexão
+    private final String banco; // Nome do banco de dados
+    private final String colecao; // Nome da coleção de produtos
+    private final int poolMinimo; // Conexões mantidas abertas mesmo sem uso
+    private final int poolMaximo; // Limite de conexões simultâneas
+    private final long esperaPoolMs; // Tempo máximo esperando uma conexão livre do pool
+    private final long timeoutConexaoMs; // Tempo máximo para abrir uma conexão
+    private final long timeoutLeituraMs; // Tempo máximo esperando uma resposta (0 = sem limite)
+    private final long timeoutSelecaoServidorMs; // Tempo máximo para encontrar um servidor disponível
+    private final List<String> compressores; // Algoritmos de compressão de rede, em ordem de preferência
+    private final boolean aquecer; // Se true, abre o pool e carrega os índices ao iniciar
+    private final String repositorio; // "mongodb", "memoria" ou "jdbc"
+    private final String jdbcUrl; // URL do banco embutido (H2 ou SQLite)
+    private final String jdbcUsuario;
+    private final String jdbcSenha;
+    private final List<String> armazens; // Nomes dos armazéns, na ordem da configuração; vazia se há um só
+    private final String particaoArmazens; // PARTICAO_COLECAO ou PARTICAO_BANCO
+    private final Map<String, String> jdbcUrlsArmazens = new HashMap<>(); // URLs JDBC informadas por armazém
+    private final String snapshot; // Arquivo do snapshot local do catálogo; vazio desativa
+    private final boolean livro; // Se true, lança as alterações no livro de movimentações
+    private final int checkpointMovimentos; // Lançamentos entre checkpoints do livro
+    private final long checkpointIntervaloMs; // Tempo máximo entre checkpoints do livro
+    private final long checkpointMargemMs; // Atraso dos checkpoints em relação ao relógio
+    private final long janelaEventosMs; // Janela de agrupamento das notificações (0 = na hora)
+    private final long intervaloSincronizacaoMs; // Intervalo da sincronização entre instâncias (0 = desativada)
+    private final long atrasoMaximoGravacaoMs; // Quanto tempo a sincronização relê as gravações recentes
+    private final long intervaloConferenciaTotaisMs; // Intervalo da conferência dos totais (0 = desativada)
+    private final int pontoReposicaoPadrao; // Ponto de reposição dos produtos sem ponto próprio
+
+    /**
+     * Construtor privado; use `carregar`.
+     * @param props As propriedades já combinadas (arquivo + sistema).
+     */
+    private ConfiguracaoBanco(Properties props) {
+        this.uri = texto(props, "uri", "mongodb://localhost:27017");
+        this.banco = texto(props, "banco", "Estoque_BD");
+        this.colecao = texto(props, "colecao", "produtos");
+        this.poolMinimo = (int) numero(props, "pool.minimo", 0);
+        this.poolMaximo = (int) numero(props, "pool.maximo", 100);
+        this.esperaPoolMs = numero(props, "pool.esperaMs", 120_000);
+        this.timeoutConexaoMs = numero(props, "timeout.conexaoMs", 10_000);
+        this.timeoutLeituraMs = numero(props, "timeout.leituraMs", 0);
+        this.timeoutSelecaoServidorMs = numero(props, "timeout.selecaoServidorMs", 5_000);
+        this.aquecer = Boolean.parseBoolean(texto(props, "aquecer", "true"));
+        List<String> lista = new ArrayList<>();
+        for (String nome : texto(props, "compressao", "").split(",")) {
+            if (!nome.isBlank()) lista.add(nome.trim().toLowerCase());
+        }
+        this.compressores = List.copyOf(lista);
+        this.repositorio = props.getProperty("estoque.repositorio", "mongodb").trim().toLowerCase();
+        this.jdbcUrl = props.getProperty(PREFIXO_JDBC + "url", "jdbc:h2:./estoque-h2").trim();
+        this.jdbcUsuario = props.getProperty(PREFIXO_JDBC + "usuario", "").trim();
+        this.jdbcSenha = props.getProperty(PREFIXO_JDBC + "senha", "");
+        List<String> nomes = new ArrayList<>();
+        for (String nome : props.getProperty(CHAVE_ARMAZENS, "").split(",")) {
+            if (nome.isBlank()) continue;
+            String armazem = nome.trim().toLowerCase();
+            // O nome entra no nome da coleção, do banco e dos arquivos da partição.
+            if (!armazem.matches("[a-z0-9_]{1,32}") || nomes.contains(armazem)) {
+                throw new IllegalArgumentException("Configuração inválida: " + CHAVE_ARMAZENS + " contém \"" + nome.trim()
+                    + "\" (use nomes distintos com letras sem acento, dígitos ou _).");
+            }
+            nomes.add(armazem);
+            String url = props.getProperty(PREFIXO_JDBC + "url." + armazem);
+            if (url != null && !url.isBlank()) jdbcUrlsArmazens.put(armazem, url.trim());
+        }
+        this.armazens = List.copyOf(nomes);
+        this.particaoArmazens = props.getProperty(CHAVE_ARMAZENS + ".particao", PARTICAO_COLECAO).trim().toLowerCase();
+        if (!particaoArmazens.equals(PARTICAO_COLECAO) && !particaoArmazens.equals(PARTICAO_BANCO)) {
+            throw new IllegalArgumentException("Configuração inválida: " + CHAVE_ARMAZENS + ".particao=" + particaoArmazens
+                + " (use " + PARTICAO_COLECAO + " ou " + PARTICAO_BANCO + ").");
+        }
+
+        this.snapshot = props.getProperty("estoque.snapshot", "estoque-catalogo.bin").trim();
+        this.livro = Boolean.parseBoolean(props.getProperty("estoque.livro", "true").trim());
+        this.checkpointMovimentos = (int) inteiro(props, "estoque.livro.checkpoint.movimentos", 10_000, 1, Integer.MAX_VALUE);
+        this.checkpointIntervaloMs = TimeUnit.MINUTES.toMillis(inteiro(props, "estoque.livro.checkpoint.minutos", 60, 1, Long.MAX_VALUE));
+        this.checkpointMargemMs = TimeUnit.SECONDS.toMillis(inteiro(props, "estoque.livro.checkpoint.margem.segundos", 60, 0, Long.MAX_VALUE));
+        this.janelaEventosMs = inteiro(props, "estoque.eventos.janela.ms", 50, 0, Long.MAX_VALUE);
+        this.intervaloSincronizacaoMs = TimeUnit.SECONDS.toMillis(inteiro(props, "estoque.sincronizacao.segundos", 2, 0, Long.MAX_VALUE));
+        this.atrasoMaximoGravacaoMs = TimeUnit.SECONDS.toMillis(inteiro(props, "estoque.sincronizacao.atrasoMaximo.segundos", 120, 0, Long.MAX_VALUE));
+        this.intervaloConferenciaTotaisMs = TimeUnit.MINUTES.toMillis(inteiro(props, "estoque.totais.conferencia.minutos", 10, 0, Long.MAX_VALUE));
+        this.pontoReposicaoPadrao = (int) inteiro(props, "estoque.reposicao.padrao", AlertasReposicao.PONTO_PADRAO_INICIAL, 0, Integer.MAX_VALUE);
+
+        if (poolMinimo < 0 || poolMaximo <= 0 || poolMinimo > poolMaximo) {
+            throw new IllegalArgumentException("Configuração inválida: " + PREFIXO + "pool.minimo (" + poolMinimo
+                + ") deve estar entre 0 e " + PREFIXO + "pool.maximo (" + poolMaximo + ").");
+        }
+    }
+
+    /**
+     * Lê a configuração do arquivo (se existir) e das propriedades de sistema.
+     * @return A configuração resultante.
+     * @throws IllegalArgumentException Se o arquivo não puder ser lido ou algum valor for inválido.
+     */
+    public static ConfiguracaoBanco carregar() {
+        Properties props = new Properties();
+        Path arquivo = Paths.get(System.getProperty("estoque.config", ARQUIVO_PADRAO));
+        if (Files.isRegularFile(arquivo)) {
+            try (InputStream entrada = Files.newInputStream(arquivo)) {
+                props.load(entrada);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Não foi possível ler a configuração " + arquivo.toAbsolutePath(), e);
+            }
+        }
+        // Propriedades de sistema (-Destoque.mongodb.xxx=...) substituem as do arquivo.
+        for (String chave : System.getProperties().stringPropertyNames()) {
+            if (chave.startsWith("estoque.")) props.setProperty(chave, System.getProperty(chave));
+        }
+        return new ConfiguracaoBanco(props);
+    }
+
+    /**
+     * Lê uma propriedade de texto.
+     * @param props As propriedades.
+     * @param chave A chave, sem o prefixo.
+     * @param padrao O valor usado se a chave não existir.
+     * @return O valor da propriedade.
+     */
+    private static String texto(Properties props, String chave, String padrao) {
+        return props.getProperty(PREFIXO + chave, padrao).trim();
+    }
+
+    /**
+     * Lê uma propriedade numérica.
+     * @param props As propriedades.
+     * @param chave A chave, sem o prefixo.
+     * @param padrao O valor usado se a chave não existir.
+     * @return O valor da propriedade.
+     * @throws IllegalArgumentException Se o valor não for um número inteiro não negativo.
+     */
+    private static long numero(Properties props, String chave, long padrao) {
+        return inteiro(props, PREFIXO + chave, padrao, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Lê uma propriedade numérica com a chave completa, conferindo os limites.
+     * @param props As propriedades.
+     * @param chave A chave completa (ex.: "estoque.sincronizacao.segundos").
+     * @param padrao O valor usado se a chave não existir.
+     * @param minimo O menor valor aceito.
+     * @param maximo O maior valor aceito.
+     * @return O valor da propriedade.
+     * @throws IllegalArgumentException Se o valor não for um número inteiro entre os limites.
+     */
+    private static long inteiro(Properties props, String chave, long padrao, long minimo, long maximo) {
+        String valor = props.getProperty(chave);
+        if (valor == null || valor.isBlank()) return padrao;
+        try {
+            long numero = Long.parseLong(valor.trim());
+            if (numero < minimo || numero > maximo) throw new NumberFormatException();
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Configuração inválida: " + chave + "=" + valor
+                + " (esperado um número inteiro " + (minimo > 0 ? "positivo" : "não negativo")
+                + (maximo < Long.MAX_VALUE ? " até " + maximo : "") + ").");
+        }
+    }
+
+    /**
+     * Acrescenta um sufixo ao nome de um arquivo, antes da extensão, se houver
+     * (ex.: "estoque.db" e "norte" → "estoque_norte.db"; "./estoque-h2" → "./estoque-h2_norte").
+     * Parâmetros depois de ";" (como nas URLs do H2) são mantidos.
+     * @param caminho O caminho ou a URL.
+     * @param sufixo O sufixo, sem o separador.
+     * @return O caminho com o sufixo.
+     */
+    static String comSufixo(String caminho, String sufixo) {
+        int fim = caminho.indexOf(';');
+        if (fim < 0) fim = caminho.length();
+        String base = caminho.substring(0, fim);
+        int ponto = base.lastIndexOf('.');
+        int separador = Math.max(Math.max(base.lastIndexOf('/'), base.lastIndexOf('\\')), base.lastIndexOf(':'));
+        int posicao = ponto > separador + 1 ? ponto : fim;
+        return caminho.substring(0, posicao) + "_" + sufixo + caminho.substring(posicao);
+    }
+
+    /**
+     * Converte os nomes de compressão configurados nos compressores do driver.
+     * "snappy" e "zstd" exigem as bibliotecas correspondentes no classpath; "zlib" não exige nada.
+     * @return A lista de compressores, vazia se a compressão estiver desligada.
+     * @throws IllegalArgumentException Se algum nome não for reconhecido.
+     */
+    public List<MongoCompressor> criarCompressores() {
+        List<MongoCompressor> lista = new ArrayList<>();
+        for (String nome : compressores) {
+            switch (nome) {
+                case "zlib": lista.add(MongoCompressor.createZlibCompressor()); break;
+                case "snappy": lista.add(MongoCompressor.createSnappyCompressor()); break;
+                case "zstd": lista.add(MongoCompressor.createZstdCompressor()); break;
+                default:
+                    throw new IllegalArgumentException("Configuração inválida: " + PREFIXO + "compressao contém \""
+                        + nome + "\" (use zlib, snappy ou zstd).");
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * Obtém a string de conexão do MongoDB.
+     * @return A string de conexão do MongoDB.
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * Obtém o nome do banco de dados.
+     * @return O nome do banco de dados.
+     */
+    public String getBanco() {
+        return banco;
+    }
+
+    /**
+     * Obtém o nome da coleção de produtos.
+     * @return O nome da coleção de produtos.
+     */
+    public String getColecao() {
+        return colecao;
+    }
+
+    /**
+     * Obtém o número mínimo de conexões mantidas no pool.
+     * @return O número mínimo de conexões mantidas no pool.
+     */
+    public int getPoolMinimo() {
+        return poolMinimo;
+    }
+
+    /**
+     * Obtém o número máximo de conexões do pool.
+     * @return O número máximo de conexões do pool.
+     */
+    public int getPoolMaximo() {
+        return poolMaximo;
+    }
+
+    /**
+     * Obtém o tempo máximo de espera por uma conexão livre, em milissegundos.
+     * @return O tempo máximo de espera por uma conexão livre, em milissegundos.
+     */
+    public long getEsperaPoolMs() {
+        return esperaPoolMs;
+    }
+
+    /**
+     * Obtém o tempo máximo para abrir uma conexão, em milissegundos.
+     * @return O tempo máximo para abrir uma conexão, em milissegundos.
+     */
+    public long getTimeoutConexaoMs() {
+        return timeoutConexaoMs;
+    }
+
+    /**
+     * Obtém o tempo máximo de espera por uma resposta, em milissegundos (0 = sem limite).
+     * @return O tempo máximo de espera por uma resposta, em milissegundos (0 = sem limite).
+     */
+    public long getTimeoutLeituraMs() {
+        return timeoutLeituraMs;
+    }
+
+    /**
+     * Obtém o tempo máximo para encontrar um servidor disponível, em milissegundos.
+     * @return O tempo máximo para encontrar um servidor disponível, em milissegundos.
+     */
+    public long getTimeoutSelecaoServidorMs() {
+        return timeoutSelecaoServidorMs;
+    }
+
+    /**
+     * Indica se o pool e os índices devem ser aquecidos ao iniciar.
+     * @return true para aquecer.
+     */
+    public boolean isAquecer() {
+        return aquecer;
+    }
+
+    /**
+     * Obtém o tipo de repositório de produtos.
+     * @return "mongodb", "memoria" ou "jdbc".
+     */
+    public String getRepositorio() {
+        return repositorio;
+    }
+
+    /**
+     * Obtém a URL JDBC do banco embutido.
+     * @return A URL JDBC, ex: "jdbc:h2:./estoque-h2" ou "jdbc:sqlite:estoque.db".
+     */
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    /**
+     * Obtém o usuário do banco JDBC.
+     * @return O usuário, ou "" se não houver.
+     */
+    public String getJdbcUsuario() {
+        return jdbcUsuario;
+    }
+
+    /**
+     * Obtém a senha do banco JDBC.
+     * @return A senha, ou "" se não houver.
+     */
+    public String getJdbcSenha() {
+        return jdbcSenha;
+    }
+
+    /**
+     * Obtém os armazéns configurados em "estoque.armazens" (ex.: "central,norte,sul").
+     * O primeiro usa a partição configurada (coleção, banco ou URL JDBC); os demais, partições
+     * próprias (ver `getColecao(String)`, `getBanco(String)` e `getJdbcUrl(String)`).
+     * @return Os nomes, em minúsculas e na ordem da configuração; vazia se a chave não foi informada.
+     */
+    public List<String> getArmazens() {
+        return armazens;
+    }
+
+    /**
+     * Obtém como os armazéns são separados no MongoDB ("estoque.armazens.particao").
+     * @return `PARTICAO_COLECAO` (uma coleção por armazém, o padrão) ou `PARTICAO_BANCO` (um banco por armazém).
+     */
+    public String getParticaoArmazens() {
+        return particaoArmazens;
+    }
+
+    /**
+     * Obtém o nome do banco de dados de um armazém com partição própria.
+     * @param armazem O nome do armazém.
+     * @return O banco configurado seguido de "_" e do armazém, se cada armazém tem o seu banco;
+     *         senão, o banco configurado.
+     */
+    public String getBanco(String armazem) {
+        return particaoArmazens.equals(PARTICAO_BANCO) ? banco + "_" + armazem : banco;
+    }
+
+    /**
+     * Obtém o nome da coleção de produtos de um armazém com partição própria.
+     * @param armazem O nome do armazém.
+     * @return A coleção configurada seguida de "_" e do armazém, se cada armazém tem a sua coleção;
+     *         senão, a coleção configurada.
+     */
+    public String getColecao(String armazem) {
+        return particaoArmazens.equals(PARTICAO_COLECAO) ? colecao + "_" + armazem : colecao;
+    }
+
+    /**
+     * Obtém a URL JDBC de um armazém com partição própria: a informada em
+     * "estoque.jdbc.url.&lt;armazém&gt;" ou, na falta dela, a configurada com o nome do armazém
+     * acrescentado ao arquivo do banco (ex.: "jdbc:h2:./estoque-h2_norte").
+     * @param armazem O nome do armazém.
+     * @return A URL JDBC.
+     */
+    public String getJdbcUrl(String armazem) {
+        String url = jdbcUrlsArmazens.get(armazem);
+        return url != null ? url : comSufixo(jdbcUrl, armazem);
+    }
+
+    /**
+     * Obtém o arquivo do snapshot local do catálogo ("estoque.snapshot").
+     * @return O caminho (padrão "estoque-catalogo.bin"), ou "" se o snapshot foi desativado.
+     */
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Indica se as alterações são lançadas no livro de movimentações ("estoque.livro").
+     * @return true para manter o livro (o padrão).
+     */
+    public boolean isLivro() {
+        return livro;
+    }
+
+    /**
+     * Obtém o número de lançamentos entre checkpoints do livro ("estoque.livro.checkpoint.movimentos").
+     * @return O número de lançamentos (10000 por padrão).
+     */
+    public int getCheckpointMovimentos() {
+        return checkpointMovimentos;
+    }
+
+    /**
+     * Obtém o tempo máximo entre checkpoints do livro ("estoque.livro.checkpoint.minutos").
+     * @return O tempo, em milissegundos (60 minutos por padrão).
+     */
+    public long getCheckpointIntervaloMs() {
+        return checkpointIntervaloMs;
+    }
+
+    /**
+     * Obtém quanto os checkpoints do livro ficam atrás do relógio, à espera dos lançamentos das
+     * outras instâncias ("estoque.livro.checkpoint.margem.segundos").
+     * @return A margem, em milissegundos (60 segundos por padrão).
+     */
+    public long getCheckpointMargemMs() {
+        return checkpointMargemMs;
+    }
+
+    /**
+     * Obtém a janela de agrupamento das notificações aos listeners ("estoque.eventos.janela.ms").
+     * @return A janela, em milissegundos (50 por padrão; 0 entrega cada notificação na hora).
+     */
+    public long getJanelaEventosMs() {
+        return janelaEventosMs;
+    }
+
+    /**
+     * Obtém o intervalo da sincronização com as outras instâncias ("estoque.sincronizacao.segundos").
+     * @return O intervalo, em milissegundos (2 segundos por padrão; 0 desativa).
+     */
+    public long getIntervaloSincronizacaoMs() {
+        return intervaloSincronizacaoMs;
+    }
+
+    /**
+     * Obtém por quanto tempo a sincronização relê as gravações recentes, que ainda podiam estar
+     * sendo confirmadas na consulta anterior ("estoque.sincronizacao.atrasoMaximo.segundos").
+     * @return O tempo, em milissegundos (120 segundos por padrão).
+     */
+    public long getAtrasoMaximoGravacaoMs() {
+        return atrasoMaximoGravacaoMs;
+    }
+
+    /**
+     * Obtém o intervalo da conferência periódica dos totais ("estoque.totais.conferencia.minutos").
+     * @return O intervalo, em milissegundos (10 minutos por padrão; 0 desativa).
+     */
+    public long getIntervaloConferenciaTotaisMs() {
+        return intervaloConferenciaTotaisMs;
+    }
+
+    /**
+     * Obtém o ponto de reposição dos produtos sem ponto próprio ("estoque.reposicao.padrao").
+     * @return O ponto de reposição (5 por padrão).
+     */
+    public int getPontoReposicaoPadrao() {
+        return pontoReposicaoPadrao;
+    }
+}
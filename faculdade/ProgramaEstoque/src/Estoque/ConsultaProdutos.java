@@ -0,0 +1,157 @@
+package Estoque;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Descreve uma consulta de produtos: filtros (prefixo do nome e quantidade mínima)
+ * e ordenação (campo e direção). É imutável; os métodos `com...` devolvem uma nova consulta.
+ * Usada pelas consultas paginadas do `Estoque` e pelos modelos de tabela.
+ * @author Leandro
+ */
+public final class ConsultaProdutos {
+    /** Campo de ordenação pelo nome do produto. */
+    public static final String NOME = "nome";
+    /** Campo de ordenação pela quantidade em estoque. */
+    public static final String QUANTIDADE = "quantidade";
+    /** Campo de ordenação pelo preço unitário. */
+    public static final String PRECO = "preco";
+
+    private final String prefixoNome; // Prefixo do nome, já normalizado ("" para não filtrar)
+    private final int quantidadeMinima; // Quantidade mínima (0 para não filtrar)
+    private final String campoOrdenacao; // Um de NOME, QUANTIDADE ou PRECO
+    private final boolean crescente; // Direção da ordenação
+
+    /**
+     * Cria uma consulta.
+     * @param prefixoNome O prefixo do nome (será normalizado); vazio para não filtrar por nome.
+     * @param quantidadeMinima A quantidade mínima; 0 para não filtrar por quantidade.
+     * @param campoOrdenacao O campo de ordenação (NOME, QUANTIDADE ou PRECO).
+     * @param crescente true para ordem crescente, false para decrescente.
+     * @throws IllegalArgumentException Se o campo de ordenação for desconhecido.
+     */
+    public ConsultaProdutos(String prefixoNome, int quantidadeMinima, String campoOrdenacao, boolean crescente) {
+        if (!NOME.equals(campoOrdenacao) && !QUANTIDADE.equals(campoOrdenacao) && !PRECO.equals(campoOrdenacao)) {
+            throw new IllegalArgumentException("Campo de ordenação desconhecido: " + campoOrdenacao);
+        }
+        this.prefixoNome = Produto.normalizarNome(prefixoNome);
+        this.quantidadeMinima = Math.max(quantidadeMinima, 0);
+        this.campoOrdenacao = campoOrdenacao;
+        this.crescente = crescente;
+    }
+
+    /**
+     * Cria uma consulta sem filtros, ordenada pelo nome em ordem crescente.
+     * @return A consulta de todos os produtos.
+     */
+    public static ConsultaProdutos todos() {
+        return new ConsultaProdutos("", 0, NOME, true);
+    }
+
+    /**
+     * Retorna uma cópia desta consulta com outros filtros e a mesma ordenação.
+     * @param prefixoNome O novo prefixo do nome.
+     * @param quantidadeMinima A nova quantidade mínima.
+     * @return A nova consulta.
+     */
+    public ConsultaProdutos comFiltros(String prefixoNome, int quantidadeMinima) {
+        return new ConsultaProdutos(prefixoNome, quantidadeMinima, campoOrdenacao, crescente);
+    }
+
+    /**
+     * Retorna uma cópia desta consulta com outra ordenação e os mesmos filtros.
+     * @param campoOrdenacao O novo campo de ordenação.
+     * @param crescente A nova direção.
+     * @return A nova consulta.
+     */
+    public ConsultaProdutos comOrdenacao(String campoOrdenacao, boolean crescente) {
+        return new ConsultaProdutos(prefixoNome, quantidadeMinima, campoOrdenacao, crescente);
+    }
+
+    /**
+     * Verifica se um produto atende aos filtros desta consulta.
+     * @param p O produto a ser verificado.
+     * @return true se o nome começa com o prefixo e a quantidade é pelo menos a mínima.
+     */
+    public boolean aceita(Produto p) {
+        return p.getNome().startsWith(prefixoNome) && p.getQuantidade() >= quantidadeMinima;
+    }
+
+    /**
+     * Cria um comparador com a mesma ordem usada pelo banco para esta consulta:
+     * pelo campo de ordenação e, como desempate, pelo nome, na direção escolhida.
+     * Usado quando os produtos são ordenados em memória.
+     * @return O comparador de produtos.
+     */
+    public Comparator<Produto> comparador() {
+        Comparator<Produto> porNome = Comparator.comparing(Produto::getNome);
+        Comparator<Produto> ordem;
+        switch (campoOrdenacao) {
+            case QUANTIDADE: ordem = Comparator.comparingInt(Produto::getQuantidade).thenComparing(porNome); break;
+            case PRECO: ordem = Comparator.comparingDouble(Produto::getPreco).thenComparing(porNome); break;
+            default: ordem = porNome;
+        }
+        return crescente ? ordem : ordem.reversed();
+    }
+
+    /**
+     * Calcula a menor string maior que todas as strings que começam com o prefixo,
+     * incrementando o último caractere (ex.: "fil" → "fim"). Permite filtrar um prefixo
+     * como o intervalo [prefixo, sucessor), que os bancos resolvem pelo índice do nome.
+     * @param prefixo O prefixo não vazio.
+     * @return O limite superior (exclusivo) do intervalo do prefixo.
+     */
+    static String sucessorPrefixo(String prefixo) {
+        int ultimo = prefixo.codePointBefore(prefixo.length());
+        return prefixo.substring(0, prefixo.length() - Character.charCount(ultimo))
+            + new String(Character.toChars(ultimo + 1));
+    }
+
+    /**
+     * Obtém o prefixo do nome usado como filtro.
+     * @return O prefixo normalizado, ou "" se não houver filtro por nome.
+     */
+    public String getPrefixoNome() {
+        return prefixoNome;
+    }
+
+    /**
+     * Obtém a quantidade mínima usada como filtro.
+     * @return A quantidade mínima, ou 0 se não houver filtro por quantidade.
+     */
+    public int getQuantidadeMinima() {
+        return quantidadeMinima;
+    }
+
+    /**
+     * Obtém o campo de ordenação.
+     * @return NOME, QUANTIDADE ou PRECO.
+     */
+    public String getCampoOrdenacao() {
+        return campoOrdenacao;
+    }
+
+    /**
+     * Indica a direção da ordenação.
+     * @return true se a ordem é crescente.
+     */
+    public boolean isCrescente() {
+        return crescente;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConsultaProdutos)) return false;
+        ConsultaProdutos outra = (ConsultaProdutos) o;
+        return quantidadeMinima == outra.quantidadeMinima
+            && crescente == outra.crescente
+            && prefixoNome.equals(outra.prefixoNome)
+            && campoOrdenacao.equals(outra.campoOrdenacao);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(prefixoNome, quantidadeMinima, campoOrdenacao, crescente);
+    }
+}
@@ -0,0 +1,200 @@
+package Estoque;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entrega os eventos do `Estoque` aos seus listeners. Os eventos publicados durante uma
+ * janela de tempo (50 ms por padrão) são agrupados e entregues de uma só vez, em uma thread
+ * própria, em vez de um a um na thread que alterou o estoque: uma rajada de alterações
+ * resulta em uma única atualização da tabela.
+ * <p>
+ * Dentro da janela, os eventos de um mesmo produto são combinados em um só (ex.: várias
+ * atualizações viram a última; uma adição seguida de remoção desaparece), e um RECARREGADO
+ * substitui todos os demais. Com janela 0, cada evento é entregue na hora, na thread que o publicou.
+ * @author Leandro
+ */
+final class DespachanteEventos {
+    // Ouvintes registrados; a lista pode ser alterada durante uma entrega.
+    private final List<Estoque.EstoqueListener> listeners = new CopyOnWriteArrayList<>();
+    private final long janelaMs;
+    // Thread que faz as entregas agrupadas; null com janela 0.
+    private final ScheduledExecutorService entregador;
+
+    // Eventos aguardando a entrega, um por produto, na ordem da primeira alteração. Protegido por si mesmo.
+    private final Map<String, EstoqueEvento> pendentes = new LinkedHashMap<>();
+    private boolean recarregarPendente = false;
+    private boolean entregaAgendada = false;
+
+    private final AtomicLong publicados = new AtomicLong();
+    private final AtomicLong entregues = new AtomicLong();
+    private final AtomicLong entregas = new AtomicLong();
+
+    /**
+     * Construtor do despachante.
+     * @param janelaMs A janela de agrupamento, em milissegundos; 0 entrega cada evento na hora.
+     */
+    DespachanteEventos(long janelaMs) {
+        this.janelaMs = Math.max(janelaMs, 0);
+        this.entregador = this.janelaMs == 0 ? null : Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("estoque-eventos").factory());
+    }
+
+    /**
+     * Registra um ouvinte.
+     * @param listener O ouvinte.
+     */
+    void adicionar(Estoque.EstoqueListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Retira um ouvinte.
+     * @param listener O ouvinte.
+     */
+    void remover(Estoque.EstoqueListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publica um evento.
+     * @param evento O evento.
+     */
+    void publicar(EstoqueEvento evento) {
+        publicar(List.of(evento));
+    }
+
+    /**
+     * Publica os eventos de um lote. Sem janela, são entregues juntos, na hora.
+     * @param eventos Os eventos, na ordem em que as alterações foram aplicadas.
+     */
+    void publicar(List<EstoqueEvento> eventos) {
+        publicados.addAndGet(eventos.size());
+        if (entregador == null) {
+            entregar(List.copyOf(eventos));
+            return;
+        }
+        synchronized (pendentes) {
+            for (EstoqueEvento evento : eventos) {
+                agrupar(evento);
+            }
+            if (!entregaAgendada) {
+                entregaAgendada = true;
+                entregador.schedule(this::entregarPendentes, janelaMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Junta um evento aos pendentes. Deve ser chamado com `pendentes` bloqueado.
+     * @param evento O evento.
+     */
+    private void agrupar(EstoqueEvento evento) {
+        if (recarregarPendente) return;
+        if (evento.getTipo() == EstoqueEvento.Tipo.RECARREGADO) {
+            pendentes.clear();
+            recarregarPendente = true;
+            return;
+        }
+        String nome = evento.getProduto().getNome();
+        EstoqueEvento anterior = pendentes.get(nome);
+        EstoqueEvento combinado = anterior == null ? evento : combinar(anterior, evento);
+        if (combinado == null) pendentes.remove(nome);
+        else pendentes.put(nome, combinado);
+    }
+
+    /**
+     * Combina dois eventos do mesmo produto no evento com o mesmo efeito final.
+     * @param anterior O evento mais antigo.
+     * @param novo O evento mais recente.
+     * @return O evento combinado, ou null se um anula o outro (adição seguida de remoção).
+     */
+    static EstoqueEvento combinar(EstoqueEvento anterior, EstoqueEvento novo) {
+        switch (anterior.getTipo()) {
+            case ADICIONADO:
+                if (novo.getTipo() == EstoqueEvento.Tipo.REMOVIDO) return null;
+                return EstoqueEvento.adicionado(novo.getProduto());
+            case REMOVIDO:
+                if (novo.getTipo() == EstoqueEvento.Tipo.ADICIONADO) return EstoqueEvento.atualizado(novo.getProduto());
+                return novo;
+            default:
+                return novo;
+        }
+    }
+
+    /**
+     * Entrega os eventos acumulados na janela que terminou.
+     */
+    private void entregarPendentes() {
+        List<EstoqueEvento> lote;
+        synchronized (pendentes) {
+            lote = recarregarPendente ? List.of(EstoqueEvento.recarregado()) : List.copyOf(pendentes.values());
+            pendentes.clear();
+            recarregarPendente = false;
+            entregaAgendada = false;
+        }
+        if (!lote.isEmpty()) entregar(lote);
+    }
+
+    /**
+     * Entrega um lote a cada ouvinte: um evento isolado por `estoqueAlterado` e vários por
+     * `estoqueAlteradoEmLote`. A falha de um ouvinte não impede a entrega aos demais.
+     * @param lote Os eventos.
+     */
+    private void entregar(List<EstoqueEvento> lote) {
+        entregues.addAndGet(lote.size());
+        entregas.incrementAndGet();
+        for (Estoque.EstoqueListener listener : listeners) {
+            try {
+                if (lote.size() == 1) listener.estoqueAlterado(lote.get(0));
+                else listener.estoqueAlteradoEmLote(lote);
+            } catch (RuntimeException e) {
+                System.err.println("Falha ao notificar uma alteração do estoque: " + e);
+            }
+        }
+    }
+
+    /**
+     * Obtém o número de eventos publicados.
+     * @return O número de eventos.
+     */
+    long getPublicados() {
+        return publicados.get();
+    }
+
+    /**
+     * Obtém o número de eventos que não precisaram ser entregues porque foram combinados com
+     * outros do mesmo produto (ou substituídos por um RECARREGADO), incluindo os que aguardam a entrega.
+     * @return O número de eventos agrupados.
+     */
+    long getAgrupados() {
+        return publicados.get() - entregues.get();
+    }
+
+    /**
+     * Obtém o número de entregas feitas aos ouvintes (cada entrega leva um ou mais eventos).
+     * @return O número de entregas.
+     */
+    long getEntregas() {
+        return entregas.get();
+    }
+
+    /**
+     * Entrega os eventos pendentes e encerra a thread de entrega.
+     */
+    void fechar() {
+        if (entregador == null) return;
+        entregador.shutdown(); // As entregas já agendadas ainda são executadas.
+        try {
+            entregador.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
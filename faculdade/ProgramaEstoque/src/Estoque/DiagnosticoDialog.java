@@ -0,0 +1,150 @@
+package Estoque;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Diálogo de diagnóstico com as latências das operações do estoque e das atualizações da
+ * interface (ver `MetricasLatencia`). Não aparece nos menus: é aberto pelo atalho
+ * Ctrl+Shift+D na janela principal. A tabela é atualizada a cada segundo e pode mostrar
+ * o último minuto, para evidenciar lentidões sob carga, ou tudo desde o início.
+ * Mostra também quantas notificações de alteração foram agrupadas antes de chegar à tabela
+ * a memória ocupada pelo cache de produtos e as conferências dos totais do estoque.
+ * @author Leandro
+ */
+public class DiagnosticoDialog extends JDialog {
+    private static final int INTERVALO_ATUALIZACAO_MS = 1_000; // Intervalo entre atualizações da tabela
+
+    private final Estoque estoque; // Fonte dos contadores de eventos
+    private final MetricasLatencia metricas; // Fonte das medições
+    private final JLabel eventosLabel = new JLabel(); // Contadores de notificações
+    private final JLabel memoriaLabel = new JLabel(); // Memória do cache de produtos
+    private final ModeloLatencias modelo = new ModeloLatencias(); // Modelo da tabela
+    private final JCheckBox ultimoMinutoBox = new JCheckBox("Somente o último minuto", true);
+    private final Timer temporizador; // Atualiza a tabela enquanto o diálogo está aberto
+
+    /**
+     * Construtor do diálogo de diagnóstico.
+     * @param parent A janela principal.
+     * @param estoque O estoque cujas métricas serão exibidas.
+     */
+    public DiagnosticoDialog(JFrame parent, Estoque estoque) {
+        super(parent, "Diagnóstico - Latências", false); // Não modal: acompanha o uso da aplicação
+        this.estoque = estoque;
+        this.metricas = estoque.getMetricas();
+        setSize(900, 420);
+        setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        JTable tabela = new JTable(modelo);
+        tabela.setAutoCreateRowSorter(true); // Permite ordenar por p99, máximo etc.
+        tabela.getColumnModel().getColumn(0).setPreferredWidth(220);
+        add(new JScrollPane(tabela), BorderLayout.CENTER);
+
+        ultimoMinutoBox.addActionListener(e -> atualizar());
+        JButton zerarBtn = new JButton("Zerar");
+        zerarBtn.addActionListener(e -> {
+            metricas.zerar();
+            atualizar();
+        });
+        JPanel southPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 5));
+        southPanel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
+        southPanel.add(memoriaLabel);
+        southPanel.add(eventosLabel);
+        southPanel.add(ultimoMinutoBox);
+        southPanel.add(zerarBtn);
+        add(southPanel, BorderLayout.SOUTH);
+
+        temporizador = new Timer(INTERVALO_ATUALIZACAO_MS, e -> atualizar());
+        atualizar();
+        temporizador.start();
+    }
+
+    /**
+     * Lê as medições atuais e atualiza a tabela.
+     */
+    private void atualizar() {
+        modelo.exibir(ultimoMinutoBox.isSelected() ? metricas.getUltimoMinuto() : metricas.getDesdeInicio());
+        eventosLabel.setText(String.format("Eventos: %d publicados, %d agrupados, %d entregas; sincronização: %d alterações recebidas, %d falhas",
+            estoque.getEventosPublicados(), estoque.getEventosAgrupados(), estoque.getEntregasEventos(),
+            estoque.getAlteracoesSincronizadas(), estoque.getFalhasSincronizacao()));
+        memoriaLabel.setText(String.format("Cache: %s; totais conferidos %d vezes, %d divergências",
+            estoque.getMemoriaCache(), estoque.getConferenciasTotais(), estoque.getDivergenciasTotais()));
+    }
+
+    @Override
+    public void dispose() {
+        temporizador.stop(); // Para de atualizar quando o diálogo é fechado.
+        super.dispose();
+    }
+
+    /**
+     * Modelo da tabela: uma linha por operação, com contagem, média, p50, p99 e máximo.
+     */
+    private static class ModeloLatencias extends AbstractTableModel {
+        private static final String[] COLUNAS = {"Operação", "Contagem", "Média (ms)", "p50 (ms)", "p99 (ms)", "Máximo (ms)"};
+        private List<EstatisticaLatencia> linhas = List.of();
+
+        void exibir(List<EstatisticaLatencia> estatisticas) {
+            linhas = estatisticas;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return linhas.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUNAS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUNAS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            if (columnIndex == 0) return String.class;
+            if (columnIndex == 1) return Long.class;
+            return Double.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            EstatisticaLatencia e = linhas.get(row);
+            switch (column) {
+                case 0: return e.getOperacao();
+                case 1: return e.getContagem();
+                case 2: return milissegundos(e.getMediaMicros());
+                case 3: return milissegundos(e.getP50Micros());
+                case 4: return milissegundos(e.getP99Micros());
+                default: return milissegundos(e.getMaximoMicros());
+            }
+        }
+
+        /**
+         * Converte microssegundos em milissegundos, com três casas decimais.
+         * @param micros O valor em microssegundos.
+         * @return O valor em milissegundos.
+         */
+        private static double milissegundos(double micros) {
+            return Math.round(micros) / 1000.0;
+        }
+    }
+}
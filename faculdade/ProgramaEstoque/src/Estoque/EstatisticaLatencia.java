@@ -0,0 +1,92 @@
+package Estoque;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * Resumo das latências de uma operação em um período: número de execuções, média,
+ * mediana (p50), p99 e máximo, em microssegundos. É o que aparece no diálogo de diagnóstico
+ * e nos atributos do MBean `Estoque:type=Latencias` (ver `MetricasLatencia`).
+ * @author Leandro
+ */
+public class EstatisticaLatencia {
+    private final String operacao;
+    private final long contagem;
+    private final double mediaMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double maximoMicros;
+
+    /**
+     * Construtor da estatística.
+     * @param operacao O nome da operação.
+     * @param contagem O número de execuções no período.
+     * @param mediaMicros A duração média, em microssegundos.
+     * @param p50Micros A mediana, em microssegundos.
+     * @param p99Micros O percentil 99, em microssegundos.
+     * @param maximoMicros A maior duração, em microssegundos.
+     */
+    @ConstructorParameters({"operacao", "contagem", "mediaMicros", "p50Micros", "p99Micros", "maximoMicros"})
+    public EstatisticaLatencia(String operacao, long contagem, double mediaMicros,
+                               double p50Micros, double p99Micros, double maximoMicros) {
+        this.operacao = operacao;
+        this.contagem = contagem;
+        this.mediaMicros = mediaMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maximoMicros = maximoMicros;
+    }
+
+    /**
+     * Obtém o nome da operação (ex.: "Estoque.buscarProduto").
+     * @return O nome da operação.
+     */
+    public String getOperacao() {
+        return operacao;
+    }
+
+    /**
+     * Obtém o número de execuções no período.
+     * @return A contagem.
+     */
+    public long getContagem() {
+        return contagem;
+    }
+
+    /**
+     * Obtém a duração média.
+     * @return A média, em microssegundos.
+     */
+    public double getMediaMicros() {
+        return mediaMicros;
+    }
+
+    /**
+     * Obtém a mediana das durações.
+     * @return O p50, em microssegundos.
+     */
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    /**
+     * Obtém o percentil 99 das durações.
+     * @return O p99, em microssegundos.
+     */
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    /**
+     * Obtém a maior duração.
+     * @return O máximo, em microssegundos.
+     */
+    public double getMaximoMicros() {
+        return maximoMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: n=%d p50=%.1fµs p99=%.1fµs max=%.1fµs",
+            operacao, contagem, p50Micros, p99Micros, maximoMicros);
+    }
+}
@@ -1,41 +1,299 @@
 package Estoque;
 
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.Updates;
-import org.bson.Document;
-import org.bson.conversions.Bson;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import javax.swing.JOptionPane;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
 
 /**
  * Gerencia as operações de estoque e a notificação de listeners sobre alterações no estoque.
- * Interage diretamente com o MongoDB para persistência dos dados.
+ * A persistência fica a cargo de um `RepositorioProdutos` (MongoDB, memória ou JDBC,
+ * conforme a configuração); esta classe cuida do cache, dos índices locais e das notificações.
+ * Mantém um cache em memória de todos os produtos, carregado uma única vez e atualizado
+ * a cada gravação (write-through), para que consultas não precisem ir ao banco.
+ * Os métodos com sufixo `Async` executam o acesso ao banco em threads virtuais e entregam
+ * o resultado na thread de despacho de eventos da Swing (EDT), para que a interface nunca
+ * fique bloqueada esperando o banco.
  * @author Leandro
  */
 public class Estoque {
-    // Coleção do MongoDB para armazenar documentos de produtos.
-    private final MongoCollection<Document> produtosCollection;
-    // Lista de listeners que serão notificados quando o estoque for alterado.
-    private final List<EstoqueListener> listeners = new ArrayList<>();
+    // Entrega as notificações de alteração aos listeners, agrupando as que chegam juntas (ver DespachanteEventos).
+    private final DespachanteEventos despachante;
+    // Listeners que acompanham as operações assíncronas em andamento e os erros ocorridos.
+    private final List<AtividadeListener> atividadeListeners = new CopyOnWriteArrayList<>();
+    // Executor das operações assíncronas: uma thread virtual por operação.
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Executor que entrega os resultados na thread de despacho de eventos da Swing (EDT).
+    private static final Executor EDT = SwingUtilities::invokeLater;
+    // Número de operações assíncronas em andamento.
+    private final AtomicInteger operacoesEmAndamento = new AtomicInteger();
+    // Onde os produtos são gravados e consultados.
+    private final RepositorioProdutos repositorio;
+    // Cache autoritativo dos produtos, indexado pelo nome normalizado (ver Produto.normalizarNome),
+    // guardado em colunas de tipos primitivos (ver CatalogoColunar).
+    private final CatalogoColunar cache = new CatalogoColunar();
+    // Indica se o cache já foi carregado a partir do banco.
+    private volatile boolean cacheCarregado = false;
+    // Contadores de buscas no cache: acertos (produto encontrado) e faltas (produto inexistente).
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    // Índice local dos nomes existentes, consultado pela validação dos formulários.
+    private final IndiceNomes indiceNomes = new IndiceNomes();
+    // Indica se a carga do índice de nomes já foi iniciada.
+    private final AtomicBoolean indiceNomesCarregando = new AtomicBoolean();
+    // Índice de trigramas da busca aproximada, carregado do cache na primeira busca.
+    private final IndiceTrigramas indiceBusca = new IndiceTrigramas();
+
+    // Arquivo com a cópia local do catálogo (ver SnapshotCatalogo); null se desativado.
+    private final Path arquivoSnapshot;
+    // Tempo sem alterações no cache antes de regravar o snapshot.
+    private static final long ESPERA_GRAVACAO_SNAPSHOT_MS = 5_000;
+    // Tolerância a diferenças de relógio entre as máquinas que gravam no banco.
+    private static final long MARGEM_RECONCILIACAO_MS = 60_000;
+    // Antecedência com que a sincronização deixa de confiar nas lápides, antes de elas vencerem
+    // (cobre a diferença entre os relógios das instâncias e o do banco).
+    private static final long MARGEM_VALIDADE_LAPIDES_MS = TimeUnit.DAYS.toMillis(1);
+    // Intervalo entre tentativas de reconciliação enquanto o banco estiver indisponível.
+    private static final long INTERVALO_RECONCILIACAO_MS = 30_000;
+    // Agenda a gravação do snapshot e as novas tentativas de reconciliação.
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().daemon().name("estoque-agendador").factory());
+    // Indica se já se tentou ler o snapshot nesta execução.
+    private volatile boolean snapshotVerificado = false;
+    // Indica se o cache foi conferido com o banco; até lá, as páginas são servidas do snapshot.
+    private volatile boolean reconciliado = false;
+    // Instante (ms) até o qual o cache reflete o banco, gravado junto com o snapshot.
+    private volatile long marcaReconciliacao = 0;
+    // Produtos alterados por esta instância durante a reconciliação, que não devem ser sobrescritos por ela.
+    private final Set<String> alteradosDuranteReconciliacao = ConcurrentHashMap.newKeySet();
+    // Instante da última alteração do cache e indicação de gravação do snapshot já agendada.
+    private volatile long ultimaAlteracaoCache = 0;
+    private final AtomicBoolean gravacaoSnapshotPendente = new AtomicBoolean();
+    // Última ordenação local calculada, reaproveitada enquanto o cache e a consulta não mudarem.
+    private volatile CatalogoColunar.Ordem ordemLocal;
+    // Latências de cada operação, exibidas no diálogo de diagnóstico e publicadas via JMX.
+    private final MetricasLatencia metricas = new MetricasLatencia();
+    // Livro de movimentações onde cada alteração é lançada; null se desativado.
+    private final LivroMovimentos livro;
+    // Intervalo entre as consultas de alterações feitas por outras instâncias; 0 desativa a sincronização.
+    private final long intervaloSincronizacaoMs;
+    // Alterações recebidas de uma vez acima das quais os listeners recebem um único RECARREGADO.
+    private static final int LIMITE_EVENTOS_SINCRONIZACAO = 1_000;
+    // Tempo máximo entre a reserva da versão de uma gravação e a sua confirmação no banco; cada
+    // consulta da sincronização relê as versões entregues nesse período.
+    private final long atrasoMaximoGravacaoMs;
+    // Versão do catálogo até a qual as alterações já foram entregues (-1 antes da primeira consulta).
+    private volatile long versaoSincronizada = -1;
+    // Marcas {instante, versão entregue} das consultas recentes, da mais antiga à mais nova; a
+    // primeira é a versão a partir da qual a próxima consulta relê o catálogo (só na sincronização).
+    private final ArrayDeque<long[]> marcasSincronizacao = new ArrayDeque<>();
+    // Indica se há uma sincronização em andamento.
+    private final AtomicBoolean sincronizando = new AtomicBoolean();
+    // Número de alterações de outras instâncias entregues aos listeners.
+    private final AtomicLong alteracoesSincronizadas = new AtomicLong();
+    // Número de consultas de sincronização que falharam, e se a última falhou (para relatar só a primeira de uma sequência).
+    private final AtomicLong falhasSincronizacao = new AtomicLong();
+    private boolean sincronizacaoFalhando = false;
+    // Intervalo entre as recontagens que conferem os totais mantidos pelo cache; 0 desativa.
+    private final long intervaloConferenciaTotaisMs;
+    // Número de recontagens dos totais feitas e de recontagens que encontraram divergência.
+    private final AtomicLong conferenciasTotais = new AtomicLong();
+    private final AtomicLong divergenciasTotais = new AtomicLong();
+    // Totais lidos do cabeçalho do snapshot, usados até o cache ser carregado.
+    private volatile TotaisEstoque totaisSnapshot;
+    private volatile boolean totaisSnapshotLidos = false;
 
     /**
      * Interface para listeners que desejam ser notificados sobre alterações no estoque.
+     * As notificações são entregues em uma thread própria do estoque, fora da EDT, e as
+     * alterações feitas em um curto intervalo chegam juntas, por `estoqueAlteradoEmLote`.
      */
     public interface EstoqueListener {
         /**
          * Chamado quando o estoque é alterado.
+         * @param evento O evento descrevendo a alteração e o produto afetado.
+         */
+        void estoqueAlterado(EstoqueEvento evento);
+
+        /**
+         * Chamado uma única vez para um lote de alterações (ver `executarLote`).
+         * Por padrão, repassa cada evento para `estoqueAlterado`; ouvintes que conseguem
+         * tratar o lote de uma vez (por exemplo, recarregando a tabela uma só vez) podem sobrescrevê-lo.
+         * @param eventos Os eventos do lote, na ordem em que foram aplicados.
+         */
+        default void estoqueAlteradoEmLote(List<EstoqueEvento> eventos) {
+            eventos.forEach(this::estoqueAlterado);
+        }
+    }
+
+    /**
+     * Interface para quem deseja acompanhar as operações assíncronas do estoque,
+     * por exemplo para exibir um indicador de ocupado e relatar erros ao usuário.
+     * Os métodos são chamados a partir das threads de trabalho, fora da EDT.
+     */
+    public interface AtividadeListener {
+        /**
+         * Chamado quando o estoque passa a ter (ou deixa de ter) operações em andamento.
+         * @param ocupado true se há pelo menos uma operação em andamento.
+         */
+        void atividadeAlterada(boolean ocupado);
+
+        /**
+         * Chamado quando uma operação assíncrona falha.
+         * @param operacao Descrição da operação que falhou.
+         * @param erro O erro ocorrido.
          */
-        void estoqueAlterado();
+        void erroOcorrido(String operacao, Throwable erro);
     }
 
     /**
-     * Construtor da classe Estoque.
-     * Inicializa a conexão com a coleção de produtos no MongoDB através de `MongoDBConnection`.
+     * Construtor da classe Estoque, com o repositório escolhido em `estoque.properties`
+     * (ver `ConfiguracaoBanco`).
+     * @throws IllegalArgumentException Se a configuração for inválida.
      */
     public Estoque() {
-        this.produtosCollection = MongoDBConnection.getInstance().getCollection();
+        this(ConfiguracaoBanco.carregar());
+    }
+
+    /**
+     * Construtor da classe Estoque com o repositório e os ajustes de uma configuração.
+     * @param configuracao A configuração carregada.
+     */
+    private Estoque(ConfiguracaoBanco configuracao) {
+        this(RepositorioProdutos.criar(configuracao), null, configuracao);
+    }
+
+    /**
+     * Construtor da classe Estoque com um repositório específico, com os ajustes lidos de
+     * `estoque.properties` (ver `Estoque(RepositorioProdutos, String, ConfiguracaoBanco)`).
+     * @param repositorio O repositório dos produtos.
+     * @throws IllegalArgumentException Se a configuração for inválida.
+     */
+    public Estoque(RepositorioProdutos repositorio) {
+        this(repositorio, null);
+    }
+
+    /**
+     * Construtor da classe Estoque para um armazém com partição própria, com os ajustes lidos
+     * de `estoque.properties` (ver `Estoque(RepositorioProdutos, String, ConfiguracaoBanco)`).
+     * @param repositorio O repositório da partição do armazém.
+     * @param armazem O nome do armazém, ou null para o armazém principal (snapshot sem sufixo).
+     * @throws IllegalArgumentException Se a configuração for inválida.
+     */
+    public Estoque(RepositorioProdutos repositorio, String armazem) {
+        this(repositorio, armazem, ConfiguracaoBanco.carregar());
+    }
+
+    /**
+     * Construtor da classe Estoque com um repositório específico e os ajustes de uma configuração.
+     * A conexão com o banco não é aberta aqui, mas na primeira operação (ou em `iniciar`),
+     * normalmente já fora da EDT. Os ajustes vêm das chaves "estoque." da configuração
+     * (arquivo ou `-D`), já validadas por `ConfiguracaoBanco`:
+     * <ul>
+     * <li>`estoque.snapshot`: o snapshot local do catálogo (`estoque-catalogo.bin` por padrão;
+     * vazio desativa). Repositórios não persistentes não usam snapshot; o de um armazém com
+     * partição própria leva o nome do armazém (ex.: `estoque-catalogo_norte.bin`).</li>
+     * <li>`estoque.livro`, `estoque.livro.checkpoint.movimentos`, `.minutos` e `.margem.segundos`:
+     * o livro de movimentações (ver `LivroMovimentos`) e os seus checkpoints; a margem só se
+     * aplica a repositórios persistentes.</li>
+     * <li>`estoque.sincronizacao.segundos` e `estoque.sincronizacao.atrasoMaximo.segundos`: a
+     * consulta às alterações das outras instâncias, só com repositórios persistentes (ver
+     * `sincronizar`).</li>
+     * <li>`estoque.eventos.janela.ms`: o agrupamento das notificações aos listeners.</li>
+     * <li>`estoque.totais.conferencia.minutos`: a conferência periódica dos totais.</li>
+     * <li>`estoque.reposicao.padrao`: o ponto dos produtos sem ponto de reposição próprio.</li>
+     * </ul>
+     * @param repositorio O repositório dos produtos.
+     * @param armazem O nome do armazém com partição própria (ver `Armazens`), ou null para o
+     *        armazém principal.
+     * @param configuracao A configuração carregada.
+     */
+    public Estoque(RepositorioProdutos repositorio, String armazem, ConfiguracaoBanco configuracao) {
+        this.repositorio = repositorio;
+        String caminho = configuracao.getSnapshot();
+        if (armazem != null && !caminho.isEmpty()) caminho = ConfiguracaoBanco.comSufixo(caminho, armazem);
+        this.arquivoSnapshot = caminho.isEmpty() || !repositorio.isPersistente() ? null : Paths.get(caminho);
+        if (configuracao.isLivro()) {
+            this.livro = new LivroMovimentos(repositorio, metricas, configuracao.getCheckpointMovimentos(),
+                configuracao.getCheckpointIntervaloMs(),
+                repositorio.isPersistente() ? configuracao.getCheckpointMargemMs() : 0);
+        } else {
+            this.livro = null;
+        }
+        this.despachante = new DespachanteEventos(configuracao.getJanelaEventosMs());
+        this.intervaloSincronizacaoMs = repositorio.isPersistente() ? configuracao.getIntervaloSincronizacaoMs() : 0;
+        this.atrasoMaximoGravacaoMs = configuracao.getAtrasoMaximoGravacaoMs();
+        this.intervaloConferenciaTotaisMs = configuracao.getIntervaloConferenciaTotaisMs();
+        cache.definirPontoPadrao(configuracao.getPontoReposicaoPadrao());
+    }
+
+    /**
+     * Começa a conectar ao banco em segundo plano, sem bloquear, publica as métricas de
+     * latência via JMX e inicia a sincronização com as outras instâncias e a conferência
+     * periódica dos totais. Pode ser chamado no início da aplicação para que a conexão fique
+     * pronta enquanto a janela é criada.
+     */
+    public void iniciar() {
+        metricas.publicarJmx();
+        repositorio.iniciar();
+        if (intervaloSincronizacaoMs > 0) {
+            agendador.scheduleWithFixedDelay(() -> {
+                if (sincronizando.compareAndSet(false, true)) executor.execute(this::sincronizar);
+            }, 0, intervaloSincronizacaoMs, TimeUnit.MILLISECONDS);
+        }
+        if (intervaloConferenciaTotaisMs > 0) {
+            agendador.scheduleWithFixedDelay(() -> executor.execute(this::conferirTotais),
+                intervaloConferenciaTotaisMs, intervaloConferenciaTotaisMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Obtém o repositório em uso.
+     * @return O repositório dos produtos.
+     */
+    public RepositorioProdutos getRepositorio() {
+        return repositorio;
+    }
+
+    /**
+     * Obtém as métricas de latência das operações do estoque. A interface registra nelas
+     * também a duração das suas atualizações, para que tudo apareça no mesmo diagnóstico.
+     * @return As métricas de latência.
+     */
+    public MetricasLatencia getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Obtém o livro de movimentações, para consultar o histórico de um produto ou
+     * reconstruir o estoque de um instante passado.
+     * @return O livro, ou null se foi desativado com `estoque.livro=false`.
+     */
+    public LivroMovimentos getLivro() {
+        return livro;
     }
 
     /**
@@ -43,7 +301,7 @@ public class Estoque {
      * @param listener O listener a ser adicionado.
      */
     public void addListener(EstoqueListener listener) {
-        listeners.add(listener);
+        despachante.adicionar(listener);
     }
 
     /**
@@ -51,46 +309,540 @@ public class Estoque {
      * @param listener O listener a ser removido.
      */
     public void removeListener(EstoqueListener listener) {
-        listeners.remove(listener);
+        despachante.remover(listener);
+    }
+
+    /**
+     * Obtém o número de notificações de alteração publicadas desde o início.
+     * @return O número de eventos publicados.
+     */
+    public long getEventosPublicados() {
+        return despachante.getPublicados();
+    }
+
+    /**
+     * Obtém o número de notificações que não precisaram ser entregues aos listeners por terem
+     * sido combinadas com outras do mesmo produto dentro da janela de agrupamento.
+     * @return O número de eventos agrupados.
+     */
+    public long getEventosAgrupados() {
+        return despachante.getAgrupados();
+    }
+
+    /**
+     * Obtém o número de entregas de notificações feitas aos listeners.
+     * @return O número de entregas.
+     */
+    public long getEntregasEventos() {
+        return despachante.getEntregas();
+    }
+
+    /**
+     * Adiciona um listener de atividade (indicador de ocupado e relato de erros).
+     * @param listener O listener a ser adicionado.
+     */
+    public void addAtividadeListener(AtividadeListener listener) {
+        atividadeListeners.add(listener);
+    }
+
+    /**
+     * Remove um listener de atividade.
+     * @param listener O listener a ser removido.
+     */
+    public void removeAtividadeListener(AtividadeListener listener) {
+        atividadeListeners.remove(listener);
+    }
+
+    /**
+     * Executa uma operação em uma thread virtual, fora da EDT.
+     * Mantém a contagem de operações em andamento, relata falhas aos `AtividadeListener`
+     * e conclui o future retornado na EDT, de modo que as etapas encadeadas
+     * (`thenAccept`, `exceptionally`...) possam manipular componentes Swing diretamente.
+     *
+     * @param operacao Descrição da operação, usada no relato de erros.
+     * @param tarefa A operação a ser executada.
+     * @return Um future concluído na EDT com o resultado da operação.
+     */
+    private <T> CompletableFuture<T> executarAsync(String operacao, Supplier<T> tarefa) {
+        if (operacoesEmAndamento.getAndIncrement() == 0) {
+            atividadeListeners.forEach(l -> l.atividadeAlterada(true));
+        }
+        return CompletableFuture.supplyAsync(tarefa, executor)
+            .whenComplete((resultado, erro) -> {
+                if (operacoesEmAndamento.decrementAndGet() == 0) {
+                    atividadeListeners.forEach(l -> l.atividadeAlterada(false));
+                }
+                if (erro != null) {
+                    Throwable causa = erro instanceof CompletionException ? erro.getCause() : erro;
+                    atividadeListeners.forEach(l -> l.erroOcorrido(operacao, causa));
+                }
+            })
+            .handleAsync((resultado, erro) -> {
+                // Repassa o resultado (ou o erro) já na EDT.
+                if (erro != null) {
+                    throw erro instanceof CompletionException ce ? ce : new CompletionException(erro);
+                }
+                return resultado;
+            }, EDT);
     }
 
     /**
      * Notifica todos os listeners registrados que o estoque foi alterado.
      * Este método é chamado após qualquer operação de modificação bem-sucedida (adicionar, remover, atualizar).
+     * A entrega é assíncrona e agrupada com as demais alterações da mesma janela.
+     * @param evento O evento descrevendo a alteração.
      */
-    private void notificarListeners() {
-        listeners.forEach(EstoqueListener::estoqueAlterado);
+    private void notificarListeners(EstoqueEvento evento) {
+        despachante.publicar(evento);
     }
 
     /**
-     * Adiciona um novo produto ao estoque no MongoDB.
+     * Notifica todos os listeners registrados sobre um lote de alterações, que chegam juntas.
+     * @param eventos Os eventos do lote.
+     */
+    private void notificarListeners(List<EstoqueEvento> eventos) {
+        despachante.publicar(eventos);
+    }
+
+    /**
+     * Carrega todos os produtos para o cache, caso ainda não tenham sido carregados.
+     * Se houver um snapshot local, ele é usado e conferido com o banco em segundo plano;
+     * caso contrário, os produtos são lidos do banco.
+     * A carga acontece uma única vez; depois disso o cache é mantido pelas operações de escrita.
+     */
+    private void carregarCache() {
+        if (cacheCarregado) return;
+        synchronized (cache) {
+            if (cacheCarregado) return;
+            if (carregarSnapshot()) return;
+            long inicio = System.currentTimeMillis();
+            // Percorre todos os produtos do banco uma única vez.
+            repositorio.paraCadaProduto(cache::put);
+            marcaReconciliacao = inicio;
+            reconciliado = true;
+            cacheCarregado = true;
+        }
+        agendarGravacaoSnapshot();
+    }
+
+    /**
+     * Carrega o cache a partir do snapshot local, se existir, e agenda a reconciliação com o banco.
+     * Deve ser chamado com o cache bloqueado.
+     * @return true se o snapshot foi carregado.
+     */
+    private boolean carregarSnapshot() {
+        if (snapshotVerificado || arquivoSnapshot == null) return false;
+        snapshotVerificado = true;
+        try {
+            SnapshotCatalogo snapshot = SnapshotCatalogo.ler(arquivoSnapshot);
+            if (snapshot == null) return false;
+            for (Produto p : snapshot.getProdutos()) {
+                cache.put(p);
+            }
+            marcaReconciliacao = snapshot.getMarcaTempo();
+            cacheCarregado = true;
+            executor.execute(this::reconciliar);
+            return true;
+        } catch (IOException e) {
+            // Um snapshot ilegível é apenas descartado: os produtos serão lidos do banco.
+            System.err.println("Snapshot do catálogo ignorado: " + e.getMessage());
+            cache.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Confere o cache carregado do snapshot com o banco: traz os produtos gravados depois
+     * da marca de tempo do snapshot (ou sem marca, gravados por versões antigas) e descarta
+     * os que não existem mais no banco. Ao terminar, os listeners recebem um evento
+     * RECARREGADO e as consultas voltam a ser feitas no banco. Se o banco estiver indisponível,
+     * o snapshot continua em uso e uma nova tentativa é agendada.
+     */
+    private void reconciliar() {
+        long inicio = System.currentTimeMillis();
+        try {
+            // Nomes existentes (no MongoDB, lidos só do índice único).
+            Set<String> nomesNoBanco = new HashSet<>();
+            repositorio.paraCadaNome(nomesNoBanco::add);
+
+            // Produtos alterados desde o snapshot.
+            repositorio.paraCadaAlteradoDesde(marcaReconciliacao - MARGEM_RECONCILIACAO_MS, p -> {
+                if (!alteradosDuranteReconciliacao.contains(p.getNome())) cache.put(p);
+            });
+            cache.removeIf(nome -> !nomesNoBanco.contains(nome) && !alteradosDuranteReconciliacao.contains(nome));
+
+            marcaReconciliacao = inicio;
+            reconciliado = true;
+            alteradosDuranteReconciliacao.clear();
+            indiceBusca.descartar(); // O cache foi alterado diretamente; será indexado de novo.
+        } catch (RuntimeException e) {
+            agendador.schedule(() -> executor.execute(this::reconciliar), INTERVALO_RECONCILIACAO_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        notificarListeners(EstoqueEvento.recarregado());
+        agendarGravacaoSnapshot();
+    }
+
+    /**
+     * Busca no repositório as alterações feitas desde a última consulta, por esta ou por outras
+     * instâncias do programa ligadas ao mesmo banco, e as entrega aos listeners como eventos.
+     * A primeira execução apenas registra a versão atual do catálogo.
+     * <p>
+     * A consulta pede apenas os produtos (e lápides) com versão maior que a conhecida, de modo
+     * que o tráfego depende do número de alterações, não do tamanho do catálogo. A versão de
+     * uma gravação é reservada antes de a gravação ser confirmada (um lote de importação ou
+     * uma transação repetida pelo driver pode levar bem mais que um intervalo), de modo que
+     * versões menores que a já entregue ainda podem aparecer: por isso cada consulta relê a
+     * partir da versão que estava entregue `atrasoMaximoGravacaoMs` atrás. Uma gravação
+     * confirmada depois desse prazo não é vista pelas outras instâncias até a próxima
+     * reconciliação. As alterações que o cache já reflete (inclusive as feitas por esta
+     * instância e as relidas) são ignoradas.
+     * <p>
+     * As lápides vencem depois de `RepositorioProdutos.getValidadeLapidesMs`. Se a versão a
+     * partir da qual a consulta relê foi entregue há mais tempo que isso (ex.: a instância ficou
+     * desconectada por semanas), remoções desse período podem não ter mais lápide: os produtos
+     * do cache que não existem mais no banco são então descartados e os listeners recebem um
+     * RECARREGADO (ver `descartarRemovidosSemLapide`).
+     * <p>
+     * Se a consulta falhar, ela é repetida no próximo
+     * intervalo; a primeira falha de uma sequência é relatada em System.err e todas são
+     * contadas em `getFalhasSincronizacao`.
+     */
+    private void sincronizar() {
+        try {
+            long agora = System.currentTimeMillis();
+            if (versaoSincronizada < 0) {
+                versaoSincronizada = repositorio.versaoAtual();
+                marcasSincronizacao.add(new long[] {agora, versaoSincronizada});
+                return;
+            }
+            // Descarta as marcas que já saíram da janela, mantendo a última anterior a ela.
+            while (marcasSincronizacao.size() > 1 && agora - lerSegundaMarca()[0] >= atrasoMaximoGravacaoMs) {
+                marcasSincronizacao.removeFirst();
+            }
+            List<AlteracaoCatalogo> alteracoes = new ArrayList<>();
+            long[] primeira = marcasSincronizacao.getFirst();
+            long desde = primeira[1];
+            long validade = repositorio.getValidadeLapidesMs();
+            boolean lapidesVencidas = validade > 0 && agora - primeira[0] >= validade - MARGEM_VALIDADE_LAPIDES_MS;
+            metricas.medir("Estoque.sincronizar", () -> {
+                repositorio.paraCadaAlteracaoDesde(desde, alteracoes::add);
+                return null;
+            });
+            if (lapidesVencidas) {
+                descartarRemovidosSemLapide();
+                // As remoções até agora estão refletidas; as lápides das próximas ainda não venceram.
+                primeira[0] = agora;
+            }
+            long maior = versaoSincronizada;
+            List<EstoqueEvento> eventos = new ArrayList<>();
+            for (AlteracaoCatalogo alteracao : alteracoes) {
+                maior = Math.max(maior, alteracao.getVersao());
+                EstoqueEvento evento = aplicarAlteracao(alteracao);
+                if (evento != null) eventos.add(evento);
+            }
+            versaoSincronizada = maior;
+            marcasSincronizacao.add(new long[] {agora, maior});
+            sincronizacaoFalhando = false;
+            if (eventos.isEmpty() && !lapidesVencidas) return;
+            alteracoesSincronizadas.addAndGet(eventos.size());
+            if (lapidesVencidas || eventos.size() > LIMITE_EVENTOS_SINCRONIZACAO) {
+                notificarListeners(EstoqueEvento.recarregado());
+            } else {
+                notificarListeners(eventos);
+            }
+        } catch (RuntimeException e) {
+            // A próxima execução tenta de novo a partir da mesma versão.
+            falhasSincronizacao.incrementAndGet();
+            if (!sincronizacaoFalhando) {
+                sincronizacaoFalhando = true;
+                System.err.println("Falha ao sincronizar com as outras instâncias (tentando de novo a cada "
+                    + intervaloSincronizacaoMs / 1000 + " s): " + e);
+            }
+        } finally {
+            sincronizando.set(false);
+        }
+    }
+
+    /**
+     * Descarta do cache os produtos que não existem mais no banco, conferindo os nomes de todo
+     * o catálogo (no MongoDB, lidos só do índice único). Usado quando a sincronização ficou
+     * parada por mais tempo que a validade das lápides. Um produto incluído por esta instância
+     * durante a conferência pode ser descartado por engano; a sincronização seguinte o traz de
+     * volta, pois a sua versão é posterior à consulta.
+     */
+    private void descartarRemovidosSemLapide() {
+        if (!cacheCarregado) return; // O cache ainda será carregado do banco.
+        Set<String> nomesNoBanco = new HashSet<>();
+        repositorio.paraCadaNome(nomesNoBanco::add);
+        List<String> removidos = new ArrayList<>();
+        for (Produto produto : cache.values()) {
+            if (!nomesNoBanco.contains(produto.getNome())) removidos.add(produto.getNome());
+        }
+        removidos.forEach(this::retirarDoCache);
+        System.err.println("Sincronização parada por mais tempo que a validade das lápides: catálogo conferido, "
+            + removidos.size() + " produtos removidos em outras instâncias descartados.");
+    }
+
+    /**
+     * Obtém a segunda marca mais antiga da sincronização.
+     * @return A marca {instante, versão}.
+     */
+    private long[] lerSegundaMarca() {
+        Iterator<long[]> marcas = marcasSincronizacao.iterator();
+        marcas.next();
+        return marcas.next();
+    }
+
+    /**
+     * Aplica ao cache uma alteração recebida pela sincronização.
+     * @param alteracao A alteração.
+     * @return O evento a ser entregue aos listeners, ou null se o cache já refletia a alteração.
+     */
+    private EstoqueEvento aplicarAlteracao(AlteracaoCatalogo alteracao) {
+        Produto atual = cache.get(alteracao.getNome());
+        if (alteracao.isRemocao()) {
+            if (cacheCarregado && atual == null) return null;
+            Produto removido = cacheCarregado ? retirarDoCache(alteracao.getNome()) : null;
+            return EstoqueEvento.removido(removido != null ? removido : new Produto(alteracao.getNome(), 0, 0));
+        }
+        Produto produto = alteracao.getProduto();
+        if (atual != null && atual.getQuantidade() == produto.getQuantidade() && atual.getPreco() == produto.getPreco()
+                && atual.getPontoReposicao() == produto.getPontoReposicao()) {
+            return null;
+        }
+        if (!cacheCarregado) return EstoqueEvento.atualizado(produto);
+        registrarNoCache(produto);
+        return atual == null ? EstoqueEvento.adicionado(produto) : EstoqueEvento.atualizado(produto);
+    }
+
+    /**
+     * Obtém o número de alterações feitas por outras instâncias e recebidas pela sincronização.
+     * @return O número de alterações entregues aos listeners.
+     */
+    public long getAlteracoesSincronizadas() {
+        return alteracoesSincronizadas.get();
+    }
+
+    /**
+     * Obtém o número de consultas de sincronização que falharam (banco indisponível ou erro ao
+     * aplicar uma alteração).
+     * @return O número de falhas desde o início.
+     */
+    public long getFalhasSincronizacao() {
+        return falhasSincronizacao.get();
+    }
+
+    /**
+     * Indica se as consultas paginadas devem ser respondidas pelo snapshot em memória,
+     * o que acontece desde a abertura do programa até o fim da reconciliação com o banco.
+     * Na primeira chamada, lê o snapshot; se não houver snapshot, inicia em segundo plano
+     * a carga completa do cache, que dará origem ao primeiro snapshot.
+     * @return true se as consultas devem ser feitas em memória.
+     */
+    private boolean usarCatalogoLocal() {
+        if (reconciliado || arquivoSnapshot == null) return false;
+        if (!snapshotVerificado) {
+            boolean carregado;
+            synchronized (cache) {
+                carregado = cacheCarregado || carregarSnapshot();
+            }
+            if (!carregado) {
+                executor.execute(() -> {
+                    try {
+                        carregarCache();
+                    } catch (RuntimeException e) {
+                        // Sem o banco não há o que copiar; o snapshot será criado na próxima carga do cache.
+                    }
+                });
+            }
+        }
+        return cacheCarregado && !reconciliado;
+    }
+
+    /**
+     * Filtra e ordena as linhas do cache segundo uma consulta, reaproveitando o último
+     * resultado se nem a consulta nem o cache mudaram.
+     * @param consulta A consulta com filtros e ordenação.
+     * @return As linhas que atendem à consulta, na ordem da consulta.
+     */
+    private CatalogoColunar.Ordem ordenarLocal(ConsultaProdutos consulta) {
+        CatalogoColunar.Ordem memo = ordemLocal;
+        if (memo != null && memo.isAtual() && memo.getConsulta().equals(consulta)) {
+            return memo;
+        }
+        memo = cache.ordenar(consulta);
+        ordemLocal = memo;
+        return memo;
+    }
+
+    /**
+     * Lê uma página do cache na ordem de uma consulta. Apenas os produtos da página são
+     * criados. A ordenação (quando a última não vale mais) e a leitura são feitas sob a mesma
+     * trava do cache, de modo que escritas contínuas (ex.: uma importação) não obrigam a
+     * ordenar de novo a cada tentativa.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param apos O último produto da página anterior, ou null para começar do deslocamento.
+     * @param deslocamento O número de produtos a pular, se `apos` for null.
+     * @param tamanho O número máximo de produtos da página.
+     * @return Os produtos da página, na ordem da consulta.
+     */
+    private List<Produto> paginaLocal(ConsultaProdutos consulta, Produto apos, long deslocamento, int tamanho) {
+        return cache.pagina(ordemLocal, consulta, apos, deslocamento, tamanho, ordem -> ordemLocal = ordem);
+    }
+
+    /**
+     * Registra no cache (e nos índices de nomes e de busca) um produto gravado no banco.
+     * Todas as escritas passam por aqui, para que as estruturas locais fiquem consistentes.
+     * @param produto O produto com os valores gravados.
+     * @return O estado anterior do produto no cache, ou null se ele não estava no cache.
+     */
+    private Produto registrarNoCache(Produto produto) {
+        Produto anterior = cache.put(produto);
+        indiceNomes.adicionar(produto.getNome());
+        if (anterior == null) indiceBusca.adicionar(produto.getNome());
+        registrarAlteracao(produto.getNome());
+        return anterior;
+    }
+
+    /**
+     * Retira do cache (e dos índices de nomes e de busca) um produto removido do banco.
+     * @param nome O nome normalizado do produto.
+     * @return O último estado conhecido do produto, ou null se ele não estava no cache.
+     */
+    private Produto retirarDoCache(String nome) {
+        Produto removido = cache.remove(nome);
+        indiceNomes.remover(nome);
+        indiceBusca.remover(nome);
+        registrarAlteracao(nome);
+        return removido;
+    }
+
+    /**
+     * Aplica a um produto o ponto de reposição que o cache conhece: as atualizações de
+     * quantidade e preço mantêm o ponto gravado no banco, e o cache deve fazer o mesmo.
+     * @param produto O produto com os novos valores.
+     * @return O produto com o ponto do cache, ou o próprio produto se ele não está no cache.
+     */
+    private Produto comPontoDoCache(Produto produto) {
+        Produto atual = cache.get(produto.getNome());
+        return atual == null ? produto : atual.comValores(produto.getQuantidade(), produto.getPreco());
+    }
+
+    /**
+     * Lança uma alteração no livro de movimentações, sem esperar pela gravação.
+     * @param tipo O tipo do lançamento.
+     * @param produto O produto depois da alteração (ou o removido, em REMOVIDO).
+     * @param variacao A variação da quantidade.
+     */
+    private void lancar(Movimento.Tipo tipo, Produto produto, int variacao) {
+        if (livro == null) return;
+        int quantidade = tipo == Movimento.Tipo.REMOVIDO ? 0 : produto.getQuantidade();
+        livro.registrar(tipo, produto.getNome(), variacao, quantidade, produto.getPreco());
+    }
+
+    /**
+     * Calcula a variação da quantidade entre o estado anterior e o novo estado de um produto.
+     * @param anterior O estado anterior (do cache), ou null se desconhecido.
+     * @param atual O novo estado.
+     * @return A variação; 0 se o estado anterior é desconhecido.
+     */
+    private static int variacao(Produto anterior, Produto atual) {
+        return anterior != null ? atual.getQuantidade() - anterior.getQuantidade() : 0;
+    }
+
+    /**
+     * Registra que o cache foi alterado: protege o produto de ser sobrescrito por uma
+     * reconciliação em andamento e agenda a gravação do snapshot. (A ordenação local é
+     * invalidada pelo próprio cache.)
+     * @param nome O nome do produto alterado.
+     */
+    private void registrarAlteracao(String nome) {
+        if (!reconciliado) alteradosDuranteReconciliacao.add(nome);
+        agendarGravacaoSnapshot();
+    }
+
+    /**
+     * Agenda a gravação do snapshot para quando o cache ficar algum tempo sem alterações.
+     * Uma sequência de alterações (ex: uma importação) resulta em uma única gravação.
+     */
+    private void agendarGravacaoSnapshot() {
+        if (arquivoSnapshot == null || !cacheCarregado) return;
+        ultimaAlteracaoCache = System.currentTimeMillis();
+        if (gravacaoSnapshotPendente.compareAndSet(false, true)) {
+            agendador.schedule(this::gravarSnapshotSeEstavel, ESPERA_GRAVACAO_SNAPSHOT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Grava o snapshot se o cache não foi alterado durante a espera; caso contrário, espera de novo.
+     */
+    private void gravarSnapshotSeEstavel() {
+        long desdeUltimaAlteracao = System.currentTimeMillis() - ultimaAlteracaoCache;
+        if (desdeUltimaAlteracao < ESPERA_GRAVACAO_SNAPSHOT_MS) {
+            agendador.schedule(this::gravarSnapshotSeEstavel,
+                ESPERA_GRAVACAO_SNAPSHOT_MS - desdeUltimaAlteracao, TimeUnit.MILLISECONDS);
+            return;
+        }
+        gravacaoSnapshotPendente.set(false);
+        gravarSnapshot();
+    }
+
+    /**
+     * Grava o conteúdo atual do cache no snapshot local.
+     */
+    private void gravarSnapshot() {
+        try {
+            SnapshotCatalogo.gravar(arquivoSnapshot, cache.values(), marcaReconciliacao);
+        } catch (IOException e) {
+            System.err.println("Não foi possível gravar o snapshot do catálogo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encerra as tarefas em segundo plano do estoque, gravando antes o snapshot se houver
+     * alterações ainda não gravadas, e fecha o repositório. Deve ser chamado ao fechar a aplicação.
+     */
+    public void fechar() {
+        if (livro != null) livro.close();
+        agendador.shutdownNow();
+        if (gravacaoSnapshotPendente.getAndSet(false)) {
+            gravarSnapshot();
+        }
+        executor.shutdown();
+        despachante.fechar();
+        repositorio.close();
+        metricas.retirarJmx();
+    }
+
+    /**
+     * Adiciona um novo produto ao estoque.
      * O nome do produto é armazenado em minúsculas para garantir unicidade e facilitar buscas.
      *
      * @param produto O objeto Produto a ser adicionado.
-     * @return true se o produto foi adicionado com sucesso, false caso contrário.
+     * @return true se o produto foi adicionado com sucesso.
+     * @throws RuntimeException Se o nome já existir ou a gravação no banco falhar.
      */
     public boolean adicionarProduto(Produto produto) {
-        try {
-            // Cria um documento MongoDB a partir do objeto Produto.
-            // O nome já vem em minúsculas do construtor de Produto.
-            Document doc = new Document()
-                .append("nome", produto.getNome())
-                .append("quantidade", produto.getQuantidade())
-                .append("preco", produto.getPreco());
-
-            // Insere o documento na coleção.
-            produtosCollection.insertOne(doc);
+        return metricas.medir("Estoque.adicionarProduto", () -> {
+            // Grava o produto; o nome já vem em minúsculas do construtor de Produto.
+            repositorio.inserir(produto);
+            // Mantém o cache e o índice de nomes consistentes com o banco (write-through).
+            registrarNoCache(produto);
+            lancar(Movimento.Tipo.ADICIONADO, produto, produto.getQuantidade());
             // Notifica os listeners sobre a alteração no estoque.
-            notificarListeners();
+            notificarListeners(EstoqueEvento.adicionado(produto));
             return true;
-        } catch (Exception e) {
-            // Exibe uma mensagem de erro em caso de falha na adição.
-            JOptionPane.showMessageDialog(null,
-                "Erro ao adicionar produto: " + e.getMessage(),
-                "Erro no Banco de Dados",
-                JOptionPane.ERROR_MESSAGE);
-            return false;
-        }
+        });
+    }
+
+    /**
+     * Versão assíncrona de `adicionarProduto`. Erros são relatados aos `AtividadeListener`.
+     * @param produto O objeto Produto a ser adicionado.
+     * @return Um future concluído na EDT com o resultado da adição.
+     */
+    public CompletableFuture<Boolean> adicionarProdutoAsync(Produto produto) {
+        return executarAsync("adicionar o produto " + produto.getNome(), () -> adicionarProduto(produto));
     }
 
     /**
@@ -101,17 +853,30 @@ public class Estoque {
      * @return true se o produto foi removido com sucesso, false se não foi encontrado.
      */
     public boolean removerProduto(String nome) {
-        // Converte o nome para minúsculas antes de buscar para garantir a correspondência.
-        Bson filter = Filters.eq("nome", nome.toLowerCase());
-        // Executa a operação de exclusão.
-        var result = produtosCollection.deleteOne(filter);
-        // Verifica se algum documento foi excluído.
-        if (result.getDeletedCount() > 0) {
-            // Notifica os listeners sobre a alteração no estoque.
-            notificarListeners();
-            return true;
-        }
-        return false;
+        return metricas.medir("Estoque.removerProduto", () -> {
+            // Normaliza o nome antes de buscar para garantir a correspondência.
+            String chave = Produto.normalizarNome(nome);
+            // Executa a operação de exclusão e verifica se algum produto foi excluído.
+            if (repositorio.remover(chave)) {
+                // Remove o produto também do cache e do índice de nomes.
+                Produto removido = retirarDoCache(chave);
+                if (removido == null) removido = new Produto(chave, 0, 0);
+                lancar(Movimento.Tipo.REMOVIDO, removido, -removido.getQuantidade());
+                // Notifica os listeners sobre a alteração no estoque.
+                notificarListeners(EstoqueEvento.removido(removido));
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Versão assíncrona de `removerProduto`. Erros são relatados aos `AtividadeListener`.
+     * @param nome O nome do produto a ser removido.
+     * @return Um future concluído na EDT com o resultado da remoção.
+     */
+    public CompletableFuture<Boolean> removerProdutoAsync(String nome) {
+        return executarAsync("remover o produto " + nome, () -> removerProduto(nome));
     }
 
     /**
@@ -124,64 +889,721 @@ public class Estoque {
      * @return true se o produto foi atualizado com sucesso, false se não foi encontrado.
      */
     public boolean atualizarProduto(String nome, int quantidade, double preco) {
-        // Converte o nome para minúsculas antes de buscar.
-        Bson filter = Filters.eq("nome", nome.toLowerCase());
-        // Define as atualizações a serem aplicadas.
-        Bson updates = Updates.combine(
-            Updates.set("quantidade", quantidade),
-            Updates.set("preco", preco)
-        );
-
-        // Executa a operação de atualização.
-        var result = produtosCollection.updateOne(filter, updates);
-        // Verifica se algum documento foi modificado.
-        if (result.getModifiedCount() > 0) {
-            // Notifica os listeners sobre a alteração no estoque.
-            notificarListeners();
-            return true;
+        return metricas.medir("Estoque.atualizarProduto", () -> {
+            // Normaliza o nome antes de buscar.
+            String chave = Produto.normalizarNome(nome);
+            // Executa a operação de atualização e verifica se algum produto foi modificado.
+            if (repositorio.atualizar(chave, quantidade, preco)) {
+                // Substitui a entrada do cache pelo produto com os novos valores.
+                Produto atualizado = comPontoDoCache(new Produto(chave, quantidade, preco));
+                Produto anterior = registrarNoCache(atualizado);
+                lancar(Movimento.Tipo.ATUALIZADO, atualizado, variacao(anterior, atualizado));
+                // Notifica os listeners sobre a alteração no estoque.
+                notificarListeners(EstoqueEvento.atualizado(atualizado));
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Versão assíncrona de `atualizarProduto`. Erros são relatados aos `AtividadeListener`.
+     * @param nome O nome do produto a ser atualizado.
+     * @param quantidade A nova quantidade do produto.
+     * @param preco O novo preço do produto.
+     * @return Um future concluído na EDT com o resultado da atualização.
+     */
+    public CompletableFuture<Boolean> atualizarProdutoAsync(String nome, int quantidade, double preco) {
+        return executarAsync("atualizar o produto " + nome, () -> atualizarProduto(nome, quantidade, preco));
+    }
+
+    /**
+     * Registra a entrada de unidades de um produto. A quantidade é somada no próprio banco
+     * (no MongoDB, um `findOneAndUpdate` com `$inc`), em uma única ida ao servidor, de modo
+     * que entradas e saídas simultâneas de vários usuários não sobrescrevem umas às outras.
+     *
+     * @param nome O nome do produto.
+     * @param quantidade O número de unidades que entraram (positivo).
+     * @return O produto com a nova quantidade, ou null se o produto não foi encontrado
+     *         (ou se a nova quantidade não caberia em um int).
+     * @throws IllegalArgumentException Se a quantidade não for positiva.
+     */
+    public Produto registrarEntrada(String nome, int quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("A quantidade da entrada deve ser positiva.");
         }
-        return false;
+        return metricas.medir("Estoque.registrarEntrada", () -> movimentar(nome, quantidade));
+    }
+
+    /**
+     * Versão assíncrona de `registrarEntrada`. Erros são relatados aos `AtividadeListener`.
+     * @param nome O nome do produto.
+     * @param quantidade O número de unidades que entraram.
+     * @return Um future concluído na EDT com o produto atualizado, ou null se não foi encontrado.
+     */
+    public CompletableFuture<Produto> registrarEntradaAsync(String nome, int quantidade) {
+        return executarAsync("registrar a entrada do produto " + nome, () -> registrarEntrada(nome, quantidade));
+    }
+
+    /**
+     * Registra a saída de unidades de um produto. A subtração é feita no próprio banco e só
+     * acontece se houver estoque suficiente (filtro `quantidade >= n`), de modo que o estoque
+     * nunca fica negativo, mesmo com saídas simultâneas.
+     *
+     * @param nome O nome do produto.
+     * @param quantidade O número de unidades que saíram (positivo).
+     * @return O produto com a nova quantidade, ou null se o produto não foi encontrado
+     *         ou não tinha estoque suficiente.
+     * @throws IllegalArgumentException Se a quantidade não for positiva.
+     */
+    public Produto registrarSaida(String nome, int quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("A quantidade da saída deve ser positiva.");
+        }
+        return metricas.medir("Estoque.registrarSaida", () -> movimentar(nome, -quantidade));
+    }
+
+    /**
+     * Versão assíncrona de `registrarSaida`. Erros são relatados aos `AtividadeListener`.
+     * @param nome O nome do produto.
+     * @param quantidade O número de unidades que saíram.
+     * @return Um future concluído na EDT com o produto atualizado, ou null se não foi encontrado
+     *         ou não tinha estoque suficiente.
+     */
+    public CompletableFuture<Produto> registrarSaidaAsync(String nome, int quantidade) {
+        return executarAsync("registrar a saída do produto " + nome, () -> registrarSaida(nome, quantidade));
+    }
+
+    /**
+     * Aplica uma movimentação no repositório e, se aplicada, atualiza o cache com o produto
+     * devolvido pelo banco e notifica os listeners.
+     * @param nome O nome do produto.
+     * @param quantidade A quantidade a ser somada (negativa na saída).
+     * @return O produto com a nova quantidade, ou null se a movimentação não foi aplicada.
+     */
+    private Produto movimentar(String nome, int quantidade) {
+        Produto movimentado = repositorio.movimentar(Produto.normalizarNome(nome), quantidade);
+        if (movimentado != null) {
+            registrarNoCache(movimentado);
+            lancar(quantidade > 0 ? Movimento.Tipo.ENTRADA : Movimento.Tipo.SAIDA, movimentado, quantidade);
+            notificarListeners(EstoqueEvento.atualizado(movimentado));
+        }
+        return movimentado;
+    }
+
+    /**
+     * Define o ponto de reposição de um produto: abaixo dessa quantidade, o produto entra na
+     * lista de reposição (ver `listarAlertasReposicao`). O ponto é gravado com o produto.
+     *
+     * @param nome O nome do produto.
+     * @param pontoReposicao O novo ponto, ou `Produto.PONTO_REPOSICAO_PADRAO` para seguir o padrão.
+     * @return O produto com o novo ponto, ou null se o produto não foi encontrado.
+     */
+    public Produto definirPontoReposicao(String nome, int pontoReposicao) {
+        return metricas.medir("Estoque.definirPontoReposicao", () -> {
+            Produto alterado = repositorio.definirPontoReposicao(Produto.normalizarNome(nome), pontoReposicao);
+            if (alterado != null) {
+                // Não é uma movimentação: não vai para o livro, mas os ouvintes são avisados.
+                registrarNoCache(alterado);
+                notificarListeners(EstoqueEvento.atualizado(alterado));
+            }
+            return alterado;
+        });
+    }
+
+    /**
+     * Versão assíncrona de `definirPontoReposicao`. Erros são relatados aos `AtividadeListener`.
+     * @param nome O nome do produto.
+     * @param pontoReposicao O novo ponto, ou `Produto.PONTO_REPOSICAO_PADRAO`.
+     * @return Um future concluído na EDT com o produto alterado, ou null se não foi encontrado.
+     */
+    public CompletableFuture<Produto> definirPontoReposicaoAsync(String nome, int pontoReposicao) {
+        return executarAsync("definir o ponto de reposição do produto " + nome,
+            () -> definirPontoReposicao(nome, pontoReposicao));
+    }
+
+    /**
+     * Aplica um lote de adições, remoções e atualizações de uma só vez (no MongoDB, com um
+     * único `bulkWrite`). Cada operação recebe um resultado próprio: adições de nomes
+     * existentes e remoções ou atualizações de nomes inexistentes falham sem impedir as demais.
+     * Os listeners recebem uma única notificação com todos os eventos do lote.
+     *
+     * @param operacoes As operações do lote.
+     * @param transacional Se true, o lote é aplicado em uma transação: ou todas as operações
+     *                     são aplicadas, ou nenhuma. No MongoDB, exige um servidor em replica set.
+     * @return Um resultado para cada operação, na mesma ordem da lista.
+     * @throws RuntimeException Se a comunicação com o banco (ou a transação) falhar.
+     */
+    public List<OperacaoEstoque.Resultado> executarLote(List<OperacaoEstoque> operacoes, boolean transacional) {
+        return metricas.medir("Estoque.executarLote", () -> {
+            if (operacoes.isEmpty()) return List.of();
+            // O cache só é atualizado depois que o repositório concluiu (e, se for o caso, confirmou) o lote.
+            List<OperacaoEstoque.Resultado> resultados = repositorio.executarLote(operacoes, transacional);
+
+            // Atualiza o cache e monta os eventos apenas com as operações aplicadas.
+            List<EstoqueEvento> eventos = new ArrayList<>();
+            for (OperacaoEstoque.Resultado resultado : resultados) {
+                if (!resultado.isSucesso()) continue;
+                OperacaoEstoque op = resultado.getOperacao();
+                switch (op.getTipo()) {
+                    case ADICIONAR:
+                        registrarNoCache(op.getProduto());
+                        lancar(Movimento.Tipo.ADICIONADO, op.getProduto(), op.getProduto().getQuantidade());
+                        eventos.add(EstoqueEvento.adicionado(op.getProduto()));
+                        break;
+                    case REMOVER:
+                        Produto removido = retirarDoCache(op.getNome());
+                        if (removido == null) removido = op.getProduto();
+                        lancar(Movimento.Tipo.REMOVIDO, removido, -removido.getQuantidade());
+                        eventos.add(EstoqueEvento.removido(removido));
+                        break;
+                    case ATUALIZAR:
+                        Produto atualizado = comPontoDoCache(op.getProduto());
+                        Produto anterior = registrarNoCache(atualizado);
+                        lancar(Movimento.Tipo.ATUALIZADO, atualizado, variacao(anterior, atualizado));
+                        eventos.add(EstoqueEvento.atualizado(atualizado));
+                        break;
+                }
+            }
+            if (!eventos.isEmpty()) {
+                notificarListeners(eventos);
+            }
+            return resultados;
+        });
+    }
+
+    /**
+     * Versão assíncrona de `executarLote`. Erros são relatados aos `AtividadeListener`.
+     * @param operacoes As operações do lote.
+     * @param transacional Se true, o lote é aplicado em uma transação.
+     * @return Um future concluído na EDT com o resultado de cada operação.
+     */
+    public CompletableFuture<List<OperacaoEstoque.Resultado>> executarLoteAsync(List<OperacaoEstoque> operacoes, boolean transacional) {
+        return executarAsync("aplicar um lote de " + operacoes.size() + " operações",
+            () -> executarLote(operacoes, transacional));
+    }
+
+    /**
+     * Grava um grande volume de produtos de uma vez, como na importação de um catálogo.
+     * Os produtos são enviados em lotes (no MongoDB, `bulkWrite` não ordenado), com upsert pelo nome:
+     * produtos novos são inseridos e os existentes têm quantidade e preço substituídos.
+     * Em vez de um evento por produto, os listeners recebem um único evento RECARREGADO ao
+     * final, mesmo que a importação seja interrompida no meio por uma exceção.
+     *
+     * @param produtos Os produtos a serem gravados, consumidos uma única vez.
+     * @param tamanhoLote O número de produtos enviados ao servidor por comando.
+     * @param aoRejeitar Recebe cada produto recusado pelo servidor e a mensagem do erro.
+     * @return O número de produtos gravados (inseridos ou atualizados).
+     * @throws RuntimeException Se a comunicação com o banco falhar.
+     */
+    public long importarProdutos(Iterator<Produto> produtos, int tamanhoLote, BiConsumer<Produto, String> aoRejeitar) {
+        return metricas.medir("Estoque.importarProdutos", () -> {
+            if (tamanhoLote <= 0) {
+                throw new IllegalArgumentException("O tamanho do lote deve ser positivo.");
+            }
+            long gravados = 0;
+            List<Produto> lote = new ArrayList<>(tamanhoLote);
+            try {
+                while (produtos.hasNext()) {
+                    lote.add(produtos.next());
+                    if (lote.size() == tamanhoLote) {
+                        gravados += gravarLote(lote, aoRejeitar);
+                        lote.clear();
+                    }
+                }
+                if (!lote.isEmpty()) {
+                    gravados += gravarLote(lote, aoRejeitar);
+                }
+            } finally {
+                if (gravados > 0) {
+                    notificarListeners(EstoqueEvento.recarregado());
+                }
+            }
+            return gravados;
+        });
+    }
+
+    /**
+     * Envia um lote de upserts ao repositório e atualiza o cache com os produtos aceitos.
+     * Um produto recusado não impede a gravação dos demais.
+     * @param lote Os produtos do lote.
+     * @param aoRejeitar Recebe cada produto recusado pelo banco e a mensagem do erro.
+     * @return O número de produtos gravados no lote.
+     */
+    private long gravarLote(List<Produto> lote, BiConsumer<Produto, String> aoRejeitar) {
+        Set<Produto> recusados = Collections.newSetFromMap(new IdentityHashMap<>());
+        long gravados = repositorio.gravarLote(lote, (produto, motivo) -> {
+            recusados.add(produto);
+            aoRejeitar.accept(produto, motivo);
+        });
+        for (Produto p : lote) {
+            if (!recusados.contains(p)) {
+                Produto gravado = comPontoDoCache(p);
+                Produto anterior = registrarNoCache(gravado);
+                lancar(Movimento.Tipo.IMPORTADO, gravado, anterior != null ? variacao(anterior, gravado) : gravado.getQuantidade());
+            }
+        }
+        return gravados;
     }
 
     /**
      * Lista todos os produtos atualmente no estoque.
+     * Os produtos são servidos do cache em memória; o banco só é consultado na primeira chamada.
      *
      * @return Uma lista de objetos Produto.
      */
     public List<Produto> listarProdutos() {
-        List<Produto> produtos = new ArrayList<>();
-        // Itera sobre todos os documentos na coleção de produtos e os converte em objetos Produto.
-        produtosCollection.find().forEach(doc ->
-            produtos.add(new Produto(
-                doc.getString("nome"),
-                doc.getInteger("quantidade"),
-                doc.getDouble("preco")
-            ))
-        );
-        return produtos;
+        return metricas.medir("Estoque.listarProdutos", () -> {
+            carregarCache();
+            return cache.values();
+        });
+    }
+
+    /**
+     * Versão assíncrona de `listarProdutos`. A primeira chamada carrega o cache fora da EDT.
+     * @return Um future concluído na EDT com a lista de produtos.
+     */
+    public CompletableFuture<List<Produto>> listarProdutosAsync() {
+        return executarAsync("listar os produtos", this::listarProdutos);
+    }
+
+    /**
+     * Lista os produtos cujo nome começa com um prefixo e cuja quantidade é pelo menos a mínima.
+     * O filtro é executado pelo banco; no MongoDB, sobre o índice composto (nome, quantidade, preco),
+     * lendo apenas o índice.
+     *
+     * @param prefixoNome O prefixo do nome (será normalizado); vazio para não filtrar por nome.
+     * @param quantidadeMinima A quantidade mínima; 0 para não filtrar por quantidade.
+     * @return Uma lista com os produtos que atendem aos filtros, em ordem alfabética.
+     */
+    public List<Produto> listarProdutos(String prefixoNome, int quantidadeMinima) {
+        return metricas.medir("Estoque.listarProdutosFiltrados", () -> {
+            List<Produto> produtos = new ArrayList<>();
+            repositorio.percorrer(ConsultaProdutos.todos().comFiltros(prefixoNome, quantidadeMinima), 1000, produtos::add);
+            return produtos;
+        });
+    }
+
+    /**
+     * Versão assíncrona de `listarProdutos(String, int)`.
+     * @param prefixoNome O prefixo do nome; vazio para não filtrar por nome.
+     * @param quantidadeMinima A quantidade mínima; 0 para não filtrar por quantidade.
+     * @return Um future concluído na EDT com a lista de produtos filtrados.
+     */
+    public CompletableFuture<List<Produto>> listarProdutosAsync(String prefixoNome, int quantidadeMinima) {
+        return executarAsync("listar os produtos", () -> listarProdutos(prefixoNome, quantidadeMinima));
+    }
+
+    /**
+     * Conta os produtos que atendem aos filtros de uma consulta.
+     * No MongoDB, sem filtros, usa a contagem estimada da coleção, que não percorre o índice.
+     *
+     * @param consulta A consulta com os filtros.
+     * @return O número de produtos que atendem aos filtros.
+     */
+    public long contarProdutos(ConsultaProdutos consulta) {
+        return metricas.medir("Estoque.contarProdutos", () -> {
+            if (usarCatalogoLocal()) {
+                return (long) ordenarLocal(consulta).getTamanho();
+            }
+            return repositorio.contar(consulta);
+        });
+    }
+
+    /**
+     * Versão assíncrona de `contarProdutos`.
+     * @param consulta A consulta com os filtros.
+     * @return Um future concluído na EDT com o número de produtos.
+     */
+    public CompletableFuture<Long> contarProdutosAsync(ConsultaProdutos consulta) {
+        return executarAsync("contar os produtos", () -> contarProdutos(consulta));
+    }
+
+    /**
+     * Lista uma página de produtos usando paginação por chave (keyset): a página começa logo
+     * após o último produto da página anterior, na ordem da consulta. A ordenação é feita pelo
+     * banco sobre o índice do campo de ordenação, com o nome como desempate.
+     *
+     * @param consulta A consulta com filtros e ordenação.
+     * @param apos O último produto da página anterior, ou null para a primeira página.
+     * @param tamanho O número máximo de produtos da página.
+     * @return Os produtos da página, na ordem da consulta.
+     */
+    public List<Produto> listarPagina(ConsultaProdutos consulta, Produto apos, int tamanho) {
+        return metricas.medir("Estoque.listarPaginaPorChave", () -> {
+            if (usarCatalogoLocal()) {
+                return paginaLocal(consulta, apos, 0, tamanho);
+            }
+            return repositorio.listarPagina(consulta, apos, tamanho);
+        });
+    }
+
+    /**
+     * Lista uma página de produtos a partir de uma posição absoluta.
+     * Usado apenas quando não se conhece o último produto da página anterior (ex.: o usuário
+     * arrastou a barra de rolagem para longe); as páginas seguintes voltam a usar `listarPagina`
+     * por chave, que não precisa percorrer os produtos anteriores.
+     *
+     * @param consulta A consulta com filtros e ordenação.
+     * @param deslocamento O número de produtos a pular.
+     * @param tamanho O número máximo de produtos da página.
+     * @return Os produtos da página, na ordem da consulta.
+     */
+    public List<Produto> listarPagina(ConsultaProdutos consulta, long deslocamento, int tamanho) {
+        return metricas.medir("Estoque.listarPaginaPorDeslocamento", () -> {
+            if (usarCatalogoLocal()) {
+                return paginaLocal(consulta, null, deslocamento, tamanho);
+            }
+            return repositorio.listarPagina(consulta, deslocamento, tamanho);
+        });
+    }
+
+    /**
+     * Versão assíncrona de `listarPagina(ConsultaProdutos, Produto, int)`.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param apos O último produto da página anterior, ou null para a primeira página.
+     * @param tamanho O número máximo de produtos da página.
+     * @return Um future concluído na EDT com os produtos da página.
+     */
+    public CompletableFuture<List<Produto>> listarPaginaAsync(ConsultaProdutos consulta, Produto apos, int tamanho) {
+        return executarAsync("carregar os produtos", () -> listarPagina(consulta, apos, tamanho));
+    }
+
+    /**
+     * Versão assíncrona de `listarPagina(ConsultaProdutos, long, int)`.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param deslocamento O número de produtos a pular.
+     * @param tamanho O número máximo de produtos da página.
+     * @return Um future concluído na EDT com os produtos da página.
+     */
+    public CompletableFuture<List<Produto>> listarPaginaAsync(ConsultaProdutos consulta, long deslocamento, int tamanho) {
+        return executarAsync("carregar os produtos", () -> listarPagina(consulta, deslocamento, tamanho));
+    }
+
+    /**
+     * Calcula o resumo da valorização do estoque: valor total, número de itens, total de
+     * unidades e a distribuição por faixa de preço. O resumo vem dos totais mantidos pelo
+     * cache a cada alteração (ver `TotaisEstoque`), sem percorrer os produtos; só a primeira
+     * chamada, se o cache ainda não foi carregado, lê os produtos do banco.
+     *
+     * @return O resumo do estoque.
+     */
+    public ResumoEstoque calcularResumo() {
+        return metricas.medir("Estoque.calcularResumo", () -> {
+            carregarCache();
+            return cache.getTotais().getResumo();
+        });
+    }
+
+    /**
+     * Obtém os totais do estoque em centavos, carregando o cache se necessário. Ao contrário
+     * do resumo, que converte os valores para reais, os totais podem ser somados sem erros de
+     * arredondamento (ex.: os de vários armazéns, ver `Armazens.calcularResumo`).
+     *
+     * @return Uma cópia dos totais atuais.
+     */
+    public TotaisEstoque calcularTotais() {
+        return metricas.medir("Estoque.calcularTotais", () -> {
+            carregarCache();
+            return cache.getTotais();
+        });
+    }
+
+    /**
+     * Versão assíncrona de `calcularResumo`.
+     * @return Um future concluído na EDT com o resumo do estoque.
+     */
+    public CompletableFuture<ResumoEstoque> calcularResumoAsync() {
+        return executarAsync("calcular o resumo do estoque", this::calcularResumo);
+    }
+
+    /**
+     * Percorre todos os produtos de uma consulta, entregando um produto por vez. Os produtos
+     * chegam do banco em lotes (no MongoDB, por um cursor), de modo que a memória usada não
+     * depende do tamanho do catálogo. Para interromper, a ação pode lançar uma exceção
+     * não verificada; o cursor é fechado em qualquer caso.
+     *
+     * @param consulta A consulta com filtros e ordenação.
+     * @param tamanhoLote O número de produtos buscados do banco por vez.
+     * @param acao A ação executada para cada produto, na ordem da consulta.
+     * @return O número de produtos percorridos.
+     */
+    public long percorrerProdutos(ConsultaProdutos consulta, int tamanhoLote, Consumer<Produto> acao) {
+        return metricas.medir("Estoque.percorrerProdutos", () -> repositorio.percorrer(consulta, tamanhoLote, acao));
+    }
+
+    /**
+     * Verifica, com o plano de execução (explain) do MongoDB, se a consulta filtrada
+     * é respondida apenas pelo índice, sem ler documentos da coleção.
+     * Só se aplica ao repositório MongoDB.
+     *
+     * @param prefixoNome O prefixo do nome usado na consulta.
+     * @param quantidadeMinima A quantidade mínima usada na consulta.
+     * @return true se a consulta é coberta pelo índice; false se não for, ou se o repositório não for o MongoDB.
+     */
+    public boolean verificarConsultaCoberta(String prefixoNome, int quantidadeMinima) {
+        return metricas.medir("Estoque.verificarConsultaCoberta", () ->
+            repositorio instanceof RepositorioMongo mongo && mongo.verificarConsultaCoberta(prefixoNome, quantidadeMinima));
     }
 
     /**
      * Busca um produto no estoque pelo seu nome.
-     * A busca é insensível a maiúsculas/minúsculas devido à conversão do nome para minúsculas.
+     * A busca é insensível a maiúsculas/minúsculas e é respondida pelo cache em memória.
+     * Como o cache é autoritativo, um nome ausente do cache não existe no banco.
      *
      * @param nome O nome do produto a ser buscado.
      * @return O objeto Produto se encontrado, ou null se não for encontrado.
      */
     public Produto buscarProduto(String nome) {
-        // Converte o nome para minúsculas antes de buscar.
-        Bson filter = Filters.eq("nome", nome.toLowerCase());
-        // Encontra o primeiro documento que corresponde ao filtro.
-        Document doc = produtosCollection.find(filter).first();
-
-        // Se um documento for encontrado, cria e retorna um objeto Produto.
-        if (doc != null) {
-            return new Produto(
-                doc.getString("nome"),
-                doc.getInteger("quantidade"),
-                doc.getDouble("preco")
-            );
-        }
-        return null;
-    }
-}
\ No newline at end of file
+        return metricas.medir("Estoque.buscarProduto", () -> {
+            carregarCache();
+            Produto produto = cache.get(Produto.normalizarNome(nome));
+            // Contabiliza o acerto ou a falta para fins de diagnóstico.
+            (produto != null ? cacheHits : cacheMisses).incrementAndGet();
+            return produto;
+        });
+    }
+
+    /**
+     * Versão assíncrona de `buscarProduto`.
+     * @param nome O nome do produto a ser buscado.
+     * @return Um future concluído na EDT com o produto, ou null se não for encontrado.
+     */
+    public CompletableFuture<Produto> buscarProdutoAsync(String nome) {
+        return executarAsync("buscar o produto " + nome, () -> buscarProduto(nome));
+    }
+
+    /**
+     * Consulta o índice local de nomes, sem acessar o banco e sem bloquear.
+     * Na primeira chamada, inicia em segundo plano a carga do índice; até que ela termine,
+     * a resposta é sempre INCERTO. Respostas INCERTO devem ser confirmadas com `existeNoBancoAsync`.
+     * @param nome O nome do produto.
+     * @return EXISTE, NAO_EXISTE ou INCERTO.
+     */
+    public IndiceNomes.Resposta verificarNome(String nome) {
+        return metricas.medir("Estoque.verificarNome", () -> {
+            if (!indiceNomes.isCarregado() && indiceNomesCarregando.compareAndSet(false, true)) {
+                executor.execute(this::carregarIndiceNomes);
+            }
+            return indiceNomes.consultar(Produto.normalizarNome(nome));
+        });
+    }
+
+    /**
+     * Confirma no banco se um nome existe. Usado quando o índice local não sabe responder;
+     * se o nome existir, ele é acrescentado ao índice (pode ter sido gravado por outra instância).
+     * @param nome O nome do produto.
+     * @return Um future concluído na EDT com true se o produto existe no banco.
+     */
+    public CompletableFuture<Boolean> existeNoBancoAsync(String nome) {
+        String chave = Produto.normalizarNome(nome);
+        return executarAsync("verificar o produto " + chave, () -> {
+            // No MongoDB, uma contagem limitada a 1 sobre o índice único: não lê o documento.
+            boolean existe = metricas.medir("Estoque.existeNoBanco", () -> repositorio.existe(chave));
+            if (existe) indiceNomes.adicionar(chave);
+            return existe;
+        });
+    }
+
+    /**
+     * Lê todos os nomes do banco (no MongoDB, apenas do índice único) e carrega
+     * o índice local. Se o estoque for alterado durante a leitura, a leitura é repetida.
+     */
+    private void carregarIndiceNomes() {
+        try {
+            boolean carregado;
+            do {
+                long versao = indiceNomes.getVersao();
+                List<String> nomes = new ArrayList<>();
+                repositorio.paraCadaNome(nomes::add);
+                carregado = indiceNomes.carregar(nomes, versao);
+            } while (!carregado);
+        } catch (RuntimeException e) {
+            // Sem o índice, as respostas continuam INCERTO; a próxima consulta tenta carregar de novo.
+            indiceNomesCarregando.set(false);
+        }
+    }
+
+    /**
+     * Busca os produtos cujo nome mais se parece com um texto, tolerando acentos, trechos do
+     * nome e erros de digitação (ver `IndiceTrigramas`). A busca é respondida pelo índice em
+     * memória; a primeira chamada carrega o cache, se necessário, e indexa os nomes.
+     *
+     * @param texto O texto digitado, com pelo menos `IndiceTrigramas.TAMANHO_MINIMO_BUSCA` letras ou dígitos.
+     * @param quantidadeMinima A quantidade mínima; 0 para não filtrar por quantidade.
+     * @param limite O número máximo de produtos.
+     * @return Os produtos, do mais ao menos parecido; vazio se o texto for curto demais.
+     */
+    public List<Produto> buscarAproximado(String texto, int quantidadeMinima, int limite) {
+        return metricas.medir("Estoque.buscarAproximado", () -> {
+            carregarCache();
+            while (!indiceBusca.isCarregado()) {
+                long versao = indiceBusca.getVersao();
+                List<String> nomes = new ArrayList<>(cache.size());
+                cache.forEach(p -> nomes.add(p.getNome()));
+                indiceBusca.carregar(nomes, versao);
+            }
+            // Com filtro de quantidade, pede mais nomes para compensar os descartados.
+            List<String> nomes = indiceBusca.buscar(texto, quantidadeMinima > 0 ? limite * 4 : limite);
+            List<Produto> produtos = new ArrayList<>(Math.min(nomes.size(), limite));
+            for (String nome : nomes) {
+                Produto produto = cache.get(nome);
+                if (produto != null && produto.getQuantidade() >= quantidadeMinima) produtos.add(produto);
+                if (produtos.size() == limite) break;
+            }
+            return produtos;
+        });
+    }
+
+    /**
+     * Versão assíncrona de `buscarAproximado`.
+     * @param texto O texto digitado.
+     * @param quantidadeMinima A quantidade mínima; 0 para não filtrar por quantidade.
+     * @param limite O número máximo de produtos.
+     * @return Um future concluído na EDT com os produtos encontrados.
+     */
+    public CompletableFuture<List<Produto>> buscarAproximadoAsync(String texto, int quantidadeMinima, int limite) {
+        return executarAsync("buscar os produtos", () -> buscarAproximado(texto, quantidadeMinima, limite));
+    }
+
+    /**
+     * Retorna quantas buscas por nome encontraram o produto no cache.
+     * @return O número de acertos do cache.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Retorna quantas buscas por nome não encontraram o produto no cache.
+     * @return O número de faltas do cache.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Obtém os totais do estoque (valor, unidades, itens e faixas de preço) sem percorrer os
+     * produtos nem acessar o banco, para exibição em barras de status e cabeçalhos.
+     * Antes da carga do cache, devolve os totais gravados no snapshot, se houver.
+     * @return Os totais, ou null se o cache ainda não foi carregado e não há snapshot com totais.
+     */
+    public TotaisEstoque getTotais() {
+        if (cacheCarregado) return cache.getTotais();
+        if (!totaisSnapshotLidos && arquivoSnapshot != null) {
+            try {
+                totaisSnapshot = SnapshotCatalogo.lerTotais(arquivoSnapshot);
+            } catch (IOException e) {
+                // Sem os totais do snapshot, eles aparecem quando o cache for carregado.
+            }
+            totaisSnapshotLidos = true;
+        }
+        return totaisSnapshot;
+    }
+
+    /**
+     * Recalcula os totais percorrendo o cache e corrige os totais mantidos incrementalmente,
+     * se divergirem. Executado periodicamente (`estoque.totais.conferencia.minutos`, padrão 10).
+     */
+    private void conferirTotais() {
+        if (!cacheCarregado) return;
+        TotaisEstoque divergentes = metricas.medir("Estoque.conferirTotais", cache::conferirTotais);
+        conferenciasTotais.incrementAndGet();
+        if (divergentes != null) {
+            divergenciasTotais.incrementAndGet();
+            System.err.println("Totais do estoque divergentes (" + divergentes + "); corrigidos pela recontagem.");
+        }
+    }
+
+    /**
+     * Obtém o número de recontagens dos totais feitas desde o início.
+     * @return O número de conferências.
+     */
+    public long getConferenciasTotais() {
+        return conferenciasTotais.get();
+    }
+
+    /**
+     * Obtém o número de recontagens que encontraram os totais divergentes (e os corrigiram).
+     * @return O número de divergências.
+     */
+    public long getDivergenciasTotais() {
+        return divergenciasTotais.get();
+    }
+
+    /**
+     * Obtém o ponto de reposição usado pelos produtos sem ponto próprio.
+     * @return O ponto padrão.
+     */
+    public int getPontoReposicaoPadrao() {
+        return cache.getPontoPadrao();
+    }
+
+    /**
+     * Substitui o ponto de reposição padrão nesta execução (o valor inicial vem de
+     * `estoque.reposicao.padrao`). Reavalia os alertas dos produtos que seguem o padrão e
+     * avisa os ouvintes com um evento RECARREGADO.
+     * @param ponto O novo ponto padrão (0 desativa os alertas desses produtos).
+     */
+    public void definirPontoReposicaoPadrao(int ponto) {
+        cache.definirPontoPadrao(ponto);
+        notificarListeners(EstoqueEvento.recarregado());
+    }
+
+    /**
+     * Obtém a versão local do catálogo: um número que muda a cada alteração do cache, feita
+     * por esta instância ou recebida de outra pela sincronização, sem acessar o banco.
+     * Só é comparável dentro da mesma execução do programa.
+     * @return O número de alterações do cache desde o início.
+     */
+    public long getVersaoLocal() {
+        return cache.getModificacoes();
+    }
+
+    /**
+     * Obtém o número de produtos abaixo do ponto de reposição. Os alertas são mantidos pelo
+     * cache a cada alteração, de modo que a contagem é imediata, sem percorrer os produtos.
+     * @return O número de alertas, ou -1 se o cache ainda não foi carregado.
+     */
+    public int contarAlertasReposicao() {
+        return cacheCarregado ? cache.contarAlertas() : -1;
+    }
+
+    /**
+     * Obtém o produto mais urgente da lista de reposição, sem percorrer os produtos.
+     * @return O produto que mais unidades está abaixo do seu ponto, ou null se não há alertas
+     *         ou o cache ainda não foi carregado.
+     */
+    public AlertasReposicao.Item getAlertaMaisUrgente() {
+        return cacheCarregado ? cache.alertaMaisUrgente() : null;
+    }
+
+    /**
+     * Monta a lista de reposição: os produtos abaixo do ponto de reposição, do que mais
+     * falta ao que menos falta. Carrega o cache, se necessário; depois, só os produtos em
+     * alerta são lidos.
+     * @return Os itens da lista.
+     */
+    public List<AlertasReposicao.Item> listarAlertasReposicao() {
+        return metricas.medir("Estoque.listarAlertasReposicao", () -> {
+            carregarCache();
+            return cache.listarAlertas();
+        });
+    }
+
+    /**
+     * Versão assíncrona de `listarAlertasReposicao`.
+     * @return Um future concluído na EDT com os itens da lista.
+     */
+    public CompletableFuture<List<AlertasReposicao.Item>> listarAlertasReposicaoAsync() {
+        return executarAsync("montar a lista de reposição", this::listarAlertasReposicao);
+    }
+
+    /**
+     * Descreve a memória ocupada pelo cache de produtos, total e por milhão de produtos.
+     * @return A descrição (ver `CatalogoColunar.descreverMemoria`).
+     */
+    public String getMemoriaCache() {
+        return cache.descreverMemoria();
+    }
+}
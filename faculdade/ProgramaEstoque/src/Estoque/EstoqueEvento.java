@@ -0,0 +1,98 @@
+package Estoque;
+
+/**
+ * Representa uma alteração ocorrida no estoque, entregue aos `Estoque.EstoqueListener`.
+ * Cada evento informa o tipo da alteração e o produto afetado, permitindo que os ouvintes
+ * apliquem apenas a diferença em vez de recarregar todos os produtos.
+ * @author Leandro
+ */
+public final class EstoqueEvento {
+
+    /**
+     * Tipos de alteração possíveis no estoque.
+     */
+    public enum Tipo {
+        /** Um novo produto foi adicionado. */
+        ADICIONADO,
+        /** Um produto foi removido. */
+        REMOVIDO,
+        /** A quantidade e/ou o preço de um produto existente foram alterados. */
+        ATUALIZADO,
+        /** Muitos produtos foram alterados de uma vez (ex: importação); os ouvintes devem recarregar tudo. */
+        RECARREGADO
+    }
+
+    private final Tipo tipo; // Tipo da alteração
+    private final Produto produto; // Produto afetado (para REMOVIDO, o último estado conhecido; null para RECARREGADO)
+
+    /**
+     * Construtor privado; use os métodos de fábrica `adicionado`, `removido`, `atualizado` e `recarregado`.
+     * @param tipo O tipo da alteração.
+     * @param produto O produto afetado.
+     */
+    private EstoqueEvento(Tipo tipo, Produto produto) {
+        this.tipo = tipo;
+        this.produto = produto;
+    }
+
+    /**
+     * Cria um evento de produto adicionado.
+     * @param produto O produto adicionado.
+     * @return O evento criado.
+     */
+    public static EstoqueEvento adicionado(Produto produto) {
+        return new EstoqueEvento(Tipo.ADICIONADO, produto);
+    }
+
+    /**
+     * Cria um evento de produto removido.
+     * @param produto O produto removido.
+     * @return O evento criado.
+     */
+    public static EstoqueEvento removido(Produto produto) {
+        return new EstoqueEvento(Tipo.REMOVIDO, produto);
+    }
+
+    /**
+     * Cria um evento de produto atualizado.
+     * @param produto O produto com os novos valores.
+     * @return O evento criado.
+     */
+    public static EstoqueEvento atualizado(Produto produto) {
+        return new EstoqueEvento(Tipo.ATUALIZADO, produto);
+    }
+
+    /**
+     * Cria um evento de recarga, usado quando uma operação em massa altera produtos demais
+     * para que valha a pena descrever cada um.
+     * @return O evento criado, sem produto associado.
+     */
+    public static EstoqueEvento recarregado() {
+        return new EstoqueEvento(Tipo.RECARREGADO, null);
+    }
+
+    /**
+     * Obtém o tipo da alteração.
+     * @return O tipo do evento.
+     */
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Obtém o produto afetado pela alteração.
+     * @return O produto afetado, ou null se o evento for do tipo RECARREGADO.
+     */
+    public Produto getProduto() {
+        return produto;
+    }
+
+    /**
+     * Retorna uma representação em string do evento.
+     * @return Uma string no formato "TIPO: [produto]".
+     */
+    @Override
+    public String toString() {
+        return produto == null ? tipo.toString() : tipo + ": " + produto;
+    }
+}
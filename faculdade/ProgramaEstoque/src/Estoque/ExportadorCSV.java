@@ -0,0 +1,246 @@
+package Estoque;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Escreve produtos em um arquivo CSV no formato do relatório: UTF-8 com BOM, ';' como
+ * delimitador, nome entre aspas e valores monetários com vírgula decimal.
+ * As linhas são formatadas diretamente em um buffer de bytes grande, sem criar Strings
+ * intermediárias, e o buffer é descarregado em um `FileChannel` (opcionalmente comprimido
+ * com gzip). O uso de memória é constante, independentemente do número de linhas.
+ * A lista de reposição (ver `AlertasReposicao`) é exportada no mesmo formato, com as colunas
+ * próprias dela (`paraReposicao`).
+ * @author Leandro
+ */
+public class ExportadorCSV implements Closeable {
+    private static final int TAMANHO_BUFFER = 1 << 20; // 1 MiB
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] CABECALHO =
+        "\"Produto\";\"Quantidade\";\"Preço Unitário\";\"Valor Total\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CABECALHO_REPOSICAO =
+        "\"Produto\";\"Quantidade\";\"Ponto de Reposição\";\"Falta\";\"Preço Unitário\";\"Custo da Reposição\""
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIM_LINHA = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    // Maior linha possível para um caractere do nome (4 bytes UTF-8, ou 2 aspas) mais os campos numéricos.
+    private static final int RESERVA_CAMPOS = 80;
+
+    private final WritableByteChannel canal; // Destino final (arquivo ou gzip sobre o arquivo)
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+    private final byte[] digitos = new byte[20]; // Área de trabalho para converter números em dígitos
+    private long linhas = 0; // Linhas de produtos já escritas
+
+    /**
+     * Abre o arquivo de destino e escreve o BOM e o cabeçalho.
+     * @param arquivo O arquivo a ser criado (ou sobrescrito).
+     * @param gzip true para comprimir a saída com gzip.
+     * @throws IOException Se o arquivo não puder ser criado.
+     */
+    public ExportadorCSV(Path arquivo, boolean gzip) throws IOException {
+        this(arquivo, gzip, CABECALHO);
+    }
+
+    /**
+     * Abre o arquivo de destino e escreve o BOM e o cabeçalho informado.
+     * @param arquivo O arquivo a ser criado (ou sobrescrito).
+     * @param gzip true para comprimir a saída com gzip.
+     * @param cabecalho A linha de cabeçalho, em UTF-8.
+     * @throws IOException Se o arquivo não puder ser criado.
+     */
+    private ExportadorCSV(Path arquivo, boolean gzip, byte[] cabecalho) throws IOException {
+        FileChannel arquivoCanal = FileChannel.open(arquivo,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.canal = gzip
+            ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(arquivoCanal), 1 << 16))
+            : arquivoCanal;
+        // Escreve o Byte Order Mark (BOM) para garantir que o CSV seja aberto corretamente em programas como Excel.
+        buffer.put(BOM);
+        buffer.put(cabecalho);
+        buffer.put(FIM_LINHA);
+    }
+
+    /**
+     * Abre um arquivo para a lista de reposição, com o cabeçalho das suas colunas.
+     * As linhas devem ser escritas com `escrever(AlertasReposicao.Item)`.
+     * @param arquivo O arquivo a ser criado (ou sobrescrito).
+     * @param gzip true para comprimir a saída com gzip.
+     * @return O exportador.
+     * @throws IOException Se o arquivo não puder ser criado.
+     */
+    public static ExportadorCSV paraReposicao(Path arquivo, boolean gzip) throws IOException {
+        return new ExportadorCSV(arquivo, gzip, CABECALHO_REPOSICAO);
+    }
+
+    /**
+     * Escreve a linha de um produto: nome (com aspas duplicadas), quantidade, preço e valor total.
+     * @param p O produto a ser escrito.
+     * @throws IOException Se a escrita no arquivo falhar.
+     */
+    public void escrever(Produto p) throws IOException {
+        String nome = p.getNome();
+        garantirEspaco(nome.length() * 4 + RESERVA_CAMPOS);
+
+        buffer.put((byte) '"');
+        escreverTexto(nome);
+        buffer.put((byte) '"').put((byte) ';');
+        escreverInteiro(p.getQuantidade());
+        buffer.put((byte) ';');
+        escreverMoeda(p.getPreco());
+        buffer.put((byte) ';');
+        escreverMoeda(p.getQuantidade() * p.getPreco());
+        buffer.put(FIM_LINHA);
+        linhas++;
+    }
+
+    /**
+     * Escreve a linha de um item da lista de reposição: nome, quantidade, ponto de reposição,
+     * falta, preço e custo da reposição.
+     * @param item O item a ser escrito.
+     * @throws IOException Se a escrita no arquivo falhar.
+     */
+    public void escrever(AlertasReposicao.Item item) throws IOException {
+        Produto p = item.getProduto();
+        String nome = p.getNome();
+        garantirEspaco(nome.length() * 4 + RESERVA_CAMPOS * 2);
+
+        buffer.put((byte) '"');
+        escreverTexto(nome);
+        buffer.put((byte) '"').put((byte) ';');
+        escreverInteiro(p.getQuantidade());
+        buffer.put((byte) ';');
+        escreverInteiro(item.getPonto());
+        buffer.put((byte) ';');
+        escreverInteiro(item.getFalta());
+        buffer.put((byte) ';');
+        escreverMoeda(p.getPreco());
+        buffer.put((byte) ';');
+        escreverMoeda(item.getCustoReposicao());
+        buffer.put(FIM_LINHA);
+        linhas++;
+    }
+
+    /**
+     * Obtém o número de linhas de produtos já escritas.
+     * @return O número de linhas, sem contar o cabeçalho.
+     */
+    public long getLinhas() {
+        return linhas;
+    }
+
+    /**
+     * Descarrega o buffer e fecha o arquivo (finalizando o gzip, se houver).
+     * @throws IOException Se a escrita no arquivo falhar.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            descarregar();
+        } finally {
+            canal.close();
+        }
+    }
+
+    /**
+     * Descarrega o buffer se não houver espaço para a quantidade de bytes informada.
+     * @param bytes O número de bytes que serão escritos a seguir.
+     * @throws IOException Se a escrita no arquivo falhar.
+     */
+    private void garantirEspaco(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            descarregar();
+        }
+    }
+
+    /**
+     * Escreve todo o conteúdo do buffer no canal de destino e o esvazia.
+     * @throws IOException Se a escrita no arquivo falhar.
+     */
+    private void descarregar() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Codifica o texto em UTF-8 diretamente no buffer, duplicando as aspas.
+     * @param texto O texto a ser escrito.
+     */
+    private void escreverTexto(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '"') {
+                buffer.put((byte) '"').put((byte) '"'); // Escapa aspas duplas dentro do nome do produto.
+            } else if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, texto.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Escreve um número inteiro não negativo em decimal.
+     * @param valor O número a ser escrito.
+     */
+    private void escreverInteiro(long valor) {
+        int pos = digitos.length;
+        do {
+            digitos[--pos] = (byte) ('0' + (valor % 10));
+            valor /= 10;
+        } while (valor > 0);
+        buffer.put(digitos, pos, digitos.length - pos);
+    }
+
+    /**
+     * Escreve um valor monetário com duas casas decimais e vírgula como separador (ex.: "12,34").
+     * O valor é arredondado para centavos, como no `String.format("%.2f")` usado na tela.
+     * @param valor O valor a ser escrito (não negativo).
+     */
+    private void escreverMoeda(double valor) {
+        long centavos = emCentavos(valor);
+        escreverInteiro(centavos / 100);
+        long resto = centavos % 100;
+        buffer.put((byte) ',');
+        buffer.put((byte) ('0' + resto / 10));
+        buffer.put((byte) ('0' + resto % 10));
+    }
+
+    /**
+     * Arredonda um valor para centavos como o `String.format("%.2f")`: meio centavo para cima,
+     * sobre a representação decimal do double (ex.: 1.005 vira 101, e não 100 como em
+     * `Math.round(1.005 * 100)`, porque 1.005 * 100 dá 100.49999...). Só os valores perto do
+     * meio centavo passam pelo BigDecimal; os demais são arredondados sem alocar.
+     * @param valor O valor (não negativo).
+     * @return O valor em centavos.
+     */
+    static long emCentavos(double valor) {
+        double emCentavos = valor * 100;
+        double fracao = emCentavos - Math.floor(emCentavos);
+        if (Math.abs(fracao - 0.5) > 1e-6) return Math.round(emCentavos);
+        return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+}
@@ -0,0 +1,135 @@
+package Estoque;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latências com faixas de largura crescente (log-linear): cada potência de 2
+ * é dividida em 8 faixas iguais, de modo que o erro relativo de um percentil é de no máximo
+ * 12,5%, com memória fixa (488 contadores) para qualquer duração entre 1 ns e 2^63 ns.
+ * O registro não usa locks e pode ser feito por várias threads ao mesmo tempo; a leitura
+ * concorrente com registros é aproximada (pode ou não incluir os registros em andamento).
+ * @author Leandro
+ */
+final class HistogramaLatencia {
+    // Bits da mantissa usados para dividir cada potência de 2 (2^3 = 8 faixas).
+    private static final int BITS_SUBFAIXA = 3;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    // Faixas exatas para 0..7 ns, mais 8 faixas para cada expoente de 3 a 62.
+    static final int FAIXAS = SUBFAIXAS + (63 - BITS_SUBFAIXA) * SUBFAIXAS;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(FAIXAS);
+    private final AtomicLong contagem = new AtomicLong();
+    private final AtomicLong soma = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra uma duração.
+     * @param nanos A duração, em nanossegundos; valores negativos contam como 0.
+     */
+    void registrar(long nanos) {
+        long valor = Math.max(nanos, 0);
+        contagens.incrementAndGet(indiceFaixa(valor));
+        contagem.incrementAndGet();
+        soma.addAndGet(valor);
+        maximo.accumulateAndGet(valor, Math::max);
+    }
+
+    /**
+     * Soma a este histograma as contagens de outro (usado para juntar as fatias de uma janela).
+     * @param outro O histograma a ser somado.
+     */
+    void somar(HistogramaLatencia outro) {
+        for (int i = 0; i < FAIXAS; i++) {
+            long n = outro.contagens.get(i);
+            if (n != 0) contagens.addAndGet(i, n);
+        }
+        contagem.addAndGet(outro.contagem.get());
+        soma.addAndGet(outro.soma.get());
+        maximo.accumulateAndGet(outro.maximo.get(), Math::max);
+    }
+
+    /**
+     * Zera todas as contagens.
+     */
+    void zerar() {
+        for (int i = 0; i < FAIXAS; i++) {
+            contagens.set(i, 0);
+        }
+        contagem.set(0);
+        soma.set(0);
+        maximo.set(0);
+    }
+
+    /**
+     * Obtém o número de durações registradas.
+     * @return A contagem.
+     */
+    long getContagem() {
+        return contagem.get();
+    }
+
+    /**
+     * Obtém a soma das durações registradas.
+     * @return A soma, em nanossegundos.
+     */
+    long getSoma() {
+        return soma.get();
+    }
+
+    /**
+     * Obtém a maior duração registrada.
+     * @return O máximo, em nanossegundos.
+     */
+    long getMaximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Calcula um percentil das durações registradas.
+     * O valor retornado é o limite superior da faixa que contém o percentil, limitado ao máximo.
+     * @param percentil O percentil, entre 0 e 100.
+     * @return O percentil, em nanossegundos; 0 se nada foi registrado.
+     */
+    long percentil(double percentil) {
+        long total = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            total += contagens.get(i);
+        }
+        if (total == 0) return 0;
+        long alvo = Math.max(1, (long) Math.ceil(total * percentil / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            acumulado += contagens.get(i);
+            if (acumulado >= alvo) {
+                return Math.min(limiteSuperior(i), getMaximo());
+            }
+        }
+        return getMaximo();
+    }
+
+    /**
+     * Calcula a faixa de uma duração.
+     * @param valor A duração, em nanossegundos (não negativa).
+     * @return O índice da faixa.
+     */
+    static int indiceFaixa(long valor) {
+        if (valor < SUBFAIXAS) return (int) valor;
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int mantissa = (int) (valor >>> (expoente - BITS_SUBFAIXA)) & (SUBFAIXAS - 1);
+        return (expoente - BITS_SUBFAIXA + 1) * SUBFAIXAS + mantissa;
+    }
+
+    /**
+     * Calcula o maior valor que cai em uma faixa.
+     * @param indice O índice da faixa.
+     * @return O limite superior da faixa, em nanossegundos.
+     */
+    static long limiteSuperior(int indice) {
+        if (indice < SUBFAIXAS) return indice;
+        int expoente = indice / SUBFAIXAS + BITS_SUBFAIXA - 1;
+        long mantissa = indice % SUBFAIXAS;
+        long inicio = (SUBFAIXAS + mantissa) << (expoente - BITS_SUBFAIXA);
+        return inicio + (1L << (expoente - BITS_SUBFAIXA)) - 1;
+    }
+}
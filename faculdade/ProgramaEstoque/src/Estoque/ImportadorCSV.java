@@ -0,0 +1,367 @@
+package Estoque;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Importa produtos de um arquivo CSV no mesmo formato exportado pelo relatório: UTF-8
+ * (com ou sem BOM), ';' como delimitador, nome entre aspas e valores com vírgula decimal.
+ * A coluna "Valor Total", se presente, é ignorada. Arquivos terminados em ".gz" são
+ * descomprimidos durante a leitura.
+ * O arquivo é lido linha a linha e os produtos válidos são entregues ao estoque em lotes,
+ * de modo que a memória usada não depende do tamanho do arquivo. Cada linha é validada
+ * com as mesmas regras dos formulários (`ValidadorCampos`); linhas inválidas são relatadas
+ * no resultado e não interrompem a importação.
+ * @author Leandro
+ */
+public class ImportadorCSV {
+    public static final int TAMANHO_LOTE_PADRAO = 1000;
+    // Limite de rejeições guardadas com detalhes; as demais são apenas contadas.
+    private static final int MAXIMO_REJEICOES_LISTADAS = 1000;
+
+    private final Estoque estoque; // Estoque que recebe os produtos importados
+    private final int tamanhoLote; // Produtos enviados ao banco por comando
+
+    /**
+     * Construtor do ImportadorCSV.
+     * @param estoque O estoque que receberá os produtos.
+     * @param tamanhoLote O número de produtos gravados por lote no banco.
+     */
+    public ImportadorCSV(Estoque estoque, int tamanhoLote) {
+        if (tamanhoLote <= 0) {
+            throw new IllegalArgumentException("O tamanho do lote deve ser positivo.");
+        }
+        this.estoque = estoque;
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    /**
+     * Importa um arquivo CSV. Deve ser chamado fora da EDT, pois lê o arquivo e grava no banco.
+     *
+     * @param arquivo O arquivo CSV (ou CSV comprimido com gzip).
+     * @param progresso Recebe a fração do arquivo já lida, de 0 a 1.
+     * @param cancelado Consultado a cada linha; quando retorna true a leitura é interrompida
+     *                  com `CancellationException` (os lotes já enviados permanecem gravados).
+     * @return O resultado da importação, com contagens, rejeições e velocidade.
+     * @throws IOException Se o arquivo não puder ser lido.
+     */
+    public Resultado importar(Path arquivo, DoubleConsumer progresso, BooleanSupplier cancelado) throws IOException {
+        long tamanhoArquivo = Math.max(1, Files.size(arquivo));
+        long inicio = System.nanoTime();
+        try (ContadorBytes contador = new ContadorBytes(Files.newInputStream(arquivo))) {
+            InputStream entrada = arquivo.getFileName().toString().toLowerCase().endsWith(".gz")
+                ? new GZIPInputStream(contador, 1 << 16)
+                : contador;
+            BufferedReader leitor = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), 1 << 16);
+            LeitorLinhas linhas = new LeitorLinhas(leitor, () -> {
+                if (cancelado.getAsBoolean()) throw new CancellationException();
+                progresso.accept(Math.min(1.0, (double) contador.lidos / tamanhoArquivo));
+            });
+            long gravados;
+            try {
+                gravados = estoque.importarProdutos(linhas, tamanhoLote,
+                    (p, erro) -> linhas.rejeitar(new Rejeicao(0, p.getNome(), erro)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            progresso.accept(1.0);
+            return new Resultado(linhas.numeroLinha, gravados, linhas.totalRejeicoes,
+                Collections.unmodifiableList(linhas.rejeicoes), System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Separa uma linha do CSV em campos. Campos entre aspas podem conter ';' e aspas
+     * escapadas como "".
+     * @param linha A linha a ser separada.
+     * @return Os campos da linha, sem as aspas externas.
+     */
+    static List<String> separarCampos(String linha) {
+        List<String> campos = new ArrayList<>(4);
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (entreAspas) {
+                if (c == '"') {
+                    if (i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                        atual.append('"'); // Aspas escapadas dentro do campo.
+                        i++;
+                    } else {
+                        entreAspas = false;
+                    }
+                } else {
+                    atual.append(c);
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == ';') {
+                campos.add(atual.toString());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        campos.add(atual.toString());
+        return campos;
+    }
+
+    /**
+     * Percorre as linhas do arquivo entregando apenas os produtos válidos.
+     * As linhas inválidas são registradas como rejeições à medida que são encontradas.
+     */
+    private static final class LeitorLinhas implements Iterator<Produto> {
+        private final BufferedReader leitor;
+        private final Runnable aCadaLinha; // Verifica o cancelamento e relata o progresso
+        private final List<Rejeicao> rejeicoes = new ArrayList<>();
+        private long totalRejeicoes = 0;
+        private long numeroLinha = 0;
+        private Produto proximo; // Próximo produto válido já lido, ainda não entregue
+        private boolean fim = false;
+
+        LeitorLinhas(BufferedReader leitor, Runnable aCadaLinha) {
+            this.leitor = leitor;
+            this.aCadaLinha = aCadaLinha;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (proximo == null && !fim) {
+                String linha;
+                try {
+                    linha = leitor.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (linha == null) {
+                    fim = true;
+                    break;
+                }
+                numeroLinha++;
+                aCadaLinha.run();
+                proximo = interpretar(linha);
+            }
+            return proximo != null;
+        }
+
+        @Override
+        public Produto next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Produto p = proximo;
+            proximo = null;
+            return p;
+        }
+
+        /**
+         * Converte uma linha em produto, aplicando as regras de validação.
+         * @param linha A linha lida do arquivo.
+         * @return O produto, ou null se a linha for o cabeçalho, estiver em branco ou for inválida.
+         */
+        private Produto interpretar(String linha) {
+            if (numeroLinha == 1 && !linha.isEmpty() && linha.charAt(0) == '\uFEFF') {
+                linha = linha.substring(1); // Remove o BOM do início do arquivo.
+            }
+            if (linha.isBlank()) return null;
+            List<String> campos = separarCampos(linha);
+            String nome = campos.get(0).trim();
+            if (numeroLinha == 1 && nome.equalsIgnoreCase("Produto")) return null; // Cabeçalho
+
+            if (campos.size() < 3) {
+                rejeitar(new Rejeicao(numeroLinha, nome, "Linha deve ter nome, quantidade e preço."));
+                return null;
+            }
+            if (nome.isEmpty()) {
+                rejeitar(new Rejeicao(numeroLinha, nome, "Nome não pode ser vazio."));
+                return null;
+            }
+            String erro = ValidadorCampos.validarQuantidade(campos.get(1));
+            if (erro == null) erro = ValidadorCampos.validarPreco(campos.get(2));
+            if (erro != null) {
+                rejeitar(new Rejeicao(numeroLinha, nome, erro));
+                return null;
+            }
+            return new Produto(nome,
+                Integer.parseInt(campos.get(1).trim()),
+                Double.parseDouble(campos.get(2).trim().replace(",", ".")));
+        }
+
+        void rejeitar(Rejeicao rejeicao) {
+            totalRejeicoes++;
+            if (rejeicoes.size() < MAXIMO_REJEICOES_LISTADAS) {
+                rejeicoes.add(rejeicao);
+            }
+        }
+    }
+
+    /**
+     * Fluxo de entrada que conta os bytes lidos do arquivo, usado para calcular o progresso.
+     */
+    private static final class ContadorBytes extends FilterInputStream {
+        private volatile long lidos = 0;
+
+        ContadorBytes(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) lidos++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) lidos += n;
+            return n;
+        }
+    }
+
+    /**
+     * Uma linha (ou produto) recusada na importação.
+     */
+    public static final class Rejeicao {
+        private final long linha;
+        private final String nome;
+        private final String motivo;
+
+        /**
+         * Construtor da Rejeicao.
+         * @param linha O número da linha no arquivo, ou 0 se a recusa veio do banco.
+         * @param nome O nome do produto, como aparece no arquivo.
+         * @param motivo A mensagem explicando a recusa.
+         */
+        public Rejeicao(long linha, String nome, String motivo) {
+            this.linha = linha;
+            this.nome = nome;
+            this.motivo = motivo;
+        }
+
+        /**
+         * Obtém o número da linha recusada.
+         * @return O número da linha, ou 0 se a recusa veio do banco.
+         */
+        public long getLinha() {
+            return linha;
+        }
+
+        /**
+         * Obtém o nome do produto recusado.
+         * @return O nome do produto.
+         */
+        public String getNome() {
+            return nome;
+        }
+
+        /**
+         * Obtém o motivo da recusa.
+         * @return A mensagem de erro.
+         */
+        public String getMotivo() {
+            return motivo;
+        }
+
+        /**
+         * Retorna uma representação em string da rejeição.
+         * @return Uma string no formato "Linha N (nome): motivo".
+         */
+        @Override
+        public String toString() {
+            String origem = linha > 0 ? "Linha " + linha : "Banco";
+            return origem + " (" + nome + "): " + motivo;
+        }
+    }
+
+    /**
+     * Resultado de uma importação.
+     */
+    public static final class Resultado {
+        private final long linhasLidas;
+        private final long gravados;
+        private final long totalRejeicoes;
+        private final List<Rejeicao> rejeicoes;
+        private final long duracaoNanos;
+
+        /**
+         * Construtor do Resultado.
+         * @param linhasLidas O número de linhas lidas do arquivo, incluindo o cabeçalho.
+         * @param gravados O número de produtos inseridos ou atualizados no banco.
+         * @param totalRejeicoes O número total de linhas e produtos recusados.
+         * @param rejeicoes As primeiras rejeições, com detalhes.
+         * @param duracaoNanos O tempo total da importação, em nanossegundos.
+         */
+        public Resultado(long linhasLidas, long gravados, long totalRejeicoes, List<Rejeicao> rejeicoes, long duracaoNanos) {
+            this.linhasLidas = linhasLidas;
+            this.gravados = gravados;
+            this.totalRejeicoes = totalRejeicoes;
+            this.rejeicoes = rejeicoes;
+            this.duracaoNanos = duracaoNanos;
+        }
+
+        /**
+         * Obtém o número de linhas lidas do arquivo.
+         * @return O número de linhas, incluindo o cabeçalho.
+         */
+        public long getLinhasLidas() {
+            return linhasLidas;
+        }
+
+        /**
+         * Obtém o número de produtos gravados.
+         * @return O número de produtos inseridos ou atualizados no banco.
+         */
+        public long getGravados() {
+            return gravados;
+        }
+
+        /**
+         * Obtém o número total de rejeições.
+         * @return O número de linhas e produtos recusados.
+         */
+        public long getTotalRejeicoes() {
+            return totalRejeicoes;
+        }
+
+        /**
+         * Obtém as rejeições detalhadas. Se houver muitas, apenas as primeiras são guardadas;
+         * o total está em `getTotalRejeicoes`.
+         * @return A lista de rejeições.
+         */
+        public List<Rejeicao> getRejeicoes() {
+            return rejeicoes;
+        }
+
+        /**
+         * Obtém a duração da importação.
+         * @return O tempo total, em nanossegundos.
+         */
+        public long getDuracaoNanos() {
+            return duracaoNanos;
+        }
+
+        /**
+         * Calcula a velocidade da importação.
+         * @return O número de linhas lidas por segundo.
+         */
+        public double getLinhasPorSegundo() {
+            return duracaoNanos == 0 ? 0 : linhasLidas * 1_000_000_000.0 / duracaoNanos;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package Estoque;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Índice local dos nomes de produtos existentes, usado para responder "este nome já existe?"
+ * sem consultar o banco a cada tecla digitada.
+ * Combina um conjunto ordenado de nomes com um filtro de Bloom: o filtro responde em tempo
+ * constante que um nome certamente não existe (o caso comum ao cadastrar um produto novo),
+ * e o conjunto confirma os nomes existentes. Como um filtro de Bloom não permite remoções,
+ * um nome removido continua "talvez presente" no filtro; esses casos, e os falsos positivos,
+ * são respondidos como INCERTO para que quem consulta confirme no banco.
+ * O índice é mantido pelo `Estoque` a cada gravação.
+ * @author Leandro
+ */
+public class IndiceNomes {
+
+    /**
+     * Respostas possíveis de uma consulta ao índice.
+     */
+    public enum Resposta {
+        /** O nome existe. */
+        EXISTE,
+        /** O nome certamente não existe. */
+        NAO_EXISTE,
+        /** O índice não sabe responder (ainda não carregado, nome removido ou falso positivo do filtro). */
+        INCERTO
+    }
+
+    private static final int BITS_POR_NOME = 10; // Com 7 funções de hash, ~1% de falsos positivos
+    private static final int FUNCOES_HASH = 7;
+    private static final int CAPACIDADE_MINIMA = 1 << 12;
+
+    private final NavigableSet<String> nomes = new ConcurrentSkipListSet<>();
+    // Filtro de Bloom; recriado (maior) quando o número de nomes passa da capacidade.
+    private volatile AtomicLongArray bits = new AtomicLongArray(CAPACIDADE_MINIMA * BITS_POR_NOME / 64);
+    private volatile long capacidade = CAPACIDADE_MINIMA;
+    private volatile boolean carregado = false;
+    // Incrementada a cada adição ou remoção, para detectar alterações durante uma carga.
+    private long versao = 0;
+
+    /**
+     * Obtém a versão atual do índice, a ser informada em `carregar`.
+     * @return O número de alterações registradas até agora.
+     */
+    public synchronized long getVersao() {
+        return versao;
+    }
+
+    /**
+     * Substitui o conteúdo do índice pelos nomes informados e o marca como carregado,
+     * desde que nenhuma alteração tenha sido registrada desde que a carga começou.
+     * @param todos Todos os nomes existentes, já normalizados.
+     * @param versaoInicial A versão obtida com `getVersao` antes de ler os nomes do banco.
+     * @return false se houve alterações durante a carga; nesse caso os nomes devem ser lidos de novo.
+     */
+    public synchronized boolean carregar(Collection<String> todos, long versaoInicial) {
+        if (versao != versaoInicial) return false;
+        nomes.clear();
+        nomes.addAll(todos);
+        recriarFiltro();
+        carregado = true;
+        return true;
+    }
+
+    /**
+     * Indica se o índice já foi carregado; antes disso, todas as consultas são INCERTO.
+     * @return true se o índice está carregado.
+     */
+    public boolean isCarregado() {
+        return carregado;
+    }
+
+    /**
+     * Registra um nome adicionado ao estoque.
+     * @param nome O nome normalizado.
+     */
+    public synchronized void adicionar(String nome) {
+        versao++;
+        if (nomes.add(nome)) {
+            if (nomes.size() > capacidade) recriarFiltro();
+            else marcar(bits, nome);
+        }
+    }
+
+    /**
+     * Registra um nome removido do estoque. O filtro de Bloom não é alterado.
+     * @param nome O nome normalizado.
+     */
+    public synchronized void remover(String nome) {
+        versao++;
+        nomes.remove(nome);
+    }
+
+    /**
+     * Consulta se um nome existe, sem acessar o banco.
+     * @param nome O nome normalizado.
+     * @return EXISTE, NAO_EXISTE ou INCERTO.
+     */
+    public Resposta consultar(String nome) {
+        if (!carregado) return Resposta.INCERTO;
+        if (!talvezContenha(bits, nome)) return Resposta.NAO_EXISTE;
+        return nomes.contains(nome) ? Resposta.EXISTE : Resposta.INCERTO;
+    }
+
+    /**
+     * Obtém o número de nomes no índice.
+     * @return O número de nomes.
+     */
+    public int tamanho() {
+        return nomes.size();
+    }
+
+    /**
+     * Recria o filtro de Bloom com o dobro dos nomes atuais de capacidade,
+     * descartando também os bits dos nomes já removidos.
+     */
+    private void recriarFiltro() {
+        long novaCapacidade = Math.max(CAPACIDADE_MINIMA, Long.highestOneBit(Math.max(1, nomes.size())) << 1);
+        AtomicLongArray novosBits = new AtomicLongArray((int) (novaCapacidade * BITS_POR_NOME / 64));
+        for (String nome : nomes) {
+            marcar(novosBits, nome);
+        }
+        bits = novosBits;
+        capacidade = novaCapacidade;
+    }
+
+    /**
+     * Liga no filtro os bits correspondentes a um nome.
+     * @param filtro O filtro a ser alterado.
+     * @param nome O nome.
+     */
+    private static void marcar(AtomicLongArray filtro, String nome) {
+        long totalBits = filtro.length() * 64L;
+        long hash = hash64(nome);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < FUNCOES_HASH; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % totalBits;
+            int palavra = (int) (bit >>> 6);
+            long mascara = 1L << bit;
+            long atual;
+            while (((atual = filtro.get(palavra)) & mascara) == 0
+                    && !filtro.compareAndSet(palavra, atual, atual | mascara)) {
+                // Tenta de novo se outro bit da mesma palavra foi ligado ao mesmo tempo.
+            }
+        }
+    }
+
+    /**
+     * Verifica se todos os bits de um nome estão ligados no filtro.
+     * @param filtro O filtro a ser consultado.
+     * @param nome O nome.
+     * @return false se o nome certamente não foi adicionado.
+     */
+    private static boolean talvezContenha(AtomicLongArray filtro, String nome) {
+        long totalBits = filtro.length() * 64L;
+        long hash = hash64(nome);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < FUNCOES_HASH; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % totalBits;
+            if ((filtro.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Calcula um hash de 64 bits (FNV-1a sobre os bytes UTF-8) de um nome.
+     * As duas metades são usadas como as duas funções base do hash duplo do filtro.
+     * @param nome O nome.
+     * @return O hash do nome.
+     */
+    private static long hash64(String nome) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : nome.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,478 @@
+package Estoque;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de trigramas dos nomes de produtos, usado pela busca aproximada do filtro de nomes.
+ * Cada nome é "dobrado" (minúsculas, sem acentos, pontuação trocada por espaço, ver `dobrar`)
+ * e decomposto nas sequências de 3 caracteres que contém, com um espaço antes e depois
+ * ("óleo" → " ol", "ole", "leo", "eo "). Para cada trigrama, o índice guarda a lista dos nomes
+ * que o contêm. Uma busca decompõe o texto da mesma forma e pontua os nomes pelos trigramas
+ * em comum: "oleo" encontra "filtro de óleo" (trecho do nome, sem acento) e "olep" ainda
+ * encontra "óleo" (um erro de digitação elimina no máximo 3 trigramas).
+ * <p>
+ * Como os números dos nomes só crescem, as listas ficam ordenadas, o que permite conferir a
+ * presença de um nome em uma lista longa por busca binária: os candidatos saem das listas mais
+ * raras e só são procurados nas mais comuns. O índice é mantido pelo `Estoque` a cada gravação;
+ * nomes removidos são descartados das listas quando passam a ser a maioria.
+ * @author Leandro
+ */
+public class IndiceTrigramas {
+    /** Tamanho mínimo do texto (dobrado) para a busca aproximada. */
+    public static final int TAMANHO_MINIMO_BUSCA = 3;
+    private static final int TAMANHO_MAXIMO_BUSCA = 100; // Caracteres considerados do texto buscado
+    // Trigramas que um nome pode não ter e ainda ser encontrado: um erro de digitação
+    // (em textos curtos, no máximo metade dos trigramas).
+    private static final int TRIGRAMAS_TOLERADOS = 3;
+    // Letra sem acento de cada caractere Latin-1 (ex.: 'ó' → 'o'), para dobrar sem `Normalizer`.
+    private static final char[] SEM_ACENTO = new char[256];
+
+    static {
+        for (char c = 0; c < 256; c++) {
+            String decomposto = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            SEM_ACENTO[c] = Character.toLowerCase(decomposto.charAt(0));
+        }
+    }
+    // Nomes removidos acima dos quais as listas são reconstruídas (se forem mais da metade).
+    private static final int REMOVIDOS_MINIMO_COMPACTACAO = 1 << 14;
+
+    private final ReadWriteLock trava = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ids = new HashMap<>(); // Nome → número
+    private String[] nomes = new String[1024]; // Número → nome; null se removido
+    private int[] trigramasPorNome = new int[1024]; // Número → trigramas distintos do nome
+    private int proximoId = 0;
+    private int removidos = 0;
+    // Trigrama → lista dos nomes que o contêm, em uma tabela de endereçamento aberto
+    // (sondagem linear): `chaves` guarda o trigrama e `listas`, na mesma posição, a lista.
+    private long[] chaves = new long[1 << 12];
+    private Lista[] listas = new Lista[1 << 12];
+    private int quantidadeListas = 0;
+    private volatile boolean carregado = false;
+    // Incrementada a cada adição ou remoção, para detectar alterações durante uma carga.
+    private long versao = 0;
+
+    /**
+     * Lista crescente dos números dos nomes que contêm um trigrama.
+     */
+    private static final class Lista {
+        int[] ids = new int[4];
+        int tamanho = 0;
+
+        void adicionar(int id) {
+            if (tamanho == ids.length) ids = Arrays.copyOf(ids, tamanho * 2);
+            ids[tamanho++] = id;
+        }
+
+        boolean contem(int id) {
+            return Arrays.binarySearch(ids, 0, tamanho, id) >= 0;
+        }
+    }
+
+    /**
+     * Obtém a versão atual do índice, a ser informada em `carregar`.
+     * @return O número de alterações registradas até agora.
+     */
+    public long getVersao() {
+        trava.readLock().lock();
+        try {
+            return versao;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Substitui o conteúdo do índice pelos nomes informados e o marca como carregado,
+     * desde que nenhuma alteração tenha sido registrada desde que a carga começou.
+     * @param todos Todos os nomes existentes, já normalizados.
+     * @param versaoInicial A versão obtida com `getVersao` antes de ler os nomes.
+     * @return false se houve alterações durante a carga; nesse caso os nomes devem ser lidos de novo.
+     */
+    public boolean carregar(Collection<String> todos, long versaoInicial) {
+        trava.writeLock().lock();
+        try {
+            if (versao != versaoInicial) return false;
+            limpar();
+            for (String nome : todos) {
+                indexar(nome);
+            }
+            carregado = true;
+            return true;
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Descarta o conteúdo do índice, que será carregado de novo na próxima busca.
+     * Usado quando o catálogo é alterado sem passar por `adicionar` e `remover`.
+     */
+    public void descartar() {
+        trava.writeLock().lock();
+        try {
+            versao++;
+            carregado = false;
+            limpar();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indica se o índice já foi carregado; antes disso, as buscas devem carregá-lo.
+     * @return true se o índice está carregado.
+     */
+    public boolean isCarregado() {
+        return carregado;
+    }
+
+    /**
+     * Registra um nome gravado no estoque. Antes da carga, apenas conta a alteração.
+     * @param nome O nome normalizado.
+     */
+    public void adicionar(String nome) {
+        trava.writeLock().lock();
+        try {
+            versao++;
+            if (carregado && !ids.containsKey(nome)) indexar(nome);
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registra um nome removido do estoque.
+     * @param nome O nome normalizado.
+     */
+    public void remover(String nome) {
+        trava.writeLock().lock();
+        try {
+            versao++;
+            Integer id = ids.remove(nome);
+            if (id == null) return;
+            nomes[id] = null;
+            removidos++;
+            if (removidos >= REMOVIDOS_MINIMO_COMPACTACAO && removidos * 2 > proximoId) compactar();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Obtém o número de nomes no índice.
+     * @return O número de nomes.
+     */
+    public int tamanho() {
+        trava.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca os nomes mais parecidos com um texto. Os nomes precisam ter todos os trigramas do
+     * texto, exceto os perdidos por um erro de digitação, e são ordenados pela semelhança
+     * (coeficiente de Jaccard dos trigramas), com os que contêm o texto inteiro à frente e,
+     * no empate, os nomes mais curtos e em ordem alfabética.
+     * @param texto O texto digitado, em qualquer caixa e com ou sem acentos.
+     * @param limite O número máximo de nomes.
+     * @return Os nomes normalizados, do mais ao menos parecido; vazio se o texto (dobrado)
+     *         tiver menos de `TAMANHO_MINIMO_BUSCA` caracteres.
+     */
+    public List<String> buscar(String texto, int limite) {
+        String consulta = dobrar(texto);
+        if (consulta.length() < TAMANHO_MINIMO_BUSCA || limite <= 0) return List.of();
+        // A contagem de trigramas em comum usa um byte por nome.
+        if (consulta.length() > TAMANHO_MAXIMO_BUSCA) consulta = consulta.substring(0, TAMANHO_MAXIMO_BUSCA);
+        long[] trigramas = trigramas(consulta);
+        int total = trigramas.length;
+        int minimo = Math.max((total + 1) / 2, total - TRIGRAMAS_TOLERADOS);
+
+        trava.readLock().lock();
+        try {
+            // Listas do trigrama mais raro ao mais comum; trigramas sem nenhum nome contam como listas vazias.
+            Lista[] ordenadas = new Lista[total];
+            for (int i = 0; i < total; i++) {
+                Lista lista = listas[posicao(trigramas[i])];
+                ordenadas[i] = lista != null ? lista : new Lista();
+            }
+            Arrays.sort(ordenadas, (a, b) -> Integer.compare(a.tamanho, b.tamanho));
+
+            // Um nome com pelo menos `minimo` trigramas está em alguma das (total - minimo + 1) listas mais raras.
+            int raras = total - minimo + 1;
+            byte[] contagem = new byte[proximoId];
+            int[] candidatos = new int[64];
+            int quantidade = 0;
+            for (int i = 0; i < raras; i++) {
+                Lista lista = ordenadas[i];
+                for (int j = 0; j < lista.tamanho; j++) {
+                    int id = lista.ids[j];
+                    if (nomes[id] == null) continue;
+                    if (contagem[id]++ == 0) {
+                        if (quantidade == candidatos.length) candidatos = Arrays.copyOf(candidatos, quantidade * 2);
+                        candidatos[quantidade++] = id;
+                    }
+                }
+            }
+            // Nas listas comuns, procura cada candidato por busca binária, ou percorre a lista se for mais barato.
+            for (int i = raras; i < total && quantidade > 0; i++) {
+                Lista lista = ordenadas[i];
+                long custoBusca = (long) quantidade * (32 - Integer.numberOfLeadingZeros(lista.tamanho));
+                if (custoBusca < lista.tamanho) {
+                    for (int c = 0; c < quantidade; c++) {
+                        if (lista.contem(candidatos[c])) contagem[candidatos[c]]++;
+                    }
+                } else {
+                    for (int j = 0; j < lista.tamanho; j++) {
+                        int id = lista.ids[j];
+                        if (contagem[id] > 0) contagem[id]++;
+                    }
+                }
+            }
+            return melhores(consulta, total, minimo, contagem, candidatos, quantidade, limite);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula a nota de um nome para um texto, como `buscar`: o coeficiente de Jaccard dos
+     * trigramas, mais 1 se o nome contém o texto inteiro. Permite combinar os resultados de
+     * buscas feitas em índices diferentes (ex.: um por armazém, ver `Armazens`).
+     * @param texto O texto digitado.
+     * @param nome O nome encontrado.
+     * @return A nota; quanto maior, mais parecido.
+     */
+    static double nota(String texto, String nome) {
+        String consulta = dobrar(texto);
+        if (consulta.length() > TAMANHO_MAXIMO_BUSCA) consulta = consulta.substring(0, TAMANHO_MAXIMO_BUSCA);
+        String dobrado = dobrar(nome);
+        long[] doTexto = trigramas(consulta);
+        long[] doNome = trigramas(dobrado);
+        int comuns = 0;
+        for (int i = 0, j = 0; i < doTexto.length && j < doNome.length; ) {
+            if (doTexto[i] == doNome[j]) {
+                comuns++;
+                i++;
+                j++;
+            } else if (doTexto[i] < doNome[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        double nota = (double) comuns / (doTexto.length + doNome.length - comuns);
+        if (comuns == doTexto.length && dobrado.contains(consulta)) nota += 1;
+        return nota;
+    }
+
+    /**
+     * Seleciona os `limite` candidatos mais parecidos. Deve ser chamado com a trava obtida.
+     * @param consulta O texto dobrado.
+     * @param total O número de trigramas do texto.
+     * @param minimo O número mínimo de trigramas em comum.
+     * @param contagem Os trigramas em comum de cada nome.
+     * @param candidatos Os números dos candidatos.
+     * @param quantidade O número de candidatos.
+     * @param limite O número máximo de nomes.
+     * @return Os nomes selecionados, do mais ao menos parecido.
+     */
+    private List<String> melhores(String consulta, int total, int minimo, byte[] contagem,
+            int[] candidatos, int quantidade, int limite) {
+        // Fila com o pior dos selecionados no topo.
+        PriorityQueue<Resultado> fila = new PriorityQueue<>(limite + 1);
+        for (int c = 0; c < quantidade; c++) {
+            int id = candidatos[c];
+            int comuns = contagem[id];
+            if (comuns < minimo) continue;
+            double nota = (double) comuns / (total + trigramasPorNome[id] - comuns);
+            // Só quem tem todos os trigramas pode conter o texto inteiro e ganhar o bônus;
+            // descarta antes de dobrar o nome quem não entraria nem com ele.
+            if (fila.size() == limite && nota + (comuns == total ? 1 : 0) < fila.peek().nota) continue;
+            if (comuns == total && dobrar(nomes[id]).contains(consulta)) nota += 1;
+            if (fila.size() < limite) {
+                fila.add(new Resultado(nomes[id], nota));
+            } else {
+                Resultado resultado = new Resultado(nomes[id], nota);
+                if (resultado.compareTo(fila.peek()) > 0) {
+                    fila.poll();
+                    fila.add(resultado);
+                }
+            }
+        }
+        String[] ordem = new String[fila.size()];
+        for (int i = ordem.length - 1; i >= 0; i--) {
+            ordem[i] = fila.poll().nome;
+        }
+        return Arrays.asList(ordem);
+    }
+
+    /**
+     * Um nome candidato e a sua nota; a ordem natural vai do menos ao mais parecido.
+     */
+    private static final class Resultado implements Comparable<Resultado> {
+        final String nome;
+        final double nota;
+
+        Resultado(String nome, double nota) {
+            this.nome = nome;
+            this.nota = nota;
+        }
+
+        @Override
+        public int compareTo(Resultado outro) {
+            int c = Double.compare(nota, outro.nota);
+            if (c == 0) c = Integer.compare(outro.nome.length(), nome.length()); // Mais curto é melhor
+            if (c == 0) c = outro.nome.compareTo(nome); // Ordem alfabética
+            return c;
+        }
+    }
+
+    /**
+     * Acrescenta um nome às listas dos seus trigramas. Deve ser chamado com a trava exclusiva.
+     * @param nome O nome normalizado, ainda não indexado.
+     */
+    private void indexar(String nome) {
+        int id = proximoId++;
+        if (id == nomes.length) {
+            nomes = Arrays.copyOf(nomes, id * 2);
+            trigramasPorNome = Arrays.copyOf(trigramasPorNome, id * 2);
+        }
+        long[] trigramas = trigramas(dobrar(nome));
+        nomes[id] = nome;
+        trigramasPorNome[id] = trigramas.length;
+        ids.put(nome, id);
+        for (long trigrama : trigramas) {
+            int posicao = posicao(trigrama);
+            if (listas[posicao] == null) {
+                chaves[posicao] = trigrama;
+                listas[posicao] = new Lista();
+                if (++quantidadeListas * 2 > chaves.length) {
+                    crescerTabela();
+                    posicao = posicao(trigrama);
+                }
+            }
+            listas[posicao].adicionar(id);
+        }
+    }
+
+    /**
+     * Localiza a posição de um trigrama na tabela de listas.
+     * @param trigrama O trigrama codificado.
+     * @return A posição do trigrama, ou a posição vazia onde ele seria inserido.
+     */
+    private int posicao(long trigrama) {
+        int mascara = chaves.length - 1;
+        long h = trigrama * 0x9E3779B97F4A7C15L;
+        int i = (int) (h ^ (h >>> 32)) & mascara;
+        while (listas[i] != null && chaves[i] != trigrama) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    /**
+     * Dobra a tabela de listas, mantendo-a no máximo meio cheia.
+     */
+    private void crescerTabela() {
+        long[] chavesAntigas = chaves;
+        Lista[] listasAntigas = listas;
+        chaves = new long[chavesAntigas.length * 2];
+        listas = new Lista[listasAntigas.length * 2];
+        for (int i = 0; i < chavesAntigas.length; i++) {
+            if (listasAntigas[i] == null) continue;
+            int posicao = posicao(chavesAntigas[i]);
+            chaves[posicao] = chavesAntigas[i];
+            listas[posicao] = listasAntigas[i];
+        }
+    }
+
+    /**
+     * Reconstrói as listas só com os nomes existentes. Deve ser chamado com a trava exclusiva.
+     */
+    private void compactar() {
+        List<String> existentes = new ArrayList<>(ids.size());
+        for (int id = 0; id < proximoId; id++) {
+            if (nomes[id] != null) existentes.add(nomes[id]);
+        }
+        limpar();
+        for (String nome : existentes) {
+            indexar(nome);
+        }
+    }
+
+    /**
+     * Esvazia o índice. Deve ser chamado com a trava exclusiva.
+     */
+    private void limpar() {
+        ids.clear();
+        chaves = new long[1 << 12];
+        listas = new Lista[1 << 12];
+        quantidadeListas = 0;
+        nomes = new String[1024];
+        trigramasPorNome = new int[1024];
+        proximoId = 0;
+        removidos = 0;
+    }
+
+    /**
+     * "Dobra" um texto para comparação: minúsculas, sem acentos e com cada sequência de
+     * caracteres que não são letras nem dígitos trocada por um único espaço
+     * (ex.: "Filtro de Óleo (1L)" → "filtro de oleo 1l").
+     * @param texto O texto.
+     * @return O texto dobrado.
+     */
+    public static String dobrar(String texto) {
+        // Textos em Latin-1 (o caso comum) são dobrados pela tabela; os demais, pelo `Normalizer`.
+        boolean latin1 = true;
+        for (int i = 0; i < texto.length() && latin1; i++) {
+            latin1 = texto.charAt(i) < 0x100;
+        }
+        String decomposto = latin1 ? texto : Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder dobrado = new StringBuilder(decomposto.length());
+        boolean separar = false;
+        for (int i = 0; i < decomposto.length(); i++) {
+            char c = decomposto.charAt(i);
+            if (c < 0x100) c = SEM_ACENTO[c];
+            if (Character.isLetterOrDigit(c)) {
+                if (separar && dobrado.length() > 0) dobrado.append(' ');
+                dobrado.append(Character.toLowerCase(c));
+                separar = false;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                separar = true; // Acentos (marcas combinantes) são descartados sem separar
+            }
+        }
+        return dobrado.toString();
+    }
+
+    /**
+     * Extrai os trigramas distintos de um texto dobrado, com um espaço antes e depois.
+     * Cada trigrama é codificado em um `long` com 16 bits por caractere.
+     * @param dobrado O texto dobrado.
+     * @return Os trigramas, sem repetições.
+     */
+    static long[] trigramas(String dobrado) {
+        String texto = " " + dobrado + " ";
+        long[] trigramas = new long[Math.max(0, texto.length() - 2)];
+        for (int i = 0; i < trigramas.length; i++) {
+            trigramas[i] = (long) texto.charAt(i) << 32 | (long) texto.charAt(i + 1) << 16 | texto.charAt(i + 2);
+        }
+        Arrays.sort(trigramas);
+        int distintos = 0;
+        for (int i = 0; i < trigramas.length; i++) {
+            if (i == 0 || trigramas[i] != trigramas[i - 1]) trigramas[distintos++] = trigramas[i];
+        }
+        return Arrays.copyOf(trigramas, distintos);
+    }
+}
@@ -4,53 +4,186 @@ import javax.swing.*;
 import java.awt.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowAdapter;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * A classe `Lista` representa a interface gráfica principal do sistema de gerenciamento de estoque.
  * Ela exibe uma tabela de produtos, permite filtragem e interação para adicionar, remover e atualizar produtos.
- * Implementa `Estoque.EstoqueListener` para ser notificada sobre alterações no estoque e atualizar a tabela.
+ * Implementa `Estoque.EstoqueListener` para ser notificada sobre alterações no estoque e aplicar
+ * na tabela apenas a diferença de cada alteração.
  * @author Leandro
  */
-public class Lista extends JFrame implements Estoque.EstoqueListener {
+public class Lista extends JFrame implements Estoque.EstoqueListener, Estoque.AtividadeListener {
     private Estoque estoque; // Instância do gerenciador de estoque
-    private DefaultTableModel modelo; // Modelo de dados da tabela
+    private final String armazem; // Nome do armazém exibido no título, ou null se há um só
+    private final Runnable encerrar; // Fecha o estoque (ou todos os armazéns) ao sair do aplicativo
+    private ProdutoTableModel modelo; // Modelo de dados da tabela
     private JTable tabela; // Componente visual da tabela
+    private JProgressBar indicadorOcupado; // Indicador exibido enquanto há operações no banco em andamento
+    private JLabel totaisLabel; // Totais do estoque na barra de status, atualizados a cada alteração
+    private JButton alertasBtn; // Número de produtos abaixo do ponto de reposição; abre a lista de reposição
 
     private JTextField nomeFilter; // Campo de texto para filtrar por nome
     private JTextField quantFilter; // Campo de texto para filtrar por quantidade mínima
+    private boolean exibindoErro = false; // Evita empilhar várias mensagens de erro ao mesmo tempo
 
     /**
      * Construtor da classe Lista.
      * @param estoque A instância do objeto Estoque que gerencia os dados.
      */
     public Lista(Estoque estoque) {
+        this(estoque, null, estoque::fechar);
+    }
+
+    /**
+     * Construtor da classe Lista para um dos armazéns (ver `Armazens`).
+     * @param estoque O estoque do armazém exibido.
+     * @param armazem O nome do armazém, exibido no título; null se há um só armazém.
+     * @param encerrar Fecha os estoques ao sair do aplicativo (ex.: `Armazens.fechar`).
+     */
+    public Lista(Estoque estoque, String armazem, Runnable encerrar) {
         this.estoque = estoque;
+        this.armazem = armazem;
+        this.encerrar = encerrar;
         // Adiciona esta instância como listener para receber notificações de alterações no estoque.
         estoque.addListener((Estoque.EstoqueListener) this);
+        // Acompanha as operações assíncronas para exibir o indicador de ocupado e relatar erros.
+        estoque.addAtividadeListener(this);
         initUI(); // Inicializa a interface do usuário
         atualizarTabela(); // Carrega os dados iniciais na tabela
+        carregarTotais(); // Exibe os totais do estoque na barra de status
     }
 
     /**
      * Método chamado quando o estoque é alterado.
      * Garante que a atualização da tabela ocorra na thread de despacho de eventos da Swing (EDT).
+     * @param evento O evento descrevendo a alteração.
+     */
+    @Override
+    public void estoqueAlterado(EstoqueEvento evento) {
+        SwingUtilities.invokeLater(() -> {
+            aplicarAlteracao(evento);
+            exibirTotais(estoque.getTotais());
+            exibirAlertas();
+        });
+    }
+
+    /**
+     * Método chamado quando um lote de alterações é aplicado ao estoque.
+     * Todas as alterações são aplicadas à tabela de uma vez, recarregando-a no máximo uma vez.
+     * @param eventos Os eventos do lote.
+     */
+    @Override
+    public void estoqueAlteradoEmLote(List<EstoqueEvento> eventos) {
+        SwingUtilities.invokeLater(() -> {
+            modelo.aplicarAlteracoes(eventos);
+            exibirTotais(estoque.getTotais());
+            exibirAlertas();
+        });
+    }
+
+    /**
+     * Método chamado quando o estoque inicia ou conclui operações assíncronas.
+     * Exibe ou oculta o indicador de ocupado na EDT.
+     * @param ocupado true se há operações em andamento.
+     */
+    @Override
+    public void atividadeAlterada(boolean ocupado) {
+        SwingUtilities.invokeLater(() -> indicadorOcupado.setVisible(ocupado));
+    }
+
+    /**
+     * Método chamado quando uma operação assíncrona do estoque falha.
+     * Exibe a mensagem de erro ao usuário na EDT.
+     * @param operacao Descrição da operação que falhou.
+     * @param erro O erro ocorrido.
      */
     @Override
-    public void estoqueAlterado() {
-        SwingUtilities.invokeLater(this::atualizarTabela);
+    public void erroOcorrido(String operacao, Throwable erro) {
+        SwingUtilities.invokeLater(() -> {
+            // Com o banco fora do ar, várias operações falham juntas; basta exibir a primeira.
+            if (exibindoErro) return;
+            exibindoErro = true;
+            try {
+                JOptionPane.showMessageDialog(this,
+                    erro instanceof BancoIndisponivelException ? erro.getMessage() : "Erro ao " + operacao + ": " + erro.getMessage(),
+                    "Erro no Banco de Dados",
+                    JOptionPane.ERROR_MESSAGE);
+            } finally {
+                exibindoErro = false;
+            }
+        });
+    }
+
+    /**
+     * Aplica uma única alteração do estoque ao modelo da tabela, sem recarregar as demais linhas
+     * quando a alteração não muda a posição do produto.
+     * @param evento O evento descrevendo a alteração.
+     */
+    private void aplicarAlteracao(EstoqueEvento evento) {
+        modelo.aplicarAlteracao(evento);
+    }
+
+    /**
+     * Exibe os totais do estoque na barra de status. Os totais são mantidos pelo estoque a cada
+     * alteração, sem percorrer os produtos; se ainda não estiverem disponíveis (cache não
+     * carregado e sem snapshot), são obtidos em segundo plano.
+     */
+    private void carregarTotais() {
+        TotaisEstoque totais = estoque.getTotais();
+        if (totais != null) {
+            exibirTotais(totais);
+            exibirAlertas();
+        } else {
+            estoque.calcularResumoAsync().thenRun(() -> {
+                exibirTotais(estoque.getTotais());
+                exibirAlertas();
+            });
+        }
+    }
+
+    /**
+     * Atualiza o texto dos totais na barra de status.
+     * @param totais Os totais atuais, ou null se ainda não estiverem disponíveis.
+     */
+    private void exibirTotais(TotaisEstoque totais) {
+        if (totais == null) return;
+        totaisLabel.setText(String.format("Itens: %d   Unidades: %d   Valor: R$ %s",
+            totais.getItens(), totais.getUnidades(), Relatorio.formatarMoeda(totais.getValorCentavos() / 100.0)));
+    }
+
+    /**
+     * Atualiza o número de alertas de reposição na barra de status. O número é mantido pelo
+     * estoque a cada alteração e lido em tempo constante; o botão fica oculto enquanto o cache
+     * não está carregado.
+     */
+    private void exibirAlertas() {
+        int alertas = estoque.contarAlertasReposicao();
+        alertasBtn.setVisible(alertas >= 0);
+        alertasBtn.setText("Reposição: " + Math.max(alertas, 0));
+        alertasBtn.setForeground(alertas > 0 ? Color.RED.darker() : null);
+        if (alertas > 0) {
+            AlertasReposicao.Item urgente = estoque.getAlertaMaisUrgente();
+            alertasBtn.setToolTipText(urgente == null ? null : "Mais urgente: " + urgente);
+        } else {
+            alertasBtn.setToolTipText("Nenhum produto abaixo do ponto de reposição");
+        }
     }
 
     /**
      * Inicializa todos os componentes da interface do usuário (UI).
      */
     private void initUI() {
-        setTitle("Sistema de Gerenciamento de Estoque"); // Define o título da janela
+        // Define o título da janela, com o armazém quando há mais de um
+        setTitle("Sistema de Gerenciamento de Estoque" + (armazem != null ? " - Armazém " + armazem : ""));
         // Impede o fechamento direto da janela para que a confirmação de saída possa ser exibida.
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         // Adiciona um WindowListener para tratar o evento de fechamento da janela.
@@ -64,13 +197,17 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
 
         // Painel superior para botões de ação
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
-        topPanel.add(criarBotao("Adicionar", e -> Principal.adicionarProduto())); // Botão Adicionar
+        topPanel.add(criarBotao("Adicionar", e -> Principal.adicionarProduto(estoque))); // Botão Adicionar
         topPanel.add(criarBotao("Remover Selecionado", e -> removerProdutoSelecionado())); // Botão Remover
         topPanel.add(criarBotao("Atualizar Selecionado", e -> atualizarProdutoSelecionado())); // Botão Atualizar
+        topPanel.add(criarBotao("Entrada", e -> movimentarProdutoSelecionado(true))); // Entrada de unidades
+        topPanel.add(criarBotao("Saída", e -> movimentarProdutoSelecionado(false))); // Saída de unidades
+        topPanel.add(criarBotao("Ponto Reposição", e -> definirPontoReposicaoSelecionado())); // Ponto de reposição
         topPanel.add(criarBotao("Relatório", e -> {
             // Abre a janela de relatório em uma nova thread da Swing.
             SwingUtilities.invokeLater(() -> new Relatorio(Lista.this, estoque).setVisible(true));
         }));
+        topPanel.add(criarBotao("Importar CSV", e -> importarCSV())); // Botão Importar
 
         // Painel para os campos de filtro
         JPanel filterPanel = criarFiltroPanel();
@@ -85,6 +222,32 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
         JScrollPane scrollPane = criarTabela();
         add(scrollPane, BorderLayout.CENTER);
 
+        // Barra de status com os totais do estoque e o indicador de ocupado, visível apenas durante acessos ao banco.
+        totaisLabel = new JLabel(" ");
+        alertasBtn = new JButton("Reposição: 0");
+        alertasBtn.setVisible(false);
+        alertasBtn.addActionListener(e -> new ReposicaoDialog(Lista.this, estoque).setVisible(true));
+        indicadorOcupado = new JProgressBar();
+        indicadorOcupado.setIndeterminate(true);
+        indicadorOcupado.setString("Acessando o banco de dados...");
+        indicadorOcupado.setStringPainted(true);
+        indicadorOcupado.setVisible(false);
+        JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 5));
+        statusPanel.add(totaisLabel);
+        statusPanel.add(alertasBtn);
+        statusPanel.add(indicadorOcupado);
+        add(statusPanel, BorderLayout.SOUTH);
+
+        // Atalho oculto (Ctrl+Shift+D) para o diálogo de diagnóstico com as latências das operações.
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+            .put(KeyStroke.getKeyStroke("control shift D"), "diagnostico");
+        getRootPane().getActionMap().put("diagnostico", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                new DiagnosticoDialog(Lista.this, estoque).setVisible(true);
+            }
+        });
+
         pack(); // Ajusta o tamanho da janela para caber todos os componentes
         setLocationRelativeTo(null); // Centraliza a janela na tela
         setVisible(true); // Torna a janela visível
@@ -141,27 +304,13 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
      * @return Um JScrollPane contendo a tabela.
      */
     private JScrollPane criarTabela() {
-        String[] colunas = {"Nome", "Quantidade", "Preço"}; // Nomes das colunas da tabela
-        modelo = new DefaultTableModel(colunas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Impede a edição direta das células da tabela
-            }
-
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                // Define o tipo da coluna para permitir ordenação correta.
-                if (columnIndex == 1) return Integer.class; // Coluna Quantidade é Integer
-                if (columnIndex == 2) return Double.class;  // Coluna Preço é Double
-                return String.class; // Outras colunas são String
-            }
-        };
+        // Modelo com colunas Nome, Quantidade e Preço, que carrega do banco apenas as páginas visíveis.
+        modelo = new ProdutoTableModel(estoque);
 
         tabela = new JTable(modelo); // Cria a tabela com o modelo
         
-        // Adiciona um sorter à tabela para permitir ordenação por coluna.
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(modelo);
-        tabela.setRowSorter(sorter);
+        // Adiciona um ordenador à tabela; a ordenação por coluna é executada pelo banco.
+        tabela.setRowSorter(modelo.criarOrdenador());
 
         tabela.getTableHeader().setReorderingAllowed(false); // Impede a reordenação das colunas
 
@@ -180,11 +329,12 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
 
     /**
      * Atualiza os dados exibidos na tabela, aplicando os filtros de nome e quantidade.
+     * A partir de 3 letras, o nome é buscado de forma aproximada no índice local (sem acentos,
+     * em qualquer parte do nome e tolerando um erro de digitação, ex.: "oleo" encontra
+     * "filtro de óleo"); textos mais curtos filtram pelo início do nome, no banco.
      */
     private void atualizarTabela() {
-        modelo.setRowCount(0); // Limpa todas as linhas existentes na tabela
-
-        String nomeFiltro = nomeFilter.getText().trim().toLowerCase(); // Obtém o texto do filtro de nome
+        String nomeFiltro = nomeFilter.getText(); // Obtém o texto do filtro de nome
         String quantidadeTexto = quantFilter.getText().trim(); // Obtém o texto do filtro de quantidade
         int quantidadeMinima = 0;
 
@@ -198,23 +348,12 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
             quantidadeMinima = 0;
         }
 
-        // Itera sobre a lista de produtos do estoque.
-        for (Produto p : estoque.listarProdutos()) {
-            // Aplica os filtros: nome começa com o filtro E quantidade é maior ou igual à mínima.
-            if (p.getNome().toLowerCase().startsWith(nomeFiltro) &&
-                p.getQuantidade() >= quantidadeMinima) {
-                // Adiciona o produto à tabela se ele passar pelos filtros.
-                modelo.addRow(new Object[]{
-                    p.getNome(),
-                    p.getQuantidade(),
-                    p.getPreco()
-                });
-            }
-        }
+        // Recarrega o modelo com os novos filtros, mantendo a ordenação escolhida.
+        modelo.buscar(nomeFiltro, quantidadeMinima);
     }
 
     /**
-     * Remove o produto selecionado na tabela.
+     * Remove o produto selecionado na tabela ou, se houver vários selecionados, todos eles em lote.
      * Exibe uma mensagem de aviso se nenhum produto estiver selecionado.
      */
     private void removerProdutoSelecionado() {
@@ -224,12 +363,58 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
             JOptionPane.showMessageDialog(this, "Selecione um produto na tabela para remover.", "Nenhum Produto Selecionado", JOptionPane.WARNING_MESSAGE);
             return;
         }
+        if (tabela.getSelectedRowCount() > 1) {
+            removerProdutosSelecionados(tabela.getSelectedRows());
+            return;
+        }
 
         // Converte o índice da linha da visão (ordenada/filtrada) para o índice do modelo (real).
         int modelRow = tabela.convertRowIndexToModel(selectedRow);
-        String nomeProduto = (String) modelo.getValueAt(modelRow, 0); // Obtém o nome do produto da linha selecionada
+        Produto produto = modelo.getProduto(modelRow);
+        if (produto == null) return; // A página da linha selecionada ainda está sendo carregada.
+        String nomeProduto = produto.getNome(); // Obtém o nome do produto da linha selecionada
 
-        Principal.removerProduto(nomeProduto); // Chama o método de remoção na classe Principal
+        Principal.removerProduto(estoque, nomeProduto); // Chama o método de remoção na classe Principal
+    }
+
+    /**
+     * Remove vários produtos selecionados com um único lote no banco.
+     * Linhas cujas páginas ainda estão sendo carregadas não podem ser identificadas e são ignoradas.
+     * Se a propriedade de sistema `estoque.lote.transacional` for true, o lote é aplicado em transação.
+     * @param linhas Os índices (na visão) das linhas selecionadas.
+     */
+    private void removerProdutosSelecionados(int[] linhas) {
+        List<OperacaoEstoque> operacoes = new ArrayList<>(linhas.length);
+        for (int linha : linhas) {
+            Produto produto = modelo.getProduto(tabela.convertRowIndexToModel(linha));
+            if (produto != null) operacoes.add(OperacaoEstoque.remover(produto.getNome()));
+        }
+        if (operacoes.isEmpty()) return; // Nenhuma das linhas selecionadas foi carregada ainda.
+
+        String mensagem = "Deseja realmente remover os " + operacoes.size() + " produtos selecionados?";
+        int ignoradas = linhas.length - operacoes.size();
+        if (ignoradas > 0) {
+            mensagem += "\n(" + ignoradas + " linhas ainda em carregamento serão ignoradas.)";
+        }
+        int confirmacao = JOptionPane.showConfirmDialog(this, mensagem, "Confirmar Remoção",
+            JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+        if (confirmacao != JOptionPane.YES_OPTION) return;
+
+        estoque.executarLoteAsync(operacoes, Boolean.getBoolean("estoque.lote.transacional")).thenAccept(resultados -> {
+            StringBuilder falhas = new StringBuilder();
+            int removidos = 0;
+            for (OperacaoEstoque.Resultado resultado : resultados) {
+                if (resultado.isSucesso()) removidos++;
+                else falhas.append('\n').append(resultado.getOperacao().getNome()).append(": ").append(resultado.getMensagem());
+            }
+            if (falhas.length() == 0) {
+                JOptionPane.showMessageDialog(this, removidos + " produtos removidos com sucesso.",
+                    "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, removidos + " produtos removidos. Falhas:" + falhas,
+                    "Remoção Parcial", JOptionPane.WARNING_MESSAGE);
+            }
+        });
     }
 
     /**
@@ -246,17 +431,226 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
 
         // Converte o índice da linha da visão para o índice do modelo.
         int modelRow = tabela.convertRowIndexToModel(selectedRow);
-        String nomeProduto = (String) modelo.getValueAt(modelRow, 0);
-        int quantidadeAtual = (Integer) modelo.getValueAt(modelRow, 1);
-        double precoAtual = (Double) modelo.getValueAt(modelRow, 2);
+        Produto produto = modelo.getProduto(modelRow);
+        if (produto == null) return; // A página da linha selecionada ainda está sendo carregada.
 
         // Chama o diálogo de atualização na classe Principal, passando os dados do produto.
-        Principal.mostrarDialogoAtualizarProduto(nomeProduto, quantidadeAtual, precoAtual);
+        Principal.mostrarDialogoAtualizarProduto(estoque, produto.getNome(), produto.getQuantidade(), produto.getPreco());
+    }
+
+    /**
+     * Registra uma entrada ou saída de unidades do produto selecionado.
+     * Ao contrário do diálogo de atualização, não grava uma quantidade absoluta lida da tabela:
+     * o banco soma a movimentação à quantidade atual, de modo que movimentações simultâneas
+     * de outros usuários não se perdem.
+     * @param entrada true para uma entrada, false para uma saída.
+     */
+    private void movimentarProdutoSelecionado(boolean entrada) {
+        int selectedRow = tabela.getSelectedRow(); // Obtém a linha selecionada
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Selecione um produto na tabela para movimentar.", "Nenhum Produto Selecionado", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        Produto produto = modelo.getProduto(tabela.convertRowIndexToModel(selectedRow));
+        if (produto == null) return; // A página da linha selecionada ainda está sendo carregada.
+
+        String titulo = entrada ? "Entrada de Estoque" : "Saída de Estoque";
+        String texto = JOptionPane.showInputDialog(this,
+            "Quantidade " + (entrada ? "recebida" : "retirada") + " de " + produto.getNome() + ":",
+            titulo, JOptionPane.QUESTION_MESSAGE);
+        if (texto == null) return; // Cancelado pelo usuário.
+        int quantidade;
+        try {
+            quantidade = Integer.parseInt(texto.trim());
+        } catch (NumberFormatException e) {
+            quantidade = 0;
+        }
+        if (quantidade <= 0) {
+            JOptionPane.showMessageDialog(this, "Informe um número inteiro positivo.", titulo, JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        var pedido = entrada
+            ? estoque.registrarEntradaAsync(produto.getNome(), quantidade)
+            : estoque.registrarSaidaAsync(produto.getNome(), quantidade);
+        pedido.thenAccept(movimentado -> {
+            if (movimentado == null) {
+                JOptionPane.showMessageDialog(this, entrada
+                        ? "Produto não encontrado."
+                        : "Estoque insuficiente ou produto não encontrado.",
+                    titulo, JOptionPane.WARNING_MESSAGE);
+            }
+            // Em caso de sucesso, a tabela é atualizada pelo evento do estoque.
+        });
+    }
+
+    /**
+     * Pede ao usuário o ponto de reposição do produto selecionado: abaixo dele, o produto entra
+     * na lista de reposição. Deixar o campo vazio volta a usar o ponto padrão do estoque.
+     */
+    private void definirPontoReposicaoSelecionado() {
+        int selectedRow = tabela.getSelectedRow(); // Obtém a linha selecionada
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Selecione um produto na tabela para definir o ponto de reposição.", "Nenhum Produto Selecionado", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        Produto selecionado = modelo.getProduto(tabela.convertRowIndexToModel(selectedRow));
+        if (selecionado == null) return; // A página da linha selecionada ainda está sendo carregada.
+
+        // As páginas da tabela podem não trazer o ponto de reposição; o atual é lido do estoque.
+        estoque.buscarProdutoAsync(selecionado.getNome()).thenAccept(produto -> {
+            if (produto == null) return; // Removido enquanto isso; a tabela é atualizada pelo evento.
+            String titulo = "Ponto de Reposição";
+            int atual = produto.getPontoReposicao();
+            String texto = (String) JOptionPane.showInputDialog(this,
+                "Ponto de reposição de " + produto.getNome() + " (vazio para usar o padrão, "
+                    + estoque.getPontoReposicaoPadrao() + "):",
+                titulo, JOptionPane.QUESTION_MESSAGE, null, null,
+                atual == Produto.PONTO_REPOSICAO_PADRAO ? "" : String.valueOf(atual));
+            if (texto == null) return; // Cancelado pelo usuário.
+            int ponto;
+            try {
+                ponto = texto.isBlank() ? Produto.PONTO_REPOSICAO_PADRAO : Integer.parseInt(texto.trim());
+            } catch (NumberFormatException e) {
+                ponto = -2;
+            }
+            if (ponto < Produto.PONTO_REPOSICAO_PADRAO) {
+                JOptionPane.showMessageDialog(this, "Informe um número inteiro não negativo.", titulo, JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            // Em caso de sucesso, a tabela e o número de alertas são atualizados pelo evento do estoque.
+            estoque.definirPontoReposicaoAsync(produto.getNome(), ponto);
+        });
+    }
+
+    /**
+     * Pede ao usuário um arquivo CSV (no formato exportado pelo relatório) e o importa em segundo plano.
+     * O tamanho dos lotes gravados no banco pode ser ajustado com a propriedade de sistema
+     * `estoque.importacao.lote`.
+     */
+    private void importarCSV() {
+        JFileChooser fileChooser = new JFileChooser(); // Cria um seletor de arquivos.
+        fileChooser.setDialogTitle("Importar CSV"); // Define o título do diálogo.
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Arquivos CSV (*.csv, *.csv.gz)", "csv", "gz"));
+
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            int tamanhoLote = Integer.getInteger("estoque.importacao.lote", ImportadorCSV.TAMANHO_LOTE_PADRAO);
+            new TarefaImportacao(fileChooser.getSelectedFile(), tamanhoLote).iniciar();
+        }
+    }
+
+    /**
+     * Importa um arquivo CSV fora da EDT, exibindo o progresso da leitura e permitindo cancelar.
+     * Ao final, exibe quantos produtos foram gravados, a velocidade e as linhas rejeitadas.
+     */
+    private class TarefaImportacao extends SwingWorker<ImportadorCSV.Resultado, Void> {
+        private final File arquivo;
+        private final ImportadorCSV importador;
+        private final JDialog progressoDialog;
+
+        /**
+         * Prepara a importação e o diálogo de progresso.
+         * @param arquivo O arquivo CSV a ser importado.
+         * @param tamanhoLote O número de produtos gravados por lote no banco.
+         */
+        TarefaImportacao(File arquivo, int tamanhoLote) {
+            this.arquivo = arquivo;
+            this.importador = new ImportadorCSV(estoque, tamanhoLote);
+
+            JProgressBar barra = new JProgressBar(0, 100);
+            barra.setStringPainted(true);
+            JButton cancelarBtn = new JButton("Cancelar");
+            cancelarBtn.addActionListener(e -> cancel(false)); // O importador verifica o cancelamento a cada linha.
+
+            progressoDialog = new JDialog(Lista.this, "Importando...", false);
+            progressoDialog.setLayout(new BorderLayout(10, 10));
+            progressoDialog.add(new JLabel("Importando " + arquivo.getName()), BorderLayout.NORTH);
+            progressoDialog.add(barra, BorderLayout.CENTER);
+            progressoDialog.add(cancelarBtn, BorderLayout.SOUTH);
+            progressoDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+            progressoDialog.pack();
+            progressoDialog.setLocationRelativeTo(Lista.this);
+
+            // Atualiza a barra sempre que a tarefa publica um novo progresso.
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) barra.setValue((Integer) e.getNewValue());
+            });
+        }
+
+        /**
+         * Inicia a importação e exibe o diálogo de progresso.
+         */
+        void iniciar() {
+            execute();
+            progressoDialog.setVisible(true);
+        }
+
+        @Override
+        protected ImportadorCSV.Resultado doInBackground() throws Exception {
+            return importador.importar(arquivo.toPath(),
+                fracao -> setProgress((int) (fracao * 100)),
+                this::isCancelled);
+        }
+
+        @Override
+        protected void done() {
+            progressoDialog.dispose();
+            if (isCancelled()) {
+                JOptionPane.showMessageDialog(Lista.this,
+                    "Importação cancelada. Os lotes já enviados permanecem gravados.",
+                    "Importação Cancelada",
+                    JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            try {
+                exibirResultadoImportacao(get());
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                // Exibe uma mensagem de erro se ocorrer uma exceção durante a importação.
+                JOptionPane.showMessageDialog(Lista.this,
+                    "Erro ao importar arquivo:\n" + causa.getMessage(),
+                    "Erro na Importação",
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        }
+
+        /**
+         * Exibe o resumo da importação e, se houver, a lista de linhas rejeitadas.
+         * @param resultado O resultado da importação.
+         */
+        private void exibirResultadoImportacao(ImportadorCSV.Resultado resultado) {
+            String resumo = String.format("%d linhas lidas, %d produtos gravados, %d rejeições.%n"
+                    + "Tempo: %.1f s (%.0f linhas/s)",
+                resultado.getLinhasLidas(), resultado.getGravados(), resultado.getTotalRejeicoes(),
+                resultado.getDuracaoNanos() / 1e9, resultado.getLinhasPorSegundo());
+            if (resultado.getTotalRejeicoes() == 0) {
+                JOptionPane.showMessageDialog(Lista.this, resumo, "Importação Concluída", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            // Lista as rejeições em uma área de texto rolável, pois podem ser muitas.
+            StringBuilder detalhes = new StringBuilder();
+            for (ImportadorCSV.Rejeicao rejeicao : resultado.getRejeicoes()) {
+                detalhes.append(rejeicao).append('\n');
+            }
+            long omitidas = resultado.getTotalRejeicoes() - resultado.getRejeicoes().size();
+            if (omitidas > 0) {
+                detalhes.append("... e mais ").append(omitidas).append(" rejeições.");
+            }
+            JTextArea rejeicoesArea = new JTextArea(detalhes.toString(), 12, 50);
+            rejeicoesArea.setEditable(false);
+            rejeicoesArea.setCaretPosition(0);
+
+            JPanel painel = new JPanel(new BorderLayout(5, 5));
+            painel.add(new JLabel("<html>" + resumo.replace(System.lineSeparator(), "<br>") + "</html>"), BorderLayout.NORTH);
+            painel.add(new JScrollPane(rejeicoesArea), BorderLayout.CENTER);
+            JOptionPane.showMessageDialog(Lista.this, painel, "Importação Concluída com Rejeições", JOptionPane.WARNING_MESSAGE);
+        }
     }
 
     /**
      * Exibe uma caixa de diálogo de confirmação antes de fechar o aplicativo.
-     * Se o usuário confirmar, a conexão com o MongoDB é fechada e o aplicativo é encerrado.
+     * Se o usuário confirmar, a conexão com o banco é fechada e o aplicativo é encerrado.
      */
     private void confirmarSaida() {
         int resultado = JOptionPane.showConfirmDialog(
@@ -268,8 +662,8 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
         );
 
         if (resultado == JOptionPane.YES_OPTION) {
-            // Se o usuário clicar em "Sim", fecha a conexão com o MongoDB.
-            MongoDBConnection.getInstance().close();
+            // Se o usuário clicar em "Sim", grava o snapshot local pendente e fecha a conexão com o banco.
+            encerrar.run();
             dispose(); // Libera os recursos da janela
             System.exit(0); // Encerra o aplicativo Java
         }
@@ -282,6 +676,7 @@ public class Lista extends JFrame implements Estoque.EstoqueListener {
     @Override
     public void dispose() {
         estoque.removeListener(this); // Remove esta instância como listener do estoque.
+        estoque.removeAtividadeListener(this);
         super.dispose(); // Chama o método dispose da superclasse.
     }
 }
\ No newline at end of file
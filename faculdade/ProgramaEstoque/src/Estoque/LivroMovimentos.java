@@ -0,0 +1,313 @@
+package Estoque;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Livro de movimentações do estoque: cada alteração feita pelo `Estoque` vira um lançamento
+ * (`Movimento`) acrescentado a uma coleção que nunca é alterada, o que permite auditar como
+ * o estoque chegou ao estado atual e reconstruir o estado de qualquer instante.
+ * <p>
+ * Os lançamentos não são gravados na hora: `registrar` apenas os coloca em uma fila, e uma
+ * thread de fundo os envia ao repositório em lotes (no MongoDB, um `insertMany` por lote).
+ * Enquanto um lote é gravado, os seguintes se acumulam na fila, de modo que, sob carga, os
+ * lotes crescem sozinhos e a gravação de uma alteração não espera pelo livro.
+ * Se o banco falhar, o lote é reenviado com espera crescente; se a fila encher (banco fora
+ * do ar por muito tempo), os lançamentos excedentes são descartados e contados.
+ * <p>
+ * Periodicamente (a cada `estoque.livro.checkpoint.movimentos` lançamentos ou
+ * `estoque.livro.checkpoint.minutos` minutos), o livro grava um checkpoint com o estado de
+ * cada produto, calculado a partir do checkpoint anterior. Para reconstruir um instante,
+ * `reconstruir` parte do checkpoint mais próximo e reaplica apenas os lançamentos posteriores.
+ * Como a reconstrução só lê os lançamentos com instante posterior ao checkpoint, o checkpoint
+ * só é tirado em um instante cujos lançamentos já estão todos gravados: anterior ao primeiro
+ * lançamento ainda na fila (um lote pode ficar com parte dos lançamentos de um mesmo
+ * milissegundo) e, com repositórios compartilhados, anterior a uma margem para os lançamentos
+ * que as outras instâncias ainda não gravaram (ver `instanteCompleto`).
+ * O primeiro checkpoint é uma cópia do catálogo tirada quando o livro começa a ser usado;
+ * não há histórico anterior a ele.
+ * @author Leandro
+ */
+public class LivroMovimentos implements AutoCloseable {
+    // Tamanho máximo de um lote enviado ao repositório.
+    static final int TAMANHO_LOTE = 500;
+    // Tempo máximo de espera por lançamentos quando a fila está vazia.
+    private static final long ESPERA_FILA_MS = 200;
+    // Lançamentos aguardando gravação acima dos quais novos lançamentos são descartados.
+    private static final int LIMITE_PENDENTES = 100_000;
+    // Espera inicial e máxima entre tentativas quando o repositório falha.
+    private static final long ESPERA_INICIAL_FALHA_MS = 1_000;
+    private static final long ESPERA_MAXIMA_FALHA_MS = 30_000;
+
+    private final RepositorioProdutos repositorio;
+    private final MetricasLatencia metricas;
+    // Lançamentos desde o último checkpoint e tempo máximo entre checkpoints.
+    private final int movimentosPorCheckpoint;
+    private final long intervaloCheckpointMs;
+    // Atraso máximo esperado na gravação dos lançamentos das outras instâncias.
+    private final long margemOutrasInstanciasMs;
+
+    private final BlockingQueue<Movimento> pendentes = new LinkedBlockingQueue<>(LIMITE_PENDENTES);
+    private final AtomicLong sequencia = new AtomicLong();
+    private final AtomicLong gravados = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final AtomicBoolean iniciado = new AtomicBoolean();
+    private volatile boolean encerrado = false;
+    private volatile Thread gravador;
+
+    // Estado da thread de gravação (acessado só por ela).
+    private long ultimoCheckpoint = -1; // Instante do último checkpoint gravado; -1 se ainda não verificado
+    private long ultimoInstanteGravado = 0; // Instante do último lançamento gravado
+    private int gravadosDesdeCheckpoint = 0;
+    private long horaUltimoCheckpoint = System.currentTimeMillis();
+
+    /**
+     * Construtor do livro. A thread de gravação só é criada no primeiro lançamento.
+     * @param repositorio O repositório onde os lançamentos e checkpoints são gravados.
+     * @param metricas As métricas onde são registradas as durações das gravações.
+     * @param movimentosPorCheckpoint Número de lançamentos entre dois checkpoints.
+     * @param intervaloCheckpointMs Tempo máximo (ms) entre dois checkpoints, se houver lançamentos.
+     * @param margemOutrasInstanciasMs Quanto (ms) os checkpoints ficam atrás do relógio, para
+     *        incluir os lançamentos que outras instâncias ainda estão gravando; 0 se o
+     *        repositório não é compartilhado.
+     */
+    public LivroMovimentos(RepositorioProdutos repositorio, MetricasLatencia metricas,
+                           int movimentosPorCheckpoint, long intervaloCheckpointMs, long margemOutrasInstanciasMs) {
+        if (movimentosPorCheckpoint <= 0 || intervaloCheckpointMs <= 0) {
+            throw new IllegalArgumentException("Os intervalos entre checkpoints devem ser positivos.");
+        }
+        if (margemOutrasInstanciasMs < 0) {
+            throw new IllegalArgumentException("A margem dos checkpoints não pode ser negativa.");
+        }
+        this.repositorio = repositorio;
+        this.metricas = metricas;
+        this.movimentosPorCheckpoint = movimentosPorCheckpoint;
+        this.intervaloCheckpointMs = intervaloCheckpointMs;
+        this.margemOutrasInstanciasMs = margemOutrasInstanciasMs;
+    }
+
+    /**
+     * Registra um lançamento, sem esperar pela gravação.
+     * O instante e a sequência são atribuídos aqui, na ordem em que os lançamentos entram na fila.
+     * @param tipo O tipo do lançamento.
+     * @param nome O nome normalizado do produto.
+     * @param variacao A variação da quantidade.
+     * @param quantidade A quantidade depois da alteração.
+     * @param preco O preço depois da alteração.
+     */
+    public void registrar(Movimento.Tipo tipo, String nome, int variacao, int quantidade, double preco) {
+        if (encerrado) return;
+        if (!iniciado.get() && iniciado.compareAndSet(false, true)) {
+            gravador = Thread.ofPlatform().daemon().name("estoque-livro").start(this::executar);
+        }
+        // O instante é atribuído junto com a entrada na fila, para que a fila fique em ordem de instante.
+        synchronized (pendentes) {
+            Movimento m = new Movimento(System.currentTimeMillis(), sequencia.incrementAndGet(),
+                tipo, nome, variacao, quantidade, preco);
+            if (!pendentes.offer(m)) descartados.incrementAndGet();
+        }
+    }
+
+    /**
+     * Laço da thread de gravação: prepara o primeiro checkpoint, grava os lançamentos em
+     * lotes e grava os checkpoints periódicos. Termina quando o livro é fechado e a fila esvazia.
+     */
+    private void executar() {
+        List<Movimento> lote = new ArrayList<>(TAMANHO_LOTE);
+        long esperaFalha = ESPERA_INICIAL_FALHA_MS;
+        while (true) {
+            try {
+                if (ultimoCheckpoint < 0) {
+                    prepararPrimeiroCheckpoint();
+                }
+                if (lote.isEmpty()) {
+                    Movimento primeiro = pendentes.poll(ESPERA_FILA_MS, TimeUnit.MILLISECONDS);
+                    if (primeiro == null) {
+                        if (encerrado) return;
+                        verificarCheckpoint();
+                        continue;
+                    }
+                    lote.add(primeiro);
+                    pendentes.drainTo(lote, TAMANHO_LOTE - 1);
+                }
+                metricas.medir("Livro.anexarMovimentos", () -> {
+                    repositorio.anexarMovimentos(lote);
+                    return null;
+                });
+                gravados.addAndGet(lote.size());
+                gravadosDesdeCheckpoint += lote.size();
+                ultimoInstanteGravado = lote.get(lote.size() - 1).getInstante();
+                lote.clear();
+                esperaFalha = ESPERA_INICIAL_FALHA_MS;
+                verificarCheckpoint();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                if (encerrado) {
+                    System.err.println("Livro de movimentações encerrado com " + (lote.size() + pendentes.size())
+                        + " lançamentos não gravados: " + e.getMessage());
+                    return;
+                }
+                // O lote continua na mão e será reenviado.
+                try {
+                    Thread.sleep(esperaFalha);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                esperaFalha = Math.min(esperaFalha * 2, ESPERA_MAXIMA_FALHA_MS);
+            }
+        }
+    }
+
+    /**
+     * Procura o último checkpoint; se o livro ainda não tem nenhum, grava o primeiro com
+     * uma cópia do catálogo atual.
+     */
+    private void prepararPrimeiroCheckpoint() {
+        long existente = repositorio.ultimoCheckpoint(Long.MAX_VALUE);
+        if (existente >= 0) {
+            ultimoCheckpoint = existente;
+            return;
+        }
+        long instante = System.currentTimeMillis();
+        List<Produto> catalogo = new ArrayList<>();
+        repositorio.paraCadaProduto(catalogo::add);
+        metricas.medir("Livro.gravarCheckpoint", () -> {
+            repositorio.gravarCheckpoint(instante, catalogo);
+            return null;
+        });
+        ultimoCheckpoint = instante;
+        horaUltimoCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Grava um checkpoint se já houve lançamentos suficientes ou se passou o intervalo máximo.
+     * Uma falha no checkpoint não interrompe a gravação dos lançamentos: ele é tentado de novo
+     * no próximo intervalo.
+     */
+    private void verificarCheckpoint() {
+        if (gravadosDesdeCheckpoint == 0) return;
+        boolean porQuantidade = gravadosDesdeCheckpoint >= movimentosPorCheckpoint;
+        boolean porTempo = System.currentTimeMillis() - horaUltimoCheckpoint >= intervaloCheckpointMs;
+        if (!porQuantidade && !porTempo) return;
+        long instante = instanteCompleto();
+        // Nada completo desde o último checkpoint (ex.: dentro da margem): tenta de novo na próxima verificação.
+        if (instante <= ultimoCheckpoint) return;
+        try {
+            metricas.medir("Livro.gravarCheckpoint", () -> {
+                repositorio.gravarCheckpoint(instante, reconstruir(instante).values());
+                return null;
+            });
+            ultimoCheckpoint = instante;
+            gravadosDesdeCheckpoint = 0;
+        } catch (RuntimeException e) {
+            System.err.println("Não foi possível gravar o checkpoint das movimentações: " + e.getMessage());
+        }
+        horaUltimoCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Calcula o instante mais recente até o qual todos os lançamentos já estão gravados: o do
+     * último lançamento gravado, mas antes do primeiro que ainda está na fila (que pode ter o
+     * mesmo milissegundo), antes do relógio atual (os próximos lançamentos podem cair no
+     * milissegundo corrente) e, para as outras instâncias, antes da margem.
+     * @return O instante (ms).
+     */
+    private long instanteCompleto() {
+        // Sob a trava de registrar: nenhum lançamento entra na fila entre a leitura do relógio e a da fila.
+        synchronized (pendentes) {
+            long instante = Math.min(ultimoInstanteGravado, System.currentTimeMillis() - 1 - margemOutrasInstanciasMs);
+            Movimento primeiro = pendentes.peek();
+            if (primeiro != null) instante = Math.min(instante, primeiro.getInstante() - 1);
+            return instante;
+        }
+    }
+
+    /**
+     * Reconstrói o estado do catálogo em um instante: carrega o checkpoint mais recente até
+     * esse instante e reaplica os lançamentos gravados entre o checkpoint e o instante.
+     * Lançamentos ainda na fila (ver `aguardarGravacao`) não são considerados.
+     * @param instante O instante (ms) desejado.
+     * @return Os produtos existentes no instante, indexados pelo nome, em ordem alfabética.
+     * @throws IllegalArgumentException Se o instante for anterior ao primeiro checkpoint do livro.
+     */
+    public Map<String, Produto> reconstruir(long instante) {
+        return metricas.medir("Livro.reconstruir", () -> {
+            long checkpoint = repositorio.ultimoCheckpoint(instante);
+            if (checkpoint < 0) {
+                throw new IllegalArgumentException("O livro de movimentações não tem histórico antes de " + instante + ".");
+            }
+            Map<String, Produto> estado = new TreeMap<>();
+            repositorio.paraCadaProdutoNoCheckpoint(checkpoint, p -> estado.put(p.getNome(), p));
+            repositorio.percorrerMovimentos(null, checkpoint, instante, m -> m.aplicar(estado));
+            return estado;
+        });
+    }
+
+    /**
+     * Lista os lançamentos de um produto em um intervalo, para auditoria.
+     * @param nome O nome do produto (será normalizado).
+     * @param desde O início do intervalo (ms), exclusive.
+     * @param ate O fim do intervalo (ms), inclusive.
+     * @return Os lançamentos, na ordem em que aconteceram.
+     */
+    public List<Movimento> historico(String nome, long desde, long ate) {
+        List<Movimento> movimentos = new ArrayList<>();
+        repositorio.percorrerMovimentos(Produto.normalizarNome(nome), desde, ate, movimentos::add);
+        return movimentos;
+    }
+
+    /**
+     * Espera até que todos os lançamentos registrados até agora tenham sido gravados (ou descartados).
+     * @param timeoutMs O tempo máximo de espera.
+     * @return true se a fila foi esvaziada dentro do prazo.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public boolean aguardarGravacao(long timeoutMs) throws InterruptedException {
+        long alvo = sequencia.get();
+        long limite = System.currentTimeMillis() + timeoutMs;
+        while (gravados.get() + descartados.get() < alvo) {
+            if (System.currentTimeMillis() >= limite) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Retorna quantos lançamentos já foram gravados.
+     * @return O número de lançamentos gravados.
+     */
+    public long getGravados() {
+        return gravados.get();
+    }
+
+    /**
+     * Retorna quantos lançamentos foram descartados porque a fila estava cheia.
+     * @return O número de lançamentos descartados.
+     */
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    /**
+     * Deixa de aceitar lançamentos e espera (por alguns segundos) a gravação dos que estão na fila.
+     */
+    @Override
+    public void close() {
+        encerrado = true;
+        Thread t = gravador;
+        if (t == null) return;
+        try {
+            t.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
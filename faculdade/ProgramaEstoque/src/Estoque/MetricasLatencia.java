@@ -0,0 +1,186 @@
+package Estoque;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro das latências das operações do estoque e das atualizações da interface.
+ * Cada operação tem um `HistogramaLatencia` com todas as medições e uma janela deslizante
+ * de aproximadamente um minuto, formada por 6 fatias de 10 segundos: a fatia mais antiga é
+ * descartada e reaproveitada quando o relógio entra em uma nova fatia.
+ * As medições são publicadas via JMX por `publicarJmx` e exibidas no `DiagnosticoDialog`.
+ * @author Leandro
+ */
+public class MetricasLatencia implements MetricasLatenciaMXBean {
+    // Nome do MBean publicado por `publicarJmx`.
+    static final String NOME_JMX = "Estoque:type=Latencias";
+    // Duração de cada fatia da janela deslizante e número de fatias (6 x 10 s = 1 minuto).
+    private static final long DURACAO_FATIA_MS = 10_000;
+    private static final int FATIAS = 6;
+
+    // Séries de medições por operação, em ordem alfabética.
+    private final Map<String, Serie> series = new ConcurrentSkipListMap<>();
+    // MBeans publicados por esta instância, para retirá-los em `retirarJmx`.
+    private final Map<ObjectName, Boolean> publicados = new ConcurrentHashMap<>();
+
+    /**
+     * Medições de uma operação: o histograma completo e as fatias da janela deslizante.
+     */
+    private static final class Serie {
+        final HistogramaLatencia total = new HistogramaLatencia();
+        final HistogramaLatencia[] fatias = new HistogramaLatencia[FATIAS];
+        // Período (instante / DURACAO_FATIA_MS) a que cada fatia se refere.
+        final AtomicLongArray periodos = new AtomicLongArray(FATIAS);
+
+        Serie() {
+            for (int i = 0; i < FATIAS; i++) {
+                fatias[i] = new HistogramaLatencia();
+                periodos.set(i, -1);
+            }
+        }
+
+        void registrar(long nanos, long agoraMs) {
+            total.registrar(nanos);
+            long periodo = agoraMs / DURACAO_FATIA_MS;
+            int i = (int) (periodo % FATIAS);
+            if (periodos.get(i) != periodo) {
+                // A fatia ainda guarda um período antigo: zera antes de reaproveitá-la.
+                synchronized (fatias[i]) {
+                    if (periodos.get(i) != periodo) {
+                        fatias[i].zerar();
+                        periodos.set(i, periodo);
+                    }
+                }
+            }
+            fatias[i].registrar(nanos);
+        }
+
+        HistogramaLatencia ultimoMinuto(long agoraMs) {
+            long periodoAtual = agoraMs / DURACAO_FATIA_MS;
+            HistogramaLatencia janela = new HistogramaLatencia();
+            for (int i = 0; i < FATIAS; i++) {
+                if (periodoAtual - periodos.get(i) < FATIAS) {
+                    janela.somar(fatias[i]);
+                }
+            }
+            return janela;
+        }
+    }
+
+    /**
+     * Executa uma tarefa e registra a sua duração, tenha ela terminado normalmente ou com exceção.
+     * @param operacao O nome da operação (ex.: "Estoque.buscarProduto").
+     * @param tarefa A tarefa a ser medida.
+     * @return O resultado da tarefa.
+     */
+    public <T> T medir(String operacao, Supplier<T> tarefa) {
+        long inicio = System.nanoTime();
+        try {
+            return tarefa.get();
+        } finally {
+            registrarDesde(operacao, inicio);
+        }
+    }
+
+    /**
+     * Registra a duração de uma operação iniciada em `inicioNanos` e concluída agora.
+     * Usado para operações assíncronas, em que o início e o fim acontecem em threads diferentes.
+     * @param operacao O nome da operação.
+     * @param inicioNanos O instante do início, obtido de `System.nanoTime()`.
+     */
+    public void registrarDesde(String operacao, long inicioNanos) {
+        registrar(operacao, System.nanoTime() - inicioNanos);
+    }
+
+    /**
+     * Registra a duração de uma operação.
+     * @param operacao O nome da operação.
+     * @param nanos A duração, em nanossegundos.
+     */
+    public void registrar(String operacao, long nanos) {
+        series.computeIfAbsent(operacao, k -> new Serie()).registrar(nanos, System.currentTimeMillis());
+    }
+
+    @Override
+    public List<EstatisticaLatencia> getDesdeInicio() {
+        List<EstatisticaLatencia> resultado = new ArrayList<>();
+        series.forEach((operacao, serie) -> resultado.add(resumir(operacao, serie.total)));
+        return resultado;
+    }
+
+    @Override
+    public List<EstatisticaLatencia> getUltimoMinuto() {
+        long agora = System.currentTimeMillis();
+        List<EstatisticaLatencia> resultado = new ArrayList<>();
+        series.forEach((operacao, serie) -> {
+            HistogramaLatencia janela = serie.ultimoMinuto(agora);
+            if (janela.getContagem() > 0) {
+                resultado.add(resumir(operacao, janela));
+            }
+        });
+        return resultado;
+    }
+
+    @Override
+    public void zerar() {
+        series.clear();
+    }
+
+    /**
+     * Resume um histograma em uma estatística.
+     * @param operacao O nome da operação.
+     * @param h O histograma.
+     * @return A estatística, com as durações em microssegundos.
+     */
+    private static EstatisticaLatencia resumir(String operacao, HistogramaLatencia h) {
+        long n = h.getContagem();
+        return new EstatisticaLatencia(operacao, n,
+            n == 0 ? 0 : h.getSoma() / (double) n / 1000.0,
+            h.percentil(50) / 1000.0,
+            h.percentil(99) / 1000.0,
+            h.getMaximo() / 1000.0);
+    }
+
+    /**
+     * Publica estas métricas no servidor de MBeans da plataforma como `Estoque:type=Latencias`.
+     * Se o nome já estiver em uso (outro `Estoque` na mesma JVM), acrescenta um número ao nome.
+     * Falhas na publicação são apenas relatadas: as métricas continuam disponíveis no diálogo.
+     */
+    public void publicarJmx() {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName nome = new ObjectName(NOME_JMX);
+            for (int i = 2; servidor.isRegistered(nome); i++) {
+                nome = new ObjectName(NOME_JMX + ",instancia=" + i);
+            }
+            servidor.registerMBean(this, nome);
+            publicados.put(nome, Boolean.TRUE);
+        } catch (JMException e) {
+            System.err.println("Não foi possível publicar as métricas via JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retira do servidor de MBeans os nomes publicados por `publicarJmx`.
+     */
+    public void retirarJmx() {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName nome : publicados.keySet()) {
+            try {
+                servidor.unregisterMBean(nome);
+            } catch (JMException e) {
+                // Já foi retirado por outro caminho; nada a fazer.
+            }
+            publicados.remove(nome);
+        }
+    }
+}
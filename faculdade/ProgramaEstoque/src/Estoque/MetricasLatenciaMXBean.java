@@ -0,0 +1,27 @@
+package Estoque;
+
+import java.util.List;
+
+/**
+ * Interface JMX das métricas de latência, publicada como `Estoque:type=Latencias`
+ * e visível em ferramentas como o JConsole e o VisualVM.
+ * @author Leandro
+ */
+public interface MetricasLatenciaMXBean {
+    /**
+     * Obtém as latências de cada operação desde o início (ou desde a última chamada a `zerar`).
+     * @return Uma estatística por operação, em ordem alfabética.
+     */
+    List<EstatisticaLatencia> getDesdeInicio();
+
+    /**
+     * Obtém as latências de cada operação no último minuto.
+     * @return Uma estatística por operação executada no último minuto, em ordem alfabética.
+     */
+    List<EstatisticaLatencia> getUltimoMinuto();
+
+    /**
+     * Descarta todas as medições.
+     */
+    void zerar();
+}
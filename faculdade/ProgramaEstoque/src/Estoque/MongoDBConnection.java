@@ -1,54 +1,301 @@
 package Estoque;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.connection.ClusterType;
 import org.bson.Document;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Classe que gerencia a conexão com o banco de dados MongoDB.
  * Implementa o padrão Singleton para garantir que haja apenas uma instância da conexão.
+ * A instância é criada sob demanda, em uma thread virtual, com as configurações de
+ * `ConfiguracaoBanco`; assim a interface pode ser exibida enquanto a conexão é estabelecida.
+ * <p>
+ * Um único cliente (e pool de conexões) atende a todas as partições: cada armazém (ver
+ * `Armazens`) guarda os seus produtos, o seu livro e as suas versões em uma `Particao` própria,
+ * com uma coleção ou um banco só seu. A partição configurada é a padrão.
  * @author Leandro
  */
 public class MongoDBConnection {
-    // Instância única da classe, criada na inicialização (Eager initialization).
-    private static final MongoDBConnection INSTANCE = new MongoDBConnection();
+    // Inicialização em andamento (ou concluída) da instância única; null até o primeiro pedido.
+    private static CompletableFuture<MongoDBConnection> inicializacao;
+    // Instância única, disponível depois que a inicialização termina com sucesso.
+    private static volatile MongoDBConnection instancia;
+    // Configurações usadas para criar o cliente.
+    private final ConfiguracaoBanco configuracao;
     // Cria cliente MongoDB
     private final MongoClient mongoClient;
-    // Representa o banco de dados "Estoque_BD".
+    // Representa o banco de dados configurado.
     private final MongoDatabase database;
-    // Representa a coleção dentro do banco de dados.
-    private final MongoCollection<Document> collection;
-    
-    // Conexão com MongoDB
-    private static final String CONNECTION_STRING = "mongodb://localhost:27017"; 
-    private static final String DATABASE_NAME = "Estoque_BD"; 
-    private static final String COLLECTION_NAME = "produtos";
-    
+    // Coleções da partição configurada (banco e coleção de `ConfiguracaoBanco`).
+    private final Particao padrao;
+    // Partições já preparadas, pelo banco e pela coleção de produtos ("banco.colecao").
+    private final Map<String, Particao> particoes = new ConcurrentHashMap<>();
+
+    // Dias durante os quais as lápides dos produtos removidos são mantidas (índice TTL).
+    static final long VALIDADE_LAPIDES_DIAS = 30;
+    // Nome do índice único em "nome", usado nas verificações de existência.
+    public static final String INDICE_NOME = "nome_unico";
+    // Nome do índice composto usado pelas consultas filtradas da `Lista`.
+    // Inclui todos os campos exibidos, para que as consultas sejam respondidas só pelo índice.
+    public static final String INDICE_CONSULTA = "nome_quantidade_preco";
+    // Índices que atendem à ordenação por quantidade e por preço nas consultas paginadas.
+    // O nome entra como desempate, tornando a ordem total para a paginação por chave (keyset).
+    public static final String INDICE_QUANTIDADE = "quantidade_nome_preco";
+    public static final String INDICE_PRECO = "preco_nome_quantidade";
+
+    /**
+     * As coleções de uma partição: a de produtos e, com o nome dela como prefixo, as do livro
+     * de movimentações e da sincronização. Os índices são criados quando a partição é preparada.
+     */
+    public static final class Particao {
+        private final MongoCollection<Document> produtos;
+        // Livro de movimentações e checkpoints (ver `LivroMovimentos`), com o nome da coleção como prefixo.
+        private final MongoCollection<Document> movimentos;
+        private final MongoCollection<Document> checkpoints;
+        private final MongoCollection<Document> estadosCheckpoint;
+        // Contador das versões do catálogo e lápides dos produtos removidos (sincronização entre instâncias).
+        private final MongoCollection<Document> contadores;
+        private final MongoCollection<Document> removidos;
+
+        /**
+         * Obtém as coleções de uma partição, sem acessar o servidor.
+         * @param banco O banco de dados da partição.
+         * @param colecao O nome da coleção de produtos.
+         */
+        private Particao(MongoDatabase banco, String colecao) {
+            this.produtos = banco.getCollection(colecao);
+            this.movimentos = banco.getCollection(colecao + "_movimentos");
+            this.checkpoints = banco.getCollection(colecao + "_checkpoints");
+            this.estadosCheckpoint = banco.getCollection(colecao + "_checkpoints_estados");
+            this.contadores = banco.getCollection(colecao + "_contadores");
+            this.removidos = banco.getCollection(colecao + "_removidos");
+        }
+
+        /**
+         * Retorna a coleção de produtos da partição.
+         * @return A coleção de produtos.
+         */
+        public MongoCollection<Document> getProdutos() {
+            return produtos;
+        }
+
+        /**
+         * Retorna a coleção do livro de movimentações.
+         * @return A coleção de lançamentos.
+         */
+        public MongoCollection<Document> getMovimentos() {
+            return movimentos;
+        }
+
+        /**
+         * Retorna a coleção que registra os checkpoints concluídos do livro de movimentações.
+         * @return A coleção de checkpoints.
+         */
+        public MongoCollection<Document> getCheckpoints() {
+            return checkpoints;
+        }
+
+        /**
+         * Retorna a coleção com o estado de cada produto em cada checkpoint.
+         * @return A coleção de estados.
+         */
+        public MongoCollection<Document> getEstadosCheckpoint() {
+            return estadosCheckpoint;
+        }
+
+        /**
+         * Retorna a coleção de contadores, com o documento que guarda a última versão do catálogo.
+         * @return A coleção de contadores.
+         */
+        public MongoCollection<Document> getContadores() {
+            return contadores;
+        }
+
+        /**
+         * Retorna a coleção das lápides: o nome e a versão de cada produto removido.
+         * @return A coleção de lápides.
+         */
+        public MongoCollection<Document> getRemovidos() {
+            return removidos;
+        }
+
+        /**
+         * Cria, se ainda não existirem, os índices usados pelo sistema:
+         * um índice único em "nome" e índices compostos com os três campos exibidos,
+         * um para cada campo de ordenação, que atendem às consultas filtradas e paginadas
+         * sem precisar ler os documentos.
+         */
+        private void criarIndices() {
+            produtos.createIndex(Indexes.ascending("nome"),
+                new IndexOptions().unique(true).name(INDICE_NOME));
+            produtos.createIndex(Indexes.ascending("nome", "quantidade", "preco"),
+                new IndexOptions().name(INDICE_CONSULTA));
+            produtos.createIndex(Indexes.ascending("quantidade", "nome", "preco"),
+                new IndexOptions().name(INDICE_QUANTIDADE));
+            produtos.createIndex(Indexes.ascending("preco", "nome", "quantidade"),
+                new IndexOptions().name(INDICE_PRECO));
+            // Atende à reconciliação do snapshot local, que busca os produtos alterados desde uma data.
+            produtos.createIndex(Indexes.ascending("atualizadoEm"),
+                new IndexOptions().name("atualizadoEm"));
+            // Livro de movimentações: ordem dos lançamentos (única, para que um lote reenviado
+            // após uma falha não duplique lançamentos) e histórico de um produto.
+            movimentos.createIndex(Indexes.ascending("instante", "sequencia", "nome"),
+                new IndexOptions().unique(true).name("instante_sequencia_nome"));
+            movimentos.createIndex(Indexes.ascending("nome", "instante", "sequencia"),
+                new IndexOptions().name("nome_instante_sequencia"));
+            checkpoints.createIndex(Indexes.descending("instante"), new IndexOptions().name("instante"));
+            estadosCheckpoint.createIndex(Indexes.ascending("checkpoint", "nome"),
+                new IndexOptions().name("checkpoint_nome"));
+            // Sincronização: produtos e lápides alterados desde uma versão. As lápides expiram
+            // depois de VALIDADE_LAPIDES_DIAS; uma instância que não sincroniza há mais tempo
+            // confere o catálogo inteiro (ver Estoque.sincronizar).
+            produtos.createIndex(Indexes.ascending("versao"), new IndexOptions().name("versao"));
+            removidos.createIndex(Indexes.ascending("nome"), new IndexOptions().unique(true).name("nome"));
+            removidos.createIndex(Indexes.ascending("versao"), new IndexOptions().name("versao"));
+            removidos.createIndex(Indexes.ascending("removidoEm"),
+                new IndexOptions().name("removidoEm").expireAfter(VALIDADE_LAPIDES_DIAS, TimeUnit.DAYS));
+        }
+    }
+
     /**
      * Construtor privado para implementar o padrão Singleton.
-     * Inicializa a conexão com o MongoDB.
-     * Lança uma RuntimeException se a conexão falhar.
+     * Cria o cliente com as configurações informadas, confirma que o servidor responde,
+     * cria os índices e, se configurado, aquece o pool de conexões e os índices.
+     * @param configuracao As configurações da conexão.
+     * @throws BancoIndisponivelException Se o servidor não responder ou a coleção não puder ser preparada.
      */
-    private MongoDBConnection() {
+    private MongoDBConnection(ConfiguracaoBanco configuracao) {
+        this.configuracao = configuracao;
+        ConnectionString connectionString = new ConnectionString(configuracao.getUri());
+        MongoClientSettings settings = MongoClientSettings.builder()
+            .applyConnectionString(connectionString)
+            .applyToConnectionPoolSettings(pool -> pool
+                .minSize(configuracao.getPoolMinimo())
+                .maxSize(configuracao.getPoolMaximo())
+                .maxWaitTime(configuracao.getEsperaPoolMs(), TimeUnit.MILLISECONDS))
+            .applyToSocketSettings(socket -> socket
+                .connectTimeout((int) configuracao.getTimeoutConexaoMs(), TimeUnit.MILLISECONDS)
+                .readTimeout((int) configuracao.getTimeoutLeituraMs(), TimeUnit.MILLISECONDS))
+            .applyToClusterSettings(cluster -> cluster
+                .serverSelectionTimeout(configuracao.getTimeoutSelecaoServidorMs(), TimeUnit.MILLISECONDS))
+            .compressorList(configuracao.criarCompressores())
+            .build();
+
+        // Cria uma nova instância do cliente MongoDB (ainda sem conectar).
+        this.mongoClient = MongoClients.create(settings);
         try {
-            // Cria uma nova instância do cliente MongoDB.
-            this.mongoClient = MongoClients.create(CONNECTION_STRING);
-            this.database = mongoClient.getDatabase(DATABASE_NAME); 
-            this.collection = database.getCollection(COLLECTION_NAME);
-        } catch (Exception e) {
-            // Em caso de falha na inicialização, lança uma exceção em tempo de execução.
-            throw new RuntimeException("Falhou em inicializar a conexão com MongoDB", e);
+            this.database = mongoClient.getDatabase(configuracao.getBanco());
+            this.padrao = new Particao(database, configuracao.getColecao());
+            // O cliente só conecta de fato na primeira operação; o ping revela logo um servidor fora do ar.
+            database.runCommand(new Document("ping", 1));
+            padrao.criarIndices();
+            particoes.put(configuracao.getBanco() + "." + configuracao.getColecao(), padrao);
+            if (configuracao.isAquecer()) aquecer();
+        } catch (RuntimeException e) {
+            mongoClient.close();
+            // Não inclui a string de conexão completa, que pode conter a senha.
+            throw new BancoIndisponivelException("Não foi possível conectar ao MongoDB em "
+                + connectionString.getHosts() + " (banco " + configuracao.getBanco() + "): " + e.getMessage()
+                + "\nVerifique se o servidor está em execução e as configurações em estoque.properties.", e);
+        }
+    }
+
+    /**
+     * Inicia (se ainda não iniciada) a criação da conexão em uma thread virtual e retorna
+     * o seu andamento. Se uma tentativa anterior falhou, uma nova tentativa é feita.
+     * Pode ser chamado no início da aplicação para que a conexão seja estabelecida
+     * enquanto a interface é desenhada.
+     * @return Um future concluído com a conexão, ou com `BancoIndisponivelException` em caso de falha.
+     */
+    public static synchronized CompletableFuture<MongoDBConnection> inicializarAsync() {
+        if (inicializacao == null || inicializacao.isCompletedExceptionally()) {
+            CompletableFuture<MongoDBConnection> nova = new CompletableFuture<>();
+            inicializacao = nova;
+            Thread.ofVirtual().name("mongodb-inicializacao").start(() -> {
+                try {
+                    MongoDBConnection conexao = new MongoDBConnection(ConfiguracaoBanco.carregar());
+                    instancia = conexao;
+                    nova.complete(conexao);
+                } catch (Throwable e) {
+                    nova.completeExceptionally(e);
+                }
+            });
+        }
+        return inicializacao;
+    }
+
+    /**
+     * Abre as conexões mínimas do pool em paralelo e lê uma entrada de cada índice,
+     * trazendo-os para a memória do servidor antes das primeiras consultas da interface.
+     * O aquecimento é só uma otimização: as falhas são contadas e relatadas em uma linha
+     * em System.err, sem impedir que a conexão seja usada.
+     */
+    private void aquecer() {
+        List<String> indices = List.of(INDICE_NOME, INDICE_CONSULTA, INDICE_QUANTIDADE, INDICE_PRECO);
+        AtomicInteger falhas = new AtomicInteger();
+        List<CompletableFuture<Void>> pings = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < configuracao.getPoolMinimo(); i++) {
+                // Pings simultâneos obrigam o pool a abrir conexões distintas.
+                pings.add(CompletableFuture.runAsync(() -> database.runCommand(new Document("ping", 1)), executor)
+                    .exceptionally(e -> {
+                        falhas.incrementAndGet();
+                        return null;
+                    }));
+            }
+            for (String indice : indices) {
+                try {
+                    padrao.getProdutos().find()
+                        .projection(Projections.fields(Projections.include("nome"), Projections.excludeId()))
+                        .hintString(indice)
+                        .limit(1)
+                        .first();
+                } catch (RuntimeException e) {
+                    falhas.incrementAndGet();
+                }
+            }
+            CompletableFuture.allOf(pings.toArray(CompletableFuture[]::new)).join();
+        }
+        if (falhas.get() > 0) {
+            System.err.println("Aquecimento da conexão com o MongoDB incompleto: " + falhas.get()
+                + " de " + (pings.size() + indices.size()) + " leituras falharam; as conexões serão abertas sob demanda.");
         }
     }
     
     /**
-     * Retorna a única instância de `MongoDBConnection`.
+     * Retorna a única instância de `MongoDBConnection`, esperando a inicialização se necessário.
+     * Não deve ser chamado na EDT antes que a conexão esteja pronta.
      * @return A instância de `MongoDBConnection`.
+     * @throws BancoIndisponivelException Se não for possível conectar ao banco.
      */
     public static MongoDBConnection getInstance() {
-        return INSTANCE;
+        MongoDBConnection conexao = instancia;
+        if (conexao != null) return conexao;
+        try {
+            return inicializarAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) throw causa;
+            throw e;
+        }
     }
     
     /**
@@ -56,9 +303,57 @@ public class MongoDBConnection {
       @return A {@code MongoCollection<Document>} contendo os produtos.
      */
     public MongoCollection<Document> getCollection() {
-        return collection;
+        return padrao.getProdutos();
     }
-    
+
+    /**
+     * Retorna a partição configurada em `ConfiguracaoBanco`.
+     * @return A partição padrão.
+     */
+    public Particao getParticao() {
+        return padrao;
+    }
+
+    /**
+     * Retorna uma partição, preparando-a (índices) no primeiro pedido. Várias threads podem
+     * preparar a mesma partição ao mesmo tempo; a criação dos índices é idempotente.
+     * @param banco O banco de dados, ou null para o banco configurado.
+     * @param colecao O nome da coleção de produtos, ou null para a coleção configurada.
+     * @return A partição.
+     */
+    public Particao getParticao(String banco, String colecao) {
+        String nomeBanco = banco != null ? banco : configuracao.getBanco();
+        String nomeColecao = colecao != null ? colecao : configuracao.getColecao();
+        String chave = nomeBanco + "." + nomeColecao;
+        Particao particao = particoes.get(chave);
+        if (particao != null) return particao;
+        // Fora de `computeIfAbsent`, para não segurar a trava do mapa durante os acessos ao servidor.
+        particao = new Particao(mongoClient.getDatabase(nomeBanco), nomeColecao);
+        particao.criarIndices();
+        Particao anterior = particoes.putIfAbsent(chave, particao);
+        return anterior != null ? anterior : particao;
+    }
+
+    /**
+     * Inicia uma sessão no cliente MongoDB, usada para executar operações em transação.
+     * A sessão deve ser fechada por quem a iniciou.
+     * @return Uma nova sessão.
+     */
+    public ClientSession iniciarSessao() {
+        return mongoClient.startSession();
+    }
+
+    /**
+     * Indica se o servidor aceita transações (replica set ou cluster fragmentado). Usa a
+     * descrição do cluster que o driver já mantém, sem ir ao servidor; enquanto o driver ainda
+     * não conhece o servidor, responde false.
+     * @return true se as transações estão disponíveis.
+     */
+    public boolean suportaTransacoes() {
+        ClusterType tipo = mongoClient.getClusterDescription().getType();
+        return tipo == ClusterType.REPLICA_SET || tipo == ClusterType.SHARDED || tipo == ClusterType.LOAD_BALANCED;
+    }
+
     /**
      * Fecha a conexão com o cliente MongoDB.
      * Deve ser chamado ao encerrar a aplicação para liberar recursos.
@@ -66,4 +361,13 @@ public class MongoDBConnection {
     public void close() {
         mongoClient.close();
     }
+
+    /**
+     * Fecha a conexão, caso ela tenha sido criada. Ao contrário de `getInstance().close()`,
+     * não espera nem dispara a inicialização.
+     */
+    public static void encerrar() {
+        MongoDBConnection conexao = instancia;
+        if (conexao != null) conexao.close();
+    }
 }
\ No newline at end of file
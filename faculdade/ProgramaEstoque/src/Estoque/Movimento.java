@@ -0,0 +1,143 @@
+package Estoque;
+
+import java.util.Map;
+
+/**
+ * Um lançamento do livro de movimentações (ver `LivroMovimentos`): registra uma alteração
+ * de um produto, quando ela aconteceu, quanto a quantidade variou e o estado do produto
+ * depois dela. Como cada lançamento traz o estado resultante, reaplicá-lo é idempotente:
+ * reaplicar lançamentos já refletidos em um checkpoint não altera o resultado da reconstrução.
+ * @author Leandro
+ */
+public final class Movimento {
+
+    /**
+     * Tipos de lançamento.
+     */
+    public enum Tipo {
+        /** Um novo produto foi cadastrado. */
+        ADICIONADO,
+        /** Um produto foi removido. */
+        REMOVIDO,
+        /** A quantidade e/ou o preço foram substituídos (diálogo de atualização ou lote). */
+        ATUALIZADO,
+        /** Entrada de unidades (`Estoque.registrarEntrada`). */
+        ENTRADA,
+        /** Saída de unidades (`Estoque.registrarSaida`). */
+        SAIDA,
+        /** O produto foi gravado por uma importação de catálogo. */
+        IMPORTADO
+    }
+
+    private final long instante; // Instante (ms) da alteração
+    private final long sequencia; // Desempate entre lançamentos do mesmo instante
+    private final Tipo tipo;
+    private final String nome; // Nome normalizado do produto
+    private final int variacao; // Variação da quantidade (negativa nas saídas e remoções)
+    private final int quantidade; // Quantidade depois da alteração (0 para REMOVIDO)
+    private final double preco; // Preço depois da alteração
+
+    /**
+     * Construtor do lançamento.
+     * @param instante O instante (ms) da alteração.
+     * @param sequencia O número de sequência, que desempata lançamentos do mesmo instante.
+     * @param tipo O tipo do lançamento.
+     * @param nome O nome normalizado do produto.
+     * @param variacao A variação da quantidade.
+     * @param quantidade A quantidade depois da alteração.
+     * @param preco O preço depois da alteração.
+     */
+    public Movimento(long instante, long sequencia, Tipo tipo, String nome, int variacao, int quantidade, double preco) {
+        this.instante = instante;
+        this.sequencia = sequencia;
+        this.tipo = tipo;
+        this.nome = nome;
+        this.variacao = variacao;
+        this.quantidade = quantidade;
+        this.preco = preco;
+    }
+
+    /**
+     * Aplica este lançamento a um estado do catálogo, indexado pelo nome.
+     * @param estado O estado a ser alterado.
+     */
+    void aplicar(Map<String, Produto> estado) {
+        if (tipo == Tipo.REMOVIDO) {
+            estado.remove(nome);
+        } else {
+            estado.put(nome, new Produto(nome, quantidade, preco));
+        }
+    }
+
+    /**
+     * Compara a ordem de dois lançamentos: pelo instante e, no mesmo instante, pela sequência.
+     * @param outro O outro lançamento.
+     * @return Negativo, zero ou positivo, como em `Comparator`.
+     */
+    int compararOrdem(Movimento outro) {
+        int c = Long.compare(instante, outro.instante);
+        return c != 0 ? c : Long.compare(sequencia, outro.sequencia);
+    }
+
+    /**
+     * Obtém o instante da alteração.
+     * @return O instante, em milissegundos desde a época.
+     */
+    public long getInstante() {
+        return instante;
+    }
+
+    /**
+     * Obtém o número de sequência do lançamento.
+     * @return A sequência.
+     */
+    public long getSequencia() {
+        return sequencia;
+    }
+
+    /**
+     * Obtém o tipo do lançamento.
+     * @return O tipo.
+     */
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Obtém o nome do produto.
+     * @return O nome normalizado.
+     */
+    public String getNome() {
+        return nome;
+    }
+
+    /**
+     * Obtém a variação da quantidade.
+     * @return A variação (negativa nas saídas e remoções).
+     */
+    public int getVariacao() {
+        return variacao;
+    }
+
+    /**
+     * Obtém a quantidade depois da alteração.
+     * @return A quantidade.
+     */
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Obtém o preço depois da alteração.
+     * @return O preço.
+     */
+    public double getPreco() {
+        return preco;
+    }
+
+    @Override
+    public String toString() {
+        return instante + " " + tipo + " " + nome + " (" + (variacao >= 0 ? "+" : "") + variacao
+            + ") -> " + quantidade + " a " + preco;
+    }
+}
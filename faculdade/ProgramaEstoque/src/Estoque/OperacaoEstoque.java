@@ -0,0 +1,150 @@
+package Estoque;
+
+/**
+ * Descreve uma alteração a ser aplicada ao estoque como parte de um lote
+ * (ver `Estoque.executarLote`). Cada operação do lote recebe o seu próprio `Resultado`.
+ * @author Leandro
+ */
+public final class OperacaoEstoque {
+
+    /**
+     * Tipos de operação que podem compor um lote.
+     */
+    public enum Tipo {
+        /** Inserir um produto novo; falha se o nome já existir. */
+        ADICIONAR,
+        /** Remover um produto existente. */
+        REMOVER,
+        /** Substituir a quantidade e o preço de um produto existente. */
+        ATUALIZAR
+    }
+
+    private final Tipo tipo; // Tipo da operação
+    private final Produto produto; // Produto com os novos valores (para REMOVER, apenas o nome importa)
+
+    /**
+     * Construtor privado; use os métodos de fábrica `adicionar`, `remover` e `atualizar`.
+     * @param tipo O tipo da operação.
+     * @param produto O produto alvo da operação.
+     */
+    private OperacaoEstoque(Tipo tipo, Produto produto) {
+        this.tipo = tipo;
+        this.produto = produto;
+    }
+
+    /**
+     * Cria uma operação de adição.
+     * @param produto O produto a ser adicionado.
+     * @return A operação criada.
+     */
+    public static OperacaoEstoque adicionar(Produto produto) {
+        return new OperacaoEstoque(Tipo.ADICIONAR, produto);
+    }
+
+    /**
+     * Cria uma operação de remoção.
+     * @param nome O nome do produto a ser removido.
+     * @return A operação criada.
+     */
+    public static OperacaoEstoque remover(String nome) {
+        return new OperacaoEstoque(Tipo.REMOVER, new Produto(nome, 0, 0));
+    }
+
+    /**
+     * Cria uma operação de atualização.
+     * @param nome O nome do produto a ser atualizado.
+     * @param quantidade A nova quantidade.
+     * @param preco O novo preço.
+     * @return A operação criada.
+     */
+    public static OperacaoEstoque atualizar(String nome, int quantidade, double preco) {
+        return new OperacaoEstoque(Tipo.ATUALIZAR, new Produto(nome, quantidade, preco));
+    }
+
+    /**
+     * Obtém o tipo da operação.
+     * @return O tipo da operação.
+     */
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Obtém o produto alvo da operação.
+     * @return O produto, com o nome já normalizado.
+     */
+    public Produto getProduto() {
+        return produto;
+    }
+
+    /**
+     * Obtém o nome (normalizado) do produto alvo.
+     * @return O nome do produto.
+     */
+    public String getNome() {
+        return produto.getNome();
+    }
+
+    /**
+     * Retorna uma representação em string da operação.
+     * @return Uma string no formato "TIPO nome".
+     */
+    @Override
+    public String toString() {
+        return tipo + " " + produto.getNome();
+    }
+
+    /**
+     * Resultado de uma operação de um lote.
+     */
+    public static final class Resultado {
+        private final OperacaoEstoque operacao;
+        private final boolean sucesso;
+        private final String mensagem;
+
+        /**
+         * Construtor do Resultado.
+         * @param operacao A operação a que o resultado se refere.
+         * @param sucesso true se a operação foi aplicada.
+         * @param mensagem O motivo da falha, ou null em caso de sucesso.
+         */
+        Resultado(OperacaoEstoque operacao, boolean sucesso, String mensagem) {
+            this.operacao = operacao;
+            this.sucesso = sucesso;
+            this.mensagem = mensagem;
+        }
+
+        /**
+         * Obtém a operação a que o resultado se refere.
+         * @return A operação.
+         */
+        public OperacaoEstoque getOperacao() {
+            return operacao;
+        }
+
+        /**
+         * Indica se a operação foi aplicada.
+         * @return true em caso de sucesso.
+         */
+        public boolean isSucesso() {
+            return sucesso;
+        }
+
+        /**
+         * Obtém o motivo da falha.
+         * @return A mensagem de erro, ou null se a operação foi aplicada.
+         */
+        public String getMensagem() {
+            return mensagem;
+        }
+
+        /**
+         * Retorna uma representação em string do resultado.
+         * @return Uma string no formato "TIPO nome: OK" ou "TIPO nome: mensagem".
+         */
+        @Override
+        public String toString() {
+            return operacao + ": " + (sucesso ? "OK" : mensagem);
+        }
+    }
+}
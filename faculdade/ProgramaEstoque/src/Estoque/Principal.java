@@ -9,17 +9,69 @@ import javax.swing.*;
  * @author Leandro
  */
 public class Principal {
-    // Instância única do gerenciador de estoque.
-    private static final Estoque estoque = new Estoque();
+    // Armazéns configurados, cada um com o seu gerenciador de estoque (ver Armazens).
+    private static final Armazens armazens = Armazens.criar();
 
     /**
      * Método principal que inicia a aplicação.
-     * Cria e exibe a janela principal da lista de produtos na Thread de Despacho de Eventos (EDT).
-     * @param args Argumentos da linha de comando (não utilizados).
+     * Cria e exibe a janela da lista de produtos de cada armazém na Thread de Despacho de Eventos (EDT).
+     * Com o argumento {@code --servidor}, não cria janelas: atende a API HTTP do estoque (ver
+     * `ServidorHttp`) no endereço {@code -Destoque.http.endereco} (padrão: localhost) e na porta
+     * {@code -Destoque.http.porta} (padrão: 8080), até o processo ser encerrado.
+     * @param args Argumentos da linha de comando ({@code --servidor} ou nenhum).
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            iniciarServidor();
+            return;
+        }
+        // Começa a conectar ao banco em segundo plano enquanto as janelas são criadas.
+        armazens.iniciar();
+        // Com -Destoque.verificarIndices=true, confere se as consultas filtradas são cobertas pelos índices.
+        if (Boolean.getBoolean("estoque.verificarIndices")) {
+            Estoque estoque = armazens.getPrincipal();
+            System.out.println("Consulta por nome coberta pelo índice: " + estoque.verificarConsultaCoberta("a", 0));
+            System.out.println("Consulta por quantidade coberta pelo índice: " + estoque.verificarConsultaCoberta("", 1));
+        }
         // Garante que a interface gráfica seja criada e manipulada na Event Dispatch Thread (EDT).
-        SwingUtilities.invokeLater(() -> new Lista(estoque));
+        SwingUtilities.invokeLater(() -> {
+            if (armazens.getQuantidade() == 1) {
+                new Lista(armazens.getPrincipal(), null, armazens::fechar);
+                return;
+            }
+            // Uma janela por armazém, em cascata; sair por qualquer uma fecha todos os armazéns.
+            int deslocamento = 0;
+            for (String armazem : armazens.getNomes()) {
+                Lista lista = new Lista(armazens.getEstoque(armazem), armazem, armazens::fechar);
+                lista.setLocation(lista.getX() + deslocamento, lista.getY() + deslocamento);
+                deslocamento += 30;
+            }
+        });
+    }
+
+    /**
+     * Inicia a API HTTP sem interface gráfica. Ao encerrar o processo (ex.: Ctrl+C), o servidor
+     * para de atender e os armazéns são fechados, gravando o snapshot de cada um.
+     */
+    private static void iniciarServidor() {
+        System.setProperty("java.awt.headless", "true");
+        armazens.iniciar();
+        String endereco = System.getProperty("estoque.http.endereco", "localhost");
+        int porta = Integer.getInteger("estoque.http.porta", 8080);
+        try {
+            ServidorHttp servidor = new ServidorHttp(armazens, new java.net.InetSocketAddress(endereco, porta));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                servidor.parar();
+                armazens.fechar();
+            }, "encerrar-servidor"));
+            servidor.iniciar();
+            System.out.println("API do estoque em http://" + endereco + ":" + servidor.getPorta() + "/api/ (armazéns: "
+                + String.join(", ", armazens.getNomes()) + ")");
+        } catch (java.io.IOException e) {
+            System.err.println("Não foi possível abrir a porta " + porta + ": " + e.getMessage());
+            armazens.fechar();
+            System.exit(1);
+        }
     }
 
     /**
@@ -79,8 +131,9 @@ public class Principal {
 
     /**
      * Exibe um diálogo para adicionar um novo produto ao estoque.
+     * @param estoque O estoque (armazém) que receberá o produto.
      */
-    public static void adicionarProduto() {
+    public static void adicionarProduto(Estoque estoque) {
         JDialog dialog = createBaseDialog("Adicionar Produto", 400, 250); // Cria o diálogo de adição
         GridBagConstraints gbc = new GridBagConstraints(); // Objeto para configurar o GridBagLayout
         gbc.insets = new Insets(5, 5, 5, 5); // Define as margens internas dos componentes
@@ -114,11 +167,20 @@ public class Principal {
                 if (confirmarAcao(dialog,
                     String.format("Deseja realmente adicionar o produto '%s' com quantidade %d e preço R$ %.2f?", nome, quantidade, preco),
                     "Confirmar Adição", JOptionPane.QUESTION_MESSAGE)) {
-                    // Tenta adicionar o produto ao estoque.
-                    if (estoque.adicionarProduto(new Produto(nome, quantidade, preco))) {
-                        mostrarMensagemSucesso(dialog, "Produto adicionado com sucesso.");
-                        dialog.dispose(); // Fecha o diálogo se a adição for bem-sucedida.
-                    }
+                    // Tenta adicionar o produto ao estoque fora da EDT; o resultado chega de volta na EDT.
+                    salvarBtn.setEnabled(false); // Evita cliques repetidos enquanto a gravação está em andamento.
+                    estoque.adicionarProdutoAsync(new Produto(nome, quantidade, preco))
+                        .thenAccept(adicionado -> {
+                            if (adicionado) {
+                                mostrarMensagemSucesso(dialog, "Produto adicionado com sucesso.");
+                                dialog.dispose(); // Fecha o diálogo se a adição for bem-sucedida.
+                            }
+                        })
+                        .exceptionally(erro -> {
+                            // O erro já foi relatado pelo AtividadeListener; apenas libera o botão.
+                            salvarBtn.setEnabled(true);
+                            return null;
+                        });
                 }
             } catch (NumberFormatException ex) {
                 // Exibe erro se houver problema na conversão de número.
@@ -151,25 +213,29 @@ public class Principal {
 
     /**
      * Remove um produto do estoque após confirmação.
+     * @param estoque O estoque (armazém) do produto.
      * @param nome O nome do produto a ser removido.
      */
-    public static void removerProduto(String nome) {
+    public static void removerProduto(Estoque estoque, String nome) {
         // Pede confirmação ao usuário antes de remover o produto.
         if (confirmarAcao(null, "Deseja realmente remover o produto " + nome + "?", "Confirmar Remoção", JOptionPane.WARNING_MESSAGE)) {
-            boolean removido = estoque.removerProduto(nome); // Tenta remover o produto.
-            if (removido) mostrarMensagemSucesso(null, "Produto removido com sucesso.");
-            else mostrarMensagemErro(null, "Produto não encontrado.");
+            // Tenta remover o produto fora da EDT; a mensagem é exibida quando o resultado chegar.
+            estoque.removerProdutoAsync(nome).thenAccept(removido -> {
+                if (removido) mostrarMensagemSucesso(null, "Produto removido com sucesso.");
+                else mostrarMensagemErro(null, "Produto não encontrado.");
+            });
         }
     }
 
     /**
      * Exibe um diálogo para atualizar a quantidade e o preço de um produto existente.
      * O nome do produto é exibido, mas não pode ser editado.
+     * @param estoque O estoque (armazém) do produto.
      * @param nome O nome do produto a ser atualizado.
      * @param quantidadeAtual A quantidade atual do produto.
      * @param precoAtual O preço atual do produto.
      */
-    public static void mostrarDialogoAtualizarProduto(String nome, int quantidadeAtual, double precoAtual) {
+    public static void mostrarDialogoAtualizarProduto(Estoque estoque, String nome, int quantidadeAtual, double precoAtual) {
         JDialog dialog = createBaseDialog("Atualizar Produto", 400, 250); // Cria o diálogo de atualização
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(5, 5, 5, 5);
@@ -205,13 +271,22 @@ public class Principal {
                 if (confirmarAcao(dialog,
                     String.format("Deseja realmente atualizar o produto %s com quantidade %d e preço R$ %.2f?", nome, quantidade, preco),
                     "Confirmar Atualização", JOptionPane.WARNING_MESSAGE)) {
-                    boolean atualizado = estoque.atualizarProduto(nome, quantidade, preco); // Tenta atualizar o produto.
-                    if (atualizado) {
-                        mostrarMensagemSucesso(dialog, "Produto atualizado com sucesso.");
-                        dialog.dispose(); // Fecha o diálogo se a atualização for bem-sucedida.
-                    } else {
-                        mostrarMensagemErro(dialog, "Erro ao atualizar o produto.");
-                    }
+                    // Tenta atualizar o produto fora da EDT; o resultado chega de volta na EDT.
+                    salvarBtn.setEnabled(false);
+                    estoque.atualizarProdutoAsync(nome, quantidade, preco)
+                        .thenAccept(atualizado -> {
+                            if (atualizado) {
+                                mostrarMensagemSucesso(dialog, "Produto atualizado com sucesso.");
+                                dialog.dispose(); // Fecha o diálogo se a atualização for bem-sucedida.
+                            } else {
+                                mostrarMensagemErro(dialog, "Erro ao atualizar o produto.");
+                                salvarBtn.setEnabled(true);
+                            }
+                        })
+                        .exceptionally(erro -> {
+                            salvarBtn.setEnabled(true);
+                            return null;
+                        });
                 }
             } catch (NumberFormatException ex) {
                 erroLabel.setText("<html>Erro ao processar dados. Verifique o formato.</html>");
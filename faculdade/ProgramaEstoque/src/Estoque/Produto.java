@@ -2,19 +2,27 @@ package Estoque;
 
 /**
  * Classe que representa um produto no sistema de estoque.
- * Contém informações sobre nome, quantidade e preço.
+ * Contém informações sobre nome, quantidade, preço e ponto de reposição.
  *
  * @author Leandro
  */
 public class Produto {
+    /**
+     * Valor do ponto de reposição de um produto que segue o ponto padrão do estoque
+     * (ver `AlertasReposicao`).
+     */
+    public static final int PONTO_REPOSICAO_PADRAO = -1;
+
     private final String nome;
     private int quantidade;
     private double preco;
+    private final int pontoReposicao;
 
     /**
      * Construtor que inicializa um produto com validação básica dos parâmetros.
      * O nome do produto é armazenado em minúsculas e sem espaços extras.
      * Quantidade e preço são garantidos como não negativos.
+     * O produto segue o ponto de reposição padrão do estoque.
      *
      * @param nome Nome do produto (não pode ser nulo ou vazio).
      * @param quantidade Quantidade em estoque (será ajustada para 0 se for negativa).
@@ -22,16 +30,44 @@ public class Produto {
      * @throws IllegalArgumentException Se o nome for nulo ou vazio.
      */
     public Produto(String nome, int quantidade, double preco) {
+        this(nome, quantidade, preco, PONTO_REPOSICAO_PADRAO);
+    }
+
+    /**
+     * Construtor que inicializa um produto com um ponto de reposição próprio.
+     *
+     * @param nome Nome do produto (não pode ser nulo ou vazio).
+     * @param quantidade Quantidade em estoque (será ajustada para 0 se for negativa).
+     * @param preco Preço unitário (será ajustado para 0 se for negativo).
+     * @param pontoReposicao Quantidade abaixo da qual o produto deve ser reposto, ou
+     *                       `PONTO_REPOSICAO_PADRAO` (qualquer valor negativo) para seguir o padrão do estoque.
+     * @throws IllegalArgumentException Se o nome for nulo ou vazio.
+     */
+    public Produto(String nome, int quantidade, double preco, int pontoReposicao) {
         // Valida se o nome é nulo ou vazio, lançando uma exceção se for.
         if (nome == null || nome.trim().isEmpty()) {
             throw new IllegalArgumentException("Nome do produto não pode ser nulo ou vazio.");
         }
         // Armazena o nome do produto em minúsculas e remove espaços em branco no início/fim.
-        this.nome = nome.trim().toLowerCase();
+        this.nome = normalizarNome(nome);
         // Garante que a quantidade não seja negativa. Se for, define como 0.
         this.quantidade = Math.max(quantidade, 0);
         // Garante que o preço não seja negativo. Se for, define como 0.
         this.preco = Math.max(preco, 0);
+        // Qualquer valor negativo significa "seguir o padrão".
+        this.pontoReposicao = Math.max(pontoReposicao, PONTO_REPOSICAO_PADRAO);
+    }
+
+    /**
+     * Normaliza um nome de produto da mesma forma que o construtor o armazena:
+     * sem espaços extras no início/fim e em minúsculas.
+     * Deve ser usado sempre que um nome digitado for comparado com os nomes do estoque.
+     *
+     * @param nome O nome a ser normalizado.
+     * @return O nome normalizado.
+     */
+    public static String normalizarNome(String nome) {
+        return nome.trim().toLowerCase();
     }
 
     /**
@@ -61,6 +97,27 @@ public class Produto {
         return preco;
     }
 
+    /**
+     * Obtém o ponto de reposição próprio do produto.
+     *
+     * @return A quantidade abaixo da qual o produto deve ser reposto, ou
+     *         `PONTO_REPOSICAO_PADRAO` se o produto segue o padrão do estoque.
+     */
+    public int getPontoReposicao() {
+        return pontoReposicao;
+    }
+
+    /**
+     * Cria uma cópia do produto com outra quantidade e outro preço, mantendo o ponto de reposição.
+     *
+     * @param quantidade A nova quantidade.
+     * @param preco O novo preço.
+     * @return O novo produto.
+     */
+    public Produto comValores(int quantidade, double preco) {
+        return new Produto(nome, quantidade, preco, pontoReposicao);
+    }
+
     /**
      * Retorna uma representação em string formatada do produto.
      *
@@ -0,0 +1,429 @@
+package Estoque;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Modelo de tabela virtualizado para exibir produtos.
+ * Em vez de carregar todo o catálogo, busca no `Estoque` apenas as páginas que a tabela
+ * precisa desenhar, usando paginação por chave (keyset) na ordem da consulta.
+ * Mantém um LRU com as páginas mais recentes e antecipa a carga da próxima página no
+ * sentido da rolagem. A ordenação por coluna é feita pelo banco, através do
+ * `RowSorter` criado por `criarOrdenador()`.
+ * <p>
+ * Com uma busca aproximada (`buscar`), o modelo exibe os produtos mais parecidos com o texto,
+ * em ordem de semelhança, todos carregados de uma vez; um clique no cabeçalho os reordena.
+ * @author Leandro
+ */
+public class ProdutoTableModel extends AbstractTableModel {
+    private static final String[] COLUNAS = {"Nome", "Quantidade", "Preço"}; // Nomes das colunas
+    // Campo de ordenação correspondente a cada coluna.
+    private static final String[] CAMPOS = {ConsultaProdutos.NOME, ConsultaProdutos.QUANTIDADE, ConsultaProdutos.PRECO};
+
+    static final int TAMANHO_PAGINA = 100; // Produtos por página
+    static final int LIMITE_BUSCA = 200; // Produtos exibidos por uma busca aproximada
+    private static final int MAXIMO_PAGINAS = 32; // Páginas mantidas em memória (LRU)
+
+    private final Estoque estoque; // Fonte dos produtos
+    private ConsultaProdutos consulta = ConsultaProdutos.todos(); // Filtros e ordenação atuais
+    private int totalLinhas = 0; // Total de produtos que atendem aos filtros
+    private String busca = null; // Texto da busca aproximada; null exibe a consulta paginada
+    private boolean ordenadoPeloUsuario = false; // Se a ordem foi escolhida no cabeçalho (e não a de semelhança)
+
+    // Páginas carregadas, da menos para a mais recentemente usada.
+    private final LinkedHashMap<Integer, List<Produto>> paginas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Produto>> maisAntiga) {
+            return size() > MAXIMO_PAGINAS;
+        }
+    };
+    // Último produto de cada página já carregada: é a chave para buscar a página seguinte.
+    private final Map<Integer, Produto> fronteiras = new HashMap<>();
+    // Páginas cuja carga está em andamento.
+    private final Set<Integer> carregando = new HashSet<>();
+    // Incrementada a cada recarga; respostas de gerações anteriores são descartadas.
+    private int geracao = 0;
+    // Última página acessada, usada para saber o sentido da rolagem.
+    private int ultimaPaginaAcessada = 0;
+
+    /**
+     * Construtor do modelo.
+     * @param estoque O estoque de onde as páginas são buscadas.
+     */
+    public ProdutoTableModel(Estoque estoque) {
+        this.estoque = estoque;
+    }
+
+    /**
+     * Aplica novos filtros, mantendo a ordenação atual, e recarrega o modelo.
+     * @param prefixoNome O prefixo do nome.
+     * @param quantidadeMinima A quantidade mínima.
+     */
+    public void filtrar(String prefixoNome, int quantidadeMinima) {
+        busca = null;
+        recarregar(consulta.comFiltros(prefixoNome, quantidadeMinima));
+    }
+
+    /**
+     * Aplica o filtro de nome como busca aproximada (acentos, trechos do nome e erros de
+     * digitação, ver `Estoque.buscarAproximado`). Textos curtos demais para a busca
+     * aproximada filtram pelo início do nome, como `filtrar`.
+     * @param texto O texto digitado.
+     * @param quantidadeMinima A quantidade mínima.
+     */
+    public void buscar(String texto, int quantidadeMinima) {
+        if (IndiceTrigramas.dobrar(texto).length() < IndiceTrigramas.TAMANHO_MINIMO_BUSCA) {
+            filtrar(texto, quantidadeMinima);
+            return;
+        }
+        busca = texto;
+        recarregar(consulta.comFiltros("", quantidadeMinima));
+    }
+
+    /**
+     * Obtém a consulta (filtros e ordenação) atualmente exibida.
+     * @return A consulta atual.
+     */
+    public ConsultaProdutos getConsulta() {
+        return consulta;
+    }
+
+    /**
+     * Descarta as páginas carregadas e passa a exibir a consulta informada.
+     * O total de linhas é obtido primeiro; as páginas são carregadas conforme a tabela as desenha.
+     * A duração, do pedido até a tabela ser notificada, é registrada como "Tabela.recarregar".
+     * @param novaConsulta A consulta a ser exibida.
+     */
+    public void recarregar(ConsultaProdutos novaConsulta) {
+        long inicio = System.nanoTime();
+        int minhaGeracao = ++geracao;
+        consulta = novaConsulta;
+        if (busca != null) {
+            recarregarBusca(minhaGeracao, inicio);
+            return;
+        }
+        estoque.contarProdutosAsync(novaConsulta).thenAccept(total -> {
+            if (minhaGeracao != geracao) return; // Uma recarga mais recente já foi pedida.
+            paginas.clear();
+            fronteiras.clear();
+            carregando.clear();
+            totalLinhas = (int) Math.min(total, Integer.MAX_VALUE);
+            fireTableDataChanged();
+            estoque.getMetricas().registrarDesde("Tabela.recarregar", inicio);
+        });
+    }
+
+    /**
+     * Refaz a busca aproximada e exibe o resultado, dividido em páginas já carregadas.
+     * A duração é registrada como "Tabela.buscar".
+     * @param minhaGeracao A geração desta recarga.
+     * @param inicio O instante (System.nanoTime) do pedido.
+     */
+    private void recarregarBusca(int minhaGeracao, long inicio) {
+        ConsultaProdutos consultaBusca = consulta;
+        estoque.buscarAproximadoAsync(busca, consultaBusca.getQuantidadeMinima(), LIMITE_BUSCA).thenAccept(encontrados -> {
+            if (minhaGeracao != geracao) return; // Uma recarga mais recente já foi pedida.
+            List<Produto> produtos = new ArrayList<>(encontrados);
+            if (ordenadoPeloUsuario) produtos.sort(consultaBusca.comparador());
+            paginas.clear();
+            fronteiras.clear();
+            carregando.clear();
+            for (int i = 0; i < produtos.size(); i += TAMANHO_PAGINA) {
+                paginas.put(i / TAMANHO_PAGINA, new ArrayList<>(produtos.subList(i, Math.min(produtos.size(), i + TAMANHO_PAGINA))));
+            }
+            totalLinhas = produtos.size();
+            fireTableDataChanged();
+            estoque.getMetricas().registrarDesde("Tabela.buscar", inicio);
+        });
+    }
+
+    /**
+     * Aplica uma alteração do estoque às páginas carregadas.
+     * Uma atualização que não muda a posição do produto substitui apenas a sua linha;
+     * inserções, remoções e mudanças de posição recarregam o modelo, pois deslocam as linhas.
+     * @param evento O evento descrevendo a alteração.
+     */
+    public void aplicarAlteracao(EstoqueEvento evento) {
+        long inicio = System.nanoTime();
+        if (!aplicarNaLinha(evento)) {
+            recarregar(consulta);
+        }
+        estoque.getMetricas().registrarDesde("Tabela.aplicarAlteracao", inicio);
+    }
+
+    /**
+     * Aplica um lote de alterações do estoque. As alterações que podem ser feitas linha a linha
+     * são aplicadas diretamente; se alguma exigir recarga, o modelo é recarregado uma única vez.
+     * @param eventos Os eventos do lote, na ordem em que ocorreram.
+     */
+    public void aplicarAlteracoes(List<EstoqueEvento> eventos) {
+        long inicio = System.nanoTime();
+        boolean recarregar = false;
+        for (EstoqueEvento evento : eventos) {
+            // Depois de decidir recarregar, as linhas restantes serão buscadas de novo de qualquer forma.
+            if (!recarregar && !aplicarNaLinha(evento)) recarregar = true;
+        }
+        if (recarregar) {
+            recarregar(consulta);
+        }
+        estoque.getMetricas().registrarDesde("Tabela.aplicarAlteracoes", inicio);
+    }
+
+    /**
+     * Tenta aplicar uma alteração sem recarregar o modelo.
+     * @param evento O evento descrevendo a alteração.
+     * @return false se a alteração desloca linhas e o modelo precisa ser recarregado.
+     */
+    private boolean aplicarNaLinha(EstoqueEvento evento) {
+        if (evento.getTipo() == EstoqueEvento.Tipo.RECARREGADO || busca != null) {
+            return false; // Na busca aproximada, não se sabe se o produto passa a ser encontrado: refaz a busca.
+        }
+        Produto p = evento.getProduto();
+        int linha = localizar(p.getNome());
+        boolean visivel = consulta.aceita(p);
+
+        if (evento.getTipo() == EstoqueEvento.Tipo.ATUALIZADO && linha >= 0 && visivel
+                && mesmaPosicao(paginas.get(linha / TAMANHO_PAGINA).get(linha % TAMANHO_PAGINA), p)) {
+            paginas.get(linha / TAMANHO_PAGINA).set(linha % TAMANHO_PAGINA, p);
+            fireTableRowsUpdated(linha, linha);
+            return true;
+        }
+        // Produtos fora das páginas carregadas e fora do filtro não afetam a tabela.
+        return linha < 0 && !visivel;
+    }
+
+    /**
+     * Verifica se a troca de um produto pela sua nova versão mantém a ordem da consulta.
+     * @param antigo O produto como está exibido.
+     * @param novo O produto com os novos valores.
+     * @return true se o valor do campo de ordenação não mudou.
+     */
+    private boolean mesmaPosicao(Produto antigo, Produto novo) {
+        switch (consulta.getCampoOrdenacao()) {
+            case ConsultaProdutos.QUANTIDADE: return antigo.getQuantidade() == novo.getQuantidade();
+            case ConsultaProdutos.PRECO: return antigo.getPreco() == novo.getPreco();
+            default: return true;
+        }
+    }
+
+    /**
+     * Procura um produto nas páginas carregadas.
+     * @param nome O nome normalizado do produto.
+     * @return O índice da linha, ou -1 se o produto não estiver em nenhuma página carregada.
+     */
+    private int localizar(String nome) {
+        for (Map.Entry<Integer, List<Produto>> entrada : paginas.entrySet()) {
+            List<Produto> pagina = entrada.getValue();
+            for (int i = 0; i < pagina.size(); i++) {
+                if (pagina.get(i).getNome().equals(nome)) {
+                    return entrada.getKey() * TAMANHO_PAGINA + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Obtém o produto de uma linha, se a sua página já estiver carregada.
+     * Se não estiver, solicita a carga e retorna null.
+     * @param linha O índice da linha.
+     * @return O produto, ou null enquanto a página é carregada.
+     */
+    public Produto getProduto(int linha) {
+        int numeroPagina = linha / TAMANHO_PAGINA;
+        List<Produto> pagina = paginas.get(numeroPagina);
+
+        // Antecipa a página seguinte no sentido da rolagem.
+        if (numeroPagina != ultimaPaginaAcessada) {
+            int sentido = numeroPagina > ultimaPaginaAcessada ? 1 : -1;
+            ultimaPaginaAcessada = numeroPagina;
+            int vizinha = numeroPagina + sentido;
+            if (vizinha >= 0 && (long) vizinha * TAMANHO_PAGINA < totalLinhas) {
+                solicitarPagina(vizinha);
+            }
+        }
+
+        if (pagina == null) {
+            solicitarPagina(numeroPagina);
+            return null;
+        }
+        int posicao = linha % TAMANHO_PAGINA;
+        return posicao < pagina.size() ? pagina.get(posicao) : null;
+    }
+
+    /**
+     * Solicita a carga assíncrona de uma página, se ela ainda não estiver carregada ou em carga.
+     * Quando o último produto da página anterior é conhecido, usa a paginação por chave;
+     * caso contrário (salto da barra de rolagem), busca pela posição absoluta.
+     * A duração, do pedido até as linhas serem redesenhadas, é registrada como "Tabela.carregarPagina".
+     * @param numeroPagina O número da página.
+     */
+    private void solicitarPagina(int numeroPagina) {
+        // Na busca aproximada, todas as páginas já foram carregadas pela busca.
+        if (busca != null || paginas.containsKey(numeroPagina) || !carregando.add(numeroPagina)) return;
+
+        long inicio = System.nanoTime();
+        int minhaGeracao = geracao;
+        Produto anterior = numeroPagina == 0 ? null : fronteiras.get(numeroPagina - 1);
+        var pedido = (numeroPagina == 0 || anterior != null)
+            ? estoque.listarPaginaAsync(consulta, anterior, TAMANHO_PAGINA)
+            : estoque.listarPaginaAsync(consulta, (long) numeroPagina * TAMANHO_PAGINA, TAMANHO_PAGINA);
+
+        pedido.whenComplete((produtos, erro) -> {
+            if (minhaGeracao != geracao) return; // O modelo foi recarregado nesse meio tempo.
+            carregando.remove(numeroPagina);
+            if (erro != null || produtos.isEmpty()) return;
+            paginas.put(numeroPagina, new ArrayList<>(produtos));
+            fronteiras.put(numeroPagina, produtos.get(produtos.size() - 1));
+            int primeira = numeroPagina * TAMANHO_PAGINA;
+            int ultima = Math.min(primeira + produtos.size(), totalLinhas) - 1;
+            if (ultima >= primeira) fireTableRowsUpdated(primeira, ultima);
+            estoque.getMetricas().registrarDesde("Tabela.carregarPagina", inicio);
+        });
+    }
+
+    /**
+     * Cria um `RowSorter` que delega a ordenação ao banco: um clique no cabeçalho recarrega
+     * o modelo com a nova ordenação, e a ordem das linhas da visão é a própria ordem do modelo.
+     * @return O ordenador a ser instalado na JTable.
+     */
+    public RowSorter<ProdutoTableModel> criarOrdenador() {
+        return new OrdenadorServidor();
+    }
+
+    /**
+     * Indica se a coluna pode ser ordenada pelo banco.
+     * @param coluna O índice da coluna.
+     * @return true se existe um campo de ordenação para a coluna.
+     */
+    protected boolean isOrdenavel(int coluna) {
+        return coluna < CAMPOS.length;
+    }
+
+    @Override
+    public int getRowCount() {
+        return totalLinhas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUNAS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUNAS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        // Define o tipo da coluna para que a JTable escolha o renderizador adequado.
+        if (columnIndex == 1) return Integer.class; // Coluna Quantidade é Integer
+        if (columnIndex == 2) return Double.class;  // Coluna Preço é Double
+        return String.class; // Outras colunas são String
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false; // Impede a edição direta das células da tabela
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Produto p = getProduto(row);
+        if (p == null) {
+            return column == 0 ? "Carregando..." : null; // Página ainda não carregada
+        }
+        switch (column) {
+            case 0: return p.getNome();
+            case 1: return p.getQuantidade();
+            default: return p.getPreco();
+        }
+    }
+
+    /**
+     * `RowSorter` que não reordena linhas no cliente: mantém as chaves de ordenação para o
+     * cabeçalho da tabela exibir a seta de direção e repassa a ordenação ao banco.
+     */
+    private class OrdenadorServidor extends RowSorter<ProdutoTableModel> {
+        private List<SortKey> chaves = Collections.emptyList();
+
+        @Override
+        public ProdutoTableModel getModel() {
+            return ProdutoTableModel.this;
+        }
+
+        @Override
+        public void toggleSortOrder(int column) {
+            if (!isOrdenavel(column)) return;
+            boolean crescente = chaves.isEmpty() || chaves.get(0).getColumn() != column
+                || chaves.get(0).getSortOrder() != SortOrder.ASCENDING;
+            setSortKeys(List.of(new SortKey(column, crescente ? SortOrder.ASCENDING : SortOrder.DESCENDING)));
+        }
+
+        @Override
+        public void setSortKeys(List<? extends SortKey> keys) {
+            chaves = keys == null ? Collections.emptyList() : List.copyOf(keys);
+            ordenadoPeloUsuario = !chaves.isEmpty();
+            if (chaves.isEmpty()) {
+                recarregar(consulta.comOrdenacao(ConsultaProdutos.NOME, true));
+            } else {
+                SortKey chave = chaves.get(0);
+                recarregar(consulta.comOrdenacao(CAMPOS[chave.getColumn()], chave.getSortOrder() != SortOrder.DESCENDING));
+            }
+            fireSortOrderChanged();
+        }
+
+        @Override
+        public List<? extends SortKey> getSortKeys() {
+            return chaves;
+        }
+
+        @Override
+        public int convertRowIndexToModel(int index) {
+            return index; // A ordem da visão é a ordem do modelo, já ordenado pelo banco.
+        }
+
+        @Override
+        public int convertRowIndexToView(int index) {
+            return index;
+        }
+
+        @Override
+        public int getViewRowCount() {
+            return getRowCount();
+        }
+
+        @Override
+        public int getModelRowCount() {
+            return getRowCount();
+        }
+
+        @Override
+        public void modelStructureChanged() { }
+
+        @Override
+        public void allRowsChanged() { }
+
+        @Override
+        public void rowsInserted(int firstRow, int endRow) { }
+
+        @Override
+        public void rowsDeleted(int firstRow, int endRow) { }
+
+        @Override
+        public void rowsUpdated(int firstRow, int endRow) { }
+
+        @Override
+        public void rowsUpdated(int firstRow, int endRow, int column) { }
+    }
+}
@@ -1,13 +1,13 @@
 package Estoque;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.File;
-import java.io.FileOutputStream; 
-import java.io.PrintWriter; 
-import java.io.OutputStreamWriter; 
-import java.nio.charset.StandardCharsets; 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * A classe `Relatorio` representa um diálogo para exibir um relatório detalhado do estoque.
@@ -17,10 +17,25 @@ import java.nio.charset.StandardCharsets;
  */
 public class Relatorio extends JDialog {
     private JTable tabela; 
-    private DefaultTableModel modelo; 
+    private RelatorioTableModel modelo; 
     private final JButton exportarBtn; 
     private final Estoque estoque; 
     private final JLabel totalValueLabel; 
+    private final JLabel resumoLabel; // Cabeçalho com itens, unidades e distribuição por faixa de preço
+    private final JPanel centroPanel = new JPanel(new CardLayout()); // Alterna entre o botão de detalhes e a tabela
+    private boolean fechado = false; // Indica se o diálogo já foi fechado
+    // Mantém o cabeçalho atualizado com os totais do estoque enquanto o diálogo está aberto.
+    private final Estoque.EstoqueListener ouvinteTotais = new Estoque.EstoqueListener() {
+        @Override
+        public void estoqueAlterado(EstoqueEvento evento) {
+            SwingUtilities.invokeLater(Relatorio.this::exibirTotaisAtuais);
+        }
+
+        @Override
+        public void estoqueAlteradoEmLote(java.util.List<EstoqueEvento> eventos) {
+            SwingUtilities.invokeLater(Relatorio.this::exibirTotaisAtuais);
+        }
+    };
 
     /**
      * Construtor da classe Relatorio.
@@ -30,7 +45,7 @@ public class Relatorio extends JDialog {
     public Relatorio(JFrame parent, Estoque estoque) {
         super(parent, "Relatório de Estoque", true); // Chama o construtor da superclasse JDialog (modal)
         this.estoque = estoque; // Atribui a instância do estoque
-        setSize(600, 400); // Define o tamanho preferencial do diálogo
+        setSize(600, 520); // Define o tamanho preferencial do diálogo
         setLocationRelativeTo(parent); // Centraliza o diálogo em relação ao componente pai
         setLayout(new BorderLayout()); // Define o layout do diálogo como BorderLayout
 
@@ -39,8 +54,21 @@ public class Relatorio extends JDialog {
         totalValueLabel.setHorizontalAlignment(SwingConstants.RIGHT); // Alinha o texto à direita
         totalValueLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5)); // Adiciona um preenchimento
 
-        // Cria a tabela e preenche os dados, atualizando também o valor total.
+        // Inicializa o cabeçalho com o resumo do estoque.
+        resumoLabel = new JLabel("Calculando o resumo do estoque...");
+        resumoLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        // Cria a tabela (sem carregar linhas) e calcula o resumo no banco.
         criarTabela();
+        carregarResumo();
+
+        // As linhas de detalhe só são buscadas quando o usuário pede para vê-las.
+        JButton detalhesBtn = new JButton("Exibir produtos");
+        detalhesBtn.addActionListener(e -> exibirDetalhes());
+        JPanel detalhesPanel = new JPanel(new GridBagLayout()); // Centraliza o botão
+        detalhesPanel.add(detalhesBtn);
+        centroPanel.add(detalhesPanel, "detalhesOcultos");
+        centroPanel.add(new JScrollPane(tabela), "detalhes");
         
         // Inicializa o botão de exportação e adiciona um ActionListener.
         exportarBtn = new JButton("Exportar para CSV");
@@ -52,98 +80,113 @@ public class Relatorio extends JDialog {
         southPanel.add(exportarBtn, BorderLayout.EAST);     // Adiciona o botão à direita
         
         // Adiciona os componentes principais ao diálogo.
-        add(new JScrollPane(tabela), BorderLayout.CENTER); // Adiciona a tabela com scroll no centro
+        add(resumoLabel, BorderLayout.NORTH); // Adiciona o resumo no topo
+        add(centroPanel, BorderLayout.CENTER); // Adiciona os detalhes (botão ou tabela) no centro
         add(southPanel, BorderLayout.SOUTH); // Adiciona o painel inferior na parte inferior
     }
 
     /**
-     * Cria e preenche a JTable com os dados dos produtos do estoque,
-     * e calcula o valor total do estoque para exibir no `totalValueLabel`.
+     * Cria a JTable com o modelo paginado de produtos.
+     * Nenhuma linha é carregada até que o usuário peça para exibir os produtos.
      */
     private void criarTabela() {
-        String[] colunas = {"Produto", "Quantidade", "Preço Unitário", "Valor Total"}; // Nomes das colunas
-        modelo = new DefaultTableModel(colunas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Impede a edição direta das células da tabela.
-            }
-        };
-
+        modelo = new RelatorioTableModel(estoque); // Modelo que busca apenas as páginas visíveis.
         tabela = new JTable(modelo); // Cria a tabela com o modelo.
-        
-        double currentValorTotalEstoque = 0; // Variável para acumular o valor total de todos os produtos.
-        // Itera sobre todos os produtos no estoque.
-        for (Produto p : estoque.listarProdutos()) {
-            double valorTotalLinha = p.getQuantidade() * p.getPreco(); // Calcula o valor total para cada linha.
-            currentValorTotalEstoque += valorTotalLinha; // Acumula o valor no total do estoque.
-            // Adiciona uma nova linha à tabela com os dados do produto e seus valores formatados.
-            modelo.addRow(new Object[]{
-                p.getNome(),
-                p.getQuantidade(),
-                formatarMoeda(p.getPreco()), // Formata o preço unitário como moeda.
-                formatarMoeda(valorTotalLinha) // Formata o valor total da linha como moeda.
-            });
-        }
-        
+        tabela.setRowSorter(modelo.criarOrdenador()); // Ordenação por coluna executada pelo banco.
+    }
+
+    /**
+     * Exibe a tabela de produtos e começa a carregar as páginas visíveis.
+     */
+    private void exibirDetalhes() {
+        modelo.recarregar(modelo.getConsulta());
+        ((CardLayout) centroPanel.getLayout()).show(centroPanel, "detalhes");
+    }
+
+    /**
+     * Obtém o resumo do estoque e o exibe quando chegar. O resumo vem dos totais mantidos
+     * pelo estoque; só a primeira vez, se os produtos ainda não foram carregados, lê o banco.
+     * Depois disso, o cabeçalho acompanha as alterações do estoque.
+     */
+    private void carregarResumo() {
+        long inicio = System.nanoTime();
+        totalValueLabel.setText("Calculando o valor total do estoque...");
+        estoque.calcularResumoAsync().thenAccept(resumo -> {
+            exibirResumo(resumo);
+            estoque.getMetricas().registrarDesde("Relatorio.carregarResumo", inicio);
+            if (!fechado) estoque.addListener(ouvinteTotais);
+        });
+    }
+
+    /**
+     * Exibe os totais atuais do estoque, sem percorrer os produtos.
+     */
+    private void exibirTotaisAtuais() {
+        TotaisEstoque totais = estoque.getTotais();
+        if (totais != null && !fechado) exibirResumo(totais.getResumo());
+    }
+
+    @Override
+    public void dispose() {
+        fechado = true;
+        estoque.removeListener(ouvinteTotais); // Para de acompanhar as alterações.
+        super.dispose();
+    }
+
+    /**
+     * Exibe o resumo do estoque: o valor total no `totalValueLabel` e, no cabeçalho,
+     * os totais de itens e unidades com a distribuição por faixa de preço.
+     * @param resumo O resumo do estoque.
+     */
+    private void exibirResumo(ResumoEstoque resumo) {
         // Atualiza o texto do JLabel com o valor total do estoque formatado.
-        totalValueLabel.setText("Valor Total do Estoque: R$ " + formatarMoeda(currentValorTotalEstoque));
+        totalValueLabel.setText("Valor Total do Estoque: R$ " + formatarMoeda(resumo.getValorTotal()));
+
+        StringBuilder html = new StringBuilder("<html>");
+        html.append("<b>Itens:</b> ").append(resumo.getItens())
+            .append(" &nbsp; <b>Unidades:</b> ").append(resumo.getUnidades())
+            .append("<table><tr><th align=left>Faixa de preço</th><th>Itens</th><th>Unidades</th><th>Valor</th></tr>");
+        for (ResumoEstoque.Faixa faixa : resumo.getFaixas()) {
+            String descricao = Double.isInfinite(faixa.getPrecoMaximo())
+                ? "a partir de R$ " + formatarMoeda(faixa.getPrecoMinimo())
+                : "R$ " + formatarMoeda(faixa.getPrecoMinimo()) + " a " + formatarMoeda(faixa.getPrecoMaximo());
+            html.append("<tr><td>").append(descricao)
+                .append("</td><td align=right>").append(faixa.getItens())
+                .append("</td><td align=right>").append(faixa.getUnidades())
+                .append("</td><td align=right>").append(formatarMoeda(faixa.getValorTotal()))
+                .append("</td></tr>");
+        }
+        html.append("</table></html>");
+        resumoLabel.setText(html.toString());
     }
 
     /**
      * Abre um diálogo de seleção de arquivo para o usuário escolher onde salvar o CSV.
-     * Exporta os dados da tabela para um arquivo CSV, utilizando UTF-8 e ponto e vírgula como delimitador.
+     * Exporta os produtos, na ordem exibida na tabela, para um arquivo CSV em segundo plano,
+     * exibindo o progresso e permitindo cancelar. Opcionalmente, o arquivo é compactado com gzip.
      */
     private void exportarParaCSV() {
         JFileChooser fileChooser = new JFileChooser(); // Cria um seletor de arquivos.
         fileChooser.setDialogTitle("Salvar como CSV"); // Define o título do diálogo.
         fileChooser.setSelectedFile(new File("estoque.csv")); // Sugere um nome de arquivo padrão.
+        JCheckBox gzipCheck = new JCheckBox("Compactar (gzip)"); // Opção de saída comprimida.
+        fileChooser.setAccessory(gzipCheck);
         
         // Exibe o diálogo de salvar arquivo e verifica se o usuário aprovou a seleção.
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File arquivo = fileChooser.getSelectedFile(); // Obtém o arquivo selecionado pelo usuário.
+            boolean gzip = gzipCheck.isSelected();
             
-            // Garante que a extensão do arquivo seja .csv
-            if (!arquivo.getName().toLowerCase().endsWith(".csv")) {
-                arquivo = new File(arquivo.getAbsolutePath() + ".csv");
+            // Garante que a extensão do arquivo seja .csv (ou .csv.gz, se compactado)
+            String extensao = gzip ? ".csv.gz" : ".csv";
+            String nomeArquivo = arquivo.getName().toLowerCase();
+            if (!nomeArquivo.endsWith(extensao)) {
+                String caminho = arquivo.getAbsolutePath();
+                // Aproveita um ".csv" já digitado, acrescentando apenas o ".gz".
+                arquivo = new File(gzip && nomeArquivo.endsWith(".csv") ? caminho + ".gz" : caminho + extensao);
             }
 
-            try (FileOutputStream fos = new FileOutputStream(arquivo); // Abre um stream de saída de arquivo.
-                 OutputStreamWriter osw = new OutputStreamWriter(fos, StandardCharsets.UTF_8); // Define a codificação UTF-8.
-                 PrintWriter writer = new PrintWriter(osw)) { // Cria um escritor de texto.
-
-                // Escreve o Byte Order Mark (BOM) para garantir que o CSV seja aberto corretamente em programas como Excel.
-                fos.write(0xEF);
-                fos.write(0xBB);
-                fos.write(0xBF);
-
-                // Escreve o cabeçalho do CSV, usando ';' como delimitador e aspas para envolver os nomes.
-                writer.println("\"Produto\";\"Quantidade\";\"Preço Unitário\";\"Valor Total\"");
-                
-                // Itera sobre os produtos para escrever cada linha no CSV.
-                for (Produto p : estoque.listarProdutos()) {
-                    double valorTotal = p.getQuantidade() * p.getPreco(); // Calcula o valor total da linha.
-                    
-                    // Escreve a linha do produto, escapando aspas no nome do produto e formatando moedas.
-                    writer.println(String.format("\"%s\";%d;%s;%s",
-                        p.getNome().replace("\"", "\"\""), // Escapa aspas duplas dentro do nome do produto.
-                        p.getQuantidade(),
-                        formatarMoeda(p.getPreco()),
-                        formatarMoeda(valorTotal)));
-                }
-                
-                // Exibe uma mensagem de sucesso após a exportação.
-                JOptionPane.showMessageDialog(this,
-                    "Dados exportados com sucesso para:\n" + arquivo.getAbsolutePath(),
-                    "Exportação Concluída",
-                    JOptionPane.INFORMATION_MESSAGE);
-                    
-            } catch (Exception e) {
-                // Exibe uma mensagem de erro se ocorrer uma exceção durante a exportação.
-                JOptionPane.showMessageDialog(this,
-                    "Erro ao exportar arquivo:\n" + e.getMessage(),
-                    "Erro na Exportação",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            new TarefaExportacao(arquivo, gzip, modelo.getConsulta()).iniciar();
         }
     }
 
@@ -153,8 +196,158 @@ public class Relatorio extends JDialog {
      * @param valor O valor numérico a ser formatado.
      * @return Uma string formatada como valor monetário (ex: "12,34").
      */
-    private String formatarMoeda(double valor) {
+    static String formatarMoeda(double valor) {
         // Formata com 2 casas decimais e substitui o ponto decimal por vírgula.
         return String.format("%.2f", valor).replace(".", ",");
     }
+
+    /**
+     * Modelo paginado do relatório: acrescenta a coluna "Valor Total" e exibe os valores
+     * monetários formatados. A coluna calculada não pode ser ordenada pelo banco.
+     */
+    private static class RelatorioTableModel extends ProdutoTableModel {
+        private static final String[] COLUNAS = {"Produto", "Quantidade", "Preço Unitário", "Valor Total"};
+
+        /**
+         * Construtor do modelo do relatório.
+         * @param estoque O estoque de onde as páginas são buscadas.
+         */
+        RelatorioTableModel(Estoque estoque) {
+            super(estoque);
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUNAS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUNAS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            return columnIndex == 1 ? Integer.class : String.class; // Valores monetários já vêm formatados
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Produto p = getProduto(row);
+            if (p == null) {
+                return column == 0 ? "Carregando..." : null; // Página ainda não carregada
+            }
+            switch (column) {
+                case 0: return p.getNome();
+                case 1: return p.getQuantidade();
+                case 2: return formatarMoeda(p.getPreco()); // Formata o preço unitário como moeda.
+                default: return formatarMoeda(p.getQuantidade() * p.getPreco()); // Valor total da linha.
+            }
+        }
+    }
+
+    /**
+     * Exporta os produtos para CSV em segundo plano, lendo-os do banco com um cursor
+     * e escrevendo-os com o `ExportadorCSV`. Exibe uma barra de progresso com botão de cancelar;
+     * em caso de cancelamento, o arquivo parcial é apagado.
+     */
+    private class TarefaExportacao extends SwingWorker<Long, Void> {
+        private static final int TAMANHO_LOTE = 5000; // Documentos lidos do servidor por vez
+        private final File arquivo;
+        private final boolean gzip;
+        private final ConsultaProdutos consulta;
+        private final JDialog progressoDialog;
+
+        /**
+         * Prepara a exportação e o diálogo de progresso.
+         * @param arquivo O arquivo de destino.
+         * @param gzip true para compactar a saída.
+         * @param consulta A consulta (ordem) dos produtos a exportar.
+         */
+        TarefaExportacao(File arquivo, boolean gzip, ConsultaProdutos consulta) {
+            this.arquivo = arquivo;
+            this.gzip = gzip;
+            this.consulta = consulta;
+
+            JProgressBar barra = new JProgressBar(0, 100);
+            barra.setStringPainted(true);
+            JButton cancelarBtn = new JButton("Cancelar");
+            cancelarBtn.addActionListener(e -> cancel(false)); // A tarefa verifica o cancelamento a cada produto.
+
+            progressoDialog = new JDialog(Relatorio.this, "Exportando...", false);
+            progressoDialog.setLayout(new BorderLayout(10, 10));
+            progressoDialog.add(new JLabel("Exportando para " + arquivo.getName()), BorderLayout.NORTH);
+            progressoDialog.add(barra, BorderLayout.CENTER);
+            progressoDialog.add(cancelarBtn, BorderLayout.SOUTH);
+            progressoDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+            progressoDialog.pack();
+            progressoDialog.setLocationRelativeTo(Relatorio.this);
+
+            // Atualiza a barra sempre que a tarefa publica um novo progresso.
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) barra.setValue((Integer) e.getNewValue());
+            });
+        }
+
+        /**
+         * Inicia a exportação e exibe o diálogo de progresso.
+         */
+        void iniciar() {
+            exportarBtn.setEnabled(false);
+            execute();
+            progressoDialog.setVisible(true);
+        }
+
+        @Override
+        protected Long doInBackground() throws Exception {
+            long total = Math.max(estoque.contarProdutos(consulta), 1);
+            try {
+                try (ExportadorCSV exportador = new ExportadorCSV(arquivo.toPath(), gzip)) {
+                    estoque.percorrerProdutos(consulta, TAMANHO_LOTE, p -> {
+                        if (isCancelled()) throw new CancellationException(); // Interrompe o cursor.
+                        try {
+                            exportador.escrever(p);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        long linhas = exportador.getLinhas();
+                        if (linhas % 1000 == 0) setProgress((int) Math.min(100, linhas * 100 / total));
+                    });
+                    setProgress(100);
+                    return exportador.getLinhas();
+                }
+            } catch (CancellationException e) {
+                Files.deleteIfExists(arquivo.toPath()); // Remove o arquivo parcial (já fechado).
+                throw e;
+            }
+        }
+
+        @Override
+        protected void done() {
+            progressoDialog.dispose();
+            exportarBtn.setEnabled(true);
+            if (isCancelled()) {
+                JOptionPane.showMessageDialog(Relatorio.this,
+                    "Exportação cancelada.",
+                    "Exportação Cancelada",
+                    JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            try {
+                long linhas = get();
+                // Exibe uma mensagem de sucesso após a exportação.
+                JOptionPane.showMessageDialog(Relatorio.this,
+                    linhas + " produtos exportados com sucesso para:\n" + arquivo.getAbsolutePath(),
+                    "Exportação Concluída",
+                    JOptionPane.INFORMATION_MESSAGE);
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                // Exibe uma mensagem de erro se ocorrer uma exceção durante a exportação.
+                JOptionPane.showMessageDialog(Relatorio.this,
+                    "Erro ao exportar arquivo:\n" + causa.getMessage(),
+                    "Erro na Exportação",
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+package Estoque;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Diálogo com a lista de reposição: os produtos abaixo do ponto de reposição, do que mais
+ * falta ao que menos falta, com o custo de repor cada um. A lista é mantida pelo estoque a
+ * cada alteração (ver `AlertasReposicao`) e relida quando o estoque muda enquanto o diálogo
+ * está aberto. Permite exportar a lista para CSV e alterar o ponto padrão.
+ * @author Leandro
+ */
+public class ReposicaoDialog extends JDialog implements Estoque.EstoqueListener {
+    private final Estoque estoque;
+    private final ModeloReposicao modelo = new ModeloReposicao(); // Modelo da tabela
+    private final JLabel resumoLabel = new JLabel(" "); // Número de itens e custo total
+    private final JButton exportarBtn = new JButton("Exportar para CSV");
+
+    /**
+     * Construtor do diálogo de reposição.
+     * @param parent A janela principal.
+     * @param estoque O estoque cuja lista de reposição será exibida.
+     */
+    public ReposicaoDialog(JFrame parent, Estoque estoque) {
+        super(parent, "Lista de Reposição", false); // Não modal: acompanha as alterações do estoque
+        this.estoque = estoque;
+        setSize(760, 420);
+        setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        JTable tabela = new JTable(modelo);
+        tabela.setAutoCreateRowSorter(true);
+        tabela.getColumnModel().getColumn(0).setPreferredWidth(240);
+        add(new JScrollPane(tabela), BorderLayout.CENTER);
+
+        JButton pontoPadraoBtn = new JButton("Ponto Padrão...");
+        pontoPadraoBtn.addActionListener(e -> alterarPontoPadrao());
+        exportarBtn.addActionListener(e -> exportarParaCSV());
+        JPanel southPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 5));
+        southPanel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
+        southPanel.add(resumoLabel);
+        southPanel.add(pontoPadraoBtn);
+        southPanel.add(exportarBtn);
+        add(southPanel, BorderLayout.SOUTH);
+
+        estoque.addListener(this);
+        carregar();
+    }
+
+    @Override
+    public void estoqueAlterado(EstoqueEvento evento) {
+        javax.swing.SwingUtilities.invokeLater(this::carregar);
+    }
+
+    @Override
+    public void estoqueAlteradoEmLote(List<EstoqueEvento> eventos) {
+        javax.swing.SwingUtilities.invokeLater(this::carregar);
+    }
+
+    /**
+     * Relê a lista de reposição em segundo plano e a exibe.
+     */
+    private void carregar() {
+        if (!isDisplayable()) return; // O diálogo já foi fechado.
+        estoque.listarAlertasReposicaoAsync().thenAccept(itens -> {
+            modelo.exibir(itens);
+            double custo = 0;
+            for (AlertasReposicao.Item item : itens) {
+                custo += item.getCustoReposicao();
+            }
+            resumoLabel.setText(String.format("%d produtos abaixo do ponto (padrão: %d)   Custo da reposição: R$ %s",
+                itens.size(), estoque.getPontoReposicaoPadrao(), Relatorio.formatarMoeda(custo)));
+            exportarBtn.setEnabled(!itens.isEmpty());
+        });
+    }
+
+    /**
+     * Pede ao usuário o novo ponto de reposição padrão, usado pelos produtos sem ponto próprio.
+     */
+    private void alterarPontoPadrao() {
+        String texto = JOptionPane.showInputDialog(this,
+            "Ponto de reposição dos produtos sem ponto próprio (0 desativa os alertas):",
+            estoque.getPontoReposicaoPadrao());
+        if (texto == null) return; // Cancelado pelo usuário.
+        try {
+            int ponto = Integer.parseInt(texto.trim());
+            if (ponto < 0) throw new NumberFormatException();
+            estoque.definirPontoReposicaoPadrao(ponto);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Informe um número inteiro não negativo.",
+                "Ponto Padrão", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Exporta a lista exibida para um arquivo CSV (opcionalmente compactado com gzip), no
+     * formato do relatório, em segundo plano.
+     */
+    private void exportarParaCSV() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Salvar lista de reposição");
+        fileChooser.setSelectedFile(new File("reposicao.csv"));
+        JCheckBox gzipCheck = new JCheckBox("Compactar (gzip)");
+        fileChooser.setAccessory(gzipCheck);
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        boolean gzip = gzipCheck.isSelected();
+        File escolhido = fileChooser.getSelectedFile();
+        String extensao = gzip ? ".csv.gz" : ".csv";
+        String nomeArquivo = escolhido.getName().toLowerCase();
+        File arquivo = nomeArquivo.endsWith(extensao) ? escolhido
+            : new File(gzip && nomeArquivo.endsWith(".csv") ? escolhido.getAbsolutePath() + ".gz" : escolhido.getAbsolutePath() + extensao);
+        List<AlertasReposicao.Item> itens = modelo.itens;
+
+        exportarBtn.setEnabled(false);
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                try (ExportadorCSV exportador = ExportadorCSV.paraReposicao(arquivo.toPath(), gzip)) {
+                    for (AlertasReposicao.Item item : itens) {
+                        exportador.escrever(item);
+                    }
+                    return exportador.getLinhas();
+                }
+            }
+
+            @Override
+            protected void done() {
+                exportarBtn.setEnabled(true);
+                try {
+                    JOptionPane.showMessageDialog(ReposicaoDialog.this,
+                        get() + " produtos exportados para " + arquivo.getName() + ".",
+                        "Exportação Concluída", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable causa = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(ReposicaoDialog.this,
+                        "Erro ao exportar arquivo:\n" + causa.getMessage(),
+                        "Erro na Exportação", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    @Override
+    public void dispose() {
+        estoque.removeListener(this); // Para de acompanhar o estoque quando o diálogo é fechado.
+        super.dispose();
+    }
+
+    /**
+     * Modelo da tabela: uma linha por produto em alerta.
+     */
+    private static class ModeloReposicao extends AbstractTableModel {
+        private static final String[] COLUNAS = {"Produto", "Quantidade", "Ponto", "Falta", "Preço (R$)", "Custo (R$)"};
+        private List<AlertasReposicao.Item> itens = List.of();
+
+        void exibir(List<AlertasReposicao.Item> novos) {
+            itens = novos;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return itens.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUNAS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUNAS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            if (columnIndex == 0) return String.class;
+            if (columnIndex >= 4) return Double.class;
+            return Integer.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            AlertasReposicao.Item item = itens.get(row);
+            switch (column) {
+                case 0: return item.getProduto().getNome();
+                case 1: return item.getProduto().getQuantidade();
+                case 2: return item.getPonto();
+                case 3: return item.getFalta();
+                case 4: return item.getProduto().getPreco();
+                default: return item.getCustoReposicao();
+            }
+        }
+    }
+}
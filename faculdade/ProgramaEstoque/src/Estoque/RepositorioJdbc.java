@@ -0,0 +1,1006 @@
+package Estoque;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Repositório de produtos em um banco SQL embutido, acessado por JDBC, como H2
+ * (`jdbc:h2:./estoque-h2`) ou SQLite (`jdbc:sqlite:estoque.db`). O driver do banco escolhido
+ * deve estar em `lib/`. A tabela e os índices são criados na primeira conexão; os índices
+ * seguem os do MongoDB, com o nome como desempate, para que filtros, ordenações e a
+ * paginação por chave sejam resolvidos pelo índice.
+ * <p>
+ * Bancos embutidos aceitam um único escritor por vez, por isso o repositório mantém uma
+ * única conexão e serializa o acesso a ela.
+ * @author Leandro
+ */
+public class RepositorioJdbc implements RepositorioProdutos {
+    private static final String COLUNAS = "nome, quantidade, preco, ponto_reposicao";
+    private static final String SQL_INSERIR =
+        "INSERT INTO produtos (nome, quantidade, preco, ponto_reposicao, atualizado_em, versao) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SQL_ATUALIZAR =
+        "UPDATE produtos SET quantidade = ?, preco = ?, atualizado_em = ?, versao = ? WHERE nome = ?";
+    // Tempo durante o qual as lápides dos produtos removidos são mantidas.
+    private static final long VALIDADE_LAPIDES_MS = TimeUnit.DAYS.toMillis(30);
+
+    private final String url; // URL JDBC do banco
+    private final String usuario;
+    private final String senha;
+    private Connection conexao; // Aberta na primeira operação
+
+    /**
+     * Construtor do RepositorioJdbc. A conexão só é aberta na primeira operação.
+     * @param url A URL JDBC do banco.
+     * @param usuario O usuário do banco (pode ser vazio).
+     * @param senha A senha do banco (pode ser vazia).
+     */
+    public RepositorioJdbc(String url, String usuario, String senha) {
+        this.url = url;
+        this.usuario = usuario;
+        this.senha = senha;
+    }
+
+    /**
+     * Abre a conexão em uma thread virtual, para que o banco já esteja aberto na primeira consulta.
+     */
+    @Override
+    public void iniciar() {
+        Thread.ofVirtual().name("jdbc-inicializacao").start(() -> {
+            try {
+                conexao();
+            } catch (RuntimeException e) {
+                // A falha será relatada de novo pela primeira operação.
+            }
+        });
+    }
+
+    /**
+     * Obtém por quanto tempo as lápides são mantidas.
+     * @return `VALIDADE_LAPIDES_MS`.
+     */
+    @Override
+    public long getValidadeLapidesMs() {
+        return VALIDADE_LAPIDES_MS;
+    }
+
+    /**
+     * Descreve o repositório.
+     * @return "jdbc" seguido da URL do banco.
+     */
+    @Override
+    public String getDescricao() {
+        return "jdbc (" + url + ")";
+    }
+
+    /**
+     * Obtém a conexão, abrindo-a e criando a tabela se necessário.
+     * Deve ser chamado com o repositório bloqueado (ou antes de qualquer outro acesso).
+     * @return A conexão aberta.
+     * @throws BancoIndisponivelException Se o banco não puder ser aberto.
+     */
+    private synchronized Connection conexao() {
+        try {
+            if (conexao == null || conexao.isClosed()) {
+                Connection nova = DriverManager.getConnection(url, usuario, senha);
+                try (Statement st = nova.createStatement()) {
+                    st.execute("CREATE TABLE IF NOT EXISTS produtos ("
+                        + "nome VARCHAR(255) NOT NULL PRIMARY KEY, "
+                        + "quantidade INTEGER NOT NULL, "
+                        + "preco DOUBLE PRECISION NOT NULL, "
+                        + "atualizado_em BIGINT NOT NULL, "
+                        + "versao BIGINT DEFAULT 0 NOT NULL, "
+                        + "ponto_reposicao INTEGER DEFAULT -1 NOT NULL)");
+                    try {
+                        // Tabelas criadas por versões anteriores não têm a coluna da versão.
+                        st.execute("ALTER TABLE produtos ADD COLUMN versao BIGINT DEFAULT 0 NOT NULL");
+                    } catch (SQLException e) {
+                        // A coluna já existe.
+                    }
+                    try {
+                        // Nem a do ponto de reposição (-1 segue o ponto padrão).
+                        st.execute("ALTER TABLE produtos ADD COLUMN ponto_reposicao INTEGER DEFAULT -1 NOT NULL");
+                    } catch (SQLException e) {
+                        // A coluna já existe.
+                    }
+                    st.execute("CREATE INDEX IF NOT EXISTS produtos_quantidade_nome ON produtos (quantidade, nome, preco)");
+                    st.execute("CREATE INDEX IF NOT EXISTS produtos_preco_nome ON produtos (preco, nome, quantidade)");
+                    st.execute("CREATE INDEX IF NOT EXISTS produtos_atualizado_em ON produtos (atualizado_em)");
+                    // Livro de movimentações e checkpoints (ver LivroMovimentos).
+                    st.execute("CREATE TABLE IF NOT EXISTS movimentos ("
+                        + "instante BIGINT NOT NULL, "
+                        + "sequencia BIGINT NOT NULL, "
+                        + "tipo VARCHAR(16) NOT NULL, "
+                        + "nome VARCHAR(255) NOT NULL, "
+                        + "variacao INTEGER NOT NULL, "
+                        + "quantidade INTEGER NOT NULL, "
+                        + "preco DOUBLE PRECISION NOT NULL, "
+                        + "PRIMARY KEY (instante, sequencia, nome))");
+                    st.execute("CREATE INDEX IF NOT EXISTS movimentos_nome ON movimentos (nome, instante, sequencia)");
+                    st.execute("CREATE TABLE IF NOT EXISTS checkpoints ("
+                        + "instante BIGINT NOT NULL PRIMARY KEY, "
+                        + "produtos INTEGER NOT NULL)");
+                    st.execute("CREATE TABLE IF NOT EXISTS checkpoints_estados ("
+                        + "checkpoint BIGINT NOT NULL, "
+                        + "nome VARCHAR(255) NOT NULL, "
+                        + "quantidade INTEGER NOT NULL, "
+                        + "preco DOUBLE PRECISION NOT NULL, "
+                        + "PRIMARY KEY (checkpoint, nome))");
+                    // Sincronização entre instâncias: contador de versões e lápides dos removidos.
+                    st.execute("CREATE INDEX IF NOT EXISTS produtos_versao ON produtos (versao)");
+                    st.execute("CREATE TABLE IF NOT EXISTS versoes ("
+                        + "id INTEGER NOT NULL PRIMARY KEY, "
+                        + "valor BIGINT NOT NULL)");
+                    try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM versoes")) {
+                        rs.next();
+                        if (rs.getLong(1) == 0) st.execute("INSERT INTO versoes (id, valor) VALUES (1, 0)");
+                    }
+                    st.execute("CREATE TABLE IF NOT EXISTS removidos ("
+                        + "nome VARCHAR(255) NOT NULL PRIMARY KEY, "
+                        + "versao BIGINT NOT NULL, "
+                        + "removido_em BIGINT NOT NULL)");
+                    st.execute("CREATE INDEX IF NOT EXISTS removidos_versao ON removidos (versao)");
+                    st.execute("CREATE INDEX IF NOT EXISTS removidos_removido_em ON removidos (removido_em)");
+                } catch (SQLException e) {
+                    nova.close();
+                    throw e;
+                }
+                conexao = nova;
+            }
+            return conexao;
+        } catch (SQLException e) {
+            throw new BancoIndisponivelException("Não foi possível abrir o banco " + url + ": " + e.getMessage()
+                + "\nVerifique se o driver JDBC está em lib/ e as configurações em estoque.properties.", e);
+        }
+    }
+
+    /**
+     * Converte uma falha do banco em exceção não verificada.
+     * @param operacao A operação que falhou.
+     * @param e A exceção do driver.
+     * @return A exceção a ser lançada.
+     */
+    private static IllegalStateException falha(String operacao, SQLException e) {
+        return new IllegalStateException("Falha ao " + operacao + " no banco: " + e.getMessage(), e);
+    }
+
+    /**
+     * Insere um produto novo; a chave primária recusa nomes repetidos.
+     * @param produto O produto.
+     * @throws IllegalStateException Se o nome já existir ou a gravação falhar.
+     */
+    @Override
+    public synchronized void inserir(Produto produto) {
+        Connection c = conexao();
+        try (PreparedStatement st = c.prepareStatement(SQL_INSERIR)) {
+            preencher(st, produto, reservarVersoes(c, 1));
+            st.executeUpdate();
+        } catch (SQLException e) {
+            throw falha("inserir o produto " + produto.getNome(), e);
+        }
+    }
+
+    /**
+     * Remove um produto e grava a sua lápide na mesma transação.
+     * @param nome O nome do produto.
+     * @return true se alguma linha foi removida.
+     */
+    @Override
+    public synchronized boolean remover(String nome) {
+        Connection c = conexao();
+        try {
+            c.setAutoCommit(false);
+            boolean removido;
+            try (PreparedStatement st = c.prepareStatement("DELETE FROM produtos WHERE nome = ?")) {
+                st.setString(1, nome);
+                removido = st.executeUpdate() > 0;
+            }
+            if (removido) gravarLapide(c, nome, reservarVersoes(c, 1));
+            c.commit();
+            return removido;
+        } catch (SQLException e) {
+            desfazer(c);
+            throw falha("remover o produto " + nome, e);
+        } finally {
+            restaurarAutoCommit(c);
+        }
+    }
+
+    /**
+     * Substitui a quantidade e o preço de um produto existente.
+     * @param nome O nome do produto.
+     * @param quantidade A nova quantidade.
+     * @param preco O novo preço.
+     * @return true se alguma linha foi alterada.
+     */
+    @Override
+    public synchronized boolean atualizar(String nome, int quantidade, double preco) {
+        Connection c = conexao();
+        try (PreparedStatement st = c.prepareStatement(SQL_ATUALIZAR)) {
+            preencherAtualizacao(st, nome, quantidade, preco, reservarVersoes(c, 1));
+            return st.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw falha("atualizar o produto " + nome, e);
+        }
+    }
+
+    /**
+     * Soma uma quantidade à quantidade de um produto com um único UPDATE condicional
+     * (`quantidade = quantidade + ?`), que o banco aplica atomicamente, e lê a linha alterada
+     * na mesma transação.
+     * @param nome O nome do produto.
+     * @param quantidade A quantidade a ser somada (negativa na saída).
+     * @return O produto com a nova quantidade, ou null se nenhuma linha atendeu à condição.
+     */
+    @Override
+    public synchronized Produto movimentar(String nome, int quantidade) {
+        Connection c = conexao();
+        try {
+            c.setAutoCommit(false);
+            Produto movimentado = null;
+            try (PreparedStatement atualiza = c.prepareStatement(
+                    "UPDATE produtos SET quantidade = quantidade + ?, atualizado_em = ?, versao = ? WHERE nome = ?"
+                    + (quantidade < 0 ? " AND quantidade >= ?" : " AND quantidade <= ?"))) {
+                atualiza.setInt(1, quantidade);
+                atualiza.setLong(2, System.currentTimeMillis());
+                atualiza.setLong(3, reservarVersoes(c, 1));
+                atualiza.setString(4, nome);
+                atualiza.setLong(5, quantidade < 0 ? -(long) quantidade : Integer.MAX_VALUE - (long) quantidade);
+                if (atualiza.executeUpdate() > 0) {
+                    try (PreparedStatement le = c.prepareStatement("SELECT " + COLUNAS + " FROM produtos WHERE nome = ?")) {
+                        le.setString(1, nome);
+                        try (ResultSet rs = le.executeQuery()) {
+                            if (rs.next()) movimentado = lerProduto(rs);
+                        }
+                    }
+                }
+            }
+            c.commit();
+            return movimentado;
+        } catch (SQLException e) {
+            desfazer(c);
+            throw falha("movimentar o produto " + nome, e);
+        } finally {
+            restaurarAutoCommit(c);
+        }
+    }
+
+    /**
+     * Substitui o ponto de reposição de um produto e lê a linha alterada na mesma transação.
+     * @param nome O nome do produto.
+     * @param pontoReposicao O novo ponto.
+     * @return O produto com o novo ponto, ou null se nenhuma linha foi alterada.
+     */
+    @Override
+    public synchronized Produto definirPontoReposicao(String nome, int pontoReposicao) {
+        Connection c = conexao();
+        try {
+            c.setAutoCommit(false);
+            Produto alterado = null;
+            try (PreparedStatement atualiza = c.prepareStatement(
+                    "UPDATE produtos SET ponto_reposicao = ?, atualizado_em = ?, versao = ? WHERE nome = ?")) {
+                atualiza.setInt(1, Math.max(pontoReposicao, Produto.PONTO_REPOSICAO_PADRAO));
+                atualiza.setLong(2, System.currentTimeMillis());
+                atualiza.setLong(3, reservarVersoes(c, 1));
+                atualiza.setString(4, nome);
+                if (atualiza.executeUpdate() > 0) {
+                    try (PreparedStatement le = c.prepareStatement("SELECT " + COLUNAS + " FROM produtos WHERE nome = ?")) {
+                        le.setString(1, nome);
+                        try (ResultSet rs = le.executeQuery()) {
+                            if (rs.next()) alterado = lerProduto(rs);
+                        }
+                    }
+                }
+            }
+            c.commit();
+            return alterado;
+        } catch (SQLException e) {
+            desfazer(c);
+            throw falha("definir o ponto de reposição do produto " + nome, e);
+        } finally {
+            restaurarAutoCommit(c);
+        }
+    }
+
+    /**
+     * Aplica um lote de operações em uma única transação do banco. Cada operação é executada
+     * na ordem da lista e a contagem de linhas afetadas indica se o produto existia.
+     * Se o lote for transacional e alguma operação falhar, a transação é desfeita.
+     * @param operacoes As operações do lote.
+     * @param transacional Se true, uma falha impede a aplicação de todas as operações.
+     * @return Um resultado para cada operação, na mesma ordem da lista.
+     */
+    @Override
+    public synchronized List<OperacaoEstoque.Resultado> executarLote(List<OperacaoEstoque> operacoes, boolean transacional) {
+        Connection c = conexao();
+        String[] falhas = new String[operacoes.size()];
+        boolean algumaFalha = false;
+        try {
+            c.setAutoCommit(false);
+            long primeiraVersao = reservarVersoes(c, operacoes.size());
+            try (PreparedStatement existe = c.prepareStatement("SELECT 1 FROM produtos WHERE nome = ?");
+                 PreparedStatement insere = c.prepareStatement(SQL_INSERIR);
+                 PreparedStatement remove = c.prepareStatement("DELETE FROM produtos WHERE nome = ?");
+                 PreparedStatement atualiza = c.prepareStatement(SQL_ATUALIZAR)) {
+                for (int i = 0; i < operacoes.size(); i++) {
+                    OperacaoEstoque op = operacoes.get(i);
+                    Produto p = op.getProduto();
+                    switch (op.getTipo()) {
+                        case ADICIONAR:
+                            // Confere antes de inserir: em alguns bancos um erro de chave invalida a transação.
+                            existe.setString(1, p.getNome());
+                            try (ResultSet rs = existe.executeQuery()) {
+                                if (rs.next()) {
+                                    falhas[i] = "Produto já existe.";
+                                    break;
+                                }
+                            }
+                            preencher(insere, p, primeiraVersao + i);
+                            insere.executeUpdate();
+                            break;
+                        case REMOVER:
+                            remove.setString(1, p.getNome());
+                            if (remove.executeUpdate() == 0) falhas[i] = "Produto não encontrado.";
+                            else gravarLapide(c, p.getNome(), primeiraVersao + i);
+                            break;
+                        case ATUALIZAR:
+                            preencherAtualizacao(atualiza, p.getNome(), p.getQuantidade(), p.getPreco(), primeiraVersao + i);
+                            if (atualiza.executeUpdate() == 0) falhas[i] = "Produto não encontrado.";
+                            break;
+                    }
+                    algumaFalha |= falhas[i] != null;
+                }
+            }
+            if (transacional && algumaFalha) {
+                c.rollback();
+                for (int i = 0; i < falhas.length; i++) {
+                    if (falhas[i] == null) falhas[i] = "Não aplicada: outra operação da transação falhou.";
+                }
+            } else {
+                c.commit();
+            }
+        } catch (SQLException e) {
+            desfazer(c);
+            throw falha("aplicar o lote", e);
+        } finally {
+            restaurarAutoCommit(c);
+        }
+
+        List<OperacaoEstoque.Resultado> resultados = new ArrayList<>(operacoes.size());
+        for (int i = 0; i < operacoes.size(); i++) {
+            resultados.add(new OperacaoEstoque.Resultado(operacoes.get(i), falhas[i] == null, falhas[i]));
+        }
+        return resultados;
+    }
+
+    /**
+     * Grava um lote de produtos com upsert pelo nome, em uma única transação: primeiro um
+     * lote de UPDATEs e, para os nomes que não existiam, um lote de INSERTs. Se o banco recusar
+     * o lote, ele é repetido produto a produto, para que só os produtos com problema sejam recusados.
+     * @param lote Os produtos do lote.
+     * @param aoRejeitar Recebe cada produto recusado e o motivo.
+     * @return O número de produtos gravados.
+     */
+    @Override
+    public synchronized long gravarLote(List<Produto> lote, BiConsumer<Produto, String> aoRejeitar) {
+        Connection c = conexao();
+        try {
+            c.setAutoCommit(false);
+            try {
+                gravarLoteSemTratar(c, lote);
+                c.commit();
+                return lote.size();
+            } catch (SQLException e) {
+                desfazer(c);
+            }
+            long gravados = 0;
+            for (Produto p : lote) {
+                try {
+                    gravarLoteSemTratar(c, List.of(p));
+                    c.commit();
+                    gravados++;
+                } catch (SQLException e) {
+                    desfazer(c);
+                    aoRejeitar.accept(p, e.getMessage());
+                }
+            }
+            return gravados;
+        } catch (SQLException e) {
+            throw falha("gravar o lote", e);
+        } finally {
+            restaurarAutoCommit(c);
+        }
+    }
+
+    /**
+     * Executa os UPDATEs e INSERTs de um lote de upserts, sem confirmar a transação.
+     * @param c A conexão, fora do modo de confirmação automática.
+     * @param lote Os produtos do lote.
+     * @throws SQLException Se algum comando falhar.
+     */
+    private static void gravarLoteSemTratar(Connection c, List<Produto> lote) throws SQLException {
+        List<Integer> novos = new ArrayList<>(); // Posições no lote dos produtos que não existiam
+        long primeiraVersao = reservarVersoes(c, lote.size());
+        try (PreparedStatement atualiza = c.prepareStatement(SQL_ATUALIZAR)) {
+            for (int i = 0; i < lote.size(); i++) {
+                Produto p = lote.get(i);
+                preencherAtualizacao(atualiza, p.getNome(), p.getQuantidade(), p.getPreco(), primeiraVersao + i);
+                atualiza.addBatch();
+            }
+            int[] contagens = atualiza.executeBatch();
+            for (int i = 0; i < contagens.length; i++) {
+                if (contagens[i] == 0) novos.add(i);
+            }
+        }
+        if (novos.isEmpty()) return;
+        try (PreparedStatement insere = c.prepareStatement(SQL_INSERIR)) {
+            for (int i : novos) {
+                Produto p = lote.get(i);
+                preencher(insere, p, primeiraVersao + i);
+                insere.addBatch();
+            }
+            insere.executeBatch();
+        }
+    }
+
+    /**
+     * Verifica se um nome existe, pela chave primária.
+     * @param nome O nome do produto.
+     * @return true se o produto existe.
+     */
+    @Override
+    public synchronized boolean existe(String nome) {
+        try (PreparedStatement st = conexao().prepareStatement("SELECT 1 FROM produtos WHERE nome = ?")) {
+            st.setString(1, nome);
+            try (ResultSet rs = st.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw falha("verificar o produto " + nome, e);
+        }
+    }
+
+    /**
+     * Entrega todos os produtos.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public synchronized void paraCadaProduto(Consumer<Produto> acao) {
+        consultar("SELECT " + COLUNAS + " FROM produtos", List.of(), 1000, acao);
+    }
+
+    /**
+     * Entrega o nome de todos os produtos, lidos da chave primária.
+     * @param acao A ação executada para cada nome.
+     */
+    @Override
+    public synchronized void paraCadaNome(Consumer<String> acao) {
+        try (PreparedStatement st = conexao().prepareStatement("SELECT nome FROM produtos")) {
+            st.setFetchSize(1000);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) acao.accept(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw falha("ler os nomes dos produtos", e);
+        }
+    }
+
+    /**
+     * Entrega os produtos gravados depois de um instante, pelo índice de `atualizado_em`.
+     * @param instante O instante, em milissegundos desde a época.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public synchronized void paraCadaAlteradoDesde(long instante, Consumer<Produto> acao) {
+        consultar("SELECT " + COLUNAS + " FROM produtos WHERE atualizado_em > ?", List.of(instante), 1000, acao);
+    }
+
+    /**
+     * Lê a última versão do contador.
+     * @return A última versão reservada.
+     */
+    @Override
+    public synchronized long versaoAtual() {
+        try (Statement st = conexao().createStatement(); ResultSet rs = st.executeQuery("SELECT valor FROM versoes WHERE id = 1")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw falha("ler a versão do catálogo", e);
+        }
+    }
+
+    /**
+     * Lê, pelos índices de `versao`, os produtos e as lápides posteriores a uma versão, em
+     * uma única consulta ordenada pela versão.
+     * @param versao A última versão já conhecida.
+     * @param acao A ação executada para cada alteração.
+     */
+    @Override
+    public synchronized void paraCadaAlteracaoDesde(long versao, Consumer<AlteracaoCatalogo> acao) {
+        try (PreparedStatement st = conexao().prepareStatement(
+                "SELECT versao, nome, quantidade, preco, ponto_reposicao, 0 AS removido FROM produtos WHERE versao > ? "
+                + "UNION ALL SELECT versao, nome, 0, 0, -1, 1 FROM removidos WHERE versao > ? ORDER BY 1")) {
+            st.setLong(1, versao);
+            st.setLong(2, versao);
+            st.setFetchSize(1000);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    long v = rs.getLong(1);
+                    acao.accept(rs.getInt(6) == 1
+                        ? AlteracaoCatalogo.removido(v, rs.getString(2))
+                        : AlteracaoCatalogo.gravado(v, new Produto(rs.getString(2), rs.getInt(3), rs.getDouble(4), rs.getInt(5))));
+                }
+            }
+        } catch (SQLException e) {
+            throw falha("ler as alterações do catálogo", e);
+        }
+    }
+
+    /**
+     * Conta os produtos de uma consulta.
+     * @param consulta A consulta com os filtros.
+     * @return O número de produtos.
+     */
+    @Override
+    public synchronized long contar(ConsultaProdutos consulta) {
+        List<Object> parametros = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM produtos" + where(consulta, null, parametros);
+        try (PreparedStatement st = conexao().prepareStatement(sql)) {
+            definirParametros(st, parametros);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw falha("contar os produtos", e);
+        }
+    }
+
+    /**
+     * Lista uma página por chave: a condição de posição é uma comparação de (campo, nome),
+     * resolvida pelo índice do campo de ordenação.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param apos O último produto da página anterior, ou null para a primeira página.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página.
+     */
+    @Override
+    public synchronized List<Produto> listarPagina(ConsultaProdutos consulta, Produto apos, int tamanho) {
+        List<Object> parametros = new ArrayList<>();
+        String sql = "SELECT " + COLUNAS + " FROM produtos" + where(consulta, apos, parametros)
+            + orderBy(consulta) + " LIMIT " + tamanho;
+        List<Produto> produtos = new ArrayList<>(tamanho);
+        consultar(sql, parametros, tamanho, produtos::add);
+        return produtos;
+    }
+
+    /**
+     * Lista uma página a partir de uma posição absoluta, com OFFSET.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param deslocamento O número de produtos a pular.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página.
+     */
+    @Override
+    public synchronized List<Produto> listarPagina(ConsultaProdutos consulta, long deslocamento, int tamanho) {
+        List<Object> parametros = new ArrayList<>();
+        String sql = "SELECT " + COLUNAS + " FROM produtos" + where(consulta, null, parametros)
+            + orderBy(consulta) + " LIMIT " + tamanho + " OFFSET " + deslocamento;
+        List<Produto> produtos = new ArrayList<>(tamanho);
+        consultar(sql, parametros, tamanho, produtos::add);
+        return produtos;
+    }
+
+    /**
+     * Percorre os produtos de uma consulta com um único ResultSet, lido em blocos.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param tamanhoLote O número de linhas lidas do banco por vez.
+     * @param acao A ação executada para cada produto.
+     * @return O número de produtos percorridos.
+     */
+    @Override
+    public synchronized long percorrer(ConsultaProdutos consulta, int tamanhoLote, Consumer<Produto> acao) {
+        List<Object> parametros = new ArrayList<>();
+        String sql = "SELECT " + COLUNAS + " FROM produtos" + where(consulta, null, parametros) + orderBy(consulta);
+        long[] total = {0};
+        consultar(sql, parametros, tamanhoLote, p -> {
+            acao.accept(p);
+            total[0]++;
+        });
+        return total[0];
+    }
+
+    /**
+     * Calcula o resumo com uma única consulta agrupada por faixa de preço.
+     * @return O resumo do estoque.
+     */
+    @Override
+    public synchronized ResumoEstoque calcularResumo() {
+        double[] limites = ResumoEstoque.LIMITES_FAIXAS;
+        // CASE que devolve a posição da faixa, do maior limite para o menor.
+        StringBuilder faixa = new StringBuilder("CASE");
+        for (int i = limites.length - 1; i > 0; i--) {
+            faixa.append(" WHEN preco >= ").append(limites[i]).append(" THEN ").append(i);
+        }
+        faixa.append(" WHEN preco >= ").append(limites[0]).append(" THEN 0 ELSE ").append(limites.length - 1).append(" END");
+        String sql = "SELECT " + faixa + " AS faixa, COUNT(*), SUM(quantidade), SUM(quantidade * preco)"
+            + " FROM produtos GROUP BY " + faixa;
+
+        long[] itens = new long[limites.length];
+        long[] unidades = new long[limites.length];
+        double[] valores = new double[limites.length];
+        try (PreparedStatement st = conexao().prepareStatement(sql);
+             ResultSet rs = st.executeQuery()) {
+            while (rs.next()) {
+                int i = rs.getInt(1);
+                itens[i] = rs.getLong(2);
+                unidades[i] = rs.getLong(3);
+                valores[i] = rs.getDouble(4);
+            }
+        } catch (SQLException e) {
+            throw falha("calcular o resumo do estoque", e);
+        }
+        return ResumoEstoque.deFaixas(itens, unidades, valores);
+    }
+
+    /**
+     * Acrescenta lançamentos ao livro em uma única transação, com um INSERT em lote.
+     * Se o lote falhar, nada é gravado e ele pode ser reenviado sem duplicar lançamentos.
+     * @param lote Os lançamentos.
+     */
+    @Override
+    public synchronized void anexarMovimentos(List<Movimento> lote) {
+        Connection c = conexao();
+        try {
+            c.setAutoCommit(false);
+            try (PreparedStatement st = c.prepareStatement("INSERT INTO movimentos "
+                    + "(instante, sequencia, tipo, nome, variacao, quantidade, preco) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (Movimento m : lote) {
+                    st.setLong(1, m.getInstante());
+                    st.setLong(2, m.getSequencia());
+                    st.setString(3, m.getTipo().name());
+                    st.setString(4, m.getNome());
+                    st.setInt(5, m.getVariacao());
+                    st.setInt(6, m.getQuantidade());
+                    st.setDouble(7, m.getPreco());
+                    st.addBatch();
+                }
+                st.executeBatch();
+            }
+            c.commit();
+        } catch (SQLException e) {
+            desfazer(c);
+            throw falha("gravar as movimentações", e);
+        } finally {
+            restaurarAutoCommit(c);
+        }
+    }
+
+    /**
+     * Percorre os lançamentos de um intervalo, na ordem em que aconteceram.
+     * @param nome O nome do produto; null para todos.
+     * @param desde O início do intervalo (ms), exclusive.
+     * @param ate O fim do intervalo (ms), inclusive.
+     * @param acao A ação executada para cada lançamento.
+     */
+    @Override
+    public synchronized void percorrerMovimentos(String nome, long desde, long ate, Consumer<Movimento> acao) {
+        String sql = "SELECT instante, sequencia, tipo, nome, variacao, quantidade, preco FROM movimentos "
+            + "WHERE instante > ? AND instante <= ?" + (nome != null ? " AND nome = ?" : "")
+            + " ORDER BY instante, sequencia";
+        try (PreparedStatement st = conexao().prepareStatement(sql)) {
+            st.setLong(1, desde);
+            st.setLong(2, ate);
+            if (nome != null) st.setString(3, nome);
+            st.setFetchSize(1000);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    acao.accept(new Movimento(rs.getLong(1), rs.getLong(2), Movimento.Tipo.valueOf(rs.getString(3)),
+                        rs.getString(4), rs.getInt(5), rs.getInt(6), rs.getDouble(7)));
+                }
+            }
+        } catch (SQLException e) {
+            throw falha("consultar as movimentações", e);
+        }
+    }
+
+    /**
+     * Grava um checkpoint em uma única transação: os estados dos produtos e o registro do checkpoint.
+     * @param instante O instante que o checkpoint representa.
+     * @param estado O estado de todos os produtos nesse instante.
+     */
+    @Override
+    public synchronized void gravarCheckpoint(long instante, Collection<Produto> estado) {
+        Connection c = conexao();
+        try {
+            c.setAutoCommit(false);
+            try (PreparedStatement estados = c.prepareStatement(
+                     "INSERT INTO checkpoints_estados (checkpoint, nome, quantidade, preco) VALUES (?, ?, ?, ?)");
+                 PreparedStatement registro = c.prepareStatement(
+                     "INSERT INTO checkpoints (instante, produtos) VALUES (?, ?)")) {
+                int pendentes = 0;
+                for (Produto p : estado) {
+                    estados.setLong(1, instante);
+                    estados.setString(2, p.getNome());
+                    estados.setInt(3, p.getQuantidade());
+                    estados.setDouble(4, p.getPreco());
+                    estados.addBatch();
+                    if (++pendentes == 1000) {
+                        estados.executeBatch();
+                        pendentes = 0;
+                    }
+                }
+                if (pendentes > 0) estados.executeBatch();
+                registro.setLong(1, instante);
+                registro.setInt(2, estado.size());
+                registro.executeUpdate();
+            }
+            c.commit();
+        } catch (SQLException e) {
+            desfazer(c);
+            throw falha("gravar o checkpoint das movimentações", e);
+        } finally {
+            restaurarAutoCommit(c);
+        }
+    }
+
+    /**
+     * Procura o checkpoint mais recente até um instante.
+     * @param ate O instante limite, inclusive.
+     * @return O instante do checkpoint, ou -1 se não houver.
+     */
+    @Override
+    public synchronized long ultimoCheckpoint(long ate) {
+        try (PreparedStatement st = conexao().prepareStatement("SELECT MAX(instante) FROM checkpoints WHERE instante <= ?")) {
+            st.setLong(1, ate);
+            try (ResultSet rs = st.executeQuery()) {
+                if (!rs.next()) return -1;
+                long instante = rs.getLong(1);
+                return rs.wasNull() ? -1 : instante; // MAX de nenhuma linha é NULL.
+            }
+        } catch (SQLException e) {
+            throw falha("consultar os checkpoints", e);
+        }
+    }
+
+    /**
+     * Entrega o estado dos produtos gravado em um checkpoint.
+     * @param instante O instante do checkpoint.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public synchronized void paraCadaProdutoNoCheckpoint(long instante, Consumer<Produto> acao) {
+        // Os checkpoints guardam só o estoque; o ponto de reposição não faz parte do histórico.
+        consultar("SELECT nome, quantidade, preco, -1 FROM checkpoints_estados WHERE checkpoint = ?",
+            List.of(instante), 1000, acao);
+    }
+
+    /**
+     * Fecha a conexão, caso ela tenha sido aberta.
+     */
+    @Override
+    public synchronized void close() {
+        if (conexao == null) return;
+        try {
+            conexao.close();
+        } catch (SQLException e) {
+            System.err.println("Erro ao fechar o banco " + url + ": " + e.getMessage());
+        }
+        conexao = null;
+    }
+
+    /**
+     * Executa uma consulta que devolve as colunas nome, quantidade, preço e ponto de reposição.
+     * @param sql O comando SQL.
+     * @param parametros Os valores dos parâmetros, na ordem.
+     * @param tamanhoLote O número de linhas lidas do banco por vez.
+     * @param acao A ação executada para cada produto.
+     */
+    private void consultar(String sql, List<Object> parametros, int tamanhoLote, Consumer<Produto> acao) {
+        try (PreparedStatement st = conexao().prepareStatement(sql)) {
+            definirParametros(st, parametros);
+            st.setFetchSize(tamanhoLote);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    acao.accept(lerProduto(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw falha("consultar os produtos", e);
+        }
+    }
+
+    /**
+     * Lê o produto da linha atual de uma consulta com as colunas de `COLUNAS`.
+     * @param rs O resultado, posicionado em uma linha.
+     * @return O produto.
+     * @throws SQLException Se alguma coluna não puder ser lida.
+     */
+    private static Produto lerProduto(ResultSet rs) throws SQLException {
+        return new Produto(rs.getString(1), rs.getInt(2), rs.getDouble(3), rs.getInt(4));
+    }
+
+    /**
+     * Monta a cláusula WHERE de uma consulta e acrescenta os valores dos parâmetros.
+     * O prefixo vira o intervalo [prefixo, sucessor), que usa a chave primária.
+     * @param consulta A consulta com os filtros.
+     * @param apos O último produto da página anterior, ou null.
+     * @param parametros A lista onde os parâmetros são acrescentados.
+     * @return A cláusula, com espaço inicial, ou "" se não houver condições.
+     */
+    private static String where(ConsultaProdutos consulta, Produto apos, List<Object> parametros) {
+        List<String> condicoes = new ArrayList<>();
+        String prefixo = consulta.getPrefixoNome();
+        if (!prefixo.isEmpty()) {
+            condicoes.add("nome >= ? AND nome < ?");
+            parametros.add(prefixo);
+            parametros.add(ConsultaProdutos.sucessorPrefixo(prefixo));
+        }
+        if (consulta.getQuantidadeMinima() > 0) {
+            condicoes.add("quantidade >= ?");
+            parametros.add(consulta.getQuantidadeMinima());
+        }
+        if (apos != null) {
+            String maior = consulta.isCrescente() ? ">" : "<";
+            String campo = coluna(consulta.getCampoOrdenacao());
+            if (campo.equals("nome")) {
+                condicoes.add("nome " + maior + " ?");
+                parametros.add(apos.getNome());
+            } else {
+                Object valor = campo.equals("quantidade") ? (Object) apos.getQuantidade() : (Object) apos.getPreco();
+                condicoes.add("(" + campo + " " + maior + " ? OR (" + campo + " = ? AND nome " + maior + " ?))");
+                parametros.add(valor);
+                parametros.add(valor);
+                parametros.add(apos.getNome());
+            }
+        }
+        return condicoes.isEmpty() ? "" : " WHERE " + String.join(" AND ", condicoes);
+    }
+
+    /**
+     * Monta a cláusula ORDER BY de uma consulta: pelo campo escolhido e pelo nome.
+     * @param consulta A consulta com a ordenação.
+     * @return A cláusula, com espaço inicial.
+     */
+    private static String orderBy(ConsultaProdutos consulta) {
+        String direcao = consulta.isCrescente() ? " ASC" : " DESC";
+        String campo = coluna(consulta.getCampoOrdenacao());
+        return campo.equals("nome")
+            ? " ORDER BY nome" + direcao
+            : " ORDER BY " + campo + direcao + ", nome" + direcao;
+    }
+
+    /**
+     * Converte o campo de ordenação no nome da coluna, sem nunca repassar texto arbitrário ao SQL.
+     * @param campo O campo de ordenação da consulta.
+     * @return O nome da coluna.
+     */
+    private static String coluna(String campo) {
+        switch (campo) {
+            case ConsultaProdutos.QUANTIDADE: return "quantidade";
+            case ConsultaProdutos.PRECO: return "preco";
+            default: return "nome";
+        }
+    }
+
+    /**
+     * Define os parâmetros de um comando na ordem da lista.
+     * @param st O comando.
+     * @param parametros Os valores (String, Integer, Long ou Double).
+     * @throws SQLException Se algum valor não puder ser definido.
+     */
+    private static void definirParametros(PreparedStatement st, List<Object> parametros) throws SQLException {
+        for (int i = 0; i < parametros.size(); i++) {
+            st.setObject(i + 1, parametros.get(i));
+        }
+    }
+
+    /**
+     * Preenche um INSERT de produto (`SQL_INSERIR`), com o instante atual como `atualizado_em`.
+     * @param st O comando com os parâmetros nome, quantidade, preço, ponto de reposição, instante e versão.
+     * @param produto O produto.
+     * @param versao A versão do catálogo atribuída à gravação.
+     * @throws SQLException Se algum valor não puder ser definido.
+     */
+    private static void preencher(PreparedStatement st, Produto produto, long versao) throws SQLException {
+        st.setString(1, produto.getNome());
+        st.setInt(2, produto.getQuantidade());
+        st.setDouble(3, produto.getPreco());
+        st.setInt(4, produto.getPontoReposicao());
+        st.setLong(5, System.currentTimeMillis());
+        st.setLong(6, versao);
+    }
+
+    /**
+     * Preenche um UPDATE de produto (`SQL_ATUALIZAR`), com o instante atual como `atualizado_em`.
+     * @param st O comando com os parâmetros quantidade, preço, instante, versão e nome.
+     * @param nome O nome.
+     * @param quantidade A quantidade.
+     * @param preco O preço.
+     * @param versao A versão do catálogo atribuída à gravação.
+     * @throws SQLException Se algum valor não puder ser definido.
+     */
+    private static void preencherAtualizacao(PreparedStatement st, String nome, int quantidade, double preco, long versao) throws SQLException {
+        st.setInt(1, quantidade);
+        st.setDouble(2, preco);
+        st.setLong(3, System.currentTimeMillis());
+        st.setLong(4, versao);
+        st.setString(5, nome);
+    }
+
+    /**
+     * Reserva versões do catálogo incrementando o contador da tabela `versoes`. Dentro de uma
+     * transação, a linha do contador fica bloqueada até a confirmação, de modo que as versões
+     * são confirmadas na ordem em que foram reservadas.
+     * @param c A conexão.
+     * @param quantidade O número de versões a reservar.
+     * @return A primeira versão reservada; as demais são as seguintes.
+     * @throws SQLException Se o contador não puder ser atualizado.
+     */
+    private static long reservarVersoes(Connection c, int quantidade) throws SQLException {
+        try (PreparedStatement incrementa = c.prepareStatement("UPDATE versoes SET valor = valor + ? WHERE id = 1")) {
+            incrementa.setLong(1, quantidade);
+            incrementa.executeUpdate();
+        }
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT valor FROM versoes WHERE id = 1")) {
+            rs.next();
+            return rs.getLong(1) - quantidade + 1;
+        }
+    }
+
+    /**
+     * Grava a lápide de um produto removido, substituindo a anterior do mesmo nome, e descarta
+     * as lápides vencidas.
+     * @param c A conexão, dentro da transação da remoção.
+     * @param nome O nome do produto.
+     * @param versao A versão atribuída à remoção.
+     * @throws SQLException Se algum comando falhar.
+     */
+    private static void gravarLapide(Connection c, String nome, long versao) throws SQLException {
+        long agora = System.currentTimeMillis();
+        try (PreparedStatement descarta = c.prepareStatement("DELETE FROM removidos WHERE nome = ? OR removido_em < ?")) {
+            descarta.setString(1, nome);
+            descarta.setLong(2, agora - VALIDADE_LAPIDES_MS);
+            descarta.executeUpdate();
+        }
+        try (PreparedStatement insere = c.prepareStatement(
+                "INSERT INTO removidos (nome, versao, removido_em) VALUES (?, ?, ?)")) {
+            insere.setString(1, nome);
+            insere.setLong(2, versao);
+            insere.setLong(3, agora);
+            insere.executeUpdate();
+        }
+    }
+
+    /**
+     * Desfaz a transação em andamento, ignorando falhas (a conexão pode já estar inutilizada).
+     * @param c A conexão.
+     */
+    private static void desfazer(Connection c) {
+        try {
+            c.rollback();
+        } catch (SQLException e) {
+            // Nada a fazer: o erro original é o que importa.
+        }
+    }
+
+    /**
+     * Volta a conexão ao modo de confirmação automática.
+     * @param c A conexão.
+     */
+    private static void restaurarAutoCommit(Connection c) {
+        try {
+            c.setAutoCommit(true);
+        } catch (SQLException e) {
+            // A próxima operação relatará o problema da conexão.
+        }
+    }
+}
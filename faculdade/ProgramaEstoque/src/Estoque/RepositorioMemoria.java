@@ -0,0 +1,528 @@
+package Estoque;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Repositório de produtos mantido apenas em memória, sem banco de dados.
+ * Serve para usar o programa sem um servidor (demonstrações, testes manuais) e como
+ * referência de desempenho para os outros repositórios. Os produtos se perdem ao fechar o programa.
+ * As leituras usam um mapa ordenado pelo nome, seguro para acesso concorrente; as escritas
+ * são serializadas, o que torna cada lote atômico.
+ * @author Leandro
+ */
+public class RepositorioMemoria implements RepositorioProdutos {
+    // Produtos indexados pelo nome normalizado, em ordem alfabética.
+    private final ConcurrentSkipListMap<String, Registro> produtos = new ConcurrentSkipListMap<>();
+    // Livro de movimentações, na ordem dos lançamentos.
+    private final ConcurrentSkipListSet<Movimento> movimentos = new ConcurrentSkipListSet<>(Movimento::compararOrdem);
+    // Checkpoints do livro, indexados pelo instante.
+    private final ConcurrentSkipListMap<Long, List<Produto>> checkpoints = new ConcurrentSkipListMap<>();
+    // Última alteração de cada nome (produto gravado ou lápide), indexada pela versão.
+    private final ConcurrentSkipListMap<Long, AlteracaoCatalogo> alteracoes = new ConcurrentSkipListMap<>();
+    // Versão da última alteração de cada nome, para retirar a anterior de `alteracoes`.
+    private final Map<String, Long> versoes = new HashMap<>();
+    // Última versão atribuída; alterada apenas com o repositório bloqueado.
+    private volatile long ultimaVersao = 0;
+
+    /**
+     * Produto guardado junto com o instante da última gravação.
+     */
+    private static final class Registro {
+        final Produto produto;
+        final long atualizadoEm;
+
+        Registro(Produto produto) {
+            this.produto = produto;
+            this.atualizadoEm = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Grava (ou remove) um produto e registra a alteração com uma nova versão.
+     * Deve ser chamado com o repositório bloqueado.
+     * @param nome O nome do produto.
+     * @param produto O novo estado do produto, ou null para removê-lo.
+     */
+    private void gravar(String nome, Produto produto) {
+        long versao = ++ultimaVersao;
+        Long anterior = versoes.put(nome, versao);
+        if (anterior != null) alteracoes.remove(anterior);
+        if (produto != null) {
+            Produto copia = copia(produto);
+            produtos.put(nome, new Registro(copia));
+            alteracoes.put(versao, AlteracaoCatalogo.gravado(versao, copia));
+        } else {
+            produtos.remove(nome);
+            alteracoes.put(versao, AlteracaoCatalogo.removido(versao, nome));
+        }
+    }
+
+    /**
+     * Indica que os produtos não sobrevivem ao encerramento do programa.
+     * @return false.
+     */
+    @Override
+    public boolean isPersistente() {
+        return false;
+    }
+
+    /**
+     * Descreve o repositório.
+     * @return "memoria".
+     */
+    @Override
+    public String getDescricao() {
+        return "memoria";
+    }
+
+    /**
+     * Insere um produto novo.
+     * @param produto O produto.
+     * @throws IllegalStateException Se já existir um produto com o mesmo nome.
+     */
+    @Override
+    public synchronized void inserir(Produto produto) {
+        if (produtos.containsKey(produto.getNome())) {
+            throw new IllegalStateException("Produto já existe: " + produto.getNome());
+        }
+        gravar(produto.getNome(), produto);
+    }
+
+    /**
+     * Remove um produto.
+     * @param nome O nome do produto.
+     * @return true se o produto existia.
+     */
+    @Override
+    public synchronized boolean remover(String nome) {
+        if (!produtos.containsKey(nome)) return false;
+        gravar(nome, null);
+        return true;
+    }
+
+    /**
+     * Substitui a quantidade e o preço de um produto existente.
+     * @param nome O nome do produto.
+     * @param quantidade A nova quantidade.
+     * @param preco O novo preço.
+     * @return true se o produto existia.
+     */
+    @Override
+    public synchronized boolean atualizar(String nome, int quantidade, double preco) {
+        Registro registro = produtos.get(nome);
+        if (registro == null) return false;
+        gravar(nome, registro.produto.comValores(quantidade, preco));
+        return true;
+    }
+
+    /**
+     * Soma uma quantidade à quantidade de um produto, se houver estoque suficiente.
+     * @param nome O nome do produto.
+     * @param quantidade A quantidade a ser somada (negativa na saída).
+     * @return O produto com a nova quantidade, ou null se o produto não existir ou a condição não for atendida.
+     */
+    @Override
+    public synchronized Produto movimentar(String nome, int quantidade) {
+        Registro registro = produtos.get(nome);
+        if (registro == null) return null;
+        long nova = (long) registro.produto.getQuantidade() + quantidade;
+        if (nova < 0 || nova > Integer.MAX_VALUE) return null;
+        Produto movimentado = registro.produto.comValores((int) nova, registro.produto.getPreco());
+        gravar(nome, movimentado);
+        return copia(movimentado);
+    }
+
+    /**
+     * Substitui o ponto de reposição de um produto.
+     * @param nome O nome do produto.
+     * @param pontoReposicao O novo ponto.
+     * @return O produto com o novo ponto, ou null se o produto não existir.
+     */
+    @Override
+    public synchronized Produto definirPontoReposicao(String nome, int pontoReposicao) {
+        Registro registro = produtos.get(nome);
+        if (registro == null) return null;
+        Produto p = registro.produto;
+        Produto alterado = new Produto(nome, p.getQuantidade(), p.getPreco(), pontoReposicao);
+        gravar(nome, alterado);
+        return copia(alterado);
+    }
+
+    /**
+     * Aplica um lote de operações. Como as escritas são serializadas, o lote é simulado
+     * antes de ser aplicado e, se for transacional, nada é alterado quando alguma operação falha.
+     * @param operacoes As operações do lote.
+     * @param transacional Se true, uma falha impede a aplicação de todas as operações.
+     * @return Um resultado para cada operação, na mesma ordem da lista.
+     */
+    @Override
+    public synchronized List<OperacaoEstoque.Resultado> executarLote(List<OperacaoEstoque> operacoes, boolean transacional) {
+        // Simula o lote sobre os nomes existentes, na ordem da lista.
+        Map<String, Boolean> existe = new HashMap<>();
+        String[] falhas = new String[operacoes.size()];
+        boolean algumaFalha = false;
+        for (int i = 0; i < operacoes.size(); i++) {
+            OperacaoEstoque op = operacoes.get(i);
+            boolean presente = existe.computeIfAbsent(op.getNome(), produtos::containsKey);
+            switch (op.getTipo()) {
+                case ADICIONAR:
+                    if (presente) falhas[i] = "Produto já existe.";
+                    else existe.put(op.getNome(), true);
+                    break;
+                case REMOVER:
+                    if (!presente) falhas[i] = "Produto não encontrado.";
+                    else existe.put(op.getNome(), false);
+                    break;
+                case ATUALIZAR:
+                    if (!presente) falhas[i] = "Produto não encontrado.";
+                    break;
+            }
+            algumaFalha |= falhas[i] != null;
+        }
+
+        if (transacional && algumaFalha) {
+            for (int i = 0; i < falhas.length; i++) {
+                if (falhas[i] == null) falhas[i] = "Não aplicada: outra operação da transação falhou.";
+            }
+        }
+
+        List<OperacaoEstoque.Resultado> resultados = new ArrayList<>(operacoes.size());
+        for (int i = 0; i < operacoes.size(); i++) {
+            OperacaoEstoque op = operacoes.get(i);
+            if (falhas[i] == null) {
+                gravar(op.getNome(), op.getTipo() == OperacaoEstoque.Tipo.REMOVER ? null : comPontoAtual(op.getProduto()));
+            }
+            resultados.add(new OperacaoEstoque.Resultado(op, falhas[i] == null, falhas[i]));
+        }
+        return resultados;
+    }
+
+    /**
+     * Grava um lote de produtos com upsert pelo nome. Nenhum produto é recusado.
+     * @param lote Os produtos do lote.
+     * @param aoRejeitar Não é chamado.
+     * @return O número de produtos do lote.
+     */
+    @Override
+    public synchronized long gravarLote(List<Produto> lote, BiConsumer<Produto, String> aoRejeitar) {
+        for (Produto p : lote) {
+            gravar(p.getNome(), comPontoAtual(p));
+        }
+        return lote.size();
+    }
+
+    /**
+     * Verifica se um nome existe.
+     * @param nome O nome do produto.
+     * @return true se o produto existe.
+     */
+    @Override
+    public boolean existe(String nome) {
+        return produtos.containsKey(nome);
+    }
+
+    /**
+     * Entrega todos os produtos, em ordem alfabética.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public void paraCadaProduto(Consumer<Produto> acao) {
+        produtos.values().forEach(r -> acao.accept(copia(r.produto)));
+    }
+
+    /**
+     * Entrega o nome de todos os produtos, em ordem alfabética.
+     * @param acao A ação executada para cada nome.
+     */
+    @Override
+    public void paraCadaNome(Consumer<String> acao) {
+        produtos.keySet().forEach(acao);
+    }
+
+    /**
+     * Entrega os produtos gravados depois de um instante.
+     * @param instante O instante, em milissegundos desde a época.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public void paraCadaAlteradoDesde(long instante, Consumer<Produto> acao) {
+        for (Registro r : produtos.values()) {
+            if (r.atualizadoEm > instante) acao.accept(copia(r.produto));
+        }
+    }
+
+    /**
+     * Obtém a versão atual do catálogo.
+     * @return A última versão atribuída.
+     */
+    @Override
+    public long versaoAtual() {
+        return ultimaVersao;
+    }
+
+    /**
+     * Entrega as alterações posteriores a uma versão, lidas do índice por versão.
+     * @param versao A última versão já conhecida.
+     * @param acao A ação executada para cada alteração.
+     */
+    @Override
+    public void paraCadaAlteracaoDesde(long versao, Consumer<AlteracaoCatalogo> acao) {
+        alteracoes.tailMap(versao, false).values().forEach(a ->
+            acao.accept(a.isRemocao() ? a : AlteracaoCatalogo.gravado(a.getVersao(), copia(a.getProduto()))));
+    }
+
+    /**
+     * Conta os produtos de uma consulta, percorrendo apenas o intervalo do prefixo.
+     * @param consulta A consulta com os filtros.
+     * @return O número de produtos.
+     */
+    @Override
+    public long contar(ConsultaProdutos consulta) {
+        if (consulta.getPrefixoNome().isEmpty() && consulta.getQuantidadeMinima() == 0) {
+            return produtos.size();
+        }
+        long total = 0;
+        for (Registro r : candidatos(consulta).values()) {
+            if (consulta.aceita(r.produto)) total++;
+        }
+        return total;
+    }
+
+    /**
+     * Lista uma página a partir do produto seguinte a `apos`. Na ordem por nome, a página é lida
+     * diretamente do mapa a partir de `apos`; nas demais, `apos` é localizado por busca binária.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param apos O último produto da página anterior, ou null para a primeira página.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página.
+     */
+    @Override
+    public List<Produto> listarPagina(ConsultaProdutos consulta, Produto apos, int tamanho) {
+        if (consulta.getCampoOrdenacao().equals(ConsultaProdutos.NOME)) {
+            NavigableMap<String, Registro> ordem = ordemPorNome(consulta);
+            if (apos != null) ordem = ordem.tailMap(apos.getNome(), false);
+            return lerPagina(ordem, consulta, 0, tamanho);
+        }
+        List<Produto> ordenados = ordenar(consulta);
+        int inicio = 0;
+        if (apos != null) {
+            int posicao = Collections.binarySearch(ordenados, apos, consulta.comparador());
+            inicio = posicao >= 0 ? posicao + 1 : -(posicao + 1);
+        }
+        return new ArrayList<>(ordenados.subList(inicio, Math.min(ordenados.size(), inicio + tamanho)));
+    }
+
+    /**
+     * Lista uma página a partir de uma posição absoluta.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param deslocamento O número de produtos a pular.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página.
+     */
+    @Override
+    public List<Produto> listarPagina(ConsultaProdutos consulta, long deslocamento, int tamanho) {
+        if (consulta.getCampoOrdenacao().equals(ConsultaProdutos.NOME)) {
+            return lerPagina(ordemPorNome(consulta), consulta, deslocamento, tamanho);
+        }
+        List<Produto> ordenados = ordenar(consulta);
+        int inicio = (int) Math.min(deslocamento, ordenados.size());
+        return new ArrayList<>(ordenados.subList(inicio, Math.min(ordenados.size(), inicio + tamanho)));
+    }
+
+    /**
+     * Percorre os produtos de uma consulta, na ordem da consulta.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param tamanhoLote Não se aplica: os produtos já estão em memória.
+     * @param acao A ação executada para cada produto.
+     * @return O número de produtos percorridos.
+     */
+    @Override
+    public long percorrer(ConsultaProdutos consulta, int tamanhoLote, Consumer<Produto> acao) {
+        List<Produto> ordenados = ordenar(consulta);
+        ordenados.forEach(acao);
+        return ordenados.size();
+    }
+
+    /**
+     * Calcula o resumo percorrendo todos os produtos.
+     * @return O resumo do estoque.
+     */
+    @Override
+    public ResumoEstoque calcularResumo() {
+        double[] limites = ResumoEstoque.LIMITES_FAIXAS;
+        long[] itens = new long[limites.length];
+        long[] unidades = new long[limites.length];
+        double[] valores = new double[limites.length];
+        for (Registro r : produtos.values()) {
+            Produto p = r.produto;
+            int faixa = ResumoEstoque.indiceFaixa(p.getPreco());
+            itens[faixa]++;
+            unidades[faixa] += p.getQuantidade();
+            valores[faixa] += p.getQuantidade() * p.getPreco();
+        }
+        return ResumoEstoque.deFaixas(itens, unidades, valores);
+    }
+
+    /**
+     * Acrescenta lançamentos ao livro.
+     * @param lote Os lançamentos.
+     */
+    @Override
+    public void anexarMovimentos(List<Movimento> lote) {
+        movimentos.addAll(lote);
+    }
+
+    /**
+     * Percorre os lançamentos de um intervalo, na ordem em que aconteceram.
+     * @param nome O nome do produto; null para todos.
+     * @param desde O início do intervalo (ms), exclusive.
+     * @param ate O fim do intervalo (ms), inclusive.
+     * @param acao A ação executada para cada lançamento.
+     */
+    @Override
+    public void percorrerMovimentos(String nome, long desde, long ate, Consumer<Movimento> acao) {
+        if (ate <= desde) return;
+        // Limites fictícios que ficam depois de todos os lançamentos do respectivo instante.
+        Movimento inicio = new Movimento(desde, Long.MAX_VALUE, Movimento.Tipo.ATUALIZADO, "", 0, 0, 0);
+        Movimento fim = new Movimento(ate, Long.MAX_VALUE, Movimento.Tipo.ATUALIZADO, "", 0, 0, 0);
+        for (Movimento m : movimentos.subSet(inicio, false, fim, true)) {
+            if (nome == null || nome.equals(m.getNome())) acao.accept(m);
+        }
+    }
+
+    /**
+     * Grava um checkpoint com cópias dos produtos informados.
+     * @param instante O instante que o checkpoint representa.
+     * @param estado O estado de todos os produtos nesse instante.
+     */
+    @Override
+    public void gravarCheckpoint(long instante, Collection<Produto> estado) {
+        List<Produto> copias = new ArrayList<>(estado.size());
+        for (Produto p : estado) {
+            copias.add(copia(p));
+        }
+        checkpoints.put(instante, copias);
+    }
+
+    /**
+     * Procura o checkpoint mais recente até um instante.
+     * @param ate O instante limite, inclusive.
+     * @return O instante do checkpoint, ou -1 se não houver.
+     */
+    @Override
+    public long ultimoCheckpoint(long ate) {
+        Long instante = checkpoints.floorKey(ate);
+        return instante != null ? instante : -1;
+    }
+
+    /**
+     * Entrega cópias dos produtos gravados em um checkpoint.
+     * @param instante O instante do checkpoint.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public void paraCadaProdutoNoCheckpoint(long instante, Consumer<Produto> acao) {
+        for (Produto p : checkpoints.getOrDefault(instante, List.of())) {
+            acao.accept(copia(p));
+        }
+    }
+
+    /**
+     * Não há conexões a fechar.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Seleciona o trecho do mapa que pode conter os produtos da consulta: apenas o
+     * intervalo [prefixo, sucessor) quando há filtro por nome.
+     * @param consulta A consulta.
+     * @return A visão do mapa a ser filtrada.
+     */
+    private NavigableMap<String, Registro> candidatos(ConsultaProdutos consulta) {
+        String prefixo = consulta.getPrefixoNome();
+        return prefixo.isEmpty() ? produtos : produtos.subMap(prefixo, ConsultaProdutos.sucessorPrefixo(prefixo));
+    }
+
+    /**
+     * Obtém os candidatos de uma consulta na direção da ordem por nome.
+     * @param consulta A consulta ordenada por nome.
+     * @return A visão do mapa, crescente ou decrescente.
+     */
+    private NavigableMap<String, Registro> ordemPorNome(ConsultaProdutos consulta) {
+        NavigableMap<String, Registro> ordem = candidatos(consulta);
+        return consulta.isCrescente() ? ordem : ordem.descendingMap();
+    }
+
+    /**
+     * Lê uma página de um trecho do mapa já na ordem da consulta, aplicando o filtro de quantidade.
+     * @param ordem O trecho do mapa, na ordem desejada.
+     * @param consulta A consulta com os filtros.
+     * @param pular O número de produtos aceitos a pular.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página.
+     */
+    private static List<Produto> lerPagina(NavigableMap<String, Registro> ordem, ConsultaProdutos consulta,
+            long pular, int tamanho) {
+        List<Produto> pagina = new ArrayList<>(Math.min(tamanho, 1024));
+        for (Registro r : ordem.values()) {
+            if (!consulta.aceita(r.produto)) continue;
+            if (pular > 0) {
+                pular--;
+                continue;
+            }
+            pagina.add(copia(r.produto));
+            if (pagina.size() == tamanho) break;
+        }
+        return pagina;
+    }
+
+    /**
+     * Filtra e ordena os produtos de uma consulta.
+     * @param consulta A consulta com filtros e ordenação.
+     * @return Cópias dos produtos que atendem à consulta, na ordem da consulta.
+     */
+    private List<Produto> ordenar(ConsultaProdutos consulta) {
+        List<Produto> lista = new ArrayList<>();
+        for (Registro r : candidatos(consulta).values()) {
+            if (consulta.aceita(r.produto)) lista.add(copia(r.produto));
+        }
+        // A ordem por nome já é a do mapa.
+        if (!consulta.getCampoOrdenacao().equals(ConsultaProdutos.NOME) || !consulta.isCrescente()) {
+            lista.sort(consulta.comparador());
+        }
+        return lista;
+    }
+
+    /**
+     * Copia um produto, para que alterações feitas por quem o recebeu não mudem o repositório.
+     * @param p O produto.
+     * @return A cópia.
+     */
+    private static Produto copia(Produto p) {
+        return new Produto(p.getNome(), p.getQuantidade(), p.getPreco(), p.getPontoReposicao());
+    }
+
+    /**
+     * Mantém o ponto de reposição gravado de um produto que já existe, como fazem as
+     * atualizações dos bancos (que só alteram quantidade e preço).
+     * Deve ser chamado com o repositório bloqueado.
+     * @param p O novo estado do produto.
+     * @return O produto com o ponto gravado, ou o próprio produto se ele ainda não existe.
+     */
+    private Produto comPontoAtual(Produto p) {
+        Registro registro = produtos.get(p.getNome());
+        return registro == null ? p : registro.produto.comValores(p.getQuantidade(), p.getPreco());
+    }
+}
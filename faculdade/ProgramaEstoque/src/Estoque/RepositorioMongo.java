@@ -0,0 +1,1085 @@
+package Estoque;
+
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BsonField;
+import com.mongodb.client.model.BucketOptions;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Facet;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Repositório de produtos no MongoDB, usando uma partição de `MongoDBConnection`: a
+ * configurada ou, para os demais armazéns (ver `Armazens`), uma coleção ou um banco próprio.
+ * As consultas usam os índices compostos criados pela conexão, de modo que filtros,
+ * ordenações e o resumo são respondidos pelo servidor lendo apenas os índices.
+ * @author Leandro
+ */
+public class RepositorioMongo implements RepositorioProdutos {
+    // Projeção das consultas filtradas: apenas os campos exibidos, sem o _id, para que o índice cubra a consulta.
+    // O ponto de reposição fica de fora: as páginas o trazem com o valor padrão.
+    private static final Bson PROJECAO_CONSULTA = Projections.fields(
+        Projections.include("nome", "quantidade", "preco"),
+        Projections.excludeId());
+    // Projeção das leituras que alimentam o cache: os campos exibidos e o ponto de reposição.
+    private static final Bson PROJECAO_PRODUTO = Projections.fields(
+        Projections.include("nome", "quantidade", "preco", "pontoReposicao"),
+        Projections.excludeId());
+    // Projeção das consultas que só precisam do nome, respondidas pelo índice único.
+    private static final Bson PROJECAO_NOME = Projections.fields(
+        Projections.include("nome"),
+        Projections.excludeId());
+    // Projeção da sincronização: os campos do produto e a versão.
+    private static final Bson PROJECAO_VERSAO = Projections.fields(
+        Projections.include("nome", "quantidade", "preco", "pontoReposicao", "versao"),
+        Projections.excludeId());
+    // Código de erro do servidor para chave duplicada em um índice único.
+    private static final int CODIGO_CHAVE_DUPLICADA = 11000;
+    // Repositórios abertos, que compartilham o cliente da conexão; o último a fechar o encerra.
+    private static final AtomicInteger ABERTOS = new AtomicInteger();
+
+    private final String banco; // Banco da partição, ou null para o configurado
+    private final String colecao; // Coleção de produtos da partição, ou null para a configurada
+    private final AtomicBoolean fechado = new AtomicBoolean();
+
+    /**
+     * Construtor do repositório na partição configurada em `ConfiguracaoBanco`.
+     */
+    public RepositorioMongo() {
+        this(null, null);
+    }
+
+    /**
+     * Construtor do repositório em uma partição própria. A conexão só é aberta na primeira operação.
+     * @param banco O banco de dados, ou null para o configurado.
+     * @param colecao A coleção de produtos (as do livro e da sincronização levam o seu nome
+     *        como prefixo), ou null para a configurada.
+     */
+    public RepositorioMongo(String banco, String colecao) {
+        this.banco = banco;
+        this.colecao = colecao;
+        ABERTOS.incrementAndGet();
+    }
+
+    /**
+     * Obtém as coleções da partição, esperando a conexão ficar pronta se necessário.
+     * @return A partição.
+     * @throws BancoIndisponivelException Se não for possível conectar ao banco.
+     */
+    private MongoDBConnection.Particao particao() {
+        MongoDBConnection conexao = MongoDBConnection.getInstance();
+        return banco == null && colecao == null ? conexao.getParticao() : conexao.getParticao(banco, colecao);
+    }
+
+    /**
+     * Obtém a coleção de produtos do MongoDB, esperando a conexão ficar pronta se necessário.
+     * @return A coleção de produtos.
+     * @throws BancoIndisponivelException Se não for possível conectar ao banco.
+     */
+    private MongoCollection<Document> produtosCollection() {
+        return particao().getProdutos();
+    }
+
+    /**
+     * Começa a conectar ao MongoDB em segundo plano.
+     */
+    @Override
+    public void iniciar() {
+        MongoDBConnection.inicializarAsync();
+    }
+
+    /**
+     * Obtém por quanto tempo as lápides são mantidas (o índice TTL de "removidoEm").
+     * @return `MongoDBConnection.VALIDADE_LAPIDES_DIAS`, em milissegundos.
+     */
+    @Override
+    public long getValidadeLapidesMs() {
+        return TimeUnit.DAYS.toMillis(MongoDBConnection.VALIDADE_LAPIDES_DIAS);
+    }
+
+    /**
+     * Descreve o repositório.
+     * @return "mongodb", seguido do banco e da coleção se a partição não for a configurada.
+     */
+    @Override
+    public String getDescricao() {
+        if (banco == null && colecao == null) return "mongodb";
+        return "mongodb (" + (banco != null ? banco + "." : "") + (colecao != null ? colecao : "") + ")";
+    }
+
+    /**
+     * Converte um documento do MongoDB em um objeto Produto.
+     * @param doc O documento com os campos "nome", "quantidade", "preco" e, se lido, "pontoReposicao".
+     * @return O Produto correspondente; sem "pontoReposicao" (documentos antigos ou projeções
+     *         que não o incluem), o produto segue o ponto padrão.
+     */
+    private static Produto documentoParaProduto(Document doc) {
+        return new Produto(
+            doc.getString("nome"),
+            doc.getInteger("quantidade"),
+            doc.getDouble("preco"),
+            doc.getInteger("pontoReposicao", Produto.PONTO_REPOSICAO_PADRAO)
+        );
+    }
+
+    /**
+     * Cria o documento do MongoDB correspondente a um produto novo.
+     * @param produto O produto.
+     * @param versao A versão do catálogo atribuída à gravação.
+     * @return O documento com nome, quantidade, preço, ponto de reposição, o instante e a versão da gravação.
+     */
+    private static Document documentoProduto(Produto produto, long versao) {
+        return new Document()
+            .append("nome", produto.getNome())
+            .append("quantidade", produto.getQuantidade())
+            .append("preco", produto.getPreco())
+            .append("pontoReposicao", produto.getPontoReposicao())
+            .append("atualizadoEm", System.currentTimeMillis())
+            .append("versao", versao);
+    }
+
+    /**
+     * Cria a atualização que substitui a quantidade e o preço de um produto.
+     * Também grava o instante da alteração, usado na reconciliação do snapshot local, e a
+     * versão, usada na sincronização entre instâncias.
+     * @param quantidade A nova quantidade.
+     * @param preco O novo preço.
+     * @param versao A versão do catálogo atribuída à gravação.
+     * @return A atualização a ser aplicada.
+     */
+    private static Bson atualizacaoProduto(int quantidade, double preco, long versao) {
+        return Updates.combine(
+            Updates.set("quantidade", quantidade),
+            Updates.set("preco", preco),
+            Updates.set("atualizadoEm", System.currentTimeMillis()),
+            Updates.set("versao", versao));
+    }
+
+    /**
+     * Reserva versões do catálogo com um único `findOneAndUpdate` e `$inc` no documento
+     * contador, que o servidor aplica atomicamente mesmo com várias instâncias gravando.
+     * @param quantidade O número de versões a reservar.
+     * @return A primeira versão reservada; as demais são as seguintes.
+     */
+    private long reservarVersoes(int quantidade) {
+        Document contador = particao().getContadores().findOneAndUpdate(
+            Filters.eq("_id", "versao"),
+            Updates.inc("valor", (long) quantidade),
+            new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        return contador.getLong("valor") - quantidade + 1;
+    }
+
+    /**
+     * Grava as lápides de produtos removidos, com upsert pelo nome. `$max` mantém a maior
+     * versão quando o mesmo nome é removido mais de uma vez.
+     * @param sessao A sessão da transação, ou null para gravar fora de transação.
+     * @param remocoes As remoções.
+     */
+    private void gravarLapides(ClientSession sessao, List<AlteracaoCatalogo> remocoes) {
+        if (remocoes.isEmpty()) return;
+        List<WriteModel<Document>> modelos = new ArrayList<>(remocoes.size());
+        UpdateOptions upsert = new UpdateOptions().upsert(true);
+        Date agora = new Date();
+        for (AlteracaoCatalogo r : remocoes) {
+            modelos.add(new UpdateOneModel<>(Filters.eq("nome", r.getNome()),
+                Updates.combine(Updates.max("versao", r.getVersao()), Updates.set("removidoEm", agora)),
+                upsert));
+        }
+        MongoCollection<Document> removidos = particao().getRemovidos();
+        BulkWriteOptions opcoes = new BulkWriteOptions().ordered(false);
+        if (sessao == null) removidos.bulkWrite(modelos, opcoes);
+        else removidos.bulkWrite(sessao, modelos, opcoes);
+    }
+
+    /**
+     * Insere um produto novo; o índice único em "nome" recusa nomes repetidos.
+     * @param produto O produto.
+     * @throws com.mongodb.MongoException Se o nome já existir ou a gravação falhar.
+     */
+    @Override
+    public void inserir(Produto produto) {
+        produtosCollection().insertOne(documentoProduto(produto, reservarVersoes(1)));
+    }
+
+    /**
+     * Remove um produto e grava a sua lápide, para que as outras instâncias vejam a remoção.
+     * A versão da lápide é reservada antes da remoção: se outra instância reinserir o produto
+     * logo depois, a reinserção recebe uma versão maior e prevalece na sincronização. Quando o
+     * servidor aceita transações, a remoção e a lápide são gravadas juntas (como no
+     * `RepositorioJdbc`); em um servidor isolado, a lápide é gravada logo depois da remoção.
+     * @param nome O nome do produto.
+     * @return true se algum documento foi removido.
+     */
+    @Override
+    public boolean remover(String nome) {
+        long versao = reservarVersoes(1);
+        if (!MongoDBConnection.getInstance().suportaTransacoes()) {
+            return removerComLapide(null, nome, versao);
+        }
+        try (ClientSession sessao = MongoDBConnection.getInstance().iniciarSessao()) {
+            return sessao.withTransaction(() -> removerComLapide(sessao, nome, versao));
+        }
+    }
+
+    /**
+     * Remove um produto e, se ele existia, grava a sua lápide.
+     * @param sessao A sessão da transação, ou null para gravar fora de transação.
+     * @param nome O nome do produto.
+     * @param versao A versão reservada para a remoção.
+     * @return true se algum documento foi removido.
+     */
+    private boolean removerComLapide(ClientSession sessao, String nome, long versao) {
+        Bson filtro = Filters.eq("nome", nome);
+        long removidos = sessao == null
+            ? produtosCollection().deleteOne(filtro).getDeletedCount()
+            : produtosCollection().deleteOne(sessao, filtro).getDeletedCount();
+        if (removidos == 0) return false;
+        gravarLapides(sessao, List.of(AlteracaoCatalogo.removido(versao, nome)));
+        return true;
+    }
+
+    /**
+     * Substitui a quantidade e o preço de um produto existente.
+     * @param nome O nome do produto.
+     * @param quantidade A nova quantidade.
+     * @param preco O novo preço.
+     * @return true se algum documento foi encontrado e alterado.
+     */
+    @Override
+    public boolean atualizar(String nome, int quantidade, double preco) {
+        return produtosCollection().updateOne(Filters.eq("nome", nome),
+            atualizacaoProduto(quantidade, preco, reservarVersoes(1))).getModifiedCount() > 0;
+    }
+
+    /**
+     * Movimenta o estoque de um produto com um único `findOneAndUpdate` e `$inc`: o filtro
+     * exige quantidade suficiente (na saída) ou espaço até o limite de um int (na entrada), e o
+     * servidor devolve o documento já alterado, sem uma segunda ida ao banco.
+     * @param nome O nome do produto.
+     * @param quantidade A quantidade a ser somada (negativa na saída).
+     * @return O produto com a nova quantidade, ou null se nenhum documento atendeu ao filtro.
+     */
+    @Override
+    public Produto movimentar(String nome, int quantidade) {
+        Bson condicao = quantidade < 0
+            ? Filters.gte("quantidade", -(long) quantidade)
+            : Filters.lte("quantidade", Integer.MAX_VALUE - quantidade);
+        Document doc = produtosCollection().findOneAndUpdate(
+            Filters.and(Filters.eq("nome", nome), condicao),
+            Updates.combine(
+                Updates.inc("quantidade", quantidade),
+                Updates.set("atualizadoEm", System.currentTimeMillis()),
+                Updates.set("versao", reservarVersoes(1))),
+            new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER).projection(PROJECAO_PRODUTO));
+        return doc == null ? null : documentoParaProduto(doc);
+    }
+
+    /**
+     * Substitui o ponto de reposição de um produto com um único `findOneAndUpdate`, que devolve
+     * o documento já alterado.
+     * @param nome O nome do produto.
+     * @param pontoReposicao O novo ponto.
+     * @return O produto com o novo ponto, ou null se o produto não existir.
+     */
+    @Override
+    public Produto definirPontoReposicao(String nome, int pontoReposicao) {
+        Document doc = produtosCollection().findOneAndUpdate(
+            Filters.eq("nome", nome),
+            Updates.combine(
+                Updates.set("pontoReposicao", Math.max(pontoReposicao, Produto.PONTO_REPOSICAO_PADRAO)),
+                Updates.set("atualizadoEm", System.currentTimeMillis()),
+                Updates.set("versao", reservarVersoes(1))),
+            new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER).projection(PROJECAO_PRODUTO));
+        return doc == null ? null : documentoParaProduto(doc);
+    }
+
+    /**
+     * Aplica um lote de operações com um único `bulkWrite`.
+     * Antes da gravação, uma consulta (coberta pelo índice de nome) descobre quais produtos
+     * existem, de modo que operações inválidas falham sem ir ao banco. Se todas as operações
+     * tratam de nomes distintos, o lote é enviado sem ordem, permitindo ao servidor aplicá-las
+     * em paralelo; caso contrário, a ordem da lista é respeitada.
+     * @param operacoes As operações do lote.
+     * @param transacional Se true, o lote é aplicado em uma transação. Exige um MongoDB em replica set.
+     * @return Um resultado para cada operação, na mesma ordem da lista.
+     */
+    @Override
+    public List<OperacaoEstoque.Resultado> executarLote(List<OperacaoEstoque> operacoes, boolean transacional) {
+        if (!transacional) {
+            return gravarOperacoes(null, operacoes);
+        }
+        try (ClientSession sessao = MongoDBConnection.getInstance().iniciarSessao()) {
+            // O corpo pode ser repetido pelo driver em caso de erro transitório.
+            return sessao.withTransaction(() -> gravarOperacoes(sessao, operacoes));
+        }
+    }
+
+    /**
+     * Valida as operações contra os produtos existentes e envia as válidas em um único `bulkWrite`.
+     * Fora de transação, se o servidor aceita transações, as remoções são gravadas com as suas
+     * lápides em transações próprias (ver `gravarComRemocoesEmTransacao`), para que uma queda
+     * entre a remoção e a lápide não esconda a remoção das outras instâncias.
+     * @param sessao A sessão da transação, ou null para gravar fora de transação.
+     * @param operacoes As operações do lote.
+     * @return Um resultado para cada operação, na mesma ordem da lista.
+     */
+    private List<OperacaoEstoque.Resultado> gravarOperacoes(ClientSession sessao, List<OperacaoEstoque> operacoes) {
+        Set<String> nomes = new HashSet<>();
+        operacoes.forEach(op -> nomes.add(op.getNome()));
+        Bson filtroNomes = Filters.in("nome", nomes);
+        FindIterable<Document> busca = sessao == null
+            ? produtosCollection().find(filtroNomes)
+            : produtosCollection().find(sessao, filtroNomes);
+        Set<String> existentes = new HashSet<>();
+        busca.projection(PROJECAO_NOME).forEach(doc -> existentes.add(doc.getString("nome")));
+
+        // Simula o lote na ordem da lista, para que operações sobre o mesmo nome se enxerguem.
+        long primeiraVersao = reservarVersoes(operacoes.size());
+        String[] falhas = new String[operacoes.size()];
+        List<WriteModel<Document>> modelos = new ArrayList<>();
+        List<Integer> posicoes = new ArrayList<>(); // Posição na lista de cada modelo enviado
+        for (int i = 0; i < operacoes.size(); i++) {
+            OperacaoEstoque op = operacoes.get(i);
+            Produto p = op.getProduto();
+            Bson filtro = Filters.eq("nome", p.getNome());
+            switch (op.getTipo()) {
+                case ADICIONAR:
+                    if (!existentes.add(p.getNome())) {
+                        falhas[i] = "Produto já existe.";
+                        continue;
+                    }
+                    modelos.add(new InsertOneModel<>(documentoProduto(p, primeiraVersao + i)));
+                    break;
+                case REMOVER:
+                    if (!existentes.remove(p.getNome())) {
+                        falhas[i] = "Produto não encontrado.";
+                        continue;
+                    }
+                    modelos.add(new DeleteOneModel<>(filtro));
+                    break;
+                case ATUALIZAR:
+                    if (!existentes.contains(p.getNome())) {
+                        falhas[i] = "Produto não encontrado.";
+                        continue;
+                    }
+                    modelos.add(new UpdateOneModel<>(filtro,
+                        atualizacaoProduto(p.getQuantidade(), p.getPreco(), primeiraVersao + i)));
+                    break;
+            }
+            posicoes.add(i);
+        }
+
+        boolean algumaFalha = posicoes.size() < operacoes.size();
+        if (sessao != null && algumaFalha) {
+            // Em uma transação, uma operação inválida cancela o lote inteiro.
+            modelos.clear();
+            for (int i = 0; i < falhas.length; i++) {
+                if (falhas[i] == null) falhas[i] = "Não aplicada: outra operação da transação falhou.";
+            }
+        }
+
+        boolean ordenado = nomes.size() < operacoes.size();
+        boolean comRemocoes = modelos.stream().anyMatch(m -> m instanceof DeleteOneModel);
+        if (sessao == null && comRemocoes && MongoDBConnection.getInstance().suportaTransacoes()) {
+            gravarComRemocoesEmTransacao(modelos, posicoes, operacoes, primeiraVersao, ordenado, falhas);
+        } else {
+            if (!modelos.isEmpty()) enviarModelos(sessao, modelos, posicoes, ordenado, falhas);
+            gravarLapides(sessao, lapides(operacoes, posicoes, primeiraVersao, falhas));
+        }
+
+        List<OperacaoEstoque.Resultado> resultados = new ArrayList<>(operacoes.size());
+        for (int i = 0; i < operacoes.size(); i++) {
+            resultados.add(new OperacaoEstoque.Resultado(operacoes.get(i), falhas[i] == null, falhas[i]));
+        }
+        return resultados;
+    }
+
+    /**
+     * Envia os modelos de um lote em um `bulkWrite` e anota as operações recusadas pelo servidor.
+     * @param sessao A sessão da transação, ou null para gravar fora de transação.
+     * @param modelos Os modelos.
+     * @param posicoes A posição na lista de operações de cada modelo.
+     * @param ordenado Se o servidor deve respeitar a ordem (e parar no primeiro erro).
+     * @param falhas As mensagens de falha de cada operação, preenchidas aqui.
+     * @return true se todos os modelos foram aplicados.
+     * @throws MongoBulkWriteException Em uma transação, para abortá-la.
+     */
+    private boolean enviarModelos(ClientSession sessao, List<WriteModel<Document>> modelos, List<Integer> posicoes,
+                                  boolean ordenado, String[] falhas) {
+        BulkWriteOptions opcoes = new BulkWriteOptions().ordered(ordenado);
+        try {
+            if (sessao == null) produtosCollection().bulkWrite(modelos, opcoes);
+            else produtosCollection().bulkWrite(sessao, modelos, opcoes);
+            return true;
+        } catch (MongoBulkWriteException e) {
+            if (sessao != null) throw e; // Aborta a transação.
+            int primeiroErro = Integer.MAX_VALUE;
+            for (BulkWriteError erro : e.getWriteErrors()) {
+                falhas[posicoes.get(erro.getIndex())] = erro.getMessage();
+                primeiroErro = Math.min(primeiroErro, erro.getIndex());
+            }
+            if (ordenado) {
+                // Em um lote ordenado, o servidor para no primeiro erro.
+                for (int k = primeiroErro + 1; k < posicoes.size(); k++) {
+                    falhas[posicoes.get(k)] = "Não aplicada: uma operação anterior do lote falhou.";
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Monta as lápides das remoções aplicadas de um lote.
+     * @param operacoes As operações do lote.
+     * @param posicoes As posições das operações enviadas.
+     * @param primeiraVersao A versão reservada para a primeira operação do lote.
+     * @param falhas As mensagens de falha de cada operação.
+     * @return As lápides, com a versão de cada remoção.
+     */
+    private static List<AlteracaoCatalogo> lapides(List<OperacaoEstoque> operacoes, List<Integer> posicoes,
+                                                   long primeiraVersao, String[] falhas) {
+        List<AlteracaoCatalogo> remocoes = new ArrayList<>();
+        for (int i : posicoes) {
+            if (falhas[i] == null && operacoes.get(i).getTipo() == OperacaoEstoque.Tipo.REMOVER) {
+                remocoes.add(AlteracaoCatalogo.removido(primeiraVersao + i, operacoes.get(i).getNome()));
+            }
+        }
+        return remocoes;
+    }
+
+    /**
+     * Grava um lote não transacional que contém remoções: as demais operações vão em `bulkWrite`
+     * comuns e as remoções, com as suas lápides, em transações. Em um lote ordenado (nomes
+     * repetidos), os trechos seguem a ordem da lista e o primeiro trecho que falha interrompe o
+     * lote; sem nomes repetidos, a ordem não importa e há no máximo dois trechos. Se a transação
+     * de um trecho de remoções falhar, todas as remoções do trecho são recusadas.
+     * @param modelos Os modelos validados.
+     * @param posicoes A posição na lista de operações de cada modelo.
+     * @param operacoes As operações do lote.
+     * @param primeiraVersao A versão reservada para a primeira operação do lote.
+     * @param ordenado Se a ordem da lista deve ser respeitada.
+     * @param falhas As mensagens de falha de cada operação, preenchidas aqui.
+     */
+    private void gravarComRemocoesEmTransacao(List<WriteModel<Document>> modelos, List<Integer> posicoes,
+                                              List<OperacaoEstoque> operacoes, long primeiraVersao,
+                                              boolean ordenado, String[] falhas) {
+        // Cada trecho é uma lista de índices em `modelos`, todos remoções ou todos não.
+        List<List<Integer>> trechos = new ArrayList<>();
+        if (ordenado) {
+            List<Integer> atual = null;
+            for (int k = 0; k < modelos.size(); k++) {
+                boolean remocao = modelos.get(k) instanceof DeleteOneModel;
+                if (atual == null || remocao != (modelos.get(atual.get(0)) instanceof DeleteOneModel)) {
+                    atual = new ArrayList<>();
+                    trechos.add(atual);
+                }
+                atual.add(k);
+            }
+        } else {
+            List<Integer> demais = new ArrayList<>();
+            List<Integer> remocoes = new ArrayList<>();
+            for (int k = 0; k < modelos.size(); k++) {
+                (modelos.get(k) instanceof DeleteOneModel ? remocoes : demais).add(k);
+            }
+            if (!demais.isEmpty()) trechos.add(demais);
+            trechos.add(remocoes);
+        }
+
+        for (int t = 0; t < trechos.size(); t++) {
+            List<WriteModel<Document>> modelosTrecho = new ArrayList<>();
+            List<Integer> posicoesTrecho = new ArrayList<>();
+            for (int k : trechos.get(t)) {
+                modelosTrecho.add(modelos.get(k));
+                posicoesTrecho.add(posicoes.get(k));
+            }
+            boolean aplicado = modelosTrecho.get(0) instanceof DeleteOneModel
+                ? removerEmTransacao(modelosTrecho, posicoesTrecho, operacoes, primeiraVersao, falhas)
+                : enviarModelos(null, modelosTrecho, posicoesTrecho, ordenado, falhas);
+            if (!aplicado && ordenado) {
+                for (int s = t + 1; s < trechos.size(); s++) {
+                    for (int k : trechos.get(s)) {
+                        falhas[posicoes.get(k)] = "Não aplicada: uma operação anterior do lote falhou.";
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Aplica remoções de um lote e grava as suas lápides em uma única transação.
+     * @param modelos As remoções.
+     * @param posicoes A posição na lista de operações de cada remoção.
+     * @param operacoes As operações do lote.
+     * @param primeiraVersao A versão reservada para a primeira operação do lote.
+     * @param falhas As mensagens de falha de cada operação, preenchidas aqui se a transação falhar.
+     * @return true se a transação foi confirmada.
+     */
+    private boolean removerEmTransacao(List<WriteModel<Document>> modelos, List<Integer> posicoes,
+                                       List<OperacaoEstoque> operacoes, long primeiraVersao, String[] falhas) {
+        List<AlteracaoCatalogo> remocoes = new ArrayList<>(posicoes.size());
+        for (int i : posicoes) {
+            remocoes.add(AlteracaoCatalogo.removido(primeiraVersao + i, operacoes.get(i).getNome()));
+        }
+        try (ClientSession sessao = MongoDBConnection.getInstance().iniciarSessao()) {
+            sessao.withTransaction(() -> {
+                produtosCollection().bulkWrite(sessao, modelos, new BulkWriteOptions().ordered(false));
+                gravarLapides(sessao, remocoes);
+                return null;
+            });
+            return true;
+        } catch (MongoException e) {
+            for (int i : posicoes) {
+                falhas[i] = "Não aplicada: " + e.getMessage();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Envia um lote de upserts em um único `bulkWrite` não ordenado.
+     * @param lote Os produtos do lote.
+     * @param aoRejeitar Recebe cada produto recusado pelo servidor e a mensagem do erro.
+     * @return O número de produtos gravados no lote.
+     */
+    @Override
+    public long gravarLote(List<Produto> lote, BiConsumer<Produto, String> aoRejeitar) {
+        List<WriteModel<Document>> operacoes = new ArrayList<>(lote.size());
+        UpdateOptions upsert = new UpdateOptions().upsert(true);
+        long versao = reservarVersoes(lote.size());
+        for (Produto p : lote) {
+            // O ponto de reposição só é gravado nos produtos novos; os existentes mantêm o seu.
+            operacoes.add(new UpdateOneModel<>(
+                Filters.eq("nome", p.getNome()),
+                Updates.combine(
+                    atualizacaoProduto(p.getQuantidade(), p.getPreco(), versao++),
+                    Updates.setOnInsert("pontoReposicao", p.getPontoReposicao())),
+                upsert));
+        }
+
+        BulkWriteResult resultado;
+        try {
+            resultado = produtosCollection().bulkWrite(operacoes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Os erros trazem a posição da operação no lote; as demais operações foram aplicadas.
+            resultado = e.getWriteResult();
+            for (BulkWriteError erro : e.getWriteErrors()) {
+                aoRejeitar.accept(lote.get(erro.getIndex()), erro.getMessage());
+            }
+        }
+        return resultado.getMatchedCount() + resultado.getUpserts().size();
+    }
+
+    /**
+     * Verifica se um nome existe com uma contagem limitada a 1 sobre o índice único,
+     * sem ler o documento.
+     * @param nome O nome do produto.
+     * @return true se o produto existe.
+     */
+    @Override
+    public boolean existe(String nome) {
+        return produtosCollection().countDocuments(Filters.eq("nome", nome),
+            new CountOptions().limit(1).hintString(MongoDBConnection.INDICE_NOME)) > 0;
+    }
+
+    /**
+     * Percorre todos os documentos da coleção uma única vez.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public void paraCadaProduto(Consumer<Produto> acao) {
+        produtosCollection().find().projection(PROJECAO_PRODUTO)
+            .forEach(doc -> acao.accept(documentoParaProduto(doc)));
+    }
+
+    /**
+     * Lê todos os nomes apenas do índice único, sem ler os documentos.
+     * @param acao A ação executada para cada nome.
+     */
+    @Override
+    public void paraCadaNome(Consumer<String> acao) {
+        produtosCollection().find()
+            .projection(PROJECAO_NOME)
+            .hintString(MongoDBConnection.INDICE_NOME)
+            .forEach(doc -> acao.accept(doc.getString("nome")));
+    }
+
+    /**
+     * Busca os produtos pelo índice de "atualizadoEm"; {atualizadoEm: null} também
+     * encontra documentos sem o campo.
+     * @param instante O instante, em milissegundos desde a época.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public void paraCadaAlteradoDesde(long instante, Consumer<Produto> acao) {
+        Bson alterados = Filters.or(
+            Filters.gt("atualizadoEm", instante),
+            Filters.eq("atualizadoEm", null));
+        produtosCollection().find(alterados).projection(PROJECAO_PRODUTO)
+            .forEach(doc -> acao.accept(documentoParaProduto(doc)));
+    }
+
+    /**
+     * Lê a última versão do documento contador.
+     * @return A última versão reservada, ou 0 se o contador ainda não existe.
+     */
+    @Override
+    public long versaoAtual() {
+        Document contador = particao().getContadores()
+            .find(Filters.eq("_id", "versao")).first();
+        return contador == null ? 0 : contador.getLong("valor");
+    }
+
+    /**
+     * Busca, pelos índices de "versao", os produtos e as lápides posteriores a uma versão e
+     * os entrega intercalados em ordem de versão.
+     * @param versao A última versão já conhecida.
+     * @param acao A ação executada para cada alteração.
+     */
+    @Override
+    public void paraCadaAlteracaoDesde(long versao, Consumer<AlteracaoCatalogo> acao) {
+        List<AlteracaoCatalogo> alteracoes = new ArrayList<>();
+        produtosCollection().find(Filters.gt("versao", versao)).projection(PROJECAO_VERSAO)
+            .forEach(doc -> alteracoes.add(AlteracaoCatalogo.gravado(doc.getLong("versao"), documentoParaProduto(doc))));
+        particao().getRemovidos().find(Filters.gt("versao", versao))
+            .projection(Projections.include("nome", "versao"))
+            .forEach(doc -> alteracoes.add(AlteracaoCatalogo.removido(doc.getLong("versao"), doc.getString("nome"))));
+        alteracoes.sort(Comparator.comparingLong(AlteracaoCatalogo::getVersao));
+        alteracoes.forEach(acao);
+    }
+
+    /**
+     * Conta os produtos de uma consulta. Sem filtros, usa a contagem estimada da coleção,
+     * que não percorre o índice.
+     * @param consulta A consulta com os filtros.
+     * @return O número de produtos.
+     */
+    @Override
+    public long contar(ConsultaProdutos consulta) {
+        if (consulta.getPrefixoNome().isEmpty() && consulta.getQuantidadeMinima() == 0) {
+            return produtosCollection().estimatedDocumentCount();
+        }
+        return produtosCollection().countDocuments(
+            filtroConsulta(consulta.getPrefixoNome(), consulta.getQuantidadeMinima()),
+            new CountOptions().hintString(MongoDBConnection.INDICE_CONSULTA));
+    }
+
+    /**
+     * Lista uma página por chave (keyset), ordenada pelo MongoDB sobre o índice do campo de
+     * ordenação, com o nome como desempate.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param apos O último produto da página anterior, ou null para a primeira página.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página.
+     */
+    @Override
+    public List<Produto> listarPagina(ConsultaProdutos consulta, Produto apos, int tamanho) {
+        Bson filtro = filtroConsulta(consulta.getPrefixoNome(), consulta.getQuantidadeMinima());
+        if (apos != null) {
+            filtro = Filters.and(filtro, filtroApos(consulta, apos));
+        }
+        return consultarPagina(consulta, filtro, 0, tamanho);
+    }
+
+    /**
+     * Lista uma página a partir de uma posição absoluta, com `skip`.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param deslocamento O número de produtos a pular.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página.
+     */
+    @Override
+    public List<Produto> listarPagina(ConsultaProdutos consulta, long deslocamento, int tamanho) {
+        Bson filtro = filtroConsulta(consulta.getPrefixoNome(), consulta.getQuantidadeMinima());
+        return consultarPagina(consulta, filtro, (int) Math.min(deslocamento, Integer.MAX_VALUE), tamanho);
+    }
+
+    /**
+     * Executa a consulta de uma página: ordena pelo campo da consulta e pelo nome, usando o índice
+     * correspondente, e projeta apenas os campos exibidos.
+     * @param consulta A consulta com a ordenação.
+     * @param filtro O filtro já montado (filtros da consulta e, se houver, a posição da chave).
+     * @param pular O número de produtos a pular.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página.
+     */
+    private List<Produto> consultarPagina(ConsultaProdutos consulta, Bson filtro, int pular, int tamanho) {
+        List<Produto> produtos = new ArrayList<>(tamanho);
+        produtosCollection().find(filtro)
+            .projection(PROJECAO_CONSULTA)
+            .sort(ordenacao(consulta))
+            .hintString(indiceOrdenacao(consulta.getCampoOrdenacao()))
+            .skip(pular)
+            .limit(tamanho)
+            .forEach(doc -> produtos.add(documentoParaProduto(doc)));
+        return produtos;
+    }
+
+    /**
+     * Percorre os produtos de uma consulta com um cursor: os documentos chegam do servidor
+     * em lotes, e o cursor é fechado em qualquer caso.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param tamanhoLote O número de documentos buscados do servidor por vez.
+     * @param acao A ação executada para cada produto.
+     * @return O número de produtos percorridos.
+     */
+    @Override
+    public long percorrer(ConsultaProdutos consulta, int tamanhoLote, Consumer<Produto> acao) {
+        long total = 0;
+        try (MongoCursor<Document> cursor = produtosCollection()
+                .find(filtroConsulta(consulta.getPrefixoNome(), consulta.getQuantidadeMinima()))
+                .projection(PROJECAO_CONSULTA)
+                .sort(ordenacao(consulta))
+                .hintString(indiceOrdenacao(consulta.getCampoOrdenacao()))
+                .batchSize(tamanhoLote)
+                .cursor()) {
+            while (cursor.hasNext()) {
+                acao.accept(documentoParaProduto(cursor.next()));
+                total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Calcula o resumo com um pipeline de agregação: apenas o resumo trafega pela rede, e os
+     * produtos são lidos do índice (preco, nome, quantidade) pelo próprio servidor.
+     * @return O resumo do estoque.
+     */
+    @Override
+    public ResumoEstoque calcularResumo() {
+        double[] limites = ResumoEstoque.LIMITES_FAIXAS;
+        List<Double> limitesBucket = new ArrayList<>();
+        for (double limite : limites) limitesBucket.add(limite);
+
+        Document resultado = produtosCollection().aggregate(List.of(
+                // Mantém só os campos usados, o que permite ao servidor ler apenas o índice.
+                Aggregates.project(Projections.fields(Projections.include("quantidade", "preco"), Projections.excludeId())),
+                Aggregates.facet(
+                    new Facet("totais", Aggregates.group(null, acumuladoresResumo())),
+                    new Facet("faixas", Aggregates.bucket("$preco", limitesBucket,
+                        new BucketOptions().defaultBucket("acima").output(acumuladoresResumo())))
+                )))
+            .hintString(MongoDBConnection.INDICE_PRECO)
+            .first();
+
+        // Totais gerais (a lista vem vazia quando o estoque não tem produtos).
+        List<Document> totais = resultado != null ? resultado.getList("totais", Document.class) : List.of();
+        Document geral = totais.isEmpty() ? new Document() : totais.get(0);
+
+        // Totais por faixa: o _id de cada faixa é o seu limite inferior, ou "acima" para a última.
+        long[] itens = new long[limites.length];
+        long[] unidades = new long[limites.length];
+        double[] valores = new double[limites.length];
+        for (Document faixa : resultado != null ? resultado.getList("faixas", Document.class) : List.<Document>of()) {
+            Object id = faixa.get("_id");
+            int indice = limites.length - 1;
+            if (id instanceof Number n) {
+                for (int i = 0; i < limites.length; i++) {
+                    if (limites[i] == n.doubleValue()) indice = i;
+                }
+            }
+            itens[indice] += numero(faixa, "itens").longValue();
+            unidades[indice] += numero(faixa, "unidades").longValue();
+            valores[indice] += numero(faixa, "valorTotal").doubleValue();
+        }
+        List<ResumoEstoque.Faixa> faixas = new ArrayList<>();
+        for (int i = 0; i < limites.length; i++) {
+            double maximo = i + 1 < limites.length ? limites[i + 1] : Double.POSITIVE_INFINITY;
+            faixas.add(new ResumoEstoque.Faixa(limites[i], maximo, itens[i], unidades[i], valores[i]));
+        }
+
+        return new ResumoEstoque(
+            numero(geral, "valorTotal").doubleValue(),
+            numero(geral, "itens").longValue(),
+            numero(geral, "unidades").longValue(),
+            faixas);
+    }
+
+    /**
+     * Acumuladores usados tanto nos totais gerais quanto em cada faixa de preço.
+     * @return Os acumuladores de valor total, itens e unidades.
+     */
+    private static List<BsonField> acumuladoresResumo() {
+        return List.of(
+            Accumulators.sum("valorTotal", new Document("$multiply", List.of("$quantidade", "$preco"))),
+            Accumulators.sum("itens", 1),
+            Accumulators.sum("unidades", "$quantidade"));
+    }
+
+    /**
+     * Lê um campo numérico de um resultado de agregação, que pode vir como int, long ou double.
+     * @param doc O documento do resultado.
+     * @param campo O nome do campo.
+     * @return O valor numérico, ou 0 se o campo não existir.
+     */
+    private static Number numero(Document doc, String campo) {
+        Object valor = doc.get(campo);
+        return valor instanceof Number n ? n : 0;
+    }
+
+    /**
+     * Monta a ordenação de uma consulta: pelo campo escolhido e, como desempate, pelo nome.
+     * @param consulta A consulta com a ordenação.
+     * @return A ordenação a ser aplicada na coleção.
+     */
+    private static Bson ordenacao(ConsultaProdutos consulta) {
+        String campo = consulta.getCampoOrdenacao();
+        List<String> campos = campo.equals(ConsultaProdutos.NOME) ? List.of("nome") : List.of(campo, "nome");
+        return consulta.isCrescente() ? Sorts.ascending(campos) : Sorts.descending(campos);
+    }
+
+    /**
+     * Monta o filtro que seleciona os produtos posteriores a `apos` na ordem da consulta:
+     * (campo, nome) maior que (valor, nome) em ordem crescente, ou menor em ordem decrescente.
+     * @param consulta A consulta com a ordenação.
+     * @param apos O último produto da página anterior.
+     * @return O filtro de posição.
+     */
+    private static Bson filtroApos(ConsultaProdutos consulta, Produto apos) {
+        boolean crescente = consulta.isCrescente();
+        Bson nomeApos = crescente ? Filters.gt("nome", apos.getNome()) : Filters.lt("nome", apos.getNome());
+        String campo = consulta.getCampoOrdenacao();
+        if (campo.equals(ConsultaProdutos.NOME)) {
+            return nomeApos;
+        }
+        Object valor = campo.equals(ConsultaProdutos.QUANTIDADE) ? (Object) apos.getQuantidade() : (Object) apos.getPreco();
+        return Filters.or(
+            crescente ? Filters.gt(campo, valor) : Filters.lt(campo, valor),
+            Filters.and(Filters.eq(campo, valor), nomeApos));
+    }
+
+    /**
+     * Retorna o nome do índice que atende à ordenação por um campo.
+     * @param campo O campo de ordenação.
+     * @return O nome do índice.
+     */
+    private static String indiceOrdenacao(String campo) {
+        switch (campo) {
+            case ConsultaProdutos.QUANTIDADE: return MongoDBConnection.INDICE_QUANTIDADE;
+            case ConsultaProdutos.PRECO: return MongoDBConnection.INDICE_PRECO;
+            default: return MongoDBConnection.INDICE_CONSULTA;
+        }
+    }
+
+    /**
+     * Monta o filtro do MongoDB para um prefixo de nome e uma quantidade mínima.
+     * O prefixo é convertido no intervalo [prefixo, sucessor do prefixo), que usa os limites do índice.
+     *
+     * @param prefixoNome O prefixo do nome; vazio para não filtrar por nome.
+     * @param quantidadeMinima A quantidade mínima; 0 para não filtrar por quantidade.
+     * @return O filtro a ser aplicado na coleção.
+     */
+    private static Bson filtroConsulta(String prefixoNome, int quantidadeMinima) {
+        List<Bson> condicoes = new ArrayList<>();
+        String prefixo = Produto.normalizarNome(prefixoNome);
+        if (!prefixo.isEmpty()) {
+            condicoes.add(Filters.gte("nome", prefixo));
+            condicoes.add(Filters.lt("nome", ConsultaProdutos.sucessorPrefixo(prefixo)));
+        }
+        if (quantidadeMinima > 0) {
+            condicoes.add(Filters.gte("quantidade", quantidadeMinima));
+        }
+        return condicoes.isEmpty() ? new Document() : Filters.and(condicoes);
+    }
+
+    /**
+     * Acrescenta lançamentos ao livro com um único `insertMany` não ordenado.
+     * Lançamentos já gravados (um lote reenviado depois de uma falha de rede) são recusados
+     * pelo índice único e ignorados.
+     * @param lote Os lançamentos.
+     */
+    @Override
+    public void anexarMovimentos(List<Movimento> lote) {
+        List<Document> documentos = new ArrayList<>(lote.size());
+        for (Movimento m : lote) {
+            documentos.add(new Document()
+                .append("instante", m.getInstante())
+                .append("sequencia", m.getSequencia())
+                .append("tipo", m.getTipo().name())
+                .append("nome", m.getNome())
+                .append("variacao", m.getVariacao())
+                .append("quantidade", m.getQuantidade())
+                .append("preco", m.getPreco()));
+        }
+        try {
+            particao().getMovimentos().insertMany(documentos, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError erro : e.getWriteErrors()) {
+                if (erro.getCode() != CODIGO_CHAVE_DUPLICADA) throw e;
+            }
+        }
+    }
+
+    /**
+     * Percorre os lançamentos de um intervalo, pelo índice (instante, sequencia) ou, para
+     * um produto, pelo índice (nome, instante, sequencia).
+     * @param nome O nome do produto; null para todos.
+     * @param desde O início do intervalo (ms), exclusive.
+     * @param ate O fim do intervalo (ms), inclusive.
+     * @param acao A ação executada para cada lançamento.
+     */
+    @Override
+    public void percorrerMovimentos(String nome, long desde, long ate, Consumer<Movimento> acao) {
+        Bson intervalo = Filters.and(Filters.gt("instante", desde), Filters.lte("instante", ate));
+        Bson filtro = nome == null ? intervalo : Filters.and(Filters.eq("nome", nome), intervalo);
+        try (MongoCursor<Document> cursor = particao().getMovimentos().find(filtro)
+                .sort(Sorts.ascending("instante", "sequencia"))
+                .batchSize(1000)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                acao.accept(new Movimento(doc.getLong("instante"), doc.getLong("sequencia"),
+                    Movimento.Tipo.valueOf(doc.getString("tipo")), doc.getString("nome"),
+                    doc.getInteger("variacao"), doc.getInteger("quantidade"), doc.getDouble("preco")));
+            }
+        }
+    }
+
+    /**
+     * Grava um checkpoint: primeiro os estados dos produtos, em lotes, e por fim o registro
+     * do checkpoint, que é o que o torna visível para `ultimoCheckpoint`.
+     * @param instante O instante que o checkpoint representa.
+     * @param estado O estado de todos os produtos nesse instante.
+     */
+    @Override
+    public void gravarCheckpoint(long instante, Collection<Produto> estado) {
+        MongoDBConnection.Particao particao = particao();
+        List<Document> lote = new ArrayList<>(1000);
+        for (Produto p : estado) {
+            lote.add(new Document()
+                .append("checkpoint", instante)
+                .append("nome", p.getNome())
+                .append("quantidade", p.getQuantidade())
+                .append("preco", p.getPreco()));
+            if (lote.size() == 1000) {
+                particao.getEstadosCheckpoint().insertMany(lote, new InsertManyOptions().ordered(false));
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            particao.getEstadosCheckpoint().insertMany(lote, new InsertManyOptions().ordered(false));
+        }
+        particao.getCheckpoints().insertOne(new Document("instante", instante).append("produtos", estado.size()));
+    }
+
+    /**
+     * Procura o checkpoint mais recente até um instante.
+     * @param ate O instante limite, inclusive.
+     * @return O instante do checkpoint, ou -1 se não houver.
+     */
+    @Override
+    public long ultimoCheckpoint(long ate) {
+        Document doc = particao().getCheckpoints()
+            .find(Filters.lte("instante", ate))
+            .sort(Sorts.descending("instante"))
+            .projection(Projections.fields(Projections.include("instante"), Projections.excludeId()))
+            .first();
+        return doc != null ? doc.getLong("instante") : -1;
+    }
+
+    /**
+     * Entrega o estado dos produtos gravado em um checkpoint.
+     * @param instante O instante do checkpoint.
+     * @param acao A ação executada para cada produto.
+     */
+    @Override
+    public void paraCadaProdutoNoCheckpoint(long instante, Consumer<Produto> acao) {
+        try (MongoCursor<Document> cursor = particao().getEstadosCheckpoint()
+                .find(Filters.eq("checkpoint", instante))
+                .projection(PROJECAO_CONSULTA)
+                .batchSize(1000)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                acao.accept(documentoParaProduto(cursor.next()));
+            }
+        }
+    }
+
+    /**
+     * Verifica, com o plano de execução (explain) do MongoDB, se a consulta filtrada
+     * é respondida apenas pelo índice, sem ler documentos da coleção.
+     *
+     * @param prefixoNome O prefixo do nome usado na consulta.
+     * @param quantidadeMinima A quantidade mínima usada na consulta.
+     * @return true se a consulta é coberta pelo índice (nenhum estágio FETCH ou COLLSCAN e nenhum documento examinado).
+     */
+    public boolean verificarConsultaCoberta(String prefixoNome, int quantidadeMinima) {
+        Document plano = produtosCollection().find(filtroConsulta(prefixoNome, quantidadeMinima))
+            .projection(PROJECAO_CONSULTA)
+            .hintString(MongoDBConnection.INDICE_CONSULTA)
+            .explain(ExplainVerbosity.EXECUTION_STATS);
+
+        List<String> estagios = new ArrayList<>();
+        Document queryPlanner = plano.get("queryPlanner", Document.class);
+        coletarEstagios(queryPlanner != null ? queryPlanner.get("winningPlan") : null, estagios);
+        Document stats = plano.get("executionStats", Document.class);
+        long documentosExaminados = stats != null ? stats.get("totalDocsExamined", Number.class).longValue() : 0;
+
+        return !estagios.isEmpty()
+            && !estagios.contains("FETCH")
+            && !estagios.contains("COLLSCAN")
+            && documentosExaminados == 0;
+    }
+
+    /**
+     * Percorre recursivamente um plano de execução coletando o nome de cada estágio ("stage").
+     * @param no O nó do plano (documento, lista ou valor simples).
+     * @param estagios A lista onde os estágios encontrados são acumulados.
+     */
+    private static void coletarEstagios(Object no, List<String> estagios) {
+        if (no instanceof Document doc) {
+            Object estagio = doc.get("stage");
+            if (estagio instanceof String s) estagios.add(s);
+            doc.values().forEach(v -> coletarEstagios(v, estagios));
+        } else if (no instanceof List<?> lista) {
+            lista.forEach(v -> coletarEstagios(v, estagios));
+        }
+    }
+
+    /**
+     * Fecha a conexão com o MongoDB, caso ela tenha sido criada, quando o último repositório
+     * que a compartilha é fechado.
+     */
+    @Override
+    public void close() {
+        if (fechado.compareAndSet(false, true) && ABERTOS.decrementAndGet() == 0) {
+            MongoDBConnection.encerrar();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package Estoque;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Operações de persistência dos produtos usadas pelo `Estoque`.
+ * O `Estoque` cuida do cache, dos índices locais, do snapshot e das notificações; o
+ * repositório apenas grava e consulta o banco. Há três implementações, escolhidas pela
+ * chave `estoque.repositorio` da configuração (ver `ConfiguracaoBanco`):
+ * "mongodb" (`RepositorioMongo`, o padrão), "memoria" (`RepositorioMemoria`) e
+ * "jdbc" (`RepositorioJdbc`, para um banco embutido como H2 ou SQLite).
+ * Todas devem se comportar da mesma forma; `VerificacaoRepositorios` confere isso.
+ * <p>
+ * Os nomes recebidos já estão normalizados (ver `Produto.normalizarNome`). As falhas de
+ * comunicação com o banco são lançadas como exceções não verificadas; `BancoIndisponivelException`
+ * indica que não foi possível conectar.
+ * @author Leandro
+ */
+public interface RepositorioProdutos extends AutoCloseable {
+
+    /**
+     * Cria o repositório escolhido na configuração.
+     * @param configuracao A configuração carregada.
+     * @return O repositório; nenhuma conexão é aberta aqui.
+     * @throws IllegalArgumentException Se o tipo configurado não for reconhecido.
+     */
+    static RepositorioProdutos criar(ConfiguracaoBanco configuracao) {
+        return criar(configuracao.getRepositorio(), configuracao);
+    }
+
+    /**
+     * Cria um repositório do tipo informado.
+     * @param tipo "mongodb", "memoria" ou "jdbc".
+     * @param configuracao A configuração carregada.
+     * @return O repositório; nenhuma conexão é aberta aqui.
+     * @throws IllegalArgumentException Se o tipo não for reconhecido.
+     */
+    static RepositorioProdutos criar(String tipo, ConfiguracaoBanco configuracao) {
+        switch (tipo) {
+            case "mongodb": return new RepositorioMongo();
+            case "memoria": return new RepositorioMemoria();
+            case "jdbc": return new RepositorioJdbc(configuracao.getJdbcUrl(),
+                configuracao.getJdbcUsuario(), configuracao.getJdbcSenha());
+            default:
+                throw new IllegalArgumentException("Configuração inválida: estoque.repositorio=" + tipo
+                    + " (use mongodb, memoria ou jdbc).");
+        }
+    }
+
+    /**
+     * Cria o repositório da partição própria de um armazém (ver `Armazens`), do tipo escolhido
+     * na configuração: no MongoDB, uma coleção ou um banco só do armazém; no JDBC, um banco só
+     * do armazém; em memória, um repositório independente.
+     * @param configuracao A configuração carregada.
+     * @param armazem O nome do armazém.
+     * @return O repositório; nenhuma conexão é aberta aqui.
+     * @throws IllegalArgumentException Se o tipo configurado não for reconhecido.
+     */
+    static RepositorioProdutos criarParticao(ConfiguracaoBanco configuracao, String armazem) {
+        switch (configuracao.getRepositorio()) {
+            case "mongodb": return new RepositorioMongo(configuracao.getBanco(armazem), configuracao.getColecao(armazem));
+            case "jdbc": return new RepositorioJdbc(configuracao.getJdbcUrl(armazem),
+                configuracao.getJdbcUsuario(), configuracao.getJdbcSenha());
+            default: return criar(configuracao);
+        }
+    }
+
+    /**
+     * Começa a conectar ao banco em segundo plano, sem bloquear.
+     * Chamado no início da aplicação para que a conexão fique pronta enquanto a janela é criada.
+     */
+    default void iniciar() {
+    }
+
+    /**
+     * Indica se os dados sobrevivem ao encerramento do programa.
+     * O snapshot local do catálogo só é usado com repositórios persistentes.
+     * @return true se os produtos gravados são mantidos entre execuções.
+     */
+    default boolean isPersistente() {
+        return true;
+    }
+
+    /**
+     * Obtém por quanto tempo as lápides dos produtos removidos são mantidas (ver
+     * `paraCadaAlteracaoDesde`). Uma instância que não sincroniza há mais tempo que isso pode
+     * ter perdido remoções e precisa conferir o catálogo inteiro.
+     * @return A validade em milissegundos, ou 0 se as lápides nunca são descartadas.
+     */
+    default long getValidadeLapidesMs() {
+        return 0;
+    }
+
+    /**
+     * Descreve o repositório para mensagens e relatórios.
+     * @return Uma descrição curta, ex: "mongodb".
+     */
+    String getDescricao();
+
+    /**
+     * Insere um produto novo.
+     * @param produto O produto.
+     * @throws RuntimeException Se já existir um produto com o mesmo nome ou a gravação falhar.
+     */
+    void inserir(Produto produto);
+
+    /**
+     * Remove um produto.
+     * @param nome O nome do produto.
+     * @return true se o produto existia e foi removido.
+     */
+    boolean remover(String nome);
+
+    /**
+     * Substitui a quantidade e o preço de um produto existente. O ponto de reposição é mantido.
+     * @param nome O nome do produto.
+     * @param quantidade A nova quantidade.
+     * @param preco O novo preço.
+     * @return true se o produto existia e foi alterado.
+     */
+    boolean atualizar(String nome, int quantidade, double preco);
+
+    /**
+     * Soma uma quantidade (positiva na entrada, negativa na saída) à quantidade de um produto,
+     * de forma atômica: a leitura da quantidade atual e a gravação da nova são uma única operação
+     * no banco, de modo que movimentações simultâneas não se perdem. Uma saída só é aplicada se
+     * houver estoque suficiente, e uma entrada só se a nova quantidade couber em um int.
+     * @param nome O nome do produto.
+     * @param quantidade A quantidade a ser somada (diferente de zero).
+     * @return O produto com a nova quantidade, ou null se o produto não existir ou a condição não for atendida.
+     */
+    Produto movimentar(String nome, int quantidade);
+
+    /**
+     * Substitui o ponto de reposição de um produto existente, com uma nova versão do catálogo
+     * (para que as outras instâncias recebam a alteração).
+     * @param nome O nome do produto.
+     * @param pontoReposicao O novo ponto, ou `Produto.PONTO_REPOSICAO_PADRAO`.
+     * @return O produto com o novo ponto, ou null se o produto não existir.
+     */
+    Produto definirPontoReposicao(String nome, int pontoReposicao);
+
+    /**
+     * Aplica um lote de operações, devolvendo um resultado por operação (ver `Estoque.executarLote`).
+     * As operações são aplicadas na ordem da lista: adições de nomes existentes e remoções ou
+     * atualizações de nomes inexistentes falham com "Produto já existe." ou "Produto não encontrado.".
+     * @param operacoes As operações do lote.
+     * @param transacional Se true, uma falha qualquer impede a aplicação de todas as operações.
+     * @return Um resultado para cada operação, na mesma ordem da lista.
+     */
+    List<OperacaoEstoque.Resultado> executarLote(List<OperacaoEstoque> operacoes, boolean transacional);
+
+    /**
+     * Grava um lote de produtos com upsert pelo nome: os novos são inseridos e os existentes
+     * têm quantidade e preço substituídos (o ponto de reposição dos existentes é mantido). Um produto recusado não impede a gravação dos demais.
+     * @param lote Os produtos do lote.
+     * @param aoRejeitar Recebe cada produto recusado e o motivo.
+     * @return O número de produtos gravados.
+     */
+    long gravarLote(List<Produto> lote, BiConsumer<Produto, String> aoRejeitar);
+
+    /**
+     * Verifica se existe um produto com o nome informado.
+     * @param nome O nome do produto.
+     * @return true se o produto existe.
+     */
+    boolean existe(String nome);
+
+    /**
+     * Entrega todos os produtos, sem ordem definida.
+     * @param acao A ação executada para cada produto.
+     */
+    void paraCadaProduto(Consumer<Produto> acao);
+
+    /**
+     * Entrega o nome de todos os produtos, sem ordem definida.
+     * @param acao A ação executada para cada nome.
+     */
+    void paraCadaNome(Consumer<String> acao);
+
+    /**
+     * Entrega os produtos gravados depois de um instante, e também os que não têm o
+     * instante registrado (gravados por versões antigas do programa).
+     * @param instante O instante, em milissegundos desde a época.
+     * @param acao A ação executada para cada produto.
+     */
+    void paraCadaAlteradoDesde(long instante, Consumer<Produto> acao);
+
+    /**
+     * Obtém a versão atual do catálogo. Cada gravação ou remoção recebe uma versão maior que
+     * todas as anteriores, a partir de um contador mantido no próprio banco, de modo que as
+     * versões são comparáveis entre instâncias do programa ligadas ao mesmo banco.
+     * @return A última versão atribuída, ou 0 se nenhuma alteração foi versionada.
+     */
+    long versaoAtual();
+
+    /**
+     * Entrega as alterações com versão maior que a informada, em ordem crescente de versão:
+     * o estado atual de cada produto gravado desde então e uma "lápide" para cada produto
+     * removido. Usado pela sincronização entre instâncias (ver `Estoque`); o custo depende
+     * do número de alterações, não do tamanho do catálogo.
+     * Produtos gravados antes da existência das versões não são entregues.
+     * @param versao A última versão já conhecida.
+     * @param acao A ação executada para cada alteração.
+     */
+    void paraCadaAlteracaoDesde(long versao, Consumer<AlteracaoCatalogo> acao);
+
+    /**
+     * Conta os produtos que atendem aos filtros de uma consulta.
+     * @param consulta A consulta com os filtros.
+     * @return O número de produtos.
+     */
+    long contar(ConsultaProdutos consulta);
+
+    /**
+     * Lista uma página de produtos a partir do produto seguinte a `apos` na ordem da consulta.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param apos O último produto da página anterior, ou null para a primeira página.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página, na ordem da consulta.
+     */
+    List<Produto> listarPagina(ConsultaProdutos consulta, Produto apos, int tamanho);
+
+    /**
+     * Lista uma página de produtos a partir de uma posição absoluta.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param deslocamento O número de produtos a pular.
+     * @param tamanho O número máximo de produtos.
+     * @return Os produtos da página, na ordem da consulta.
+     */
+    List<Produto> listarPagina(ConsultaProdutos consulta, long deslocamento, int tamanho);
+
+    /**
+     * Percorre os produtos de uma consulta, na ordem da consulta, sem trazê-los todos para a memória.
+     * @param consulta A consulta com filtros e ordenação.
+     * @param tamanhoLote O número de produtos lidos do banco por vez.
+     * @param acao A ação executada para cada produto.
+     * @return O número de produtos percorridos.
+     */
+    long percorrer(ConsultaProdutos consulta, int tamanhoLote, Consumer<Produto> acao);
+
+    /**
+     * Calcula o resumo da valorização do estoque (ver `ResumoEstoque`).
+     * @return O resumo.
+     */
+    ResumoEstoque calcularResumo();
+
+    /**
+     * Acrescenta lançamentos ao livro de movimentações (ver `LivroMovimentos`).
+     * O livro só recebe acréscimos: lançamentos gravados nunca são alterados nem removidos.
+     * @param movimentos Os lançamentos, gravados de uma só vez.
+     */
+    void anexarMovimentos(List<Movimento> movimentos);
+
+    /**
+     * Percorre os lançamentos de um intervalo de tempo, na ordem em que aconteceram
+     * (instante e, no mesmo instante, sequência).
+     * @param nome O nome de um produto, para percorrer só os seus lançamentos; null para todos.
+     * @param desde O início do intervalo (ms), exclusive.
+     * @param ate O fim do intervalo (ms), inclusive.
+     * @param acao A ação executada para cada lançamento.
+     */
+    void percorrerMovimentos(String nome, long desde, long ate, Consumer<Movimento> acao);
+
+    /**
+     * Grava um checkpoint do livro: o estado de cada produto em um instante. Os estados são
+     * gravados antes do registro do checkpoint, de modo que um checkpoint interrompido no
+     * meio nunca é usado.
+     * @param instante O instante (ms) que o checkpoint representa.
+     * @param produtos O estado de todos os produtos nesse instante.
+     */
+    void gravarCheckpoint(long instante, Collection<Produto> produtos);
+
+    /**
+     * Procura o checkpoint mais recente até um instante.
+     * @param ate O instante (ms) limite, inclusive.
+     * @return O instante do checkpoint encontrado, ou -1 se não houver nenhum.
+     */
+    long ultimoCheckpoint(long ate);
+
+    /**
+     * Entrega o estado dos produtos gravado em um checkpoint.
+     * @param instante O instante do checkpoint (ver `ultimoCheckpoint`).
+     * @param acao A ação executada para cada produto.
+     */
+    void paraCadaProdutoNoCheckpoint(long instante, Consumer<Produto> acao);
+
+    /**
+     * Fecha as conexões abertas pelo repositório.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,172 @@
+package Estoque;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resumo da valorização do estoque: valor total, número de itens (produtos distintos),
+ * total de unidades e a distribuição por faixa de preço unitário.
+ * É calculado pelo repositório (no MongoDB, pelo próprio servidor), sem trafegar os produtos individualmente.
+ * @author Leandro
+ */
+public final class ResumoEstoque {
+    /**
+     * Limites das faixas de preço unitário. Cada faixa vai de um limite (inclusive) até o
+     * seguinte (exclusive); a última faixa contém todos os preços a partir do último limite.
+     */
+    public static final double[] LIMITES_FAIXAS = {0, 10, 50, 100, 500, 1000};
+
+    private final double valorTotal; // Soma de quantidade × preço de todos os produtos
+    private final long itens; // Número de produtos distintos
+    private final long unidades; // Soma das quantidades
+    private final List<Faixa> faixas; // Distribuição por faixa de preço, na ordem dos limites
+
+    /**
+     * Totais de uma faixa de preço unitário.
+     */
+    public static final class Faixa {
+        private final double precoMinimo; // Limite inferior (inclusive)
+        private final double precoMaximo; // Limite superior (exclusive); infinito na última faixa
+        private final long itens;
+        private final long unidades;
+        private final double valorTotal;
+
+        /**
+         * Cria os totais de uma faixa.
+         * @param precoMinimo O limite inferior da faixa (inclusive).
+         * @param precoMaximo O limite superior da faixa (exclusive), ou infinito.
+         * @param itens O número de produtos na faixa.
+         * @param unidades A soma das quantidades dos produtos na faixa.
+         * @param valorTotal O valor total dos produtos na faixa.
+         */
+        public Faixa(double precoMinimo, double precoMaximo, long itens, long unidades, double valorTotal) {
+            this.precoMinimo = precoMinimo;
+            this.precoMaximo = precoMaximo;
+            this.itens = itens;
+            this.unidades = unidades;
+            this.valorTotal = valorTotal;
+        }
+
+        /**
+         * Obtém o limite inferior da faixa.
+         * @return O limite inferior da faixa (inclusive).
+         */
+        public double getPrecoMinimo() {
+            return precoMinimo;
+        }
+
+        /**
+         * Obtém o limite superior da faixa.
+         * @return O limite superior da faixa (exclusive), ou infinito na última faixa.
+         */
+        public double getPrecoMaximo() {
+            return precoMaximo;
+        }
+
+        /**
+         * Obtém o número de produtos na faixa.
+         * @return O número de produtos na faixa.
+         */
+        public long getItens() {
+            return itens;
+        }
+
+        /**
+         * Obtém o total de unidades na faixa.
+         * @return A soma das quantidades dos produtos na faixa.
+         */
+        public long getUnidades() {
+            return unidades;
+        }
+
+        /**
+         * Obtém o valor total da faixa.
+         * @return O valor total dos produtos na faixa.
+         */
+        public double getValorTotal() {
+            return valorTotal;
+        }
+    }
+
+    /**
+     * Cria um resumo.
+     * @param valorTotal O valor total do estoque.
+     * @param itens O número de produtos distintos.
+     * @param unidades A soma das quantidades.
+     * @param faixas Os totais por faixa de preço, na ordem de `LIMITES_FAIXAS`.
+     */
+    public ResumoEstoque(double valorTotal, long itens, long unidades, List<Faixa> faixas) {
+        this.valorTotal = valorTotal;
+        this.itens = itens;
+        this.unidades = unidades;
+        this.faixas = List.copyOf(faixas);
+    }
+
+    /**
+     * Cria um resumo a partir dos totais de cada faixa; os totais gerais são a soma das faixas.
+     * Usado pelos repositórios que acumulam os totais por conta própria.
+     * @param itens O número de produtos de cada faixa, na ordem de `LIMITES_FAIXAS`.
+     * @param unidades A soma das quantidades de cada faixa.
+     * @param valores O valor total de cada faixa.
+     * @return O resumo.
+     */
+    static ResumoEstoque deFaixas(long[] itens, long[] unidades, double[] valores) {
+        List<Faixa> faixas = new ArrayList<>();
+        long totalItens = 0;
+        long totalUnidades = 0;
+        double totalValor = 0;
+        for (int i = 0; i < LIMITES_FAIXAS.length; i++) {
+            double maximo = i + 1 < LIMITES_FAIXAS.length ? LIMITES_FAIXAS[i + 1] : Double.POSITIVE_INFINITY;
+            faixas.add(new Faixa(LIMITES_FAIXAS[i], maximo, itens[i], unidades[i], valores[i]));
+            totalItens += itens[i];
+            totalUnidades += unidades[i];
+            totalValor += valores[i];
+        }
+        return new ResumoEstoque(totalValor, totalItens, totalUnidades, faixas);
+    }
+
+    /**
+     * Localiza a faixa de um preço unitário.
+     * @param preco O preço.
+     * @return A posição da faixa em `LIMITES_FAIXAS`; preços abaixo do primeiro limite ficam na última faixa,
+     *         como no agrupamento do MongoDB.
+     */
+    static int indiceFaixa(double preco) {
+        for (int i = LIMITES_FAIXAS.length - 1; i >= 0; i--) {
+            if (preco >= LIMITES_FAIXAS[i]) return i;
+        }
+        return LIMITES_FAIXAS.length - 1;
+    }
+
+    /**
+     * Obtém o valor total do estoque.
+     * @return A soma de quantidade × preço de todos os produtos.
+     */
+    public double getValorTotal() {
+        return valorTotal;
+    }
+
+    /**
+     * Obtém o número de produtos distintos.
+     * @return O número de itens.
+     */
+    public long getItens() {
+        return itens;
+    }
+
+    /**
+     * Obtém o total de unidades em estoque.
+     * @return A soma das quantidades.
+     */
+    public long getUnidades() {
+        return unidades;
+    }
+
+    /**
+     * Obtém a distribuição por faixa de preço.
+     * @return Uma faixa para cada limite de `LIMITES_FAIXAS`, incluindo as vazias.
+     */
+    public List<Faixa> getFaixas() {
+        return faixas;
+    }
+}
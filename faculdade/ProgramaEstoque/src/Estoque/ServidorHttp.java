@@ -0,0 +1,535 @@
+package Estoque;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+
+/**
+ * API HTTP (JSON) do estoque, para os sistemas que não usam a interface Swing (o PDV e o
+ * setor de compras), com o servidor HTTP embutido no JDK. Iniciada por
+ * {@code Estoque.Principal --servidor}, sem janelas. Cada requisição é atendida em uma thread
+ * virtual própria, de modo que consultas lentas ao banco não seguram as demais.
+ * <p>
+ * Rotas (o parâmetro {@code armazem} restringe a consulta a um armazém; sem ele, a consulta
+ * é feita em todos os armazéns ao mesmo tempo, ver `Armazens`):
+ * <ul>
+ * <li>{@code GET /api/armazens}: os nomes dos armazéns.</li>
+ * <li>{@code GET /api/produtos?armazem=&prefixo=&minimo=&limite=&apos=}: uma página da
+ *     listagem, em ordem alfabética, com até {@code limite} produtos a partir do nome seguinte
+ *     a {@code apos}; o campo {@code proximo} da resposta é o {@code apos} da página seguinte
+ *     (null na última).</li>
+ * <li>{@code GET /api/produtos/{nome}?armazem=}: o produto em cada armazém que o tem.</li>
+ * <li>{@code GET /api/busca?texto=&minimo=&limite=&armazem=}: a busca aproximada por nome.</li>
+ * <li>{@code POST /api/produtos/{nome}/entrada?armazem=} e {@code .../saida}, com o corpo
+ *     {@code {"quantidade": 5}}: uma movimentação, que devolve o produto atualizado.</li>
+ * <li>{@code GET /api/resumo?armazem=}: a valorização, com os totais de cada armazém.</li>
+ * <li>{@code GET /api/reposicao?armazem=}: os produtos abaixo do ponto de reposição.</li>
+ * </ul>
+ * As respostas maiores que `TAMANHO_MINIMO_COMPRESSAO` são compactadas com gzip se o cliente
+ * aceitar. As respostas dos GET levam uma ETag fraca com a versão local do catálogo de cada
+ * armazém consultado (ver `Estoque.getVersaoLocal`); um cliente que repete a consulta com
+ * {@code If-None-Match} recebe 304, sem corpo e sem consultar o estoque, enquanto nada mudar.
+ * A ETag só é comparada depois de resolvidos a rota, os parâmetros e, na consulta de um
+ * produto, o próprio produto, de modo que o que não existe responde 404, nunca 304.
+ * @author Leandro
+ */
+public class ServidorHttp {
+    // Tamanho (bytes) a partir do qual as respostas são compactadas: abaixo disso o gzip não compensa.
+    static final int TAMANHO_MINIMO_COMPRESSAO = 1024;
+    // Resultados da busca aproximada quando o cliente não informa o limite, e o máximo aceito.
+    private static final int LIMITE_BUSCA_PADRAO = 20;
+    private static final int LIMITE_BUSCA_MAXIMO = 200;
+    // Produtos por página da listagem quando o cliente não informa o limite, e o máximo aceito.
+    private static final int LIMITE_LISTAGEM_PADRAO = 100;
+    private static final int LIMITE_LISTAGEM_MAXIMO = 1000;
+    // Rotas de uma só parte no caminho (ex.: /api/resumo), e a série das métricas dos caminhos sem rota.
+    private static final Set<String> ROTAS_SIMPLES = Set.of("armazens", "produtos", "busca", "resumo", "reposicao");
+    private static final String ROTA_DESCONHECIDA = "desconhecida";
+
+    private final Armazens armazens;
+    private final HttpServer servidor;
+    // Uma thread virtual por requisição.
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Identifica esta execução nas ETags: as versões locais recomeçam a cada execução.
+    private final String execucao = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Erro de uma requisição, respondido com o status HTTP informado.
+     */
+    private static final class ErroHttp extends RuntimeException {
+        private final int status;
+
+        ErroHttp(int status, String mensagem) {
+            super(mensagem);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Construtor do servidor. A porta é aberta aqui, mas as requisições só são atendidas depois de `iniciar`.
+     * @param armazens Os armazéns consultados.
+     * @param endereco O endereço e a porta (porta 0 escolhe uma porta livre).
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public ServidorHttp(Armazens armazens, InetSocketAddress endereco) throws IOException {
+        this.armazens = armazens;
+        this.servidor = HttpServer.create(endereco, 0);
+        servidor.createContext("/api/", this::atender);
+        servidor.setExecutor(executor);
+    }
+
+    /**
+     * Passa a atender as requisições.
+     */
+    public void iniciar() {
+        servidor.start();
+    }
+
+    /**
+     * Para de atender, esperando até um segundo pelas requisições em andamento.
+     */
+    public void parar() {
+        servidor.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Obtém a porta em que o servidor atende.
+     * @return A porta.
+     */
+    public int getPorta() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Atende uma requisição: encaminha para a rota, responde os erros com o status adequado
+     * e registra a latência nas métricas dos armazéns, em uma série por rota (os caminhos que
+     * não correspondem a nenhuma rota ficam todos em "Http.desconhecida", para que o cliente
+     * não crie séries à vontade).
+     * @param troca A requisição e a resposta.
+     */
+    private void atender(HttpExchange troca) {
+        long inicio = System.nanoTime();
+        String rota = ROTA_DESCONHECIDA;
+        try (troca) {
+            String[] partes = troca.getRequestURI().getPath().substring("/api/".length()).split("/");
+            rota = rota(partes);
+            try {
+                encaminhar(troca, rota, partes, parametros(troca));
+            } catch (ErroHttp e) {
+                responderErro(troca, e.status, e.getMessage());
+            } catch (NumberFormatException | JsonParseException e) {
+                responderErro(troca, 400, "Requisição inválida: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                responderErro(troca, 400, e.getMessage());
+            } catch (BancoIndisponivelException e) {
+                responderErro(troca, 503, e.getMessage());
+            } catch (RuntimeException e) {
+                responderErro(troca, 500, "Erro interno: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            // O cliente desistiu da resposta; não há a quem relatar.
+        } finally {
+            armazens.getMetricas().registrarDesde("Http." + rota, inicio);
+        }
+    }
+
+    /**
+     * Identifica a rota de um caminho, sem olhar o método nem os parâmetros.
+     * @param partes O caminho depois de "/api/", separado em "/".
+     * @return O nome fixo da rota (ex.: "produto" para {@code /api/produtos/{nome}}), ou
+     *         `ROTA_DESCONHECIDA` se o caminho não corresponde a nenhuma.
+     */
+    private static String rota(String[] partes) {
+        if (partes.length == 1 && ROTAS_SIMPLES.contains(partes[0])) return partes[0];
+        if (partes.length == 2 && partes[0].equals("produtos")) return "produto";
+        if (partes.length == 3 && partes[0].equals("produtos")) return "movimentacao";
+        return ROTA_DESCONHECIDA;
+    }
+
+    /**
+     * Encaminha uma requisição para a rota correspondente ao caminho e ao método.
+     * @param troca A requisição e a resposta.
+     * @param rota A rota do caminho (ver `rota`).
+     * @param partes O caminho depois de "/api/", separado em "/".
+     * @param parametros Os parâmetros da URL.
+     * @throws IOException Se a resposta não puder ser enviada.
+     */
+    private void encaminhar(HttpExchange troca, String rota, String[] partes, Map<String, String> parametros) throws IOException {
+        String metodo = troca.getRequestMethod();
+        if (rota.equals(ROTA_DESCONHECIDA)) throw new ErroHttp(404, "Rota desconhecida: " + troca.getRequestURI().getPath());
+        String armazem = armazem(parametros);
+        if (rota.equals("movimentacao")) {
+            if (!metodo.equals("POST")) throw new ErroHttp(405, "Método não permitido: " + metodo + " (use POST).");
+            movimentar(troca, partes[1], partes[2], parametros);
+            return;
+        }
+        // Primeiro os parâmetros (400); a consulta em si só é feita se a cópia do cliente não vale mais.
+        Supplier<Document> consulta;
+        boolean podeFaltar = false;
+        switch (rota) {
+            case "armazens":
+                consulta = () -> new Document("armazens", armazens.getNomes());
+                break;
+            case "produtos": {
+                ConsultaProdutos filtros = new ConsultaProdutos(parametros.getOrDefault("prefixo", ""),
+                    inteiro(parametros, "minimo", 0), ConsultaProdutos.NOME, true);
+                String nome = parametros.get("apos");
+                Produto apos = nome == null || nome.isBlank() ? null : new Produto(nome, 0, 0);
+                int limite = Math.max(Math.min(inteiro(parametros, "limite", LIMITE_LISTAGEM_PADRAO), LIMITE_LISTAGEM_MAXIMO), 1);
+                consulta = () -> listar(armazem, filtros, apos, limite);
+                break;
+            }
+            case "produto":
+                consulta = () -> new Document("produtos", buscar(armazem, partes[1]));
+                podeFaltar = true;
+                break;
+            case "busca": {
+                String texto = parametros.getOrDefault("texto", "");
+                int minimo = inteiro(parametros, "minimo", 0);
+                int limite = Math.min(inteiro(parametros, "limite", LIMITE_BUSCA_PADRAO), LIMITE_BUSCA_MAXIMO);
+                consulta = () -> new Document("produtos", buscarAproximado(armazem, texto, minimo, limite));
+                break;
+            }
+            case "resumo":
+                consulta = () -> resumo(armazem);
+                break;
+            default: // "reposicao"
+                consulta = () -> new Document("produtos", reposicao(armazem));
+                break;
+        }
+        if (!metodo.equals("GET")) throw new ErroHttp(405, "Método não permitido: " + metodo + " (use GET).");
+        // A versão é lida antes da consulta: se o catálogo mudar durante ela, a próxima requisição traz a mudança.
+        String etag = etag(armazem);
+        // Um produto pode não existir: ele é procurado antes de a ETag ser comparada, para que a
+        // resposta seja 404 (e não 304, ex.: com "If-None-Match: *").
+        Document corpo = podeFaltar ? consulta.get() : null;
+        if (naoModificado(troca, etag)) {
+            troca.getResponseHeaders().set("ETag", etag);
+            troca.sendResponseHeaders(304, -1);
+            return;
+        }
+        responder(troca, 200, corpo != null ? corpo : consulta.get(), etag);
+    }
+
+    // ---------------------------------------------------------------- rotas
+
+    /**
+     * Lista uma página dos produtos de um armazém ou de todos, por chave (ver
+     * `Estoque.listarPagina(ConsultaProdutos, Produto, int)` e `Armazens.listarPagina`).
+     * @param armazem O armazém, ou null para todos.
+     * @param consulta Os filtros, com a ordenação pelo nome.
+     * @param apos O último produto da página anterior, ou null para a primeira página.
+     * @param limite O número de produtos da página.
+     * @return Os produtos, em ordem alfabética, e em "proximo" o nome a partir do qual pedir a
+     *         página seguinte (null se esta é a última).
+     */
+    private Document listar(String armazem, ConsultaProdutos consulta, Produto apos, int limite) {
+        List<Document> produtos = new ArrayList<>();
+        if (armazem == null) {
+            armazens.listarPagina(consulta, apos, limite).forEach(p -> produtos.add(documento(p.getArmazem(), p.getProduto())));
+        } else {
+            armazens.getEstoque(armazem).listarPagina(consulta, apos, limite).forEach(p -> produtos.add(documento(armazem, p)));
+        }
+        // Uma página incompleta é a última; uma completa pode ser seguida de uma vazia.
+        String proximo = produtos.size() < limite ? null : produtos.get(produtos.size() - 1).getString("nome");
+        return new Document("produtos", produtos).append("proximo", proximo);
+    }
+
+    /**
+     * Procura um produto pelo nome em um armazém ou em todos.
+     * @param armazem O armazém, ou null para todos.
+     * @param nome O nome do produto.
+     * @return O produto em cada armazém que o tem.
+     * @throws ErroHttp 404, se nenhum armazém tem o produto.
+     */
+    private List<Document> buscar(String armazem, String nome) {
+        List<Document> produtos = new ArrayList<>();
+        if (armazem == null) {
+            armazens.buscarProduto(nome).forEach(p -> produtos.add(documento(p.getArmazem(), p.getProduto())));
+        } else {
+            Produto produto = armazens.getEstoque(armazem).buscarProduto(nome);
+            if (produto != null) produtos.add(documento(armazem, produto));
+        }
+        if (produtos.isEmpty()) throw new ErroHttp(404, "Produto não encontrado: " + nome);
+        return produtos;
+    }
+
+    /**
+     * Busca os produtos mais parecidos com um texto em um armazém ou em todos.
+     * @param armazem O armazém, ou null para todos.
+     * @param texto O texto buscado.
+     * @param minimo A quantidade mínima.
+     * @param limite O número máximo de produtos.
+     * @return Os produtos, do mais ao menos parecido.
+     */
+    private List<Document> buscarAproximado(String armazem, String texto, int minimo, int limite) {
+        List<Document> produtos = new ArrayList<>();
+        if (armazem == null) {
+            armazens.buscarAproximado(texto, minimo, limite).forEach(p -> produtos.add(documento(p.getArmazem(), p.getProduto())));
+        } else {
+            armazens.getEstoque(armazem).buscarAproximado(texto, minimo, limite).forEach(p -> produtos.add(documento(armazem, p)));
+        }
+        return produtos;
+    }
+
+    /**
+     * Monta a valorização de um armazém ou de todos, com os totais de cada armazém.
+     * @param armazem O armazém, ou null para todos.
+     * @return O resumo.
+     */
+    private Document resumo(String armazem) {
+        Map<String, TotaisEstoque> porArmazem = armazem == null
+            ? armazens.calcularTotais()
+            : Map.of(armazem, armazens.getEstoque(armazem).calcularTotais());
+        TotaisEstoque soma = new TotaisEstoque();
+        List<Document> totais = new ArrayList<>();
+        porArmazem.forEach((nome, t) -> {
+            soma.acumular(t);
+            totais.add(new Document("armazem", nome)
+                .append("valorTotal", t.getValorCentavos() / 100.0)
+                .append("itens", t.getItens())
+                .append("unidades", t.getUnidades()));
+        });
+        ResumoEstoque resumo = soma.getResumo();
+        List<Document> faixas = new ArrayList<>();
+        for (ResumoEstoque.Faixa faixa : resumo.getFaixas()) {
+            faixas.add(new Document("precoMinimo", faixa.getPrecoMinimo())
+                // A última faixa não tem limite superior, que o JSON não representa como número.
+                .append("precoMaximo", Double.isInfinite(faixa.getPrecoMaximo()) ? null : faixa.getPrecoMaximo())
+                .append("itens", faixa.getItens())
+                .append("unidades", faixa.getUnidades())
+                .append("valorTotal", faixa.getValorTotal()));
+        }
+        return new Document("valorTotal", resumo.getValorTotal())
+            .append("itens", resumo.getItens())
+            .append("unidades", resumo.getUnidades())
+            .append("faixas", faixas)
+            .append("armazens", totais);
+    }
+
+    /**
+     * Monta a lista de reposição de um armazém ou de todos.
+     * @param armazem O armazém, ou null para todos.
+     * @return Os produtos abaixo do ponto de reposição, do que mais falta ao que menos falta em cada armazém.
+     */
+    private List<Document> reposicao(String armazem) {
+        Map<String, List<AlertasReposicao.Item>> porArmazem = armazem == null
+            ? armazens.listarAlertasReposicao()
+            : Map.of(armazem, armazens.getEstoque(armazem).listarAlertasReposicao());
+        List<Document> itens = new ArrayList<>();
+        porArmazem.forEach((nome, alertas) -> {
+            for (AlertasReposicao.Item item : alertas) {
+                itens.add(documento(nome, item.getProduto())
+                    .append("pontoEmVigor", item.getPonto())
+                    .append("falta", item.getFalta())
+                    .append("custoReposicao", item.getCustoReposicao()));
+            }
+        });
+        return itens;
+    }
+
+    /**
+     * Registra a entrada ou a saída de unidades de um produto em um armazém. Com mais de um
+     * armazém, o parâmetro {@code armazem} é obrigatório.
+     * @param troca A requisição, com o corpo {@code {"quantidade": n}}.
+     * @param nome O nome do produto.
+     * @param tipo "entrada" ou "saida".
+     * @param parametros Os parâmetros da URL.
+     * @throws IOException Se o corpo não puder ser lido ou a resposta enviada.
+     */
+    private void movimentar(HttpExchange troca, String nome, String tipo, Map<String, String> parametros) throws IOException {
+        if (!tipo.equals("entrada") && !tipo.equals("saida")) {
+            throw new ErroHttp(404, "Movimentação desconhecida: " + tipo + " (use entrada ou saida).");
+        }
+        String armazem = armazem(parametros);
+        if (armazem == null) {
+            if (armazens.getQuantidade() > 1) throw new ErroHttp(400, "Informe o armazém da movimentação (parâmetro armazem).");
+            armazem = armazens.getNomes().get(0);
+        }
+        Document pedido;
+        try (InputStream entrada = troca.getRequestBody()) {
+            pedido = Document.parse(new String(entrada.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        if (!(pedido.get("quantidade") instanceof Number quantidade) || quantidade.doubleValue() != quantidade.intValue()) {
+            throw new ErroHttp(400, "Informe a quantidade como um número inteiro, ex.: {\"quantidade\": 5}.");
+        }
+        Estoque estoque = armazens.getEstoque(armazem);
+        Produto produto = tipo.equals("entrada")
+            ? estoque.registrarEntrada(nome, quantidade.intValue())
+            : estoque.registrarSaida(nome, quantidade.intValue());
+        if (produto == null) {
+            if (estoque.buscarProduto(nome) == null) throw new ErroHttp(404, "Produto não encontrado: " + nome);
+            throw new ErroHttp(409, tipo.equals("entrada") ? "A nova quantidade excederia o máximo." : "Estoque insuficiente.");
+        }
+        responder(troca, 200, documento(armazem, produto), null);
+    }
+
+    // ---------------------------------------------------------------- auxiliares
+
+    /**
+     * Converte um produto em documento JSON.
+     * @param armazem O armazém do produto.
+     * @param produto O produto.
+     * @return O documento; o ponto de reposição é null se o produto segue o padrão.
+     */
+    private static Document documento(String armazem, Produto produto) {
+        int ponto = produto.getPontoReposicao();
+        return new Document("armazem", armazem)
+            .append("nome", produto.getNome())
+            .append("quantidade", produto.getQuantidade())
+            .append("preco", produto.getPreco())
+            .append("pontoReposicao", ponto == Produto.PONTO_REPOSICAO_PADRAO ? null : ponto);
+    }
+
+    /**
+     * Obtém o armazém informado na requisição, conferindo se ele existe.
+     * @param parametros Os parâmetros da URL.
+     * @return O nome do armazém, ou null se não foi informado.
+     * @throws ErroHttp 404, se o armazém não existir.
+     */
+    private String armazem(Map<String, String> parametros) {
+        String armazem = parametros.get("armazem");
+        if (armazem == null || armazem.isEmpty()) return null;
+        if (!armazens.getNomes().contains(armazem)) throw new ErroHttp(404, "Armazém desconhecido: " + armazem);
+        return armazem;
+    }
+
+    /**
+     * Monta a ETag (fraca) de uma consulta: a execução e a versão local do catálogo de cada
+     * armazém consultado. Fraca porque a mesma versão é servida com e sem compressão.
+     * @param armazem O armazém consultado, ou null para todos.
+     * @return A ETag, ex.: {@code W/"lq2x9k-120.7.33"}.
+     */
+    private String etag(String armazem) {
+        StringBuilder versao = new StringBuilder("W/\"").append(execucao);
+        char separador = '-';
+        for (String nome : armazem == null ? armazens.getNomes() : List.of(armazem)) {
+            versao.append(separador).append(armazens.getEstoque(nome).getVersaoLocal());
+            separador = '.';
+        }
+        return versao.append('"').toString();
+    }
+
+    /**
+     * Indica se a ETag atual está entre as enviadas pelo cliente em {@code If-None-Match}
+     * (comparação fraca: o prefixo "W/" é ignorado).
+     * @param troca A requisição.
+     * @param etag A ETag atual.
+     * @return true se a cópia do cliente ainda vale.
+     */
+    private static boolean naoModificado(HttpExchange troca, String etag) {
+        String enviadas = troca.getRequestHeaders().getFirst("If-None-Match");
+        if (enviadas == null) return false;
+        String atual = etag.substring(2);
+        for (String enviada : enviadas.split(",")) {
+            String e = enviada.trim();
+            if (e.equals("*") || (e.startsWith("W/") ? e.substring(2) : e).equals(atual)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Envia uma resposta JSON, compactada com gzip se for grande e o cliente aceitar.
+     * @param troca A requisição e a resposta.
+     * @param status O status HTTP.
+     * @param corpo O documento enviado.
+     * @param etag A ETag da resposta, ou null.
+     * @throws IOException Se a resposta não puder ser enviada.
+     */
+    private static void responder(HttpExchange troca, int status, Document corpo, String etag) throws IOException {
+        byte[] bytes = corpo.toJson().getBytes(StandardCharsets.UTF_8);
+        Headers cabecalhos = troca.getResponseHeaders();
+        cabecalhos.set("Content-Type", "application/json; charset=utf-8");
+        cabecalhos.set("Vary", "Accept-Encoding");
+        if (etag != null) {
+            cabecalhos.set("ETag", etag);
+            // Os clientes podem guardar a resposta, mas devem confirmar a ETag a cada uso.
+            cabecalhos.set("Cache-Control", "no-cache");
+        }
+        String aceitas = troca.getRequestHeaders().getFirst("Accept-Encoding");
+        if (bytes.length >= TAMANHO_MINIMO_COMPRESSAO && aceitas != null && aceitas.toLowerCase().contains("gzip")) {
+            cabecalhos.set("Content-Encoding", "gzip");
+            troca.sendResponseHeaders(status, 0); // Tamanho desconhecido: envio em partes (chunked)
+            try (OutputStream saida = new GZIPOutputStream(troca.getResponseBody(), 8192)) {
+                saida.write(bytes);
+            }
+        } else {
+            troca.sendResponseHeaders(status, bytes.length);
+            try (OutputStream saida = troca.getResponseBody()) {
+                saida.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Envia uma resposta de erro, com a mensagem em {@code {"erro": "..."}}.
+     * @param troca A requisição e a resposta.
+     * @param status O status HTTP.
+     * @param mensagem A mensagem.
+     * @throws IOException Se a resposta não puder ser enviada.
+     */
+    private static void responderErro(HttpExchange troca, int status, String mensagem) throws IOException {
+        responder(troca, status, new Document("erro", mensagem), null);
+    }
+
+    /**
+     * Lê os parâmetros da URL (ex.: "?armazem=norte&minimo=5").
+     * @param troca A requisição.
+     * @return Os parâmetros, já decodificados.
+     * @throws ErroHttp 400, se algum parâmetro estiver mal codificado (ex.: "%zz").
+     */
+    private static Map<String, String> parametros(HttpExchange troca) {
+        Map<String, String> parametros = new HashMap<>();
+        String consulta = troca.getRequestURI().getRawQuery();
+        if (consulta == null) return parametros;
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            String chave = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            try {
+                parametros.put(URLDecoder.decode(chave, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new ErroHttp(400, "Parâmetro mal codificado: " + par);
+            }
+        }
+        return parametros;
+    }
+
+    /**
+     * Lê um parâmetro inteiro não negativo.
+     * @param parametros Os parâmetros da URL.
+     * @param chave O nome do parâmetro.
+     * @param padrao O valor usado se o parâmetro não foi informado.
+     * @return O valor.
+     * @throws ErroHttp 400, se o valor não for um inteiro não negativo.
+     */
+    private static int inteiro(Map<String, String> parametros, String chave, int padrao) {
+        String valor = parametros.get(chave);
+        if (valor == null || valor.isEmpty()) return padrao;
+        try {
+            int numero = Integer.parseInt(valor);
+            if (numero < 0) throw new NumberFormatException();
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new ErroHttp(400, "Parâmetro inválido: " + chave + "=" + valor + " (esperado um número inteiro não negativo).");
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package Estoque;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Cópia local do catálogo em um arquivo binário compacto, usada para exibir os produtos
+ * imediatamente ao abrir o programa, antes mesmo de o MongoDB responder.
+ * <p>
+ * Formato: cabeçalho com o número mágico "EST1", a versão do formato, a marca de tempo
+ * (até quando o arquivo reflete o banco), o número de produtos e, a partir da versão 2, os
+ * totais do estoque (ver `TotaisEstoque`), que podem ser lidos sem ler os produtos
+ * (`lerTotais`), para exibir os totais logo ao abrir o programa; em seguida, para cada
+ * produto, o tamanho do nome em UTF-8, os bytes do nome, a quantidade, o preço e, a partir
+ * da versão 3, o ponto de reposição; por fim, o CRC32 dos registros. A leitura mapeia o arquivo em memória, e a gravação escreve um
+ * arquivo temporário que substitui o anterior com uma única operação atômica.
+ * @author Leandro
+ */
+public final class SnapshotCatalogo {
+    private static final int MAGICO = 0x45535431; // "EST1"
+    private static final int VERSAO_FORMATO = 3;
+    // Formatos anteriores, ainda aceitos na leitura.
+    private static final int VERSAO_SEM_TOTAIS = 1;
+    private static final int VERSAO_SEM_PONTO_REPOSICAO = 2;
+    private static final int TAMANHO_CABECALHO_V1 = 4 + 4 + 8 + 4;
+    private static final int TAMANHO_CABECALHO = TAMANHO_CABECALHO_V1 + TotaisEstoque.TAMANHO_GRAVADO;
+
+    private final long marcaTempo; // Instante (ms) até o qual o conteúdo reflete o banco
+    private final List<Produto> produtos;
+    private final TotaisEstoque totais; // null nos arquivos da versão 1
+
+    /**
+     * Construtor privado; use `ler`.
+     * @param marcaTempo A marca de tempo gravada no arquivo.
+     * @param produtos Os produtos lidos.
+     * @param totais Os totais gravados, ou null se o arquivo não os tem.
+     */
+    private SnapshotCatalogo(long marcaTempo, List<Produto> produtos, TotaisEstoque totais) {
+        this.marcaTempo = marcaTempo;
+        this.produtos = produtos;
+        this.totais = totais;
+    }
+
+    /**
+     * Lê um arquivo de snapshot, mapeando-o em memória.
+     * @param arquivo O arquivo a ser lido.
+     * @return O snapshot lido, ou null se o arquivo não existir.
+     * @throws IOException Se o arquivo não puder ser lido ou estiver corrompido.
+     */
+    public static SnapshotCatalogo ler(Path arquivo) throws IOException {
+        if (!Files.isRegularFile(arquivo)) return null;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho < TAMANHO_CABECALHO_V1 + 8 || tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot com tamanho inválido: " + arquivo);
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            int versao = lerVersao(mapa, arquivo);
+            int tamanhoCabecalho = versao == VERSAO_SEM_TOTAIS ? TAMANHO_CABECALHO_V1 : TAMANHO_CABECALHO;
+            if (tamanho < tamanhoCabecalho + 8) {
+                throw new IOException("Snapshot com tamanho inválido: " + arquivo);
+            }
+            long marcaTempo = mapa.getLong();
+            int total = mapa.getInt();
+            TotaisEstoque totais = versao == VERSAO_SEM_TOTAIS ? null : lerTotais(mapa);
+
+            // Confere o CRC dos registros antes de interpretá-los.
+            ByteBuffer registros = mapa.slice(tamanhoCabecalho, (int) tamanho - tamanhoCabecalho - 8);
+            CRC32 crc = new CRC32();
+            crc.update(registros);
+            if (crc.getValue() != mapa.getLong((int) tamanho - 8)) {
+                throw new IOException("Snapshot corrompido (CRC inválido): " + arquivo);
+            }
+
+            List<Produto> produtos = new ArrayList<>(total);
+            byte[] nome = new byte[256];
+            for (int i = 0; i < total; i++) {
+                int tamanhoNome = mapa.getInt();
+                if (tamanhoNome > nome.length) nome = new byte[Math.max(tamanhoNome, nome.length * 2)];
+                mapa.get(nome, 0, tamanhoNome);
+                int quantidade = mapa.getInt();
+                double preco = mapa.getDouble();
+                int pontoReposicao = versao == VERSAO_FORMATO ? mapa.getInt() : Produto.PONTO_REPOSICAO_PADRAO;
+                produtos.add(new Produto(new String(nome, 0, tamanhoNome, StandardCharsets.UTF_8), quantidade, preco, pontoReposicao));
+            }
+            return new SnapshotCatalogo(marcaTempo, produtos, totais);
+        }
+    }
+
+    /**
+     * Lê apenas os totais do estoque gravados no cabeçalho de um snapshot, sem ler os produtos.
+     * Os totais não são conferidos pelo CRC; a conferência periódica do `Estoque` corrige
+     * eventuais diferenças depois que os produtos forem carregados.
+     * @param arquivo O arquivo do snapshot.
+     * @return Os totais, ou null se o arquivo não existe ou é da versão 1 (sem totais).
+     * @throws IOException Se o arquivo não puder ser lido ou não for um snapshot.
+     */
+    public static TotaisEstoque lerTotais(Path arquivo) throws IOException {
+        if (!Files.isRegularFile(arquivo)) return null;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+            while (cabecalho.hasRemaining()) {
+                if (canal.read(cabecalho) < 0) break; // Arquivo menor que o cabeçalho
+            }
+            if (cabecalho.position() < TAMANHO_CABECALHO_V1) {
+                throw new IOException("Snapshot com tamanho inválido: " + arquivo);
+            }
+            cabecalho.flip();
+            if (lerVersao(cabecalho, arquivo) == VERSAO_SEM_TOTAIS) return null;
+            if (cabecalho.remaining() < TAMANHO_CABECALHO - 8) {
+                throw new IOException("Snapshot com tamanho inválido: " + arquivo);
+            }
+            cabecalho.getLong(); // Marca de tempo
+            cabecalho.getInt(); // Número de produtos
+            return lerTotais(cabecalho);
+        }
+    }
+
+    /**
+     * Confere o número mágico e lê a versão do formato.
+     * @param cabecalho O início do arquivo.
+     * @param arquivo O arquivo, para a mensagem de erro.
+     * @return A versão do formato (1 a 3).
+     * @throws IOException Se o arquivo não for um snapshot ou for de uma versão desconhecida.
+     */
+    private static int lerVersao(ByteBuffer cabecalho, Path arquivo) throws IOException {
+        int versao = cabecalho.getInt() == MAGICO ? cabecalho.getInt() : -1;
+        if (versao != VERSAO_FORMATO && versao != VERSAO_SEM_PONTO_REPOSICAO && versao != VERSAO_SEM_TOTAIS) {
+            throw new IOException("Arquivo não é um snapshot do estoque (ou é de outra versão): " + arquivo);
+        }
+        return versao;
+    }
+
+    /**
+     * Lê o bloco de totais do cabeçalho, na posição atual.
+     * @param cabecalho O cabeçalho.
+     * @return Os totais.
+     * @throws IOException Se a leitura falhar.
+     */
+    private static TotaisEstoque lerTotais(ByteBuffer cabecalho) throws IOException {
+        byte[] bloco = new byte[TotaisEstoque.TAMANHO_GRAVADO];
+        cabecalho.get(bloco);
+        return TotaisEstoque.ler(new DataInputStream(new ByteArrayInputStream(bloco)));
+    }
+
+    /**
+     * Grava um snapshot de forma atômica: o conteúdo é escrito em um arquivo temporário no
+     * mesmo diretório, sincronizado com o disco e então renomeado sobre o arquivo final.
+     * Quem lê o arquivo vê sempre a versão anterior completa ou a nova completa.
+     * Os totais do cabeçalho são calculados a partir dos próprios produtos gravados.
+     * @param arquivo O arquivo de destino.
+     * @param produtos Os produtos a serem gravados.
+     * @param marcaTempo Instante (ms) até o qual os produtos refletem o banco.
+     * @throws IOException Se o arquivo não puder ser gravado.
+     */
+    public static void gravar(Path arquivo, Collection<Produto> produtos, long marcaTempo) throws IOException {
+        Path absoluto = arquivo.toAbsolutePath();
+        Path temporario = absoluto.resolveSibling(absoluto.getFileName() + ".tmp");
+        // Copia os produtos antes de gravar, para que o número no cabeçalho corresponda aos registros.
+        List<Produto> copia = new ArrayList<>(produtos);
+        TotaisEstoque totais = new TotaisEstoque();
+        for (Produto p : copia) {
+            totais.somar(p.getQuantidade(), TotaisEstoque.emCentavos(p.getPreco()), ResumoEstoque.indiceFaixa(p.getPreco()));
+        }
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream cabecalho = new DataOutputStream(Channels.newOutputStream(canal));
+            cabecalho.writeInt(MAGICO);
+            cabecalho.writeInt(VERSAO_FORMATO);
+            cabecalho.writeLong(marcaTempo);
+            cabecalho.writeInt(copia.size());
+            totais.gravar(cabecalho);
+            cabecalho.flush();
+
+            CRC32 crc = new CRC32();
+            DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Channels.newOutputStream(canal), crc), 1 << 16));
+            for (Produto p : copia) {
+                byte[] nome = p.getNome().getBytes(StandardCharsets.UTF_8);
+                saida.writeInt(nome.length);
+                saida.write(nome);
+                saida.writeInt(p.getQuantidade());
+                saida.writeDouble(p.getPreco());
+                saida.writeInt(p.getPontoReposicao());
+            }
+            saida.flush();
+            cabecalho.writeLong(crc.getValue()); // Fora do CRC: escrito direto no canal.
+            cabecalho.flush();
+            canal.force(true);
+        }
+        Files.move(temporario, absoluto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Obtém a marca de tempo do snapshot.
+     * @return O instante (ms) até o qual o conteúdo reflete o banco.
+     */
+    public long getMarcaTempo() {
+        return marcaTempo;
+    }
+
+    /**
+     * Obtém os totais do estoque gravados no snapshot.
+     * @return Os totais, ou null se o arquivo é da versão 1.
+     */
+    public TotaisEstoque getTotais() {
+        return totais;
+    }
+
+    /**
+     * Obtém os produtos do snapshot.
+     * @return A lista de produtos.
+     */
+    public List<Produto> getProdutos() {
+        return produtos;
+    }
+}
@@ -0,0 +1,216 @@
+package Estoque;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Totais do estoque mantidos incrementalmente: valor total em centavos (ponto fixo, sem os
+ * erros de arredondamento de uma soma de `double`), total de unidades, número de produtos e
+ * os mesmos totais por faixa de preço (ver `ResumoEstoque.LIMITES_FAIXAS`).
+ * Cada gravação ou remoção de um produto ajusta os totais em tempo constante, desfazendo a
+ * contribuição do estado anterior e somando a do novo; assim o resumo do estoque é obtido
+ * sem percorrer os produtos.
+ * <p>
+ * Os métodos que alteram os totais não são sincronizados: quem os mantém (o `CatalogoColunar`)
+ * os protege com a sua própria trava. As cópias entregues para fora não são mais alteradas.
+ * @author Leandro
+ */
+public final class TotaisEstoque {
+    private static final int FAIXAS = ResumoEstoque.LIMITES_FAIXAS.length;
+    // Tamanho gravado por `gravar`: 3 totais e 3 totais por faixa.
+    static final int TAMANHO_GRAVADO = 8 * (3 + 3 * FAIXAS);
+
+    private long centavos; // Soma de quantidade × preço em centavos
+    private long unidades;
+    private long itens;
+    private final long[] centavosFaixa = new long[FAIXAS];
+    private final long[] unidadesFaixa = new long[FAIXAS];
+    private final long[] itensFaixa = new long[FAIXAS];
+
+    /**
+     * Converte um preço para centavos, arredondando frações de centavo.
+     * @param preco O preço.
+     * @return O preço em centavos.
+     */
+    static long emCentavos(double preco) {
+        return Math.round(preco * 100);
+    }
+
+    /**
+     * Soma a contribuição de um produto aos totais.
+     * @param quantidade A quantidade do produto.
+     * @param precoCentavos O preço do produto em centavos.
+     * @param faixa A faixa de preço do produto (ver `ResumoEstoque.indiceFaixa`).
+     */
+    void somar(int quantidade, long precoCentavos, int faixa) {
+        long valor = quantidade * precoCentavos;
+        centavos += valor;
+        unidades += quantidade;
+        itens++;
+        centavosFaixa[faixa] += valor;
+        unidadesFaixa[faixa] += quantidade;
+        itensFaixa[faixa]++;
+    }
+
+    /**
+     * Desfaz a contribuição de um produto aos totais.
+     * @param quantidade A quantidade do produto.
+     * @param precoCentavos O preço do produto em centavos.
+     * @param faixa A faixa de preço do produto.
+     */
+    void subtrair(int quantidade, long precoCentavos, int faixa) {
+        long valor = quantidade * precoCentavos;
+        centavos -= valor;
+        unidades -= quantidade;
+        itens--;
+        centavosFaixa[faixa] -= valor;
+        unidadesFaixa[faixa] -= quantidade;
+        itensFaixa[faixa]--;
+    }
+
+    /**
+     * Soma a estes totais os de outro objeto (ex.: os de outro armazém).
+     * @param outro Os totais somados.
+     */
+    void acumular(TotaisEstoque outro) {
+        centavos += outro.centavos;
+        unidades += outro.unidades;
+        itens += outro.itens;
+        for (int i = 0; i < FAIXAS; i++) {
+            centavosFaixa[i] += outro.centavosFaixa[i];
+            unidadesFaixa[i] += outro.unidadesFaixa[i];
+            itensFaixa[i] += outro.itensFaixa[i];
+        }
+    }
+
+    /**
+     * Zera todos os totais.
+     */
+    void zerar() {
+        centavos = 0;
+        unidades = 0;
+        itens = 0;
+        Arrays.fill(centavosFaixa, 0);
+        Arrays.fill(unidadesFaixa, 0);
+        Arrays.fill(itensFaixa, 0);
+    }
+
+    /**
+     * Cria uma cópia independente dos totais.
+     * @return A cópia.
+     */
+    TotaisEstoque copiar() {
+        TotaisEstoque copia = new TotaisEstoque();
+        copia.copiarDe(this);
+        return copia;
+    }
+
+    /**
+     * Substitui estes totais pelos de outro objeto (ex.: por uma recontagem).
+     * @param outro Os totais copiados.
+     */
+    void copiarDe(TotaisEstoque outro) {
+        centavos = outro.centavos;
+        unidades = outro.unidades;
+        itens = outro.itens;
+        System.arraycopy(outro.centavosFaixa, 0, centavosFaixa, 0, FAIXAS);
+        System.arraycopy(outro.unidadesFaixa, 0, unidadesFaixa, 0, FAIXAS);
+        System.arraycopy(outro.itensFaixa, 0, itensFaixa, 0, FAIXAS);
+    }
+
+    /**
+     * Grava os totais em formato binário de tamanho fixo (`TAMANHO_GRAVADO` bytes).
+     * @param saida O destino.
+     * @throws IOException Se a gravação falhar.
+     */
+    void gravar(DataOutput saida) throws IOException {
+        saida.writeLong(centavos);
+        saida.writeLong(unidades);
+        saida.writeLong(itens);
+        for (int i = 0; i < FAIXAS; i++) {
+            saida.writeLong(centavosFaixa[i]);
+            saida.writeLong(unidadesFaixa[i]);
+            saida.writeLong(itensFaixa[i]);
+        }
+    }
+
+    /**
+     * Lê totais gravados por `gravar`.
+     * @param entrada A origem.
+     * @return Os totais lidos.
+     * @throws IOException Se a leitura falhar.
+     */
+    static TotaisEstoque ler(DataInput entrada) throws IOException {
+        TotaisEstoque totais = new TotaisEstoque();
+        totais.centavos = entrada.readLong();
+        totais.unidades = entrada.readLong();
+        totais.itens = entrada.readLong();
+        for (int i = 0; i < FAIXAS; i++) {
+            totais.centavosFaixa[i] = entrada.readLong();
+            totais.unidadesFaixa[i] = entrada.readLong();
+            totais.itensFaixa[i] = entrada.readLong();
+        }
+        return totais;
+    }
+
+    /**
+     * Obtém o valor total do estoque em centavos.
+     * @return A soma de quantidade × preço, em centavos.
+     */
+    public long getValorCentavos() {
+        return centavos;
+    }
+
+    /**
+     * Obtém o total de unidades em estoque.
+     * @return A soma das quantidades.
+     */
+    public long getUnidades() {
+        return unidades;
+    }
+
+    /**
+     * Obtém o número de produtos distintos.
+     * @return O número de itens.
+     */
+    public long getItens() {
+        return itens;
+    }
+
+    /**
+     * Converte os totais no resumo exibido pelo relatório.
+     * @return O resumo, com os valores em reais.
+     */
+    public ResumoEstoque getResumo() {
+        double[] valores = new double[FAIXAS];
+        for (int i = 0; i < FAIXAS; i++) {
+            valores[i] = centavosFaixa[i] / 100.0;
+        }
+        ResumoEstoque porFaixa = ResumoEstoque.deFaixas(itensFaixa.clone(), unidadesFaixa.clone(), valores);
+        // O valor total vem dos centavos, e não da soma dos valores das faixas em `double`.
+        return new ResumoEstoque(centavos / 100.0, itens, unidades, porFaixa.getFaixas());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TotaisEstoque)) return false;
+        TotaisEstoque outro = (TotaisEstoque) o;
+        return centavos == outro.centavos && unidades == outro.unidades && itens == outro.itens
+            && Arrays.equals(centavosFaixa, outro.centavosFaixa)
+            && Arrays.equals(unidadesFaixa, outro.unidadesFaixa)
+            && Arrays.equals(itensFaixa, outro.itensFaixa);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(centavos) * 31 + Long.hashCode(unidades) * 17 + Long.hashCode(itens);
+    }
+
+    @Override
+    public String toString() {
+        return itens + " itens, " + unidades + " unidades, R$ " + Relatorio.formatarMoeda(centavos / 100.0);
+    }
+}
@@ -45,6 +45,17 @@ public class ValidadorCampos implements DocumentListener, java.awt.event.FocusLi
     private boolean nomeFieldErroVisualAtivo = false;
     private boolean quantidadeFieldErroVisualAtivo = false;
     private boolean precoFieldErroVisualAtivo = false;
+
+    /* Estado da verificação de existência do nome. A resposta vem do índice local de nomes do estoque;
+     *só os casos que o índice não sabe responder são confirmados no banco, de forma assíncrona.
+     *nomeVerificado guarda o último nome cuja resposta já se conhece; nomeEmVerificacao, o que aguarda o banco.
+     */
+    private String nomeVerificado = null;
+    private boolean nomeExiste = false;
+    private String nomeEmVerificacao = null;
+    // Atraso antes de confirmar um nome no banco, para não consultar a cada tecla digitada.
+    private static final int ATRASO_CONFIRMACAO_MS = 300;
+    private final Timer confirmacaoTimer = new Timer(ATRASO_CONFIRMACAO_MS, e -> confirmarNomeNoBanco());
     
     /**
      * Construtor do ValidadorCampos.
@@ -65,6 +76,7 @@ public class ValidadorCampos implements DocumentListener, java.awt.event.FocusLi
         this.botaoConfirmar = botaoConfirmar;
         this.estoque = estoque;
         this.validarExistenciaNome = validarExistenciaNome;
+        confirmacaoTimer.setRepeats(false);
 
         // Armazena a borda padrão de um dos campos (se existirem) para restaurá-la depois.
         if (nomeField != null) this.defaultBorder = nomeField.getBorder();
@@ -239,16 +251,46 @@ public class ValidadorCampos implements DocumentListener, java.awt.event.FocusLi
         if (nome.isEmpty()) {
             return "Nome não pode ser vazio.";
         }
+        // Consulta o índice local; enquanto a existência do nome não for conhecida, o campo permanece inválido.
+        String chave = Produto.normalizarNome(nome);
+        if (!chave.equals(nomeVerificado)) {
+            IndiceNomes.Resposta resposta = estoque.verificarNome(chave);
+            if (resposta == IndiceNomes.Resposta.INCERTO) {
+                confirmacaoTimer.restart(); // Confirma no banco quando o usuário parar de digitar.
+                return "Verificando o nome do produto...";
+            }
+            nomeVerificado = chave;
+            nomeExiste = resposta == IndiceNomes.Resposta.EXISTE;
+        }
         // Valida a existência/inexistência do produto no estoque, dependendo da flag `validarExistenciaNome`.
-        if (validarExistenciaNome && estoque.buscarProduto(nome) == null) {
+        if (validarExistenciaNome && !nomeExiste) {
             return "Produto não encontrado."; // Para atualização, o produto deve existir.
         }
-        if (!validarExistenciaNome && estoque.buscarProduto(nome) != null) {
+        if (!validarExistenciaNome && nomeExiste) {
             return "Produto já existe."; // Para adição, o produto não deve existir.
         }
         return null; // Campo válido
     }
 
+    /**
+     * Chamado pelo timer quando o usuário para de digitar um nome que o índice local não soube avaliar.
+     * Consulta o banco de forma assíncrona; quando a resposta chega (na EDT), guarda o resultado e
+     * revalida os campos, desde que o usuário não tenha digitado outro nome nesse meio tempo.
+     */
+    private void confirmarNomeNoBanco() {
+        if (nomeField == null) return;
+        String chave = Produto.normalizarNome(nomeField.getText());
+        if (chave.isEmpty() || chave.equals(nomeVerificado) || chave.equals(nomeEmVerificacao)) return;
+        nomeEmVerificacao = chave;
+        estoque.existeNoBancoAsync(chave).thenAccept(existe -> {
+            if (!chave.equals(nomeEmVerificacao)) return; // Resposta de um nome que não está mais no campo.
+            nomeEmVerificacao = null;
+            nomeVerificado = chave;
+            nomeExiste = existe;
+            validarCamposInterno(nomeField);
+        });
+    }
+
     /**
      * Retorna a mensagem de erro para o campo de quantidade, se houver.
      * @param field O JTextField da quantidade.
@@ -256,7 +298,17 @@ public class ValidadorCampos implements DocumentListener, java.awt.event.FocusLi
      */
     private String getQuantidadeErro(JTextField field) {
         if (field == null) return null;
-        String quantidade = field.getText().trim();
+        return validarQuantidade(field.getText());
+    }
+
+    /**
+     * Aplica as regras de validação de quantidade a um texto qualquer.
+     * Usado pelos formulários e pela importação de CSV, para que ambos aceitem os mesmos valores.
+     * @param texto O texto da quantidade.
+     * @return A mensagem de erro ou null se o texto for válido.
+     */
+    public static String validarQuantidade(String texto) {
+        String quantidade = texto == null ? "" : texto.trim();
         if (quantidade.isEmpty()) {
             return "Quantidade não pode ser vazia.";
         }
@@ -282,7 +334,17 @@ public class ValidadorCampos implements DocumentListener, java.awt.event.FocusLi
      */
     private String getPrecoErro(JTextField field) {
         if (field == null) return null;
-        String preco = field.getText().trim();
+        return validarPreco(field.getText());
+    }
+
+    /**
+     * Aplica as regras de validação de preço a um texto qualquer.
+     * Usado pelos formulários e pela importação de CSV, para que ambos aceitem os mesmos valores.
+     * @param texto O texto do preço.
+     * @return A mensagem de erro ou null se o texto for válido.
+     */
+    public static String validarPreco(String texto) {
+        String preco = texto == null ? "" : texto.trim();
         if (preco.isEmpty()) {
             return "Preço não pode ser vazio.";
         }
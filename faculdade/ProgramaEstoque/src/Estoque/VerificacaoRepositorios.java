@@ -0,0 +1,379 @@
+package Estoque;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Verificação de conformidade e medição de latência dos repositórios de produtos.
+ * Executa o mesmo roteiro sobre cada repositório informado, conferindo que todos se
+ * comportam como o contrato de `RepositorioProdutos` descreve (inclusive a ordem das páginas
+ * e as mensagens dos lotes), e depois mede a latência de cada operação com a mesma carga.
+ * <p>
+ * Uso: {@code java -cp "bin:lib/*" Estoque.VerificacaoRepositorios [memoria] [jdbc] [mongodb]}
+ * (sem argumentos, verifica apenas "memoria"). O número de produtos da medição é definido
+ * com {@code -Destoque.verificacao.produtos} (padrão 10000). Como o roteiro apaga o que gravou,
+ * ele só é executado sobre repositórios vazios; para o MongoDB e o JDBC, aponte a configuração
+ * para uma coleção ou um arquivo próprios, ex: {@code -Destoque.mongodb.colecao=produtos_verificacao}.
+ * @author Leandro
+ */
+public final class VerificacaoRepositorios {
+    private final RepositorioProdutos repositorio;
+    private final List<String> falhas = new ArrayList<>();
+    // Latências medidas, em nanossegundos, por operação, na ordem em que foram medidas.
+    private final Map<String, long[]> latencias = new LinkedHashMap<>();
+
+    /**
+     * Construtor privado; use `main`.
+     * @param repositorio O repositório a ser verificado.
+     */
+    private VerificacaoRepositorios(RepositorioProdutos repositorio) {
+        this.repositorio = repositorio;
+    }
+
+    /**
+     * Verifica e mede cada repositório informado na linha de comando.
+     * O processo termina com código 1 se algum repositório não estiver conforme.
+     * @param args Os tipos de repositório ("memoria", "jdbc", "mongodb").
+     */
+    public static void main(String[] args) {
+        List<String> tipos = args.length == 0 ? List.of("memoria") : Arrays.asList(args);
+        int produtos = Integer.getInteger("estoque.verificacao.produtos", 10_000);
+        ConfiguracaoBanco configuracao = ConfiguracaoBanco.carregar();
+        boolean conforme = true;
+        for (String tipo : tipos) {
+            try (RepositorioProdutos repositorio = RepositorioProdutos.criar(tipo, configuracao)) {
+                System.out.println("== " + repositorio.getDescricao());
+                if (repositorio.contar(ConsultaProdutos.todos()) > 0) {
+                    System.out.println("   O repositório não está vazio; verificação ignorada.");
+                    conforme = false;
+                    continue;
+                }
+                VerificacaoRepositorios verificacao = new VerificacaoRepositorios(repositorio);
+                verificacao.verificarConformidade();
+                verificacao.medirLatencias(produtos);
+                verificacao.imprimir();
+                conforme &= verificacao.falhas.isEmpty();
+            } catch (RuntimeException e) {
+                System.out.println("   Erro: " + e.getMessage());
+                conforme = false;
+            }
+        }
+        if (!conforme) System.exit(1);
+    }
+
+    /**
+     * Registra uma falha se a condição não for verdadeira.
+     * @param condicao A condição esperada.
+     * @param descricao O que estava sendo conferido.
+     */
+    private void conferir(boolean condicao, String descricao) {
+        if (!condicao) falhas.add(descricao);
+    }
+
+    /**
+     * Executa o roteiro de conformidade, deixando o repositório vazio ao final.
+     */
+    private void verificarConformidade() {
+        // Escritas individuais.
+        repositorio.inserir(new Produto("caneta", 10, 2.5));
+        conferir(repositorio.existe("caneta"), "existe após inserir");
+        conferir(!repositorio.existe("lapis"), "não existe sem inserir");
+        boolean recusou = false;
+        try {
+            repositorio.inserir(new Produto("caneta", 1, 1));
+        } catch (RuntimeException e) {
+            recusou = true;
+        }
+        conferir(recusou, "inserir nome repetido lança exceção");
+        conferir(repositorio.atualizar("caneta", 20, 3.0), "atualizar existente");
+        conferir(!repositorio.atualizar("lapis", 1, 1), "atualizar inexistente");
+        conferir(listarTodos().equals(List.of("caneta:20:3.0")), "valores após atualizar");
+        Produto movimentado = repositorio.movimentar("caneta", 5);
+        conferir(movimentado != null && movimentado.getQuantidade() == 25, "entrada devolve a nova quantidade");
+        conferir(repositorio.movimentar("caneta", -26) == null, "saída maior que o estoque é recusada");
+        movimentado = repositorio.movimentar("caneta", -25);
+        conferir(movimentado != null && movimentado.getQuantidade() == 0, "saída de todo o estoque");
+        conferir(repositorio.movimentar("caneta", Integer.MAX_VALUE) != null
+            && repositorio.movimentar("caneta", 1) == null, "entrada além do limite de um int é recusada");
+        conferir(repositorio.movimentar("lapis", 1) == null, "movimentar inexistente");
+        conferir(repositorio.atualizar("caneta", 20, 3.0), "atualizar após movimentar");
+        conferir(repositorio.remover("caneta"), "remover existente");
+        conferir(!repositorio.remover("caneta"), "remover inexistente");
+
+        // Lote sem transação: cada operação enxerga as anteriores.
+        List<OperacaoEstoque.Resultado> lote = repositorio.executarLote(List.of(
+            OperacaoEstoque.adicionar(new Produto("borracha", 5, 1.0)),
+            OperacaoEstoque.adicionar(new Produto("borracha", 6, 1.0)),
+            OperacaoEstoque.atualizar("apontador", 1, 1),
+            OperacaoEstoque.atualizar("borracha", 7, 1.5),
+            OperacaoEstoque.remover("apontador")), false);
+        conferir(mensagens(lote).equals(Arrays.asList(null, "Produto já existe.", "Produto não encontrado.",
+            null, "Produto não encontrado.")), "resultados do lote: " + mensagens(lote));
+        conferir(listarTodos().equals(List.of("borracha:7:1.5")), "estado após o lote");
+
+        // Lote transacional com uma falha: nada é aplicado.
+        try {
+            lote = repositorio.executarLote(List.of(
+                OperacaoEstoque.adicionar(new Produto("regua", 1, 1)),
+                OperacaoEstoque.remover("apontador")), true);
+            conferir(!lote.get(0).isSucesso() && !lote.get(1).isSucesso(), "lote transacional com falha não aplica nada");
+            conferir(!repositorio.existe("regua"), "lote transacional desfeito");
+        } catch (RuntimeException e) {
+            System.out.println("   Lote transacional não suportado: " + e.getMessage());
+        }
+
+        // Upsert em lote.
+        long gravados = repositorio.gravarLote(List.of(
+            new Produto("borracha", 8, 2.0), new Produto("regua", 3, 4.0)), (p, motivo) -> { });
+        conferir(gravados == 2, "gravarLote conta inseridos e atualizados");
+        conferir(listarTodos().equals(List.of("borracha:8:2.0", "regua:3:4.0")), "estado após gravarLote");
+        limpar();
+
+        // Livro de movimentações: os instantes partem do relógio atual para não colidir com execuções anteriores.
+        long base = System.currentTimeMillis();
+        repositorio.anexarMovimentos(List.of(
+            new Movimento(base + 1, 1, Movimento.Tipo.ADICIONADO, "caderno", 10, 10, 5.0),
+            new Movimento(base + 1, 2, Movimento.Tipo.ADICIONADO, "cola", 4, 4, 3.0),
+            new Movimento(base + 3, 3, Movimento.Tipo.SAIDA, "caderno", -2, 8, 5.0)));
+        // Lançamentos gravados fora de ordem e reenviados (repetidos) depois de uma falha.
+        repositorio.anexarMovimentos(List.of(
+            new Movimento(base + 2, 4, Movimento.Tipo.ENTRADA, "cola", 1, 5, 3.0),
+            new Movimento(base + 3, 3, Movimento.Tipo.SAIDA, "caderno", -2, 8, 5.0)));
+        List<String> lidos = new ArrayList<>();
+        repositorio.percorrerMovimentos(null, base, base + 10, m -> lidos.add(m.getNome() + ":" + m.getQuantidade()));
+        conferir(lidos.equals(List.of("caderno:10", "cola:4", "cola:5", "caderno:8")),
+            "percorrerMovimentos em ordem e sem repetições: " + lidos);
+        lidos.clear();
+        repositorio.percorrerMovimentos("caderno", base + 1, base + 10, m -> lidos.add(m.getTipo() + ":" + m.getVariacao()));
+        conferir(lidos.equals(List.of("SAIDA:-2")), "percorrerMovimentos de um produto após um instante: " + lidos);
+        repositorio.gravarCheckpoint(base + 5, List.of(new Produto("caderno", 8, 5.0), new Produto("cola", 5, 3.0)));
+        conferir(repositorio.ultimoCheckpoint(base + 7) == base + 5, "ultimoCheckpoint encontra o anterior ao instante");
+        conferir(repositorio.ultimoCheckpoint(base + 4) < base, "ultimoCheckpoint ignora os posteriores ao instante");
+        List<String> estado = new ArrayList<>();
+        repositorio.paraCadaProdutoNoCheckpoint(base + 5, p -> estado.add(p.getNome() + ":" + p.getQuantidade()));
+        Collections.sort(estado);
+        conferir(estado.equals(List.of("caderno:8", "cola:5")), "produtos do checkpoint: " + estado);
+
+        // Versões e lápides da sincronização entre instâncias.
+        long versaoInicial = repositorio.versaoAtual();
+        repositorio.inserir(new Produto("grampo", 1, 1.0));
+        repositorio.atualizar("grampo", 2, 1.0);
+        repositorio.inserir(new Produto("clipe", 1, 1.0));
+        repositorio.remover("grampo");
+        List<String> sincronizadas = alteracoesDesde(versaoInicial);
+        conferir(sincronizadas.equals(List.of("clipe:1", "-grampo")), "alterações desde uma versão: " + sincronizadas);
+        long versaoRemocao = repositorio.versaoAtual();
+        conferir(versaoRemocao >= versaoInicial + 4, "cada gravação recebe uma nova versão");
+        repositorio.gravarLote(List.of(new Produto("grampo", 5, 1.0)), (p, motivo) -> { });
+        conferir(alteracoesDesde(versaoRemocao).equals(List.of("grampo:5")), "produto recriado depois da lápide");
+        // A lápide anterior pode ou não ser entregue, mas sempre antes do produto recriado.
+        sincronizadas = alteracoesDesde(versaoInicial);
+        sincronizadas.remove("-grampo");
+        conferir(sincronizadas.equals(List.of("clipe:1", "grampo:5")), "produto recriado por último: " + sincronizadas);
+        conferir(alteracoesDesde(repositorio.versaoAtual()).isEmpty(), "nenhuma alteração após a versão atual");
+        limpar();
+
+        // Consultas sobre um catálogo com empates de quantidade e preço.
+        long antes = System.currentTimeMillis() - 1;
+        List<Produto> catalogo = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            catalogo.add(new Produto(String.format("p%02d", i), i % 7, (i % 5) * 12.5));
+        }
+        repositorio.gravarLote(catalogo, (p, motivo) -> falhas.add("gravarLote recusou " + p.getNome()));
+        Set<String> nomes = new HashSet<>();
+        repositorio.paraCadaNome(nomes::add);
+        conferir(nomes.size() == catalogo.size(), "paraCadaNome entrega todos os nomes");
+        List<Produto> alterados = new ArrayList<>();
+        repositorio.paraCadaAlteradoDesde(antes, alterados::add);
+        conferir(alterados.size() == catalogo.size(), "paraCadaAlteradoDesde entrega os gravados");
+        alterados.clear();
+        repositorio.paraCadaAlteradoDesde(System.currentTimeMillis() + 60_000, alterados::add);
+        conferir(alterados.isEmpty(), "paraCadaAlteradoDesde no futuro não entrega nada");
+
+        for (String campo : List.of(ConsultaProdutos.NOME, ConsultaProdutos.QUANTIDADE, ConsultaProdutos.PRECO)) {
+            for (boolean crescente : new boolean[] {true, false}) {
+                for (ConsultaProdutos filtro : List.of(ConsultaProdutos.todos(),
+                        ConsultaProdutos.todos().comFiltros("p1", 0),
+                        ConsultaProdutos.todos().comFiltros("", 3))) {
+                    verificarConsulta(catalogo, filtro.comOrdenacao(campo, crescente));
+                }
+            }
+        }
+
+        ResumoEstoque resumo = repositorio.calcularResumo();
+        long unidades = catalogo.stream().mapToLong(Produto::getQuantidade).sum();
+        double valor = catalogo.stream().mapToDouble(p -> p.getQuantidade() * p.getPreco()).sum();
+        conferir(resumo.getItens() == catalogo.size(), "resumo: itens");
+        conferir(resumo.getUnidades() == unidades, "resumo: unidades");
+        conferir(Math.abs(resumo.getValorTotal() - valor) < 1e-6, "resumo: valor total");
+        for (ResumoEstoque.Faixa faixa : resumo.getFaixas()) {
+            long esperado = catalogo.stream()
+                .filter(p -> p.getPreco() >= faixa.getPrecoMinimo() && p.getPreco() < faixa.getPrecoMaximo()).count();
+            conferir(faixa.getItens() == esperado, "resumo: itens da faixa a partir de " + faixa.getPrecoMinimo());
+        }
+        limpar();
+    }
+
+    /**
+     * Confere contagem, paginação por chave, paginação por deslocamento e percurso de uma
+     * consulta contra a ordem calculada em memória com `ConsultaProdutos.comparador`.
+     * @param catalogo Todos os produtos gravados.
+     * @param consulta A consulta.
+     */
+    private void verificarConsulta(List<Produto> catalogo, ConsultaProdutos consulta) {
+        List<String> esperado = new ArrayList<>();
+        catalogo.stream().filter(consulta::aceita).sorted(consulta.comparador())
+            .forEach(p -> esperado.add(p.getNome()));
+        String descricao = consulta.getCampoOrdenacao() + (consulta.isCrescente() ? " crescente" : " decrescente")
+            + ", prefixo '" + consulta.getPrefixoNome() + "', mínimo " + consulta.getQuantidadeMinima();
+
+        conferir(repositorio.contar(consulta) == esperado.size(), "contar: " + descricao);
+
+        List<String> porChave = new ArrayList<>();
+        List<String> porDeslocamento = new ArrayList<>();
+        Produto ultimo = null;
+        while (true) {
+            List<Produto> pagina = repositorio.listarPagina(consulta, ultimo, 7);
+            pagina.forEach(p -> porChave.add(p.getNome()));
+            if (pagina.size() < 7) break;
+            ultimo = pagina.get(pagina.size() - 1);
+        }
+        for (long deslocamento = 0; deslocamento <= esperado.size(); deslocamento += 7) {
+            repositorio.listarPagina(consulta, deslocamento, 7).forEach(p -> porDeslocamento.add(p.getNome()));
+        }
+        List<String> percorridos = new ArrayList<>();
+        repositorio.percorrer(consulta, 5, p -> percorridos.add(p.getNome()));
+
+        conferir(porChave.equals(esperado), "paginação por chave: " + descricao);
+        conferir(porDeslocamento.equals(esperado), "paginação por deslocamento: " + descricao);
+        conferir(percorridos.equals(esperado), "percorrer: " + descricao);
+    }
+
+    /**
+     * Mede a latência de cada operação com um catálogo do tamanho informado.
+     * @param produtos O número de produtos do catálogo.
+     */
+    private void medirLatencias(int produtos) {
+        List<Produto> catalogo = new ArrayList<>(produtos);
+        for (int i = 0; i < produtos; i++) {
+            catalogo.add(new Produto(String.format("produto %07d", i), i % 500, (i % 1000) * 1.25));
+        }
+        long inicio = System.nanoTime();
+        for (int i = 0; i < catalogo.size(); i += 1000) {
+            repositorio.gravarLote(catalogo.subList(i, Math.min(catalogo.size(), i + 1000)), (p, motivo) -> { });
+        }
+        latencias.put("gravarLote (catálogo inteiro)", new long[] {System.nanoTime() - inicio});
+
+        int repeticoes = Math.min(1000, produtos);
+        int[] contador = {0};
+        medir("inserir", repeticoes, () -> {
+            repositorio.inserir(new Produto("novo " + contador[0]++, 1, 1));
+            return null;
+        });
+        medir("existe", repeticoes, () -> repositorio.existe(catalogo.get(contador[0]++ % produtos).getNome()));
+        medir("atualizar", repeticoes, () -> repositorio.atualizar(catalogo.get(contador[0]++ % produtos).getNome(), 3, 4.5));
+        medir("movimentar", repeticoes, () -> repositorio.movimentar(catalogo.get(contador[0]++ % produtos).getNome(), 1));
+        ConsultaProdutos porPreco = ConsultaProdutos.todos().comOrdenacao(ConsultaProdutos.PRECO, false);
+        medir("listarPagina por chave (50)", 200, () -> repositorio.listarPagina(porPreco,
+            catalogo.get(contador[0]++ % produtos), 50));
+        medir("listarPagina por deslocamento (50)", 200, () -> repositorio.listarPagina(porPreco,
+            (long) (contador[0]++ % produtos), 50));
+        ConsultaProdutos filtrada = ConsultaProdutos.todos().comFiltros("produto 00", 250);
+        medir("contar com filtros", 200, () -> repositorio.contar(filtrada));
+        medir("calcularResumo", 20, repositorio::calcularResumo);
+        contador[0] = 0;
+        medir("remover", repeticoes, () -> repositorio.remover("novo " + contador[0]++));
+        limpar();
+    }
+
+    /**
+     * Executa uma operação várias vezes, guardando a duração de cada execução.
+     * @param operacao O nome da operação.
+     * @param vezes O número de execuções.
+     * @param tarefa A operação.
+     */
+    private void medir(String operacao, int vezes, Supplier<?> tarefa) {
+        long[] duracoes = new long[vezes];
+        for (int i = 0; i < vezes; i++) {
+            long inicio = System.nanoTime();
+            tarefa.get();
+            duracoes[i] = System.nanoTime() - inicio;
+        }
+        latencias.put(operacao, duracoes);
+    }
+
+    /**
+     * Imprime o resultado da conformidade e a tabela de latências (em microssegundos).
+     */
+    private void imprimir() {
+        if (falhas.isEmpty()) {
+            System.out.println("   Conformidade: OK");
+        } else {
+            System.out.println("   Conformidade: " + falhas.size() + " falha(s)");
+            falhas.forEach(f -> System.out.println("     - " + f));
+        }
+        System.out.printf("   %-36s %8s %10s %10s %10s%n", "operação", "vezes", "p50 µs", "p99 µs", "máx µs");
+        for (Map.Entry<String, long[]> e : latencias.entrySet()) {
+            long[] d = e.getValue().clone();
+            Arrays.sort(d);
+            System.out.printf("   %-36s %8d %10.1f %10.1f %10.1f%n", e.getKey(), d.length,
+                d[d.length / 2] / 1e3, d[(int) Math.min(d.length - 1, Math.ceil(d.length * 0.99) - 1)] / 1e3,
+                d[d.length - 1] / 1e3);
+        }
+    }
+
+    /**
+     * Lista todos os produtos como "nome:quantidade:preço", em ordem alfabética.
+     * @return A lista.
+     */
+    private List<String> listarTodos() {
+        List<String> todos = new ArrayList<>();
+        repositorio.percorrer(ConsultaProdutos.todos(), 100,
+            p -> todos.add(p.getNome() + ":" + p.getQuantidade() + ":" + p.getPreco()));
+        return todos;
+    }
+
+    /**
+     * Lista as alterações posteriores a uma versão como "nome:quantidade" ou "-nome" (lápide),
+     * conferindo que chegam em ordem crescente de versão.
+     * @param versao A versão inicial, exclusive.
+     * @return A lista, na ordem entregue pelo repositório.
+     */
+    private List<String> alteracoesDesde(long versao) {
+        List<String> alteracoes = new ArrayList<>();
+        long[] anterior = {versao};
+        repositorio.paraCadaAlteracaoDesde(versao, a -> {
+            conferir(a.getVersao() > anterior[0], "alterações em ordem crescente de versão");
+            anterior[0] = a.getVersao();
+            alteracoes.add(a.isRemocao() ? "-" + a.getNome() : a.getNome() + ":" + a.getProduto().getQuantidade());
+        });
+        return alteracoes;
+    }
+
+    /**
+     * Extrai as mensagens dos resultados de um lote (null para as operações aplicadas).
+     * @param resultados Os resultados.
+     * @return As mensagens, na mesma ordem.
+     */
+    private static List<String> mensagens(List<OperacaoEstoque.Resultado> resultados) {
+        List<String> lista = new ArrayList<>();
+        resultados.forEach(r -> lista.add(r.getMensagem()));
+        return lista;
+    }
+
+    /**
+     * Remove todos os produtos do repositório.
+     */
+    private void limpar() {
+        List<String> nomes = new ArrayList<>();
+        repositorio.paraCadaNome(nomes::add);
+        nomes.forEach(repositorio::remover);
+    }
+}